@@ -0,0 +1,198 @@
+/*******************************************************************
+ * AllocatorBenchmark Class                                        *
+ *                                                                 *
+ * PROGRAMMER: Emily Culp                                          *
+ * COURSE: CS340 - Programming Language Design                     *
+ * DATE: 12/10/2024                                                *
+ * REQUIREMENT: Final - Compiler                                   *
+ *                                                                 *
+ * DESCRIPTION:                                                    *
+ * The AllocatorBenchmark class compares the register allocators   *
+ * on a corpus. Each source file named on the command line is      *
+ * compiled with virtual registers, and LinearScanAllocator and    *
+ * GraphColoringAllocator are each run on their own copy of the    *
+ * code. Generated programs are added to the corpus: blocks with   *
+ * chains of register moves, and a branch whose other side keeps   *
+ * every register busy while a value waits for the join, which is  *
+ * where the intervals of the linear scan are too coarse, and      *
+ * blocks with more values live than registers, which have to be   *
+ * spilled. For each program and allocator the benchmark prints    *
+ * the values, the registers used, the register moves left, the    *
+ * spills, the loads and stores of spill code and the time taken.  *
+ *                                                                 *
+ * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean  *
+ * Zeller.                                                         *
+ *                                                                 *
+ * CREDITS: This code was written with the help of ChatGPT.        *
+ *******************************************************************/
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class AllocatorBenchmark {
+    private static final int ROUNDS = 5;
+
+    /**********************************************************
+     * METHOD: main(String[] args)                              *
+     * DESCRIPTION: Runs both allocators on every program of    *
+     *              the corpus and prints the comparison.       *
+     * PARAMETERS: String[] args - the source files, or none    *
+     *              for input.txt.                              *
+     * RETURN VALUE: None                                        *
+     **********************************************************/
+    public static void main(String[] args) throws IOException {
+        System.setProperty(MipsOptimizer.LEVEL_PROPERTY, "1"); // The generator hands out virtual registers
+
+        Map<String, MipsCode> corpus = new LinkedHashMap<>();
+        for (String file : (args.length > 0) ? args : new String[] {"input.txt"}) {
+            corpus.put(file, compile(Path.of(file)));
+        }
+        corpus.put("(moves x200)", moveChains(200, 6));
+        corpus.put("(branch x50)", busyBranches(50));
+        corpus.put("(pressure x20)", pressure(20, 16));
+
+        int totalMoves = 0;
+        int totalSpillsAvoided = 0;
+        System.out.printf("%-20s | %-14s | %7s | %9s | %10s | %6s | %7s | %9s%n",
+                "Program", "Allocator", "Values", "Registers", "Moves left", "Spills", "lw + sw", "ms");
+        System.out.println("-------------------------------------------------------------------------------------------------------------");
+        for (Map.Entry<String, MipsCode> program : corpus.entrySet()) {
+            RegisterAllocator linear = null;
+            RegisterAllocator coloring = null;
+            for (int round = 0; round < ROUNDS; round++) { // The last round is reported
+                linear = new LinearScanAllocator(program.getValue().copyFrom(0));
+                coloring = new GraphColoringAllocator(program.getValue().copyFrom(0));
+                print(program.getKey(), linear, round == ROUNDS - 1);
+                print(program.getKey(), coloring, round == ROUNDS - 1);
+            }
+            totalMoves += coloring.getMovesRemoved() - linear.getMovesRemoved();
+            totalSpillsAvoided += linear.getSpillCount() - coloring.getSpillCount();
+        }
+        System.out.println();
+        System.out.println("Graph coloring removed " + totalMoves + " more moves than linear scan and avoided "
+                + totalSpillsAvoided + " of its spills.");
+    }
+
+    // Compiles a source file the way BatchCompiler does and returns the code before allocation
+    private static MipsCode compile(Path source) throws IOException {
+        PrintStream out = new PrintStream(OutputStream.nullOutputStream(), false, StandardCharsets.UTF_8);
+        CompilationContext context = new CompilationContext(InputStream.nullInputStream(), out);
+        Compiler compiler = new Compiler(context);
+        try (BufferedReader reader = Files.newBufferedReader(source);
+             PrintWriter tokens = new PrintWriter(OutputStream.nullOutputStream())) {
+            compiler.compile(reader, tokens);
+        }
+        return context.getMipsGenerator().getMipsCode().copyFrom(0);
+    }
+
+    // Times one allocation, spill code included
+    private static void print(String program, RegisterAllocator allocator, boolean report) {
+        long start = System.nanoTime();
+        int spills = allocator.plan();
+        int values = allocator.getValueCount();
+        allocator.allocate();
+        double millis = (System.nanoTime() - start) / 1e6;
+        if (report) {
+            System.out.printf("%-20s | %-14s | %7d | %9d | %10d | %6d | %7d | %9.2f%n", program, allocator.getName(),
+                    values, allocator.getRegistersUsed(), countRegisterMoves(allocator.code), spills,
+                    allocator.getLoads() + allocator.getStores(), millis);
+        }
+    }
+
+    private static int countRegisterMoves(MipsCode code) {
+        int moves = 0;
+        for (int i = 0; i < code.size(); i++) {
+            if (RegisterAllocator.isRegisterMove(code, i)) {
+                moves++;
+            }
+        }
+        return moves;
+    }
+
+    // Blocks that load a value, copy it along a chain of moves and add it to a running total
+    private static MipsCode moveChains(int blocks, int chainLength) {
+        MipsCode code = new MipsCode();
+        int next = MipsCode.FIRST_VIRTUAL;
+        int total = next++;
+        code.add(CodeGenerator.LI, MipsCode.virtualName(total), "0");
+        for (int block = 0; block < blocks; block++) {
+            code.label("chain_" + block);
+            int value = next++;
+            code.add(CodeGenerator.LI, MipsCode.virtualName(value), Integer.toString(block));
+            for (int link = 0; link < chainLength; link++) {
+                int copy = next++;
+                code.add(CodeGenerator.MOVE, MipsCode.virtualName(copy), MipsCode.virtualName(value));
+                value = copy;
+            }
+            code.add(CodeGenerator.ADD, MipsCode.virtualName(total), MipsCode.virtualName(total),
+                    MipsCode.virtualName(value));
+        }
+        code.add(CodeGenerator.MOVE, "$a0", MipsCode.virtualName(total));
+        return code;
+    }
+
+    // Blocks with more values live at once than there are registers, half of them constants
+    private static MipsCode pressure(int blocks, int pairs) {
+        MipsCode code = new MipsCode();
+        int next = MipsCode.FIRST_VIRTUAL;
+        for (int block = 0; block < blocks; block++) {
+            code.label("pressure_" + block);
+            int first = next;
+            for (int pair = 0; pair < pairs; pair++) {
+                int constant = next++;
+                code.add(CodeGenerator.LI, MipsCode.virtualName(constant), Integer.toString(pair));
+                code.add(CodeGenerator.ADD, MipsCode.virtualName(next++), MipsCode.virtualName(constant), "$a1");
+            }
+            int sum = next++;
+            code.add(CodeGenerator.LI, MipsCode.virtualName(sum), "0");
+            for (int value = first; value < sum; value++) {
+                code.add(CodeGenerator.ADD, MipsCode.virtualName(sum), MipsCode.virtualName(sum),
+                        MipsCode.virtualName(value));
+            }
+            code.add(CodeGenerator.MOVE, "$a0", MipsCode.virtualName(sum));
+            code.add(CodeGenerator.SYSCALL);
+        }
+        return code;
+    }
+
+    // Branches where a value waits across the other side, which keeps every register busy
+    private static MipsCode busyBranches(int branches) {
+        MipsCode code = new MipsCode();
+        int next = MipsCode.FIRST_VIRTUAL;
+        for (int branch = 0; branch < branches; branch++) {
+            int waiting = next++;
+            code.add(CodeGenerator.LI, MipsCode.virtualName(waiting), Integer.toString(branch));
+            code.add(CodeGenerator.BEQ, "$a1", "$zero", "taken_" + branch);
+
+            // The side laid out first: every register holds a value at once
+            int first = next;
+            for (int i = 0; i < RegisterAllocator.REGISTER_COUNT; i++) {
+                code.add(CodeGenerator.LI, MipsCode.virtualName(next++), Integer.toString(i));
+            }
+            int sum = next++;
+            code.add(CodeGenerator.MOVE, MipsCode.virtualName(sum), MipsCode.virtualName(first));
+            for (int value = first + 1; value < sum; value++) {
+                code.add(CodeGenerator.ADD, MipsCode.virtualName(sum), MipsCode.virtualName(sum),
+                        MipsCode.virtualName(value));
+            }
+            code.add(CodeGenerator.MOVE, "$a0", MipsCode.virtualName(sum));
+            code.add(CodeGenerator.J, "join_" + branch);
+
+            // The side laid out second is the only one that reads the waiting value
+            code.label("taken_" + branch);
+            code.add(CodeGenerator.MOVE, "$a0", MipsCode.virtualName(waiting));
+            code.label("join_" + branch);
+            code.add(CodeGenerator.SYSCALL);
+        }
+        return code;
+    }
+}
@@ -0,0 +1,295 @@
+/*******************************************************************
+ * BatchCompiler Class                                             *
+ *                                                                 *
+ * PROGRAMMER: Emily Culp                                          *
+ * COURSE: CS340 - Programming Language Design                     *
+ * DATE: 12/10/2024                                                *
+ * REQUIREMENT: Final - Compiler                                   *
+ *                                                                 *
+ * DESCRIPTION:                                                    *
+ * The BatchCompiler class compiles a whole directory (or a list)  *
+ * of source files in one JVM. The files are split across a        *
+ * ForkJoin work-stealing pool and every file is compiled in its   *
+ * own CompilationContext. For each source file a .asm file with   *
+ * the MIPS code and a .tokens.txt file with the token dump are    *
+ * written, and the aggregate throughput is reported at the end.   *
+ * The sources of a directory are the files matching the glob      *
+ * given with -include, and their output files keep the same       *
+ * relative paths under the output directory. A file that fails is *
+ * reported and counted, and the rest of the batch goes on.        *
+ *                                                                 *
+ * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean  *
+ * Zeller.                                                         *
+ *                                                                 *
+ * CREDITS: This code was written with the help of ChatGPT.        *
+ *******************************************************************/
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+public class BatchCompiler {
+    private final Path outputDirectory;
+    private final AtomicInteger compiled = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicLong sourceBytes = new AtomicLong();
+
+    /**********************************************************
+     * CONSTRUCTOR: BatchCompiler(Path outputDirectory)        *
+     * DESCRIPTION: Creates a batch compiler.                  *
+     * PARAMETERS: Path outputDirectory - where the output     *
+     *              files go, or null to write them next to    *
+     *              each source file.                          *
+     **********************************************************/
+    public BatchCompiler(Path outputDirectory) {
+        this.outputDirectory = outputDirectory;
+    }
+
+    /**********************************************************
+     * METHOD: main(String[] args)                              *
+     * DESCRIPTION: Collects the source files from the given    *
+     *              directories, files and @list files, compiles *
+     *              them in parallel and prints the throughput. *
+     * PARAMETERS: String[] args - [-o outputDir] [-threads n]  *
+     *              [-include glob] <dir | file | @listFile>... *
+     *              -include must come before the directories   *
+     *              it applies to.                              *
+     * RETURN VALUE: None                                        *
+     **********************************************************/
+    public static void main(String[] args) throws IOException {
+        Path outputDirectory = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        PathMatcher include = null;
+        List<Source> sources = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-o") && i + 1 < args.length) {
+                outputDirectory = Path.of(args[++i]);
+                Files.createDirectories(outputDirectory);
+            } else if (args[i].equals("-threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-include") && i + 1 < args.length) {
+                include = FileSystems.getDefault().getPathMatcher("glob:" + args[++i]);
+            } else if (Files.isDirectory(Path.of(args[i])) && include == null) {
+                System.out.println("Give the sources of " + args[i] + " with -include, e.g. -include '**/*.txt'");
+                return;
+            } else {
+                collectSources(args[i], include, sources);
+            }
+        }
+
+        if (sources.isEmpty()) {
+            System.out.println("Usage: java BatchCompiler [-o outputDir] [-threads n] [-include glob] "
+                    + "<dir | file | @listFile>...");
+            return;
+        }
+
+        BatchCompiler batch = new BatchCompiler(outputDirectory);
+        long start = System.nanoTime();
+        batch.compileAll(sources, threads);
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        System.out.printf("Compiled %d file(s) (%d failed) on %d thread(s) in %.2f s%n",
+                batch.compiled.get(), batch.failed.get(), threads, seconds);
+        System.out.printf("Throughput: %.1f files/s, %.1f KB/s%n",
+                batch.compiled.get() / seconds, batch.sourceBytes.get() / 1024.0 / seconds);
+    }
+
+    /**********************************************************
+     * METHOD: collectSources(String argument, PathMatcher       *
+     *              include, List<Source> sources)               *
+     * DESCRIPTION: Adds the source files named by one argument. *
+     *              A directory adds every file under it whose   *
+     *              path relative to it matches the include      *
+     *              glob (except generated .tokens.txt files),   *
+     *              keeping that relative path for its output. A *
+     *              name starting with @ adds every path listed  *
+     *              in that file, and anything else is added as  *
+     *              is; both write their output by file name.    *
+     * PARAMETERS: String argument - the command-line argument.  *
+     *             PathMatcher include - the sources of a        *
+     *              directory.                                   *
+     *             List<Source> sources - the list to add to.    *
+     * RETURN VALUE: None                                         *
+     **********************************************************/
+    private static void collectSources(String argument, PathMatcher include, List<Source> sources) throws IOException {
+        if (argument.startsWith("@")) {
+            for (String line : Files.readAllLines(Path.of(argument.substring(1)))) {
+                if (!line.isBlank()) {
+                    Path file = Path.of(line.trim());
+                    sources.add(new Source(file, file.getFileName()));
+                }
+            }
+            return;
+        }
+
+        Path path = Path.of(argument);
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> files = Files.walk(path)) {
+                files.filter(Files::isRegularFile)
+                        .filter(file -> include.matches(path.relativize(file)) && !file.toString().endsWith(".tokens.txt"))
+                        .sorted()
+                        .forEach(file -> sources.add(new Source(file, path.relativize(file))));
+            }
+        } else {
+            sources.add(new Source(path, path.getFileName()));
+        }
+    }
+
+    /**********************************************************
+     * METHOD: compileAll(List<Source> sources, int threads)    *
+     * DESCRIPTION: Compiles every source file on a ForkJoin    *
+     *              pool. The list is split in halves until a   *
+     *              single file is left, so idle workers can    *
+     *              steal the remaining halves from busy ones.  *
+     *              A source whose output files another source  *
+     *              already writes is reported instead.         *
+     * PARAMETERS: List<Source> sources - the files to compile. *
+     *             int threads - the pool parallelism.          *
+     * RETURN VALUE: None                                        *
+     **********************************************************/
+    private void compileAll(List<Source> sources, int threads) {
+        Map<Path, Path> outputs = new HashMap<>(); // Output base -> the source writing it
+        List<Source> unique = new ArrayList<>(sources.size());
+        for (Source source : sources) {
+            Path first = outputs.putIfAbsent(outputBase(source), source.file);
+            if (first == null) {
+                unique.add(source);
+            } else if (!first.equals(source.file)) {
+                failed.incrementAndGet();
+                System.out.println("Error compiling " + source.file + ": its output files are written by " + first);
+            }
+        }
+        sources = unique;
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(new CompileTask(sources, 0, sources.size()));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**********************************************************
+     * METHOD: compileFile(Path source)                         *
+     * DESCRIPTION: Compiles one source file in a fresh context *
+     *              and writes its .asm and .tokens.txt files   *
+     *              by its file name.                           *
+     * PARAMETERS: Path source - the file to compile.           *
+     * RETURN VALUE: boolean - true if both files were written. *
+     **********************************************************/
+    public boolean compileFile(Path source) {
+        return compileFile(new Source(source, source.getFileName()));
+    }
+
+    /**********************************************************
+     * METHOD: compileFile(Source source)                       *
+     * DESCRIPTION: Compiles one source file in a fresh context *
+     *              and writes its .asm and .tokens.txt files.  *
+     *              The debug output of the run is discarded.   *
+     *              An error in the file, including one thrown  *
+     *              by the compiler, is reported and counted.   *
+     * PARAMETERS: Source source - the file to compile.         *
+     * RETURN VALUE: boolean - true if both files were written. *
+     **********************************************************/
+    private boolean compileFile(Source source) {
+        Path base = outputBase(source);
+        Path assemblyFile = base.resolveSibling(base.getFileName() + ".asm");
+        Path tokenFile = base.resolveSibling(base.getFileName() + ".tokens.txt");
+
+        PrintStream out = new PrintStream(OutputStream.nullOutputStream(), false, StandardCharsets.UTF_8);
+        CompilationContext context = new CompilationContext(InputStream.nullInputStream(), out);
+        Compiler compiler = new Compiler(context);
+
+        try {
+            Files.createDirectories(base.getParent());
+            try (BufferedReader reader = Files.newBufferedReader(source.file);
+                 PrintWriter tokens = new PrintWriter(Files.newBufferedWriter(tokenFile))) {
+                compiler.compile(reader, tokens);
+            }
+            try (PrintWriter assembly = new PrintWriter(Files.newBufferedWriter(assemblyFile))) {
+                context.getMipsGenerator().writeAssembly(assembly);
+            }
+        } catch (IOException | RuntimeException e) {
+            failed.incrementAndGet();
+            System.out.println("Error compiling " + source.file + ": " + e);
+            return false;
+        }
+
+        try {
+            sourceBytes.addAndGet(Files.size(source.file));
+        } catch (IOException e) {
+            // The size is only used for the throughput report
+        }
+        compiled.incrementAndGet();
+        return true;
+    }
+
+    // The output files of a source without their extensions: its relative path under the output directory
+    private Path outputBase(Source source) {
+        String baseName = source.output.getFileName().toString().replaceFirst("\\.[^.]*$", "");
+        Path relative = source.output.resolveSibling(baseName);
+        return (outputDirectory != null)
+                ? outputDirectory.resolve(relative).toAbsolutePath().normalize()
+                : source.file.toAbsolutePath().resolveSibling(baseName);
+    }
+
+    /**********************************************************
+     * CLASS: Source                                            *
+     * DESCRIPTION: A source file and the path its output files *
+     *              have under the output directory, with the   *
+     *              source's extension.                         *
+     **********************************************************/
+    private static final class Source {
+        private final Path file;
+        private final Path output;
+
+        private Source(Path file, Path output) {
+            this.file = file;
+            this.output = output;
+        }
+    }
+
+    /**********************************************************
+     * CLASS: CompileTask                                       *
+     * DESCRIPTION: Compiles the source files in [from, to),    *
+     *              forking the two halves of the range until   *
+     *              a single file is left.                      *
+     **********************************************************/
+    @SuppressWarnings("serial") // Tasks are never serialized, and the source list does not need to be
+    private class CompileTask extends RecursiveAction {
+        private final List<Source> sources;
+        private final int from;
+        private final int to;
+
+        CompileTask(List<Source> sources, int from, int to) {
+            this.sources = sources;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (to > from) {
+                    compileFile(sources.get(from));
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new CompileTask(sources, from, middle), new CompileTask(sources, middle, to));
+        }
+    }
+}
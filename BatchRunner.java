@@ -0,0 +1,255 @@
+/*******************************************************************
+ * BatchRunner Class                                               *
+ *                                                                 *
+ * PROGRAMMER: Emily Culp                                          *
+ * COURSE: CS340 - Programming Language Design                     *
+ * DATE: 12/10/2024                                                *
+ * REQUIREMENT: Final - Compiler                                   *
+ *                                                                 *
+ * DESCRIPTION:                                                    *
+ * The BatchRunner class runs many independent programs at once in *
+ * a single JVM. Every program gets its own CompilationContext and *
+ * runs on its own virtual thread, so programs that block waiting  *
+ * for input(...) do not hold up the others. The main method runs  *
+ * a source file many times and reports the throughput, and can    *
+ * compare it with launching one JVM per program.                  *
+ *                                                                 *
+ * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean  *
+ * Zeller.                                                         *
+ *                                                                 *
+ * CREDITS: This code was written with the help of ChatGPT.        *
+ *******************************************************************/
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+public class BatchRunner {
+
+    /**********************************************************
+     * METHOD: main(String[] args)                              *
+     * DESCRIPTION: Runs the source file the given number of    *
+     *              times on virtual threads and prints the     *
+     *              throughput. Each program's input is supplied *
+     *              after a delay to simulate a user typing.    *
+     *              With -jvm, the same program is also run     *
+     *              once per JVM for comparison.                *
+     * PARAMETERS: String[] args - <source> [programs] [input]  *
+     *              [delayMillis] [-jvm count]                  *
+     * RETURN VALUE: None                                        *
+     **********************************************************/
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: java BatchRunner <source> [programs] [input] [delayMillis] [-jvm count]");
+            return;
+        }
+
+        List<String> positional = new ArrayList<>();
+        int jvmRuns = 0;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-jvm") && i + 1 < args.length) {
+                jvmRuns = Integer.parseInt(args[++i]);
+            } else {
+                positional.add(args[i]);
+            }
+        }
+
+        Path sourcePath = Path.of(positional.get(0));
+        int programs = positional.size() > 1 ? Integer.parseInt(positional.get(1)) : 1000;
+        String input = positional.size() > 2 ? positional.get(2) : "";
+        long delayMillis = positional.size() > 3 ? Long.parseLong(positional.get(3)) : 0;
+        String source = Files.readString(sourcePath);
+
+        // Warm up once so the timing is not dominated by class loading
+        runAll(source, input, 0, 1);
+
+        long start = System.nanoTime();
+        int failures = runAll(source, input, delayMillis, programs);
+        long elapsed = System.nanoTime() - start;
+        report("virtual threads", programs, elapsed);
+        if (failures > 0) {
+            System.out.println(failures + " program(s) failed.");
+        }
+
+        if (jvmRuns > 0) {
+            start = System.nanoTime();
+            runInSeparateJvms(sourcePath, input, jvmRuns);
+            report("one JVM per program", jvmRuns, System.nanoTime() - start);
+        }
+    }
+
+    /**********************************************************
+     * METHOD: runAll(String source, String input,              *
+     *              long delayMillis, int programs)             *
+     * DESCRIPTION: Runs the source the given number of times,  *
+     *              each run on its own virtual thread with its *
+     *              own context. The input for each run is      *
+     *              supplied after the delay by another virtual *
+     *              thread, so runs block in input(...) until   *
+     *              it arrives.                                 *
+     * PARAMETERS: String source - the program text.            *
+     *             String input - the values read by input(...).*
+     *             long delayMillis - how long to hold back the *
+     *              input.                                      *
+     *             int programs - the number of runs.           *
+     * RETURN VALUE: int - the number of runs that failed.      *
+     **********************************************************/
+    public static int runAll(String source, String input, long delayMillis, int programs) throws InterruptedException {
+        List<Future<String>> results = new ArrayList<>(programs);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < programs; i++) {
+                ProgramInput programInput = new ProgramInput();
+                executor.submit(() -> {
+                    if (delayMillis > 0) {
+                        Thread.sleep(delayMillis);
+                    }
+                    programInput.supply(input);
+                    programInput.close();
+                    return null;
+                });
+                results.add(executor.submit(() -> runProgram(source, programInput, OutputStream.nullOutputStream())));
+            }
+        }
+
+        int failures = 0;
+        for (Future<String> result : results) {
+            try {
+                result.get();
+            } catch (ExecutionException e) {
+                failures++;
+            }
+        }
+        return failures;
+    }
+
+    /**********************************************************
+     * METHOD: runProgram(String source, InputStream in,        *
+     *              OutputStream output)                        *
+     * DESCRIPTION: Compiles and runs one program in a fresh    *
+     *              context and writes everything it prints,    *
+     *              including the tables and the MIPS code, to  *
+     *              the output stream.                          *
+     * PARAMETERS: String source - the program text.            *
+     *             InputStream in - the values for input(...).  *
+     *             OutputStream output - where output goes.     *
+     * RETURN VALUE: String - the token listing of the run.     *
+     **********************************************************/
+    public static String runProgram(String source, InputStream in, OutputStream output) throws IOException {
+        PrintStream out = new PrintStream(output, false, StandardCharsets.UTF_8);
+        Compiler compiler = new Compiler(new CompilationContext(in, out));
+        StringWriter tokens = new StringWriter();
+        try (BufferedReader reader = new BufferedReader(new StringReader(source));
+             PrintWriter writer = new PrintWriter(tokens)) {
+            compiler.compile(reader, writer);
+        }
+        compiler.printResults();
+        out.flush();
+        return tokens.toString();
+    }
+
+    /**********************************************************
+     * METHOD: runInSeparateJvms(Path source, String input,     *
+     *              int runs)                                   *
+     * DESCRIPTION: Runs the program the old way, launching a   *
+     *              new JVM for every run, so the two modes can *
+     *              be compared.                                *
+     * PARAMETERS: Path source - the program file.              *
+     *             String input - the values for input(...).   *
+     *             int runs - the number of JVMs to launch.     *
+     * RETURN VALUE: None                                        *
+     **********************************************************/
+    private static void runInSeparateJvms(Path source, String input, int runs) throws IOException, InterruptedException {
+        String java = ProcessHandle.current().info().command().orElse("java");
+        String classPath = System.getProperty("java.class.path");
+        Path output = Files.createTempFile("batch", ".txt");
+        try {
+            for (int i = 0; i < runs; i++) {
+                Process process = new ProcessBuilder(java, "-cp", classPath, "Compiler", source.toString(), output.toString())
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .redirectError(ProcessBuilder.Redirect.DISCARD)
+                        .start();
+                try (OutputStream stdin = process.getOutputStream()) {
+                    stdin.write(input.getBytes(StandardCharsets.UTF_8));
+                }
+                process.waitFor();
+            }
+        } finally {
+            Files.deleteIfExists(output);
+        }
+    }
+
+    /**********************************************************
+     * METHOD: report(String mode, int programs, long nanos)    *
+     * DESCRIPTION: Prints the elapsed time and throughput.     *
+     * PARAMETERS: String mode - how the programs were run.     *
+     *             int programs - the number of programs run.   *
+     *             long nanos - the elapsed time.               *
+     * RETURN VALUE: None                                        *
+     **********************************************************/
+    private static void report(String mode, int programs, long nanos) {
+        double millis = nanos / 1_000_000.0;
+        System.out.printf("%-20s: %d programs in %.1f ms (%.1f programs/s)%n",
+                mode, programs, millis, programs / (millis / 1000.0));
+    }
+
+    /**********************************************************
+     * CLASS: ProgramInput                                      *
+     * DESCRIPTION: An input stream whose data is supplied      *
+     *              later by another thread. Reads block on a   *
+     *              queue rather than a monitor, so a waiting   *
+     *              virtual thread gives up its carrier thread. *
+     **********************************************************/
+    public static class ProgramInput extends InputStream {
+        private static final byte[] END = new byte[0];
+        private final BlockingQueue<byte[]> chunks = new LinkedBlockingQueue<>();
+        private byte[] current = new byte[0];
+        private int position = 0;
+        private boolean closed = false;
+
+        public void supply(String text) {
+            chunks.add((text + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void close() {
+            chunks.add(END);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int n = read(single, 0, 1);
+            return n == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (position == current.length) {
+                if (closed) {
+                    return -1;
+                }
+                try {
+                    current = chunks.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+                position = 0;
+                if (current == END) {
+                    closed = true;
+                }
+            }
+            int n = Math.min(length, current.length - position);
+            System.arraycopy(current, position, buffer, offset, n);
+            position += n;
+            return n;
+        }
+    }
+}
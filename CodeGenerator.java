@@ -45,33 +45,121 @@ public enum CodeGenerator {
      * ADD: Represents an addition operation between two      *
      *      values.                                           *
      **********************************************************/
-    ADD,
+    ADD("add"),
 
     /**********************************************************
      * SUB: Represents a subtraction operation between two    *
      *      values.                                           *
      **********************************************************/
-    SUB,
+    SUB("sub"),
 
     /**********************************************************
      * MULT: Represents a multiplication operation between    *
      *       two values.                                      *
      **********************************************************/
-    MULT,
+    MULT("mul"),
 
     /**********************************************************
      * DIV: Represents a division operation between two       *
      *      values.                                           *
      **********************************************************/
-    DIV,
-
-    ADDI,    // Add Immediate
-    SUBI,    // Subtract Immediate
-    LW,      // Load Word
-    SLT,     // Set Less Than
-    BNE,     // Branch if Not Equal
-    SGN,     // Set Greater Than
-    BLT,     // Branch if Less Than
-    BEQ,     // Branch if Equal
-    BGT      // Branch if Greater Than
+    DIV("div"),
+
+    ADDI("addi"),    // Add Immediate
+    SUBI("subi"),    // Subtract Immediate
+    LW("lw", true),  // Load Word
+    SLT("slt"),      // Set Less Than
+    BNE("bne"),      // Branch if Not Equal
+    SGN("sgt"),      // Set Greater Than
+    BLT("blt"),      // Branch if Less Than
+    BEQ("beq"),      // Branch if Equal
+    BGT("bgt"),      // Branch if Greater Than
+
+    // The rest of the instructions the MIPS generator emits
+    LI("li"),        // Load Immediate
+    LA("la"),        // Load Address
+    MOVE("move"),    // Copy a register
+    MULI("muli"),    // Multiply Immediate
+    MFLO("mflo"),    // Move From LO
+    MFHI("mfhi"),    // Move From HI
+    SLE("sle"),      // Set Less Than or Equal
+    SGE("sge"),      // Set Greater Than or Equal
+    J("j"),          // Jump
+    SW("sw", true),  // Store Word
+    L_D("l.d", true), // Load Double
+    SYSCALL("syscall"),
+
+    // The instructions StrengthReducer puts in place of a multiply or divide by a constant
+    SLL("sll"),       // Shift Left Logical
+    SRA("sra"),       // Shift Right Arithmetic
+    SRL("srl"),       // Shift Right Logical
+    ADDU("addu"),     // Add, wrapping around instead of trapping on overflow
+    SUBU("subu"),     // Subtract, wrapping around
+    MULT_HILO("mult"), // Multiply into hi and lo
+
+    /**********************************************************
+     * LABEL, COMMENT, TEXT: Lines of generated code that are *
+     *        not instructions: a label, a comment, and a     *
+     *        line of text kept exactly as it was given.      *
+     **********************************************************/
+    LABEL,
+    COMMENT,
+    TEXT;
+
+    private final String mnemonic; // null for markers that are not MIPS instructions
+    private final boolean memory;  // Takes an offset(base) operand
+
+    CodeGenerator() {
+        this(null, false);
+    }
+
+    CodeGenerator(String mnemonic) {
+        this(mnemonic, false);
+    }
+
+    CodeGenerator(String mnemonic, boolean memory) {
+        this.mnemonic = mnemonic;
+        this.memory = memory;
+    }
+
+    /**********************************************************
+     * METHOD: getMnemonic()                                  *
+     * RETURN VALUE: String - how the instruction is written  *
+     *              in MIPS assembly, or null if it is not an *
+     *              instruction.                              *
+     **********************************************************/
+    public String getMnemonic() {
+        return mnemonic;
+    }
+
+    public boolean isMemoryAccess() {
+        return memory;
+    }
+
+    /**********************************************************
+     * METHOD: writesFirstOperand()                           *
+     * RETURN VALUE: boolean - true if the instruction stores *
+     *              a result in its first operand. div does   *
+     *              so only in its three-operand form.        *
+     **********************************************************/
+    public boolean writesFirstOperand() {
+        switch (this) {
+            case ADD: case SUB: case MULT: case DIV: case ADDI: case SUBI: case MULI:
+            case SLT: case SGN: case SLE: case SGE:
+            case LI: case LA: case MOVE: case MFLO: case MFHI: case LW: case L_D:
+            case SLL: case SRA: case SRL: case ADDU: case SUBU:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // Conditional branches; the label is the last operand
+    public boolean isBranch() {
+        return this == BNE || this == BEQ || this == BLT || this == BGT;
+    }
+
+    public boolean isJump() {
+        return this == J;
+    }
 }
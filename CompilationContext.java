@@ -0,0 +1,173 @@
+/*******************************************************************
+ * CompilationContext Class                                        *
+ *                                                                 *
+ * PROGRAMMER: Emily Culp                                          *
+ * COURSE: CS340 - Programming Language Design                     *
+ * DATE: 12/10/2024                                                *
+ * REQUIREMENT: Final - Compiler                                   *
+ *                                                                 *
+ * DESCRIPTION:                                                    *
+ * The CompilationContext class owns all of the state used by a    *
+ * single run of the compiler: the symbol, literal, keyword and    *
+ * operator tables, the evaluator, the tokenizer and the MIPS      *
+ * generator. It also holds the input used by input(...) and the   *
+ * stream that debug output is written to. Each program gets its   *
+ * own context, so many programs can run in the same JVM without   *
+ * sharing tables. The keyword and operator tables are the shared  *
+ * read-only copies, and the MIPS backend (generator, evaluator    *
+ * and token ID converter) is only built the first time it is      *
+ * asked for, as is the Scanner used by input(...), which keeps    *
+ * the start of a run cheap. Names and literal values are interned *
+ * in the process-wide InternPool, so contexts compiled side by    *
+ * side share one copy of each. When the JVM is started with       *
+ * -Dcompiler.offheap=true, the symbol and literal tables are kept *
+ * outside the Java heap instead, for programs large enough that   *
+ * the tables would lengthen garbage collection pauses. A context  *
+ * can also start from the tables saved in a TableSnapshot.        *
+ *                                                                 *
+ * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean  *
+ * Zeller.                                                         *
+ *                                                                 *
+ * CREDITS: This code was written with the help of ChatGPT.        *
+ *******************************************************************/
+
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.Scanner;
+
+public class CompilationContext {
+    public static final String OFF_HEAP_PROPERTY = "compiler.offheap";
+
+    private final SymbolTable symbolTable;
+    private final LiteralTable literalTable;
+    private final KeywordTable keywordTable;
+    private final OperatorTable operatorTable;
+    private final Tokenization tokenizer;
+    private MIPSGenerator mipsGenerator;  // Built on first use
+    private Evaluator evaluator;  // Built on first use
+    private TokenIDConverter converter;  // Built on first use
+    private final InputStream in;
+    private Scanner input;  // Built on first use
+    private final PrintStream out;
+    private TableSnapshot snapshot;  // Where the generator and the evaluator are restored from, until both are built
+
+    /**********************************************************
+     * CONSTRUCTOR: CompilationContext()                      *
+     * DESCRIPTION: Creates a context that reads input from   *
+     *              the console and writes output to it.      *
+     **********************************************************/
+    public CompilationContext() {
+        this(System.in, System.out);
+    }
+
+    /**********************************************************
+     * CONSTRUCTOR: CompilationContext(InputStream in,        *
+     *              PrintStream out)                          *
+     * DESCRIPTION: Creates a fresh set of tables and         *
+     *              generators for one program.               *
+     * PARAMETERS: InputStream in - the source of values for  *
+     *              input(...) statements.                    *
+     *             PrintStream out - the stream all output of *
+     *              the run is written to.                    *
+     **********************************************************/
+    public CompilationContext(InputStream in, PrintStream out) {
+        this.out = out;
+        this.in = in;
+        if (Boolean.getBoolean(OFF_HEAP_PROPERTY)) {
+            symbolTable = new SymbolTable(out, new OffHeapSymbolStorage());
+            literalTable = new LiteralTable(out, new OffHeapLiteralStorage());
+        } else {
+            symbolTable = new SymbolTable(out, new HeapSymbolStorage(InternPool.shared()));
+            literalTable = new LiteralTable(out, new HeapLiteralStorage(InternPool.shared()));
+        }
+        keywordTable = KeywordTable.standard();
+        operatorTable = OperatorTable.standard();
+        tokenizer = new Tokenization(out);
+    }
+
+    /**********************************************************
+     * CONSTRUCTOR: CompilationContext(InputStream in,        *
+     *              PrintStream out, TableSnapshot snapshot)  *
+     * DESCRIPTION: Creates a context that resumes from the   *
+     *              symbol table, literal table, data section *
+     *              and code saved in a snapshot. The data    *
+     *              section, the code and the register state  *
+     *              are restored when the MIPS generator is   *
+     *              first built, and the variables known only *
+     *              at run time when the evaluator is.        *
+     * PARAMETERS: InputStream in - the source of values for  *
+     *              input(...) statements.                    *
+     *             PrintStream out - the stream all output of *
+     *              the run is written to.                    *
+     *             TableSnapshot snapshot - the saved tables. *
+     **********************************************************/
+    public CompilationContext(InputStream in, PrintStream out, TableSnapshot snapshot) {
+        this.out = out;
+        this.in = in;
+        this.snapshot = snapshot;
+        symbolTable = snapshot.restoreSymbolTable(out);
+        literalTable = snapshot.restoreLiteralTable(out);
+        keywordTable = KeywordTable.standard();
+        operatorTable = OperatorTable.standard();
+        tokenizer = new Tokenization(out);
+    }
+
+    public SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    public LiteralTable getLiteralTable() {
+        return literalTable;
+    }
+
+    public KeywordTable getKeywordTable() {
+        return keywordTable;
+    }
+
+    public OperatorTable getOperatorTable() {
+        return operatorTable;
+    }
+
+    public MIPSGenerator getMipsGenerator() {
+        if (mipsGenerator == null) {
+            mipsGenerator = new MIPSGenerator(symbolTable, out);
+            if (snapshot != null) {
+                snapshot.restoreGenerator(mipsGenerator);
+            }
+        }
+        return mipsGenerator;
+    }
+
+    public Evaluator getEvaluator() {
+        if (evaluator == null) {
+            evaluator = new Evaluator(symbolTable, literalTable, getMipsGenerator(), out);
+            if (snapshot != null) {
+                snapshot.restoreEvaluator(evaluator);
+                snapshot = null;
+            }
+        }
+        return evaluator;
+    }
+
+    public Tokenization getTokenizer() {
+        return tokenizer;
+    }
+
+    public TokenIDConverter getConverter() {
+        if (converter == null) {
+            converter = new TokenIDConverter(symbolTable, literalTable, operatorTable, keywordTable);
+        }
+        return converter;
+    }
+
+    public Scanner getInput() {
+        if (input == null) {
+            input = new Scanner(in);
+        }
+        return input;
+    }
+
+    public PrintStream getOut() {
+        return out;
+    }
+}
@@ -0,0 +1,87 @@
+/*******************************************************************
+ * CompileClient Class                                             *
+ *                                                                 *
+ * PROGRAMMER: Emily Culp                                          *
+ * COURSE: CS340 - Programming Language Design                     *
+ * DATE: 12/10/2024                                                *
+ * REQUIREMENT: Final - Compiler                                   *
+ *                                                                 *
+ * DESCRIPTION:                                                    *
+ * The CompileClient class is the thin client for CompileDaemon.   *
+ * It forwards its command-line arguments and working directory    *
+ * to the daemon, passes its own standard input through for        *
+ * input(...) statements, and prints whatever the daemon sends     *
+ * back. With -time it also reports the round-trip latency.        *
+ *                                                                 *
+ * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean  *
+ * Zeller.                                                         *
+ *                                                                 *
+ * CREDITS: This code was written with the help of ChatGPT.        *
+ *******************************************************************/
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CompileClient {
+
+    /**********************************************************
+     * METHOD: main(String[] args)                              *
+     * DESCRIPTION: Sends one request to the daemon and copies  *
+     *              the reply to standard output.               *
+     * PARAMETERS: String[] args - [-port n] [-time] followed   *
+     *              by the request, e.g. run input.txt          *
+     * RETURN VALUE: None                                        *
+     **********************************************************/
+    public static void main(String[] args) throws IOException {
+        long start = System.nanoTime();
+        int port = CompileDaemon.DEFAULT_PORT;
+        boolean time = false;
+        List<String> request = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            if (request.isEmpty() && args[i].equals("-port") && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else if (request.isEmpty() && args[i].equals("-time")) {
+                time = true;
+            } else {
+                request.add(args[i]);
+            }
+        }
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setTcpNoDelay(true);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeUTF(Path.of("").toAbsolutePath().toString());
+            out.writeInt(request.size());
+            for (String arg : request) {
+                out.writeUTF(arg);
+            }
+            out.flush();
+
+            // Forward standard input for input(...) on a daemon thread, it may block forever
+            Thread forwarder = new Thread(() -> {
+                try {
+                    System.in.transferTo(socket.getOutputStream());
+                } catch (IOException e) {
+                    // The daemon closed the connection
+                }
+            });
+            forwarder.setDaemon(true);
+            forwarder.start();
+
+            socket.getInputStream().transferTo(System.out);
+            System.out.flush();
+        } catch (IOException e) {
+            System.out.println("Could not reach the compile daemon on port " + port + ": " + e.getMessage());
+            return;
+        }
+
+        if (time) {
+            System.out.printf("Round trip: %.2f ms%n", (System.nanoTime() - start) / 1_000_000.0);
+        }
+    }
+}
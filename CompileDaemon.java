@@ -0,0 +1,305 @@
+/*******************************************************************
+ * CompileDaemon Class                                             *
+ *                                                                 *
+ * PROGRAMMER: Emily Culp                                          *
+ * COURSE: CS340 - Programming Language Design                     *
+ * DATE: 12/10/2024                                                *
+ * REQUIREMENT: Final - Compiler                                   *
+ *                                                                 *
+ * DESCRIPTION:                                                    *
+ * The CompileDaemon class keeps a compiler resident in a          *
+ * long-lived JVM so small programs do not pay for JVM startup and *
+ * a cold JIT on every compile. It warms the pipeline up once,     *
+ * then listens on a loopback TCP port for requests sent by        *
+ * CompileClient. Every request is handled on its own virtual      *
+ * thread in a fresh CompilationContext, using the same            *
+ * Tokenization, Evaluator and MIPSGenerator pipeline as Compiler. *
+ *                                                                 *
+ * Requests are "run <source> [tokenFile]", which runs a program   *
+ * and sends back everything it prints, "compile <source>          *
+ * [outputDir]", which writes the .asm and .tokens.txt files, and  *
+ * "stop", which shuts the daemon down.                            *
+ *                                                                 *
+ * The port takes requests from any local user and has no          *
+ * authentication, so the daemon only reads and writes files under *
+ * its root directory (the directory it was started in unless one  *
+ * is given), after following symbolic links, and only stops for a *
+ * client whose working directory is the root. Any local user can  *
+ * still run and compile programs under the root. Requests intern  *
+ * their names and literals in the shared InternPool, which drops  *
+ * them once no table uses them, so requests compiled side by side *
+ * share them without the daemon keeping every name it has seen. A *
+ * request that fails is logged and does not stop the daemon.      *
+ *                                                                 *
+ * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean  *
+ * Zeller.                                                         *
+ *                                                                 *
+ * CREDITS: This code was written with the help of ChatGPT.        *
+ *******************************************************************/
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class CompileDaemon {
+    public static final int DEFAULT_PORT = 5340;
+    private static final int WARMUP_RUNS = 2000;
+    private static final String WARMUP_PROGRAM = String.join("\n",
+            "integer x = 5;",
+            "double pi = 3.14;",
+            "string name = \"warm\";",
+            "boolean isGreen = true;",
+            "integer sum;",
+            "sum = 1+2;",
+            "if(x<10){",
+            "  x=x+5;",
+            "}else{",
+            "  x=x+1;",
+            "}",
+            "integer a = 2;",
+            "if(a >= 5){",
+            "  print(a);",
+            "}else{",
+            "  a=a*75;",
+            "}",
+            "integer y;",
+            "while(y < 5){",
+            "  y=y+1;",
+            "}",
+            "integer i;",
+            "for(i=0; i<5; i++){",
+            "  print(i);",
+            "}");
+
+    private final ServerSocket server;
+    private final Path root;
+    private volatile boolean running = true;
+
+    /**********************************************************
+     * CONSTRUCTOR: CompileDaemon(int port, Path root)         *
+     * DESCRIPTION: Binds the daemon to the loopback address.  *
+     * PARAMETERS: int port - the TCP port to listen on.       *
+     *             Path root - the directory that requests may *
+     *              read and write files under.                *
+     **********************************************************/
+    public CompileDaemon(int port, Path root) throws IOException {
+        this.root = root.toRealPath();
+        server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+    }
+
+    /**********************************************************
+     * METHOD: main(String[] args)                              *
+     * DESCRIPTION: Warms up the compiler and serves requests   *
+     *              until a stop request arrives.               *
+     * PARAMETERS: String[] args - [port] [rootDirectory]       *
+     * RETURN VALUE: None                                        *
+     **********************************************************/
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        Path root = Path.of(args.length > 1 ? args[1] : "");
+
+        long start = System.nanoTime();
+        warmUp();
+        System.out.printf("Warmed up with %d runs in %d ms%n", WARMUP_RUNS, (System.nanoTime() - start) / 1_000_000);
+
+        CompileDaemon daemon = new CompileDaemon(port, root);
+        System.out.println("Compile daemon listening on " + daemon.server.getLocalSocketAddress()
+                + ", serving files under " + daemon.root);
+        System.out.println("Any local user can send requests to this port; stop is only taken from " + daemon.root);
+        daemon.serve();
+    }
+
+    /**********************************************************
+     * METHOD: warmUp()                                         *
+     * DESCRIPTION: Runs a small program that uses every kind   *
+     *              of statement enough times for the JIT to    *
+     *              compile the hot paths before requests come. *
+     * PARAMETERS: None                                          *
+     * RETURN VALUE: None                                        *
+     **********************************************************/
+    private static void warmUp() throws IOException {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            BatchRunner.runProgram(WARMUP_PROGRAM, InputStream.nullInputStream(), OutputStream.nullOutputStream());
+        }
+    }
+
+    /**********************************************************
+     * METHOD: serve()                                          *
+     * DESCRIPTION: Accepts connections and handles each one on *
+     *              a virtual thread.                           *
+     * PARAMETERS: None                                          *
+     * RETURN VALUE: None                                        *
+     **********************************************************/
+    public void serve() throws IOException {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            while (running) {
+                Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (IOException e) {
+                    if (!running) {
+                        break;  // The server socket was closed by a stop request
+                    }
+                    throw e;
+                }
+                executor.execute(() -> handle(socket));
+            }
+        }
+    }
+
+    /**********************************************************
+     * METHOD: handle(Socket socket)                            *
+     * DESCRIPTION: Reads one request, runs it and sends the    *
+     *              output back. A request is the client's      *
+     *              working directory followed by its arguments;*
+     *              anything after that is the program's input. *
+     *              Any error is logged, including one thrown   *
+     *              by the compiler.                            *
+     * PARAMETERS: Socket socket - the client connection.       *
+     * RETURN VALUE: None                                        *
+     **********************************************************/
+    private void handle(Socket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            PrintStream out = new PrintStream(new BufferedOutputStream(socket.getOutputStream()), false, StandardCharsets.UTF_8);
+
+            Path workingDirectory = Path.of(in.readUTF());
+            String[] args = new String[in.readInt()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = in.readUTF();
+            }
+
+            long start = System.nanoTime();
+            execute(args, workingDirectory, in, out);
+            out.printf("# Handled by daemon in %.2f ms%n", (System.nanoTime() - start) / 1_000_000.0);
+            out.flush();
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Error handling request: " + e);
+        }
+    }
+
+    /**********************************************************
+     * METHOD: execute(String[] args, Path workingDirectory,    *
+     *              InputStream in, PrintStream out)            *
+     * DESCRIPTION: Carries out one request. Every path it      *
+     *              names must be under the daemon's root, and  *
+     *              a stop request must come from the root.     *
+     * PARAMETERS: String[] args - the client's arguments.      *
+     *             Path workingDirectory - the client's working *
+     *              directory, used for relative paths.         *
+     *             InputStream in - the program's input.        *
+     *             PrintStream out - the reply stream.          *
+     * RETURN VALUE: None                                        *
+     **********************************************************/
+    private void execute(String[] args, Path workingDirectory, InputStream in, PrintStream out) throws IOException {
+        if (args.length == 0) {
+            out.println("Usage: run <source> [tokenFile] | compile <source> [outputDir] | stop");
+            out.println("Any local user can reach this port; stop is only taken from the daemon's root, " + root);
+            return;
+        }
+
+        switch (args[0]) {
+            case "run":
+                if (args.length < 2) {
+                    out.println("Usage: run <source> [tokenFile]");
+                    return;
+                }
+                Path program = resolve(workingDirectory, args[1], out);
+                Path tokenFile = args.length > 2 ? resolve(workingDirectory, args[2], out) : null;
+                if (program == null || (args.length > 2 && tokenFile == null)) {
+                    return;
+                }
+                runProgram(program, tokenFile, in, out);
+                break;
+            case "compile":
+                if (args.length < 2) {
+                    out.println("Usage: compile <source> [outputDir]");
+                    return;
+                }
+                Path source = resolve(workingDirectory, args[1], out);
+                Path outputDirectory = args.length > 2 ? resolve(workingDirectory, args[2], out) : null;
+                if (source == null || (args.length > 2 && outputDirectory == null)) {
+                    return;
+                }
+                if (outputDirectory != null) {
+                    Files.createDirectories(outputDirectory);
+                }
+                boolean compiled = new BatchCompiler(outputDirectory).compileFile(source);
+                out.println(compiled ? "Compiled " + source : "Failed to compile " + source);
+                break;
+            case "stop":
+                if (!workingDirectory.toRealPath().equals(root)) {
+                    out.println("Access denied: stop is only taken from the daemon's root, " + root);
+                    return;
+                }
+                running = false;
+                server.close();
+                out.println("Compile daemon stopped.");
+                break;
+            default:
+                out.println("Unknown command: " + args[0]);
+        }
+    }
+
+    /**********************************************************
+     * METHOD: resolve(Path workingDirectory, String name,      *
+     *              PrintStream out)                            *
+     * DESCRIPTION: Resolves a path sent by the client and      *
+     *              checks that it is under the daemon's root,  *
+     *              following the symbolic links of the part of *
+     *              it that already exists.                     *
+     * PARAMETERS: Path workingDirectory - the client's working *
+     *              directory.                                  *
+     *             String name - the path the client sent.      *
+     *             PrintStream out - the reply stream.          *
+     * RETURN VALUE: Path - the real path, or null if it is     *
+     *              outside the root (the client is told).      *
+     **********************************************************/
+    private Path resolve(Path workingDirectory, String name, PrintStream out) throws IOException {
+        Path path = workingDirectory.resolve(name).toAbsolutePath().normalize();
+        Path existing = path;
+        while (existing != null && !Files.exists(existing)) {
+            existing = existing.getParent();
+        }
+        if (existing != null) {
+            path = existing.toRealPath().resolve(existing.relativize(path));
+        }
+        if (!path.startsWith(root)) {
+            out.println("Access denied: " + name + " is outside " + root);
+            return null;
+        }
+        return path;
+    }
+
+    /**********************************************************
+     * METHOD: runProgram(Path source, Path tokenFile,          *
+     *              InputStream in, PrintStream out)            *
+     * DESCRIPTION: Runs a program the same way Compiler.main   *
+     *              does, in a fresh context whose output goes  *
+     *              back to the client.                         *
+     * PARAMETERS: Path source - the program file.              *
+     *             Path tokenFile - where to write the token    *
+     *              dump, or null to skip it.                   *
+     *             InputStream in - the values for input(...).  *
+     *             PrintStream out - the reply stream.          *
+     * RETURN VALUE: None                                        *
+     **********************************************************/
+    private void runProgram(Path source, Path tokenFile, InputStream in, PrintStream out) {
+        Compiler compiler = new Compiler(new CompilationContext(in, out));
+        try (BufferedReader reader = Files.newBufferedReader(source);
+             PrintWriter writer = tokenFile != null ? new PrintWriter(Files.newBufferedWriter(tokenFile)) : null) {
+            compiler.compile(reader, writer);
+        } catch (IOException e) {
+            out.println("Error reading or writing files: " + e.getMessage());
+            return;
+        }
+        compiler.printResults();
+    }
+}
@@ -22,61 +22,220 @@
  ******************************************************************/
 
 import java.io.*;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.regex.Pattern;
 
 public class Compiler {
-    private static SymbolTable symbolTable;
-    private static LiteralTable literalTable;
-    private static KeywordTable keywordTable;
-    private static OperatorTable operatorTable;
-    private static Evaluator evaluator;
-    private static Tokenization tokenizer;
-    private static String inputFile = "C:\\Users\\emily\\OneDrive\\Documents\\Year3\\CS340\\Final - Compiler\\input.txt";
-    private static String outputFile = "C:\\Users\\emily\\OneDrive\\Documents\\Year3\\CS340\\Final - Compiler\\output.txt";
-    private static int controlStructure = 0;
-    private static MIPSGenerator mipsGenerator;
-    private static TokenIDConverter converter;
-
-    static{
-        symbolTable =  new SymbolTable();
-        literalTable = new LiteralTable();
-        mipsGenerator = new MIPSGenerator(symbolTable);
-        evaluator = new Evaluator(symbolTable, literalTable, mipsGenerator);
-        keywordTable = new KeywordTable();
-        operatorTable = new OperatorTable();
-        tokenizer = new Tokenization();
-        converter = new TokenIDConverter(symbolTable, literalTable, operatorTable, keywordTable);
+    private final CompilationContext context;
+    private final SymbolTable symbolTable;
+    private final LiteralTable literalTable;
+    private final KeywordTable keywordTable;
+    private final OperatorTable operatorTable;
+    private final Tokenization tokenizer;
+    private static String inputFile = "input.txt";
+    private static String outputFile = "output.txt";
+    private final PrintStream out;
+    private final SymbolTable.LookupCache declarationSite; // Inline caches for the target of an assignment
+    private final SymbolTable.LookupCache assignmentSite;
+    private final SymbolTable.LookupCache loopVariableSite;
+    private static final Pattern STRING_LITERAL_PATTERN = Pattern.compile("\"[^\"]*\"");
+
+    /**********************************************************
+     * CONSTRUCTOR: Compiler(CompilationContext context)      *
+     * DESCRIPTION: Creates a compiler that runs against the  *
+     *              tables and generators owned by the given  *
+     *              context, so several programs can be run   *
+     *              side by side in the same JVM.             *
+     * PARAMETERS: CompilationContext context - the per-run   *
+     *              state for this program.                   *
+     **********************************************************/
+    public Compiler(CompilationContext context) {
+        this.context = context;
+        symbolTable = context.getSymbolTable();
+        literalTable = context.getLiteralTable();
+        keywordTable = context.getKeywordTable();
+        operatorTable = context.getOperatorTable();
+        tokenizer = context.getTokenizer();
+        out = context.getOut();
+        declarationSite = symbolTable.newLookupCache();
+        assignmentSite = symbolTable.newLookupCache();
+        loopVariableSite = symbolTable.newLookupCache();
     }
 
     /**********************************************************
      * METHOD: main(String[] args)                              *
      * DESCRIPTION: Main method to run the interpreter, allowing *
      *              users to input commands and execute them.   *
-     *              The method tokenizes input commands and     *
-     *              delegates execution to the appropriate      *
-     *              method (e.g., handling assignments, print,  *
-     *              input, etc.).                               *
-     * PARAMETERS: String[] args - Command-line arguments (not *
-     *              used in this implementation).               *
+     *              A fresh CompilationContext is created for   *
+     *              the run and the program is compiled from    *
+     *              the input file into the output file. With   *
+     *              -Dcompiler.resume=<file> the run starts from *
+     *              the tables in a TableSnapshot, and with     *
+     *              -Dcompiler.checkpoint=<file> the tables are *
+     *              saved to one at the end.                    *
+     *              With -Dcompiler.tokenformat=binary the      *
+     *              output file is a TokenStream instead of     *
+     *              text, and with -Dcompiler.tokenids=statement *
+     *              token IDs are written with each statement.  *
+     * PARAMETERS: String[] args - Optional input and output   *
+     *              file paths. The default paths are used when *
+     *              they are not given.                         *
      * RETURN VALUE: None                                        *
      * EXCEPTIONS: Throws an Exception for invalid input or    *
      *             command errors.                               *
      **********************************************************/
 
     public static void main(String[] args) {
-        StringBuilder statement = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new FileReader(inputFile));
-             PrintWriter writer = outputFile != null ? new PrintWriter(new FileWriter(outputFile)) : null) {
+        String source = args.length > 0 ? args[0] : inputFile;
+        String target = args.length > 1 ? args[1] : outputFile;
+
+        String resume = System.getProperty(TableSnapshot.RESUME_PROPERTY);
+        String checkpoint = System.getProperty(TableSnapshot.CHECKPOINT_PROPERTY);
 
-            System.out.println("Processing commands from file: " + inputFile);
-            if (writer != null) {
-                System.out.println("Writing output to file: " + outputFile);
+        CompilationContext context;
+        try {
+            context = (resume != null)
+                    ? new CompilationContext(System.in, System.out, TableSnapshot.open(Path.of(resume)))
+                    : new CompilationContext();
+        } catch (IOException e) {
+            System.out.println("Error reading snapshot: " + e.getMessage());
+            return;
+        }
+
+        Compiler compiler = new Compiler(context);
+        try (BufferedReader reader = new BufferedReader(new FileReader(source));
+             TokenSink sink = target != null ? TokenSink.open(Path.of(target)) : null) {
+
+            System.out.println("Processing commands from file: " + source);
+            if (sink != null) {
+                System.out.println((TokenStream.isBinaryFormat() ? "Writing token stream to file: " : "Writing output to file: ") + target);
             }
 
-            String commandLine;
-            boolean isInBlock = false; // Tracks whether we are inside a block
-            StringBuilder blockBuffer = new StringBuilder(); // Buffer for block content
+            compiler.compile(reader, sink);
+        } catch (IOException e) {
+            System.out.println("Error reading or writing files: " + e.getMessage());
+        }
+
+        if (checkpoint != null) { // Before printResults() optimizes the code, so a resumed run can go on generating it
+            try {
+                TableSnapshot.write(Path.of(checkpoint), context);
+                System.out.println("Saved tables to " + checkpoint);
+            } catch (IOException e) {
+                System.out.println("Error writing snapshot: " + e.getMessage());
+            }
+        }
+
+        compiler.printResults();
+    }
 
+    /**********************************************************
+     * METHOD: compile(BufferedReader reader, PrintWriter writer) *
+     * DESCRIPTION: Reads the program from the reader, groups   *
+     *              its lines into statements and blocks, and   *
+     *              executes each one. The tokens and the token *
+     *              IDs of every table are written to the writer.*
+     * PARAMETERS: BufferedReader reader - the program source.  *
+     *             PrintWriter writer - the token output, or    *
+     *              null to skip writing it.                    *
+     * RETURN VALUE: None                                        *
+     * EXCEPTIONS: Throws an IOException if the source cannot   *
+     *             be read.                                      *
+     **********************************************************/
+    public void compile(BufferedReader reader, PrintWriter writer) throws IOException {
+        TokenSink sink = (writer != null) ? new TextTokenSink(writer) : null;
+        compile(reader, sink);
+        if (sink != null) {
+            sink.flush();
+        }
+    }
+
+    /**********************************************************
+     * METHOD: compile(BufferedReader reader, TokenSink sink)   *
+     * DESCRIPTION: Compiles the program one statement at a     *
+     *              time, reading only the lines the statement  *
+     *              needs and writing its token listing to the  *
+     *              sink as soon as it is lexed. The token IDs  *
+     *              follow each statement once it has run, or,  *
+     *              by default, are written table by table at   *
+     *              the end (see TokenSink).                    *
+     * PARAMETERS: BufferedReader reader - the program source.  *
+     *             TokenSink sink - the token output, or null   *
+     *              to skip writing it.                         *
+     * RETURN VALUE: None                                        *
+     * EXCEPTIONS: Throws an IOException if the source cannot   *
+     *             be read or the sink cannot be written.       *
+     **********************************************************/
+    public void compile(BufferedReader reader, TokenSink sink) throws IOException {
+        boolean perStatement = TokenSink.isPerStatement();
+        StatementReader statements = new StatementReader(reader);
+        for (String statement = statements.next(); statement != null; statement = statements.next()) {
+            String[] tokens = tokenizer.tokenize(statement);
+            if (sink != null) {
+                sink.writeLine(tokenLine(statement, tokens));
+            }
+            executeStatement(statement, tokens);
+            if (sink != null && perStatement) {
+                sink.writeStatementIds(context.getConverter().getTokenIDs(tokens));
+            }
+        }
+
+        if (sink != null && !perStatement) {
+            writeTokenIDs(sink);
+        }
+    }
+
+    /**********************************************************
+     * METHOD: readStatements(BufferedReader reader)            *
+     * DESCRIPTION: Reads all the top-level statements of the  *
+     *              program, for callers that need the whole    *
+     *              list. compile() reads them one at a time    *
+     *              with a StatementReader instead.             *
+     * PARAMETERS: BufferedReader reader - the program source.  *
+     * RETURN VALUE: List<String> - the statements in order.    *
+     * EXCEPTIONS: Throws an IOException if the source cannot   *
+     *             be read.                                      *
+     **********************************************************/
+    public static List<String> readStatements(BufferedReader reader) throws IOException {
+        List<String> statements = new ArrayList<>();
+        StatementReader statementReader = new StatementReader(reader);
+        for (String statement = statementReader.next(); statement != null; statement = statementReader.next()) {
+            statements.add(statement);
+        }
+        return statements;
+    }
+
+    /**********************************************************
+     * CLASS: StatementReader                                   *
+     * DESCRIPTION: Groups the lines of the program into its    *
+     *              top-level statements, reading only as many  *
+     *              lines as the next statement needs. A        *
+     *              single-line statement ends with a           *
+     *              semicolon, and a block runs from the line   *
+     *              with the opening brace to the line with the *
+     *              closing brace. Empty lines and comments are *
+     *              skipped.                                    *
+     **********************************************************/
+    public static final class StatementReader {
+        private final BufferedReader reader;
+        private final StringBuilder statement = new StringBuilder();
+        private final StringBuilder blockBuffer = new StringBuilder(); // Buffer for block content
+        private boolean isInBlock = false; // Tracks whether we are inside a block
+
+        public StatementReader(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        /**********************************************************
+         * METHOD: next()                                           *
+         * DESCRIPTION: Reads lines until a statement is complete.  *
+         * RETURN VALUE: String - the statement, or null at the end *
+         *              of the program.                             *
+         * EXCEPTIONS: Throws an IOException if the source cannot   *
+         *             be read.                                      *
+         **********************************************************/
+        public String next() throws IOException {
+            String commandLine;
             while ((commandLine = reader.readLine()) != null) {
                 // Skip empty lines and comments
                 if (commandLine.trim().isEmpty() || commandLine.startsWith("#")) {
@@ -97,26 +256,9 @@ public class Compiler {
                     // Check for block end (close brace)
                     if (commandLine.contains("}")) {
                         isInBlock = false;
-
-                        // Process the complete block
-                        String blockContent = blockBuffer.toString().trim();
+                        String block = blockBuffer.toString().trim();
                         blockBuffer.setLength(0); // Clear the buffer for the next block
-
-                        // Tokenize the block
-                        String[] blockTokens = tokenizer.tokenize(blockContent);
-                        String tokenString = "Tokens (block): " + String.join(" ", blockTokens);
-                        System.out.println(tokenString);
-
-                        if (writer != null) {
-                            writer.println(tokenString);
-                        }
-
-                        // Execute the block
-                        try {
-                            executeCommand(blockTokens); // Delegate to processBlock
-                        } catch (Exception e) {
-                            System.out.println("Error processing block: " + e.getMessage());
-                        }
+                        return block;
                     }
 
                     continue; // Skip further processing for block lines
@@ -127,53 +269,109 @@ public class Compiler {
 
                 // Check if the statement is complete (ends with a semicolon)
                 if (statement.toString().trim().endsWith(";")) {
-                    String completeCommand = statement.toString().trim();
+                    String complete = statement.toString().trim();
                     statement.setLength(0); // Clear the accumulator for the next statement
+                    return complete;
+                }
+            }
+            return null;
+        }
+    }
 
-                    // Tokenize the complete command
-                    String[] tokens = tokenizer.tokenize(completeCommand);
-                    String tokenString = "Tokens (main): " + String.join(" ", tokens);
-                    System.out.println(tokenString);
+    /**********************************************************
+     * METHOD: isBlock(String statement)                        *
+     * DESCRIPTION: Tells whether a statement returned by       *
+     *              readStatements is a block. Only blocks can  *
+     *              contain an opening brace.                   *
+     * PARAMETERS: String statement - the statement.            *
+     * RETURN VALUE: boolean - true for a block.                *
+     **********************************************************/
+    public static boolean isBlock(String statement) {
+        return statement.contains("{");
+    }
 
-                    if (writer != null) {
-                        writer.println(tokenString);
-                    }
+    /**********************************************************
+     * METHOD: tokenLine(String statement, String[] tokens)     *
+     * DESCRIPTION: Formats the token listing of a statement    *
+     *              the way it appears in the output file.      *
+     * PARAMETERS: String statement - the statement.            *
+     *             String[] tokens - its tokens.                *
+     * RETURN VALUE: String - the token line.                   *
+     **********************************************************/
+    public static String tokenLine(String statement, String[] tokens) {
+        return (isBlock(statement) ? "Tokens (block): " : "Tokens (main): ") + String.join(" ", tokens);
+    }
 
-                    // Execute the single-line command
-                    try {
-                        executeCommand(tokens);
-                    } catch (Exception e) {
-                        System.out.println("Error executing command: " + e.getMessage());
-                    }
-                }
-            }
+    /**********************************************************
+     * METHOD: executeStatement(String statement, String[] tokens) *
+     * DESCRIPTION: Prints the tokens of one top-level          *
+     *              statement and executes it. Errors are       *
+     *              reported and do not stop the run.           *
+     * PARAMETERS: String statement - the statement.            *
+     *             String[] tokens - its tokens.                *
+     * RETURN VALUE: None                                        *
+     **********************************************************/
+    public void executeStatement(String statement, String[] tokens) {
+        out.println(tokenLine(statement, tokens));
 
-            // Now call the printTokenIDsInBinary method to write output to the file
-            if (writer != null) {
-                writer.println();
-              converter.printTokenIDsInBinary(symbolTable, writer); // Modify to call the correct instance
-                writer.println();
+        try {
+            executeCommand(tokens);
+        } catch (Exception e) {
+            out.println((isBlock(statement) ? "Error processing block: " : "Error executing command: ") + e.getMessage());
+        }
+    }
 
-                converter.printTokenIDsInBinary(literalTable, writer); // Modify to call the correct instance
-                writer.println();
+    /**********************************************************
+     * METHOD: writeTokenIDs(PrintWriter writer)                *
+     * DESCRIPTION: Writes the token IDs of every table in      *
+     *              binary after the token listing.             *
+     * PARAMETERS: PrintWriter writer - the token output.       *
+     * RETURN VALUE: None                                        *
+     **********************************************************/
+    public void writeTokenIDs(PrintWriter writer) {
+        writer.println();
+        context.getConverter().printTokenIDsInBinary(symbolTable, writer);
+        writer.println();
 
-               converter.printTokenIDsInBinary(operatorTable, writer); // Modify to call the correct instance
-                writer.println();
+        context.getConverter().printTokenIDsInBinary(literalTable, writer);
+        writer.println();
 
-                converter.printTokenIDsInBinary(keywordTable, writer); // Modify to call the correct instance
-                writer.println();
-            }
+        context.getConverter().printTokenIDsInBinary(operatorTable, writer);
+        writer.println();
 
+        context.getConverter().printTokenIDsInBinary(keywordTable, writer);
+        writer.println();
+    }
 
-        } catch (IOException e) {
-            System.out.println("Error reading or writing files: " + e.getMessage());
-        }
+    /**********************************************************
+     * METHOD: writeTokenIDs(TokenSink sink)                    *
+     * DESCRIPTION: Writes the token IDs of every table to a    *
+     *              token sink.                                 *
+     * PARAMETERS: TokenSink sink - the token output.           *
+     * RETURN VALUE: None                                        *
+     * EXCEPTIONS: Throws an IOException if the sink cannot be  *
+     *             written.                                     *
+     **********************************************************/
+    public void writeTokenIDs(TokenSink sink) throws IOException {
+        TokenIDConverter converter = context.getConverter();
+        converter.writeTokenIDs(symbolTable, sink);
+        converter.writeTokenIDs(literalTable, sink);
+        converter.writeTokenIDs(operatorTable, sink);
+        converter.writeTokenIDs(keywordTable, sink);
+    }
 
-        // Display the symbol and literal tables at the end
+    /**********************************************************
+     * METHOD: printResults()                                   *
+     * DESCRIPTION: Displays the symbol and literal tables and  *
+     *              the generated MIPS code for the run.        *
+     * PARAMETERS: None                                          *
+     * RETURN VALUE: None                                        *
+     **********************************************************/
+    public void printResults() {
         symbolTable.display();
         literalTable.printTable();
-        mipsGenerator.generateDataSection();
-        mipsGenerator.printMipsCode();
+        context.getMipsGenerator().generateDataSection();
+        context.getMipsGenerator().printMipsCode();
     }
 
     /**********************************************************
@@ -190,13 +388,13 @@ public class Compiler {
      *             syntax errors in the tokens.                  *
      **********************************************************/
 
-    public static void executeCommand(String[] tokens) throws Exception {
+    public void executeCommand(String[] tokens) throws Exception {
         // This method processes individual statements (e.g., assignments, print, etc.)
         List<String> tokenID = Arrays.asList(tokens);
         List<Integer> id = new ArrayList<>();
 
         if(tokens[0].equals("if")){
-            System.out.println("handleIfElse");
+            out.println("handleIfElse");
             handleIfElse(tokens);
             return;
         }
@@ -226,7 +424,7 @@ public class Compiler {
                 } else if (tokens.length == 5 && tokens[2].equals("=")) {
                     handleAssignment(tokens);  // Variable assignment
                 } else {
-                    System.out.println("Syntax error: Invalid variable declaration.");
+                    out.println("Syntax error: Invalid variable declaration.");
                 }
             } else if (tokens.length >= 3 && tokens[1].equals("=")) {
                 handleAssignment(tokens);  // Assignment
@@ -241,10 +439,10 @@ public class Compiler {
             }else if(tokens[0].equals("string")){
                 handleString(tokens);
             }else{
-                System.out.println("Syntax error: Unrecognized command");
+                out.println("Syntax error: Unrecognized command");
             }
         } else {
-            System.out.println("Syntax error: Command must end with a semicolon");
+            out.println("Syntax error: Command must end with a semicolon");
         }
     }
 
@@ -263,21 +461,21 @@ public class Compiler {
      **********************************************************/
 
     //only works with something like "integer x;"
-    private static void handleVariableDeclaration(String[] tokens) {
+    private void handleVariableDeclaration(String[] tokens) {
         String variableName = tokens[1]; // The variable name (e.g., x)
 
         if (!keywordTable.contains("integer")) {
-            System.out.println("Syntax error: Invalid keyword 'integer'.");
+            out.println("Syntax error: Invalid keyword 'integer'.");
             return;
         }
 
         if (!operatorTable.contains(";")) {
-            System.out.println("Syntax error: Invalid operator ';'.");
+            out.println("Syntax error: Invalid operator ';'.");
             return;
         }
 
         if (symbolTable.containsVariable(variableName)) {
-            System.out.println("Syntax error: Variable '" + variableName + "' already declared.");
+            out.println("Syntax error: Variable '" + variableName + "' already declared.");
             return;
         }
 
@@ -285,23 +483,23 @@ public class Compiler {
 
         // Determine if we are inside a control structure (if-else, while, or for loop)
         if (isInsideControlStructure()) {
-//            String reg = mipsGenerator.allocateTempRegister();
+//            String reg = context.getMipsGenerator().allocateTempRegister();
             // Inside a control structure (local scope) - Add to stack
-//            mipsGenerator.pushToStack(reg);  // Add to the stack (allocate space)
+//            context.getMipsGenerator().pushToStack(reg);  // Add to the stack (allocate space)
             symbolTable.addEntry(variableName, "int", 0, scope, null);  // Add to symbol table as local
 
-            System.out.println("Local variable declaration inside control structure: " + variableName);
+            out.println("Local variable declaration inside control structure: " + variableName);
         } else {
             // Global variable declaration - Add to .data section
-            mipsGenerator.addToDataSection(variableName, "0", "int");
+            context.getMipsGenerator().addToDataSection(variableName, "0", "int");
             symbolTable.addEntry(variableName, "int", 0, scope, null);
 
-            System.out.println("Global variable declaration: " + variableName);
+            out.println("Global variable declaration: " + variableName);
         }
 
         int variableID = symbolTable.getIdByName(variableName);
         int literalID = literalTable.addLiteral(0);  // Default value of 0
-        System.out.println("Added literal: 0 with ID " + literalID + " to the Literal Table.");
+        out.println("Added literal: 0 with ID " + literalID + " to the Literal Table.");
     }
 
     /**********************************************************
@@ -316,32 +514,32 @@ public class Compiler {
      * PARAMETERS: *
      *   - String[] tokens: The tokens representing the command to declare or assign a double variable. *
      **********************************************************/
-    private static void handleDouble(String[] tokens) {
+    private void handleDouble(String[] tokens) {
         if (tokens.length == 3 && tokens[0].equals("double")) {
             String variableName = tokens[1].replace(";", "");  // Remove semicolon if present
-            System.out.println("Checking if variable exists: " + variableName + " => " + symbolTable.containsVariable(variableName));
+            out.println("Checking if variable exists: " + variableName + " => " + symbolTable.containsVariable(variableName));
 
             if (!symbolTable.containsVariable(variableName)) {
                 if (isInsideControlStructure()) {
                     // Inside control structure (local scope) - Allocate a temporary register
-                    String register = mipsGenerator.allocateTempRegister();
-//                    mipsGenerator.pushToStack(register); // Add to stack for local variable
+                    String register = context.getMipsGenerator().allocateTempRegister();
+//                    context.getMipsGenerator().pushToStack(register); // Add to stack for local variable
 
                     // Add the double variable to the symbol table with the register (local scope)
                     symbolTable.addEntry(variableName, "double", 0.0, "local", register);  // Default value 0.0 for local
-                    System.out.println("Local double variable declared inside control structure: " + variableName);
+                    out.println("Local double variable declared inside control structure: " + variableName);
                 } else {
                     // Global variable (add to .data section)
-                    mipsGenerator.addToDataSection(variableName, "0.0", "double");
+                    context.getMipsGenerator().addToDataSection(variableName, "0.0", "double");
 
                     // Add the double literal to the literal table if not already added
                     addDoubleLiteralIfNotExist(0.0);  // Default to 0.0
                     // Add the double variable with default value to the symbol table
                     symbolTable.addEntry(variableName, "double", 0.0, "global", null);  // Default value for global
-                    System.out.println("Global double variable declared: " + variableName);
+                    out.println("Global double variable declared: " + variableName);
                 }
             } else {
-                System.out.println("Error: Variable " + variableName + " is already declared.");
+                out.println("Error: Variable " + variableName + " is already declared.");
             }
         } else if (tokens.length == 5 && tokens[0].equals("double") && tokens[2].equals("=")) {
             String variableName = tokens[1];
@@ -350,36 +548,36 @@ public class Compiler {
             try {
                 value = Double.parseDouble(tokens[3].replace(";", ""));
             } catch (NumberFormatException e) {
-                System.out.println("Error: Invalid double value provided");
+                out.println("Error: Invalid double value provided");
                 return;
             }
 
-            System.out.println("Checking if variable exists: " + variableName + " => " + symbolTable.containsVariable(variableName));
+            out.println("Checking if variable exists: " + variableName + " => " + symbolTable.containsVariable(variableName));
 
             if (!symbolTable.containsVariable(variableName)) {
                 if (isInsideControlStructure()) {
                     // Inside control structure (local scope) - Allocate a temporary register
-                    String register = mipsGenerator.allocateTempRegister();
-//                    mipsGenerator.pushToStack(register); // Add to stack for local variable
+                    String register = context.getMipsGenerator().allocateTempRegister();
+//                    context.getMipsGenerator().pushToStack(register); // Add to stack for local variable
 
                     // Add the double variable to the symbol table with the register (local scope)
                     symbolTable.addEntry(variableName, "double", value, "local", register);  // Add to symbol table with value
-                    System.out.println("Local double variable with value declared inside control structure: " + variableName + " = " + value);
+                    out.println("Local double variable with value declared inside control structure: " + variableName + " = " + value);
                 } else {
                     // Global variable (add to .data section)
-                    mipsGenerator.addToDataSection(variableName, String.valueOf(value), "double");
+                    context.getMipsGenerator().addToDataSection(variableName, String.valueOf(value), "double");
 
                     // Add the double literal to the literal table if not already added
                     addDoubleLiteralIfNotExist(value);  // Add the literal value
                     // Add the double variable with the parsed value to the symbol table (global)
                     symbolTable.addEntry(variableName, "double", value, "global", null);  // Add to symbol table with value
-                    System.out.println("Global double variable with value declared: " + variableName + " = " + value);
+                    out.println("Global double variable with value declared: " + variableName + " = " + value);
                 }
             } else {
-                System.out.println("Error: Variable " + variableName + " is already declared.");
+                out.println("Error: Variable " + variableName + " is already declared.");
             }
         } else {
-            System.out.println("Syntax error: Invalid double declaration or assignment.");
+            out.println("Syntax error: Invalid double declaration or assignment.");
         }
     }
 
@@ -390,12 +588,12 @@ public class Compiler {
      * PARAMETERS: *
      *   - double value: The double literal value to be added to the literal table. *
      **********************************************************/
-    private static void addDoubleLiteralIfNotExist(double value) {
+    private void addDoubleLiteralIfNotExist(double value) {
         // Check if the double literal is already in the table
         if (!literalTable.containsValue(value)) {
             // Add the double literal to the table if it doesn't already exist
             literalTable.addLiteral(value);  // Ensure this method is defined
-            System.out.println("Double Literal Added");
+            out.println("Double Literal Added");
         }
     }
 
@@ -410,36 +608,36 @@ public class Compiler {
      * PARAMETERS: *
      *   - String[] tokens: The tokens representing the command to declare or assign a boolean variable. *
      **********************************************************/
-    private static void handleBoolean(String[] tokens) {
+    private void handleBoolean(String[] tokens) {
         if (tokens.length == 3 && tokens[0].equals("boolean")) {
             String variableName = tokens[1].replace(";", "");  // Remove semicolon if present
-            System.out.println("Checking if variable exists: " + variableName + " => " + symbolTable.containsVariable(variableName));
+            out.println("Checking if variable exists: " + variableName + " => " + symbolTable.containsVariable(variableName));
 
             if (!symbolTable.containsVariable(variableName)) {
-                mipsGenerator.addToDataSection(tokens[1], "false", "boolean");
+                context.getMipsGenerator().addToDataSection(tokens[1], "false", "boolean");
                 // Add the boolean variable with default value
                 addBooleanLiteralIfNotExist("false");
                 symbolTable.addEntry(variableName, "boolean", false, "global", null);  // Default to false
-                System.out.println("Not in symbol table... Now added to Symbol Table: " + variableName);
+                out.println("Not in symbol table... Now added to Symbol Table: " + variableName);
             } else {
-                System.out.println("Error: Variable " + variableName + " is already declared.");
+                out.println("Error: Variable " + variableName + " is already declared.");
             }
         } else if (tokens.length == 5 && tokens[0].equals("boolean") && tokens[2].equals("=")) {
             String variableName = tokens[1];
             boolean value = Boolean.parseBoolean(tokens[3].replace(";", ""));  // Parse boolean value from token
-            System.out.println("Checking if variable exists: " + variableName + " => " + symbolTable.containsVariable(variableName));
+            out.println("Checking if variable exists: " + variableName + " => " + symbolTable.containsVariable(variableName));
 
             if (!symbolTable.containsVariable(variableName)) {
-                mipsGenerator.addToDataSection(tokens[1], String.valueOf(value), "boolean");
+                context.getMipsGenerator().addToDataSection(tokens[1], String.valueOf(value), "boolean");
                 // Add the boolean literal to literal table if not already added
                 addBooleanLiteralIfNotExist(value ? "true" : "false");
                 symbolTable.addEntry(variableName, "boolean", value, "global", null);  // Add boolean value to symbol table
-                System.out.println("Added to Symbol Table with value: " + variableName + " = " + value);
+                out.println("Added to Symbol Table with value: " + variableName + " = " + value);
             } else {
-                System.out.println("Error: Variable " + variableName + " is already declared.");
+                out.println("Error: Variable " + variableName + " is already declared.");
             }
         } else {
-            System.out.println("Syntax error: Invalid boolean declaration or assignment.");
+            out.println("Syntax error: Invalid boolean declaration or assignment.");
         }
     }
 
@@ -450,10 +648,10 @@ public class Compiler {
      * PARAMETERS: *
      *   - String value: The boolean literal value ("true" or "false") to be added to the literal table. *
      **********************************************************/
-    private static void addBooleanLiteralIfNotExist(String value){
+    private void addBooleanLiteralIfNotExist(String value){
         if(!literalTable.containsValue(value)){
             literalTable.addLiteral(value);
-            System.out.println("Added to Boolean Literal Table: " + value);
+            out.println("Added to Boolean Literal Table: " + value);
         }
     }
 
@@ -469,15 +667,15 @@ public class Compiler {
      * PARAMETERS: *
      *   - String[] tokens: The tokens representing the command to declare or assign a string variable. *
      **********************************************************/
-    private static void handleString(String[] tokens) {
+    private void handleString(String[] tokens) {
         // Check if it's a declaration (e.g., string name;)
         if (tokens.length == 2 && tokens[1].endsWith(";")) {
             String variableName = tokens[1].substring(0, tokens[1].length() - 1); // Remove the semicolon
             String type = "string";  // Type of the variable
             String scope = "global";  // Default scope (adjust as necessary)
-            mipsGenerator.addToDataSection(tokens[1], " ", "string");
+            context.getMipsGenerator().addToDataSection(tokens[1], " ", "string");
             symbolTable.addEntry(variableName, type, "", scope, null); // Initialize with an empty string
-            System.out.println("Declared string variable: " + variableName);
+            out.println("Declared string variable: " + variableName);
         }
         // Check if it's an assignment (e.g., string name = "Hello";)
         else if (tokens.length == 5 && tokens[2].equals("=") && tokens[4].equals(";")) {
@@ -485,23 +683,23 @@ public class Compiler {
             String value = tokens[3];
 
             // Check if the value is a valid string (starts and ends with double quotes)
-            if (value.matches("\"[^\"]*\"")) {
+            if (STRING_LITERAL_PATTERN.matcher(value).matches()) {
                 String assignedValue = value.substring(1, value.length() - 1); // Remove the surrounding quotes
 
                 literalTable.addLiteral(assignedValue);
 
                 String type = "string";  // Type of the variable
-                mipsGenerator.addToDataSection(tokens[1], value, type);
+                context.getMipsGenerator().addToDataSection(tokens[1], value, type);
 
                 String scope = "global";  // Default scope (adjust as necessary)
                 symbolTable.addEntry(variableName, type, assignedValue, "global", null);
-                System.out.println("Assigned string: " + assignedValue + " to variable: " + variableName);
-//                System.out.println("Loaded string address into register: " +allocatedRegister);
+                out.println("Assigned string: " + assignedValue + " to variable: " + variableName);
+//                out.println("Loaded string address into register: " +allocatedRegister);
             } else {
-                System.out.println("Syntax error: Invalid string value for variable " + variableName);
+                out.println("Syntax error: Invalid string value for variable " + variableName);
             }
         } else {
-            System.out.println("Syntax error: Invalid string declaration or assignment.");
+            out.println("Syntax error: Invalid string declaration or assignment.");
         }
     }
 
@@ -519,39 +717,40 @@ public class Compiler {
      *             statements or undeclared variables.         *
      **********************************************************/
 
-    private static void handleInput(String[] tokens) {
-        System.out.println("Debug: Tokens received -> " + String.join(" ", tokens));
+    private void handleInput(String[] tokens) {
+        out.println("Debug: Tokens received -> " + String.join(" ", tokens));
 
         // Check for correct token count
         if (tokens.length != 5 || !tokens[0].equals("input") ||
                 !tokens[1].equals("(") || !tokens[3].equals(")") || !tokens[4].equals(";")) {
-            System.out.println("Syntax error: Invalid input statement.");
+            out.println("Syntax error: Invalid input statement.");
             return;
         }
 
         String variableName = tokens[2]; // Extract the variable name
-//        System.out.println("VariableName: " +variableName);
+//        out.println("VariableName: " +variableName);
         Integer variableID = symbolTable.getIdByName(variableName); // Fetch variable ID
-//        System.out.println("ID: " +variableID);
+//        out.println("ID: " +variableID);
 
         if (variableID == null) {
-            System.out.println("Error: Variable " + variableName + " is undeclared.");
+            out.println("Error: Variable " + variableName + " is undeclared.");
             return;
         }
 
         String variableType = symbolTable.getTypeByName(variableName);
         if(variableType == null){
-            System.out.println("Error: Type for variable " +variableName+ " is unknown");
+            out.println("Error: Type for variable " +variableName+ " is unknown");
             return;
         }
 
         // Prompt for user input
-        Scanner scanner = new Scanner(System.in);
-        System.out.print("=> ");
+        Scanner scanner = context.getInput();
+        out.print("=> ");
         Object value = null;
 
         try{
             switch(variableType){
+                case "int":
                 case "integer":
                     value = scanner.nextInt();
                     break;
@@ -565,20 +764,21 @@ public class Compiler {
                     value = scanner.nextLine();
                     break;
                 default:
-                    System.out.println("Error: Unsupported variable type " + variableType);
+                    out.println("Error: Unsupported variable type " + variableType);
                     return;
             }
         }catch(InputMismatchException e){
-            System.out.println("Error: Invalid input for variable type " + variableType);
+            out.println("Error: Invalid input for variable type " + variableType);
             return;
         }
 
         // Assign value to the variable
         symbolTable.updateValue(variableName, value);
-        System.out.println("Assigned value " + value + " to variable " + variableName);
+        context.getEvaluator().recordValue(variableName, false); // Only known when the program runs
+        out.println("Assigned value " + value + " to variable " + variableName);
 
         int literalID = literalTable.addLiteral(value);
-        System.out.println("Literal value " + value + " has been added with ID " + literalID);
+        out.println("Literal value " + value + " has been added with ID " + literalID);
 
         Integer inputID = keywordTable.get("input");
         Integer leftParenID = operatorTable.get("(");
@@ -586,14 +786,14 @@ public class Compiler {
         Integer semicolonID = operatorTable.get(";");
 
         if (inputID == null || leftParenID == null || rightParenID == null || semicolonID == null) {
-            System.out.println("Syntax error: Invalid tokens detected.");
+            out.println("Syntax error: Invalid tokens detected.");
             return;
         }
 
         // Print TokenIDs
-        System.out.print("TokenIDs: ");
-        System.out.println(inputID + " " + leftParenID + " " + variableID + " " + rightParenID + " " + semicolonID);
-        System.out.println(CodeGenerator.START_DEFINE + " " +  CodeGenerator.END_DEFINE + " " + CodeGenerator.NO_OP);
+        out.print("TokenIDs: ");
+        out.println(inputID + " " + leftParenID + " " + variableID + " " + rightParenID + " " + semicolonID);
+        out.println(CodeGenerator.START_DEFINE + " " +  CodeGenerator.END_DEFINE + " " + CodeGenerator.NO_OP);
     }
 
     /**********************************************************
@@ -610,13 +810,13 @@ public class Compiler {
      *             statements or undeclared variables.         *
      **********************************************************/
 
-    private static void handlePrint(String[] tokens) {
-        System.out.println("Tokens: " + String.join(" ", tokens) + " ;");
+    private void handlePrint(String[] tokens) {
+        out.println("Tokens: " + String.join(" ", tokens) + " ;");
 
         // Basic syntax check: print ( a , b , c ) ;
         if (!tokens[0].equals("print") || !tokens[1].equals("(") || !tokens[tokens.length - 2].equals(")") ||
                 !tokens[tokens.length - 1].equals(";")) {
-            System.out.println("Syntax error: Invalid print statement.");
+            out.println("Syntax error: Invalid print statement.");
             return;
         }
 
@@ -625,7 +825,7 @@ public class Compiler {
         for (int i = 2; i < tokens.length - 2; i += 2) {  // Step by 2 to skip commas
             elements.add(tokens[i]);
             if (i + 1 < tokens.length - 2 && !tokens[i + 1].equals(",")) {
-                System.out.println("Syntax error: Expected ',' between elements.");
+                out.println("Syntax error: Expected ',' between elements.");
                 return;
             }
         }
@@ -640,7 +840,7 @@ public class Compiler {
         Integer semicolonTokenID = operatorTable.get(";");
 
         if (printTokenID == null || leftParenTokenID == null || rightParenTokenID == null || semicolonTokenID == null) {
-            System.out.println("Syntax error: Invalid tokens detected.");
+            out.println("Syntax error: Invalid tokens detected.");
             return;
         }
 
@@ -670,7 +870,7 @@ public class Compiler {
                     values.append(literalValue).append(" ");  // Append the literal value
 
                 } catch (NumberFormatException e) {
-                    System.out.println("Error: '" + element + "' is not a valid variable or literal.");
+                    out.println("Error: '" + element + "' is not a valid variable or literal.");
                     return;
                 }
             }
@@ -681,8 +881,8 @@ public class Compiler {
                 .append(semicolonTokenID);
 
         // Print TokenIDs and Values in two separate lines
-        System.out.println("TokenIDs: " + tokenIDs.toString().trim());
-        System.out.println("Values: " + values.toString().trim());
+        out.println("TokenIDs: " + tokenIDs.toString().trim());
+        out.println("Values: " + values.toString().trim());
 
         // Generate code for printing each element
         for (String element : elements) {
@@ -690,20 +890,20 @@ public class Compiler {
             if (tokenId != null) {
                 // Load the value of the variable and generate code to print it
                 Object variableValue = symbolTable.getValueById(tokenId);
-                System.out.println(CodeGenerator.LOAD + " " + tokenId); // Use token ID for the variable
+                out.println(CodeGenerator.LOAD + " " + tokenId); // Use token ID for the variable
             } else {
                 try {
                     int literalValue = Integer.parseInt(element);
                     int literalID = literalTable.getLiteralID(literalValue);  // Get literal token ID
-                    System.out.println(CodeGenerator.LOAD + " " + literalID); // Load literal ID
+                    out.println(CodeGenerator.LOAD + " " + literalID); // Load literal ID
                 } catch (NumberFormatException e) {
-                    System.out.println("Error: Invalid literal '" + element + "'");
+                    out.println("Error: Invalid literal '" + element + "'");
                     return;
                 }
             }
-            System.out.println(CodeGenerator.NO_OP); // Add NO_OP to signify print operation
+            out.println(CodeGenerator.NO_OP); // Add NO_OP to signify print operation
         }
-        System.out.println(CodeGenerator.STORE + " output"); // Simulate storing the print output
+        out.println(CodeGenerator.STORE + " output"); // Simulate storing the print output
     }
 
     /**********************************************************
@@ -722,7 +922,7 @@ public class Compiler {
     // Handle assignment logic
     //works with "integer a = 15;"
     // Assume `evaluator` is capable of handling expressions properly with parentheses
-    public static void handleAssignment(String[] tokens) {
+    public void handleAssignment(String[] tokens) {
         // Case 1: Handle declarations with initialization like "integer x = 5;"
         if (tokens[0].equals("integer")) {
             String variableName = tokens[1]; // The variable on the left-hand side
@@ -731,14 +931,14 @@ public class Compiler {
             String scope = isInsideControlStructure() ? "local" : "global";
 
             // Check if the variable is already declared
-            if (!symbolTable.containsVariable(variableName)) {
-                String allocatedRegister = mipsGenerator.allocateSavedRegister();
+            if (!symbolTable.containsVariable(declarationSite, variableName)) {
+                String allocatedRegister = context.getMipsGenerator().allocateSavedRegister();
                 // Allocate space in the symbol table, but don't add to data section yet
                 symbolTable.addEntry(variableName, "int", 0, scope, allocatedRegister);
-                System.out.println("Encountered new symbol " + variableName + " with id " + symbolTable.getIdByName(variableName));
+                out.println("Encountered new symbol " + variableName + " with id " + symbolTable.getIdByName(declarationSite, variableName));
 
                 // Add to data section with initialization
-                mipsGenerator.addToDataSection(variableName, valueToken, "int");
+                context.getMipsGenerator().addToDataSection(variableName, valueToken, "int");
             }
 
             try {
@@ -747,26 +947,27 @@ public class Compiler {
                 int literalID = literalTable.getLiteralID(value);
                 if(literalID == -1){
                     literalID = literalTable.addLiteral(value);
-                    System.out.println("Encountered new literal " +value+ " with id " +literalID);
+                    out.println("Encountered new literal " +value+ " with id " +literalID);
                 }
 
                 // No need to store in memory, just update symbol table and work with registers
-                String reg = mipsGenerator.allocateTempRegister();
-                mipsGenerator.loadImmediate(reg, value); // Load the value into a temporary register
-                symbolTable.updateValue(variableName, value); // Update the variable's value in the symbol table
+                String reg = context.getMipsGenerator().allocateTempRegister();
+                context.getMipsGenerator().loadImmediate(reg, value); // Load the value into a temporary register
+                symbolTable.updateValue(declarationSite, variableName, value); // Update the variable's value in the symbol table
+                context.getEvaluator().recordValue(variableName, symbolTable.getScopeDepth() == 0);
 
-                mipsGenerator.freeRegister(reg); // Free the register after use
+                context.getMipsGenerator().freeRegister(reg); // Free the register after use
 
                 // Print TokenIDs for debugging
                 Integer integerTokenID = keywordTable.get("integer");
                 Integer assignTokenID = operatorTable.get("=");
                 Integer semicolonTokenID = operatorTable.get(";");
-                System.out.print("TokenIDs: " + integerTokenID + " " + symbolTable.getIdByName(variableName) + " " + assignTokenID + " " + literalTable.getLiteralID(value) + " " + semicolonTokenID + " ");
-                System.out.println();
-                System.out.println("Code Generators: " + CodeGenerator.START_DEFINE + " " + CodeGenerator.END_DEFINE);
+                out.print("TokenIDs: " + integerTokenID + " " + symbolTable.getIdByName(declarationSite, variableName) + " " + assignTokenID + " " + literalTable.getLiteralID(value) + " " + semicolonTokenID + " ");
+                out.println();
+                out.println("Code Generators: " + CodeGenerator.START_DEFINE + " " + CodeGenerator.END_DEFINE);
 
             } catch (NumberFormatException e) {
-                System.out.println("Syntax error: Invalid assignment value.");
+                out.println("Syntax error: Invalid assignment value.");
             }
         } else {
             // Case 2: Handle assignments with expressions like "sum = a + b + c"
@@ -775,20 +976,23 @@ public class Compiler {
 
             try {
                 // Ensure the variable is declared
-                if (!symbolTable.containsVariable(variableName)) {
-                    String register = mipsGenerator.allocateSavedRegister();
+                if (!symbolTable.containsVariable(assignmentSite, variableName)) {
+                    String register = context.getMipsGenerator().allocateSavedRegister();
                     String scope = isInsideControlStructure() ? "local" : "global";
                     symbolTable.addEntry(variableName, "int", 0, scope, register); // Declare it if not
-                    System.out.println("Encountered new symbol " + variableName + " with id " + symbolTable.getIdByName(variableName));
+                    out.println("Encountered new symbol " + variableName + " with id " + symbolTable.getIdByName(assignmentSite, variableName));
 
                     // Add to data section with default value
-                    mipsGenerator.addToDataSection(variableName, "0", "int"); // Default to 0 for uninitialized int
+                    context.getMipsGenerator().addToDataSection(variableName, "0", "int"); // Default to 0 for uninitialized int
                 }
 
                 // Use the evaluate method from MIPSGenerator to evaluate the expression
-                Object result = evaluator.evaluate(valueExpression); // Evaluate the expression
+                Object result = context.getEvaluator().evaluate(valueExpression, variableName); // Evaluate the expression
+                // A block may run any number of times, so only a top-level result folded to a constant is known
+                context.getEvaluator().recordValue(variableName,
+                        symbolTable.getScopeDepth() == 0 && context.getEvaluator().isLastResultKnown());
 
-                String variableType = symbolTable.getTypeByName(variableName);
+                String variableType = symbolTable.getTypeByName(assignmentSite, variableName);
 
                 if ("int".equals(variableType)) {
                     if (result instanceof Double) {
@@ -799,26 +1003,26 @@ public class Compiler {
                         result = (int) doubleResult;
                     }
                     if (result instanceof Integer) {
-                        symbolTable.updateValue(variableName, (Integer) result); // Update the value in symbol table
+                        symbolTable.updateValue(assignmentSite, variableName, (Integer) result); // Update the value in symbol table
 
                         // Add to literal table after computation
                         int literalID = literalTable.addLiteral((Integer) result);
-                        System.out.println("Encountered new literal " + result + " with id " + literalID);
+                        out.println("Encountered new literal " + result + " with id " + literalID);
                     } else {
                         throw new RuntimeException("Type mismatch: Unsupported value type.");
                     }
                 } else {
                     // Handle other types (e.g., double) if needed
-                    symbolTable.updateValue(variableName, result); // Update the value in symbol table
+                    symbolTable.updateValue(assignmentSite, variableName, result); // Update the value in symbol table
                 }
 
                 Integer assignTokenID = operatorTable.get("=");
                 Integer semicolonTokenID = operatorTable.get(";");
-                System.out.print("TokenIDs: " + symbolTable.getIdByName(variableName) + " " + assignTokenID + " " + literalTable.getLiteralID(result) + " " + semicolonTokenID + " ");
-                System.out.println();
+                out.print("TokenIDs: " + symbolTable.getIdByName(assignmentSite, variableName) + " " + assignTokenID + " " + literalTable.getLiteralID(result) + " " + semicolonTokenID + " ");
+                out.println();
 
             } catch (Exception e) {
-                System.out.println("Error: " + e.getMessage());
+                out.println("Error: " + e.getMessage());
             }
         }
     }
@@ -836,9 +1040,10 @@ public class Compiler {
      * EXCEPTION: Throws IllegalArgumentException if blockTokens is empty, and throws Exception for other errors during execution.
      **********************************************************/
 
-    public static void handleWhileLoop(String condition, List<String> blockTokens) throws Exception {
-        System.out.println("Handling while loop with condition: " + condition);
-        System.out.println("Block tokens: " + blockTokens);
+    public void handleWhileLoop(String condition, List<String> blockTokens) throws Exception {
+        out.println("Handling while loop with condition: " + condition);
+        recordBlockWrites(blockTokens);
+        out.println("Block tokens: " + blockTokens);
 
         // Ensure that blockTokens is not empty
         if (blockTokens.isEmpty()) {
@@ -846,23 +1051,23 @@ public class Compiler {
         }
 
         // Generate MIPS code once before the loop starts (MIPS code will be printed only once)
-        mipsGenerator.generateWhileLoop(condition, blockTokens);
-        System.out.println("MIPS code for while loop generated successfully.");
+        context.getMipsGenerator().generateWhileLoop(condition, blockTokens);
+        out.println("MIPS code for while loop generated successfully.");
 
         // Logical execution of the loop (this will continue until the condition is false)
         while (true) {
-            System.out.println("\nRe-evaluating condition...");
+            out.println("\nRe-evaluating condition...");
 
             // Tokenize the condition to break it into individual tokens
             String[] conditionTokensArray = tokenizer.tokenize(condition);
-            System.out.println("Condition tokens: " + Arrays.toString(conditionTokensArray));
+            out.println("Condition tokens: " + Arrays.toString(conditionTokensArray));
 
             // Evaluate the condition
-            boolean conditionResult = evaluator.evaluateCondition(conditionTokensArray);
-            System.out.println("Condition evaluated to: " + (conditionResult ? "true" : "false"));
+            boolean conditionResult = context.getEvaluator().evaluateCondition(conditionTokensArray);
+            out.println("Condition evaluated to: " + (conditionResult ? "true" : "false"));
 
             if (!conditionResult) {
-                System.out.println("Condition evaluated to false, exiting loop.");
+                out.println("Condition evaluated to false, exiting loop.");
                 break; // Exit loop if the condition is false
             }
 
@@ -877,24 +1082,27 @@ public class Compiler {
                 fullStatement += ";";
             }
 
-            System.out.println("Full loop body statement: " + fullStatement);
+            out.println("Full loop body statement: " + fullStatement);
 
             // Tokenize the loop body
             String[] loopBodyTokens = tokenizer.tokenize(fullStatement);
-            System.out.println("Loop body tokens: " + Arrays.toString(loopBodyTokens));
+            out.println("Loop body tokens: " + Arrays.toString(loopBodyTokens));
 
             // Check if loop body tokens are empty or invalid
             if (loopBodyTokens.length == 0) {
                 throw new IllegalArgumentException("Loop body tokens cannot be empty.");
             }
 
-            // Execute the loop body commands
+            // Execute the loop body commands in their own scope
+            symbolTable.enterScope();
             try {
                 executeCommand(loopBodyTokens);
-                System.out.println("Loop body executed successfully.");
+                out.println("Loop body executed successfully.");
             } catch (Exception e) {
                 System.err.println("Error during loop body execution: " + e.getMessage());
                 break; // Break out of the loop if execution fails
+            } finally {
+                symbolTable.exitScope();
             }
         }
     }
@@ -912,8 +1120,9 @@ public class Compiler {
      *             if there is an error evaluating the condition.
      **********************************************************/
 
-    public static void handleIfElse(String[] tokens) throws Exception {
-        System.out.println("Entered handleIfElse...");
+    public void handleIfElse(String[] tokens) throws Exception {
+        out.println("Entered handleIfElse...");
+        recordBlockWrites(Arrays.asList(tokens));
 
         // Ensure the first token is 'if'
         if (!tokens[0].trim().equals("if")) {
@@ -933,8 +1142,8 @@ public class Compiler {
         // Evaluate the condition
         boolean conditionResult;
         try {
-            conditionResult = evaluator.evaluateCondition(conditionTokens);
-            System.out.println("Condition evaluated successfully: " + conditionResult);
+            conditionResult = context.getEvaluator().evaluateCondition(conditionTokens);
+            out.println("Condition evaluated successfully: " + conditionResult);
         } catch (Exception e) {
             System.err.println("Exception during condition evaluation: " + e.getMessage());
             e.printStackTrace();
@@ -954,26 +1163,26 @@ public class Compiler {
                 throw new Exception("Invalid else block structure: Missing braces");
             }
             elseTokens = Arrays.copyOfRange(tokens, openElseBrace + 1, closeElseBrace);
-            System.out.println("Extracted elseTokens: " + Arrays.toString(elseTokens));
+            out.println("Extracted elseTokens: " + Arrays.toString(elseTokens));
         }
 
         if(conditionResult){
-            System.out.println("Executing If block...");
-            processBlock(ifTokens, 0, ifTokens.length-1);
+            out.println("Executing If block...");
+            processScopedBlock(ifTokens);
         }else if(elseTokens.length > 0){
-            System.out.println("Executing Else block...");
-            processBlock(elseTokens, 0, elseTokens.length-1);
+            out.println("Executing Else block...");
+            processScopedBlock(elseTokens);
         }
 
         // Always call generateIfElse method to generate MIPS code for both 'if' and 'else' blocks
-        System.out.println("Generating MIPS code...");
-        mipsGenerator.addComment("If-Else Block");
+        out.println("Generating MIPS code...");
+        context.getMipsGenerator().addComment("If-Else Block");
 
         // Call the generateIfElse method for both true and false conditions
-        mipsGenerator.generateIfElse(String.join(" ", conditionTokens), Arrays.asList(ifTokens), Arrays.asList(elseTokens));
+        context.getMipsGenerator().generateIfElse(String.join(" ", conditionTokens), Arrays.asList(ifTokens), Arrays.asList(elseTokens));
 
         // Print the accumulated MIPS code once after all processing
-        System.out.println("MIPS Code Generation Complete");
+        out.println("MIPS Code Generation Complete");
     }
 
     /**********************************************************
@@ -986,7 +1195,7 @@ public class Compiler {
      * RETURN VALUE: A new array of Strings containing the tokens inside the braces of the block.
      * EXCEPTION: Throws Exception if the block structure is invalid (missing braces).
      **********************************************************/
-    private static String[] extractBlock(String[] tokens, String blockType) throws Exception {
+    private String[] extractBlock(String[] tokens, String blockType) throws Exception {
         int startBrace = findNextToken(tokens, "{", 0);
         int endBrace = findMatchingBrace(tokens, startBrace);
 
@@ -1007,25 +1216,25 @@ public class Compiler {
      * RETURN VALUE: The index of the matching closing brace, or -1 if no matching brace is found.
      **********************************************************/
 
-    private static int findMatchingBrace(String[] tokens, int start) {
+    private int findMatchingBrace(String[] tokens, int start) {
         int braceCount = 1;
-        System.out.println("Finding matching brace starting at index: " + start);
+        out.println("Finding matching brace starting at index: " + start);
 
         for (int i = start + 1; i < tokens.length; i++) {
-            System.out.println("Checking token at index " + i + ": " + tokens[i]);
+            out.println("Checking token at index " + i + ": " + tokens[i]);
             if (tokens[i].equals("{")) {
                 braceCount++;
             } else if (tokens[i].equals("}")) {
                 braceCount--;
-                System.out.println("Brace count: " + braceCount);
+                out.println("Brace count: " + braceCount);
                 if (braceCount == 0) {
-                    System.out.println("Found matching brace at index: " + i);
+                    out.println("Found matching brace at index: " + i);
                     return i; // Matching closing brace found
                 }
             }
         }
 
-        System.out.println("No matching brace found");
+        out.println("No matching brace found");
         return -1;
     }
 
@@ -1037,7 +1246,7 @@ public class Compiler {
      *     - String token: The token to find in the array.
      * RETURN VALUE: The index of the token, or -1 if the token is not found.
      **********************************************************/
-    private static int findIndex(String[] tokens, String token) {
+    private int findIndex(String[] tokens, String token) {
         for (int i = 0; i < tokens.length; i++) {
             if (tokens[i].trim().equals(token)) {
                 return i;
@@ -1055,7 +1264,7 @@ public class Compiler {
      *     - int start: The index from which to start searching for the token.
      * RETURN VALUE: The index of the token, or -1 if the token is not found.
      **********************************************************/
-    private static int findNextToken(String[] tokens, String target, int start) {
+    private int findNextToken(String[] tokens, String target, int start) {
         for (int i = start; i < tokens.length; i++) {
             if (tokens[i].equals(target)) {
                 return i;
@@ -1075,24 +1284,41 @@ public class Compiler {
      * EXCEPTION: Throws Exception if an error occurs while processing the block.
      **********************************************************/
     // Method to process a block of tokens (either if or else)
-    private static void processBlock(String[] tokens, int startBlock, int endBlock) throws Exception {
-        System.out.println("Processing block from " +startBlock+ " to " +endBlock);
+    private void processBlock(String[] tokens, int startBlock, int endBlock) throws Exception {
+        out.println("Processing block from " +startBlock+ " to " +endBlock);
 
         // This method processes a block of commands
         int currentTokenStart = startBlock;
-        System.out.println("CurrentTokenStart: " +currentTokenStart);
+        out.println("CurrentTokenStart: " +currentTokenStart);
         for (int i = startBlock; i < endBlock+1; i++) {
-            System.out.println("Token at index " +i+ ": " +tokens[i]);
+            out.println("Token at index " +i+ ": " +tokens[i]);
             if (tokens[i].trim().equals(";")) {
                 // Extract the command tokens from start to semicolon
                 String[] commandTokens = Arrays.copyOfRange(tokens, currentTokenStart, i + 1);
-                System.out.println("Executing command: " + Arrays.toString(commandTokens));
+                out.println("Executing command: " + Arrays.toString(commandTokens));
                 executeCommand(commandTokens); // Execute the command
                 currentTokenStart = i + 1; // Move to the next command
             }
         }
     }
 
+    /**********************************************************
+     * METHOD: processScopedBlock(String[] tokens) *
+     * DESCRIPTION: Processes the body of an if or else block in its own symbol table scope.
+     * PARAMETERS:
+     *     - String[] tokens: The tokens between the braces of the block.
+     * RETURN VALUE: None.
+     * EXCEPTION: Throws Exception if an error occurs while processing the block.
+     **********************************************************/
+    private void processScopedBlock(String[] tokens) throws Exception {
+        symbolTable.enterScope();
+        try {
+            processBlock(tokens, 0, tokens.length-1);
+        } finally {
+            symbolTable.exitScope();
+        }
+    }
+
     /**********************************************************
      * METHOD: getConditionFromWhile(String[] tokens)
      * DESCRIPTION: This method extracts the condition from a "while" loop, which is assumed to be
@@ -1104,7 +1330,7 @@ public class Compiler {
      * EXCEPTIONS: None
      **********************************************************/
 
-    private static String getConditionFromWhile(String[] tokens) {
+    private String getConditionFromWhile(String[] tokens) {
         // The condition is typically between "while" and the first "{"
         int openParenIndex = Arrays.asList(tokens).indexOf("(");  // Find '('
         int closeParenIndex = Arrays.asList(tokens).indexOf(")");  // Find ')'
@@ -1131,7 +1357,7 @@ public class Compiler {
      * EXCEPTIONS: None
      **********************************************************/
 
-    private static List<String> getBlockTokens(String[] tokens) {
+    private List<String> getBlockTokens(String[] tokens) {
         List<String> blockTokens = new ArrayList<>();
         int openBraceIndex = Arrays.asList(tokens).indexOf("{");  // Find '{'
         int closeBraceIndex = Arrays.asList(tokens).indexOf("}");  // Find '}'
@@ -1153,7 +1379,9 @@ public class Compiler {
      * RETURN VALUE: None.
      * EXCEPTION: Throws IllegalArgumentException if the for loop is malformed, or an Exception for other errors during execution.
      **********************************************************/
-    public static void handleForLoop(String[] loopTokens) throws Exception {
+    public void handleForLoop(String[] loopTokens) throws Exception {
+        recordBlockWrites(Arrays.asList(loopTokens)); // The initialization, the increment and the body
+
         // Step 1: Locate the parentheses
         int openParenIndex = Arrays.asList(loopTokens).indexOf("(");
         int closeParenIndex = Arrays.asList(loopTokens).indexOf(")");
@@ -1187,7 +1415,7 @@ public class Compiler {
 
         // Add the loop variable to the symbol table
         if(!symbolTable.containsVariable(loopVar)){
-            String reg = mipsGenerator.allocateTempRegister();
+            String reg = context.getMipsGenerator().allocateTempRegister();
             symbolTable.addEntry(loopVar, "int", initValue, "global", reg);
 //            String offset = symbolTable.getOffsetByName(loopVar);
         }
@@ -1200,13 +1428,13 @@ public class Compiler {
         int end = tokensList.lastIndexOf("}");
         String[] bodyTokens = tokensList.subList(start + 1, end).toArray(new String[0]);
 
-        mipsGenerator.generateForLoop(initialization, condition, increment, Arrays.asList(bodyTokens));
+        context.getMipsGenerator().generateForLoop(initialization, condition, increment, Arrays.asList(bodyTokens));
 
         // Start the loop, continue to use the same registers
-        boolean conditionResult = evaluator.evaluateCondition(conditionTokens);
+        boolean conditionResult = context.getEvaluator().evaluateCondition(conditionTokens);
         while (conditionResult) {
             // Debugging: Check the value of 'i' before executing the loop body
-            System.out.println("Before loop body: i = " + symbolTable.getValueById(symbolTable.getIdByName(loopVar)));
+            out.println("Before loop body: i = " + symbolTable.getValueById(symbolTable.getIdByName(loopVar)));
 
             // Execute the loop body
             executeLoopBody(bodyTokens);
@@ -1215,15 +1443,15 @@ public class Compiler {
 
             // Reuse the same registers for incrementing
             if (increment.contains("++")) {
-                evaluator.evaluateIncrementOrDecrement("++", loopVar);
+                context.getEvaluator().evaluateIncrementOrDecrement("++", loopVar);
             } else if (increment.contains("--")) {
-                evaluator.evaluateIncrementOrDecrement("--", loopVar);
+                context.getEvaluator().evaluateIncrementOrDecrement("--", loopVar);
             } else {
                 throw new IllegalArgumentException("Invalid increment/decrement operation: " + increment);
             }
 
             // Recheck the condition after incrementing
-            conditionResult = evaluator.evaluateCondition(conditionTokens);
+            conditionResult = context.getEvaluator().evaluateCondition(conditionTokens);
         }
     }
 
@@ -1236,7 +1464,9 @@ public class Compiler {
      * RETURN VALUE: None.
      * EXCEPTION: Throws IllegalArgumentException if the for loop is malformed or the variable is not declared.
      **********************************************************/
-    public static void handleForIntegerLoop(String[] tokens) throws Exception {
+    public void handleForIntegerLoop(String[] tokens) throws Exception {
+        recordBlockWrites(Arrays.asList(tokens));
+
         // Step 1: Ensure the tokens array has enough elements to parse a basic for loop
         if (tokens.length < 13) {
             throw new IllegalArgumentException("Invalid 'for' loop structure.");
@@ -1251,7 +1481,7 @@ public class Compiler {
         // Case 1: Variable declaration inside the for loop (e.g., for(integer i = 0; ...))
         if (tokens[2].equals("integer")) {
             startValue = Integer.parseInt(tokens[5]);  // "0" (initial value)
-            String reg = mipsGenerator.allocateTempRegister();
+            String reg = context.getMipsGenerator().allocateTempRegister();
             symbolTable.addEntry(variableName, "int", startValue, "global", reg);
             isNewVariable = true;
         }
@@ -1274,16 +1504,16 @@ public class Compiler {
         String incrementOperator = tokens[12];  // "i++"
 
         // Step 5: Start the loop, evaluate the condition, and execute the body
-        for (int i = startValue; evaluator.evaluateCondition(conditionTokens); i++) {
+        for (int i = startValue; context.getEvaluator().evaluateCondition(conditionTokens); i++) {
             // Execute the loop body (you can customize this part to handle loop body statements)
             executeLoopBody(tokens);  // Replace with your method to process the loop body
 
             // Increment the variable (e.g., i++)
-            evaluator.evaluateIncrementOrDecrement(incrementOperator, variableName);
+            context.getEvaluator().evaluateIncrementOrDecrement(incrementOperator, variableName);
 
             // If it's a new variable, update it in the symbol table for each iteration
             if (isNewVariable) {
-                symbolTable.updateValue(variableName, i);
+                symbolTable.updateValue(loopVariableSite, variableName, i);
             }
         }
     }
@@ -1298,7 +1528,24 @@ public class Compiler {
      * RETURN VALUE: None.
      * EXCEPTION: Throws Exception if an error occurs while executing the loop body.
      **********************************************************/
-    private static void executeLoopBody(String[] loopTokens) throws Exception {
+    private void executeLoopBody(String[] loopTokens) throws Exception {
+        symbolTable.enterScope();  // Each pass through the body gets a fresh scope
+        try {
+            executeLoopStatements(loopTokens);
+        } finally {
+            symbolTable.exitScope();
+        }
+    }
+
+    /**********************************************************
+     * METHOD: executeLoopStatements(String[] loopTokens) *
+     * DESCRIPTION: Executes the statements between the braces of a loop body one at a time. *
+     * PARAMETERS:
+     *     - String[] loopTokens: The tokens representing the body of the loop.
+     * RETURN VALUE: None.
+     * EXCEPTION: Throws Exception if an error occurs while executing a statement.
+     **********************************************************/
+    private void executeLoopStatements(String[] loopTokens) throws Exception {
         // The loopTokens array contains the body of the loop (e.g., "{ print(i); }")
         StringBuilder statementBuilder = new StringBuilder();
         boolean insideBrackets = false;
@@ -1328,7 +1575,7 @@ public class Compiler {
                     String fullStatement = statementBuilder.toString().trim(); // Full statement ends with ';'
 
                     // Pass the statement to executeCommand
-                    System.out.println("Executing statement: " + fullStatement);
+                    out.println("Executing statement: " + fullStatement);
                     executeCommand(fullStatement.split(" ")); // Split into tokens and execute
 
                     // Reset the statement builder for the next statement
@@ -1341,12 +1588,37 @@ public class Compiler {
     /**********************************************************
      * METHOD: isInsideControlStructure() *
      * DESCRIPTION: Checks if the current execution is inside a control structure (such as a loop or conditional). This method *
-     *              is used to determine the execution context and handle control structures appropriately. *
+     *              is used to decide whether a declaration is local. The generator has no storage for locals, so a *
+     *              variable declared in a block is still a global with its own .data word, and this stays false. *
+     *              The symbol table scope a block body runs in is separate, see SymbolTable.getScopeDepth(). *
      * PARAMETERS: None.
      * RETURN VALUE: true if inside a control structure, false otherwise.
      **********************************************************/
-    private static boolean isInsideControlStructure(){
-        return controlStructure > 0;
+    private boolean isInsideControlStructure(){
+        return false;
+    }
+
+    /**********************************************************
+     * METHOD: recordBlockWrites(List<String> tokens) *
+     * DESCRIPTION: Marks every variable an if-else or loop writes, by assignment, ++, -- or input, as known only when *
+     *              the program runs. The compiler runs a block as many times as the values it has now say, which *
+     *              need not be how many times the program will, so a write counts even if it was never reached here. *
+     * PARAMETERS: List<String> tokens - the tokens of the whole statement, with its condition and body.
+     * RETURN VALUE: None.
+     **********************************************************/
+    private void recordBlockWrites(List<String> tokens) {
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            if (token.isEmpty() || !Character.isJavaIdentifierStart(token.charAt(0))) {
+                continue;
+            }
+            String next = (i + 1 < tokens.size()) ? tokens.get(i + 1) : "";
+            boolean written = next.equals("=") || next.equals("++") || next.equals("--")
+                    || (i >= 2 && tokens.get(i - 1).equals("(") && tokens.get(i - 2).equals("input"));
+            if (written) {
+                context.getEvaluator().recordValue(token, false);
+            }
+        }
     }
 
 }
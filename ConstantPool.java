@@ -0,0 +1,321 @@
+/*******************************************************************
+ * ConstantPool Class                                              *
+ *                                                                 *
+ * PROGRAMMER: Emily Culp                                          *
+ * COURSE: CS340 - Programming Language Design                     *
+ * DATE: 12/10/2024                                                *
+ * REQUIREMENT: Final - Compiler                                   *
+ *                                                                 *
+ * DESCRIPTION:                                                    *
+ * The ConstantPool class holds the literals of the literal table  *
+ * and finds them in both directions in constant time. IDs map to  *
+ * values through a LiteralStorage, on or off the heap. Values map *
+ * to IDs through one sub-pool per type: ints and doubles are kept *
+ * in open-addressing tables keyed on the primitive value (a double *
+ * by its bits, the same equality Double.equals uses), booleans in *
+ * two slots, and strings and any other objects in an index of     *
+ * hash codes that compares against the stored values in place, so *
+ * it holds no references of its own. Small ints, which            *
+ * most programs use over and over, have a slot of their own in an *
+ * array, so finding one is a single array access with no hashing. *
+ *                                                                 *
+ * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean  *
+ * Zeller.                                                         *
+ *                                                                 *
+ * CREDITS: This code was written with the help of ChatGPT.        *
+ *******************************************************************/
+
+import java.nio.ByteBuffer;
+
+public class ConstantPool {
+    public static final int NOT_FOUND = -1;
+    private static final int SMALL_INT_MIN = -128;
+    private static final int SMALL_INT_MAX = 1023;
+
+    private final int firstId;
+    private final LiteralStorage values;
+    private final int[] smallInts = new int[SMALL_INT_MAX - SMALL_INT_MIN + 1]; // ID + 1, 0 is empty
+    private final PrimitiveIndex ints;
+    private final PrimitiveIndex doubles;
+    private final int[] booleans = {NOT_FOUND, NOT_FOUND}; // false, true
+    private int[] objects = new int[16]; // Position + 1 of each string or other object, 0 is empty
+    private int[] objectHashes = new int[16];
+    private int objectCount;
+
+    /**********************************************************
+     * CONSTRUCTOR: ConstantPool(int firstId,                 *
+     *              LiteralStorage values)                     *
+     * DESCRIPTION: Creates an empty pool.                     *
+     * PARAMETERS: int firstId - the ID of the first literal.  *
+     *             LiteralStorage values - where the literals  *
+     *              are kept.                                  *
+     **********************************************************/
+    public ConstantPool(int firstId, LiteralStorage values) {
+        this(firstId, values, new PrimitiveIndex(), new PrimitiveIndex());
+    }
+
+    /**********************************************************
+     * METHOD: intern(Object value)                             *
+     * DESCRIPTION: Returns the ID of the value, adding it      *
+     *              under the next ID if it is not in the pool. *
+     * PARAMETERS: Object value - the literal.                  *
+     * RETURN VALUE: int - its ID.                              *
+     **********************************************************/
+    public int intern(Object value) {
+        if (value instanceof Integer i) {
+            return intern(i.intValue());
+        }
+        if (value instanceof Double d) {
+            return intern(d.doubleValue());
+        }
+        int id = find(value);
+        if (id != NOT_FOUND) {
+            return id;
+        }
+        int position = values.add(value);
+        if (value instanceof Boolean b) {
+            booleans[b ? 1 : 0] = firstId + position;
+        } else {
+            putObject(position, value);
+        }
+        return firstId + position;
+    }
+
+    public int intern(int value) {
+        int id = find(value);
+        if (id != NOT_FOUND) {
+            return id;
+        }
+        id = firstId + values.add(value);
+        if (value >= SMALL_INT_MIN && value <= SMALL_INT_MAX) {
+            smallInts[value - SMALL_INT_MIN] = id + 1;
+        } else {
+            ints.put(value, id);
+        }
+        return id;
+    }
+
+    public int intern(double value) {
+        int id = find(value);
+        if (id != NOT_FOUND) {
+            return id;
+        }
+        id = firstId + values.add(value);
+        doubles.put(Double.doubleToLongBits(value), id);
+        return id;
+    }
+
+    /**********************************************************
+     * METHOD: find(Object value)                               *
+     * DESCRIPTION: Looks a value up in the sub-pool of its     *
+     *              type without adding it.                     *
+     * PARAMETERS: Object value - the literal.                  *
+     * RETURN VALUE: int - its ID, or NOT_FOUND.                *
+     **********************************************************/
+    public int find(Object value) {
+        if (value instanceof Integer i) {
+            return find(i.intValue());
+        }
+        if (value instanceof Double d) {
+            return find(d.doubleValue());
+        }
+        if (value instanceof Boolean b) {
+            return booleans[b ? 1 : 0];
+        }
+        int mask = objects.length - 1;
+        int hash = hashOf(value);
+        for (int i = hash & mask; objects[i] != 0; i = (i + 1) & mask) {
+            if (objectHashes[i] == hash && values.matches(objects[i] - 1, value)) {
+                return firstId + objects[i] - 1;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    public int find(int value) {
+        if (value >= SMALL_INT_MIN && value <= SMALL_INT_MAX) {
+            return smallInts[value - SMALL_INT_MIN] - 1;
+        }
+        return ints.get(value);
+    }
+
+    public int find(double value) {
+        return doubles.get(Double.doubleToLongBits(value));
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    public int getFirstId() {
+        return firstId;
+    }
+
+    /**********************************************************
+     * METHOD: get(int id)                                      *
+     * DESCRIPTION: Looks a literal up by ID.                   *
+     * PARAMETERS: int id - the ID.                             *
+     * RETURN VALUE: Object - the value, or null if there is    *
+     *              no literal with that ID.                    *
+     **********************************************************/
+    public Object get(int id) {
+        int position = id - firstId;
+        return (position >= 0 && position < values.size()) ? values.get(position) : null;
+    }
+
+    /**********************************************************
+     * METHOD: writeSnapshot(TableSnapshot.Writer writer)       *
+     * DESCRIPTION: Writes the indexes of every sub-pool and    *
+     *              the literals in the off-heap record layout. *
+     **********************************************************/
+    void writeSnapshot(TableSnapshot.Writer writer) {
+        OffHeapLiteralStorage records = (values instanceof OffHeapLiteralStorage offHeap)
+                ? offHeap : OffHeapLiteralStorage.copyOf(values);
+        writer.putInt(firstId);
+        writer.putInts(smallInts);
+        ints.writeSnapshot(writer);
+        doubles.writeSnapshot(writer);
+        writer.putInts(booleans);
+        writer.putInts(objects);
+        writer.putInts(objectHashes);
+        writer.putInt(objectCount);
+        writer.putBytes(records.recordContents());
+        writer.putBytes(records.getStrings().contents());
+    }
+
+    /**********************************************************
+     * METHOD: readSnapshot(TableSnapshot.Reader reader)        *
+     * DESCRIPTION: Restores a pool written by writeSnapshot.   *
+     *              The literals stay in the mapped snapshot    *
+     *              and are decoded on use.                     *
+     **********************************************************/
+    static ConstantPool readSnapshot(TableSnapshot.Reader reader) {
+        int firstId = reader.getInt();
+        int[] smallInts = reader.getInts();
+        PrimitiveIndex ints = PrimitiveIndex.readSnapshot(reader);
+        PrimitiveIndex doubles = PrimitiveIndex.readSnapshot(reader);
+        int[] booleans = reader.getInts();
+        int[] objects = reader.getInts();
+        int[] objectHashes = reader.getInts();
+        int objectCount = reader.getInt();
+        ByteBuffer records = reader.getBytes();
+        OffHeapStrings strings = new OffHeapStrings(reader.getBytes());
+
+        ConstantPool pool = new ConstantPool(firstId, new OffHeapLiteralStorage(records, strings), ints, doubles);
+        System.arraycopy(smallInts, 0, pool.smallInts, 0, pool.smallInts.length);
+        System.arraycopy(booleans, 0, pool.booleans, 0, pool.booleans.length);
+        pool.objects = objects;
+        pool.objectHashes = objectHashes;
+        pool.objectCount = objectCount;
+        return pool;
+    }
+
+    private ConstantPool(int firstId, LiteralStorage values, PrimitiveIndex ints, PrimitiveIndex doubles) {
+        this.firstId = firstId;
+        this.values = values;
+        this.ints = ints;
+        this.doubles = doubles;
+    }
+
+    private void putObject(int position, Object value) {
+        if ((objectCount + 1) * 2 > objects.length) {
+            int[] oldObjects = objects;
+            int[] oldHashes = objectHashes;
+            objects = new int[oldObjects.length * 2];
+            objectHashes = new int[oldObjects.length * 2];
+            for (int i = 0; i < oldObjects.length; i++) {
+                if (oldObjects[i] != 0) {
+                    placeObject(oldObjects[i], oldHashes[i]);
+                }
+            }
+        }
+        placeObject(position + 1, hashOf(value));
+        objectCount++;
+    }
+
+    private void placeObject(int entry, int hash) {
+        int mask = objects.length - 1;
+        int i = hash & mask;
+        while (objects[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        objects[i] = entry;
+        objectHashes[i] = hash;
+    }
+
+    private static int hashOf(Object value) {
+        int h = value == null ? 0 : value.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**********************************************************
+     * CLASS: PrimitiveIndex                                   *
+     * DESCRIPTION:                                            *
+     * An open-addressing hash table from a long key to an ID, *
+     * probed linearly. Ints are widened to longs and doubles  *
+     * are stored by their bits, so no key is ever boxed.      *
+     **********************************************************/
+    private static final class PrimitiveIndex {
+        private long[] keys = new long[16];
+        private int[] ids = new int[16]; // ID + 1, 0 is empty
+        private int size;
+
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int i = hash(key) & mask; ids[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return ids[i] - 1;
+                }
+            }
+            return NOT_FOUND;
+        }
+
+        void put(long key, int id) {
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            while (ids[i] != 0 && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (ids[i] == 0) {
+                size++;
+            }
+            keys[i] = key;
+            ids[i] = id + 1;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldIds = ids;
+            keys = new long[oldKeys.length * 2];
+            ids = new int[oldIds.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldIds[i] != 0) {
+                    put(oldKeys[i], oldIds[i] - 1);
+                }
+            }
+        }
+
+        void writeSnapshot(TableSnapshot.Writer writer) {
+            writer.putLongs(keys);
+            writer.putInts(ids);
+            writer.putInt(size);
+        }
+
+        static PrimitiveIndex readSnapshot(TableSnapshot.Reader reader) {
+            PrimitiveIndex index = new PrimitiveIndex();
+            index.keys = reader.getLongs();
+            index.ids = reader.getInts();
+            index.size = reader.getInt();
+            return index;
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -0,0 +1,341 @@
+/*******************************************************************
+ * ControlFlowGraph Class                                          *
+ *                                                                 *
+ * PROGRAMMER: Emily Culp                                          *
+ * COURSE: CS340 - Programming Language Design                     *
+ * DATE: 12/10/2024                                                *
+ * REQUIREMENT: Final - Compiler                                   *
+ *                                                                 *
+ * DESCRIPTION:                                                    *
+ * The ControlFlowGraph class splits generated MIPS code into      *
+ * basic blocks and links each block to the blocks control can     *
+ * pass to next. A block starts at the first instruction, at a     *
+ * label, and after a branch or jump; it ends before the next      *
+ * start. A jump goes to its label, a branch goes to its label or  *
+ * falls through, and any other block falls through to the next.   *
+ * The generator may write the same label twice, so a label can    *
+ * lead to more than one block; a jump to a label that is not in   *
+ * the code leaves the program.                                    *
+ *                                                                 *
+ * The dominators are found the first time they are asked for,     *
+ * with the iterative algorithm of Cooper, Harvey and Kennedy over *
+ * the blocks in reverse postorder: block A dominates block B when *
+ * every path from the first block to B passes through A. A block  *
+ * no path reaches has no dominator at all. The dominance frontier *
+ * of a block, the blocks where its dominance ends, is found from  *
+ * them the same way, on first use.                                *
+ *                                                                 *
+ * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean  *
+ * Zeller.                                                         *
+ *                                                                 *
+ * CREDITS: This code was written with the help of ChatGPT.        *
+ *******************************************************************/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class ControlFlowGraph {
+    private final MipsCode code;
+    private final int[] starts; // The first instruction of each block, plus code.size() at the end
+    private final int[][] successors;
+    private final int[][] predecessors;
+    private int[] reversePostorder; // The reachable blocks; null until the dominators are found
+    private int[] immediateDominators;
+    private int[][] dominated;  // The children of each block in the dominator tree
+    private int[][] frontiers;
+
+    /**********************************************************
+     * CONSTRUCTOR: ControlFlowGraph(MipsCode code)           *
+     * DESCRIPTION: Builds the blocks and edges of the code.  *
+     *              The graph is not updated when the code    *
+     *              changes; build a new one.                 *
+     **********************************************************/
+    public ControlFlowGraph(MipsCode code) {
+        this.code = code;
+
+        List<Integer> blockStarts = new ArrayList<>();
+        for (int i = 0; i < code.size(); i++) {
+            if (i == 0 || code.getOpcode(i) == CodeGenerator.LABEL || endsBlock(i - 1)) {
+                blockStarts.add(i);
+            }
+        }
+        starts = new int[blockStarts.size() + 1];
+        for (int block = 0; block < blockStarts.size(); block++) {
+            starts[block] = blockStarts.get(block);
+        }
+        starts[blockStarts.size()] = code.size();
+
+        // Labels to the blocks they start
+        Map<Integer, List<Integer>> labelBlocks = new HashMap<>();
+        for (int block = 0; block < size(); block++) {
+            if (code.getOpcode(starts[block]) == CodeGenerator.LABEL) {
+                labelBlocks.computeIfAbsent(code.getOperand(starts[block], 0), k -> new ArrayList<>()).add(block);
+            }
+        }
+
+        successors = new int[size()][];
+        int[] predecessorCounts = new int[size()];
+        for (int block = 0; block < size(); block++) {
+            int last = getEnd(block) - 1;
+            CodeGenerator opcode = code.getOpcode(last);
+            List<Integer> targets = new ArrayList<>(2);
+            if (opcode.isJump() || opcode.isBranch()) {
+                int label = lastOperand(last);
+                if (label >= 0 && code.getKind(last, label) == MipsCode.SYM) {
+                    targets.addAll(labelBlocks.getOrDefault(code.getOperand(last, label), List.of()));
+                }
+            }
+            if (!opcode.isJump() && block + 1 < size() && !targets.contains(block + 1)) {
+                targets.add(block + 1);
+            }
+            successors[block] = targets.stream().mapToInt(Integer::intValue).toArray();
+            for (int successor : successors[block]) {
+                predecessorCounts[successor]++;
+            }
+        }
+
+        predecessors = new int[size()][];
+        for (int block = 0; block < size(); block++) {
+            predecessors[block] = new int[predecessorCounts[block]];
+        }
+        Arrays.fill(predecessorCounts, 0);
+        for (int block = 0; block < size(); block++) {
+            for (int successor : successors[block]) {
+                predecessors[successor][predecessorCounts[successor]++] = block;
+            }
+        }
+    }
+
+    private boolean endsBlock(int index) {
+        CodeGenerator opcode = code.getOpcode(index);
+        return opcode.isJump() || opcode.isBranch();
+    }
+
+    private int lastOperand(int index) {
+        for (int operand = 2; operand >= 0; operand--) {
+            if (code.getKind(index, operand) != MipsCode.NONE) {
+                return operand;
+            }
+        }
+        return -1;
+    }
+
+    public MipsCode getCode() {
+        return code;
+    }
+
+    // The number of blocks
+    public int size() {
+        return starts.length - 1;
+    }
+
+    public int getStart(int block) {
+        return starts[block];
+    }
+
+    // One past the last instruction of a block
+    public int getEnd(int block) {
+        return starts[block + 1];
+    }
+
+    public int[] getSuccessors(int block) {
+        return successors[block];
+    }
+
+    public int[] getPredecessors(int block) {
+        return predecessors[block];
+    }
+
+    // Numbers the reachable blocks in reverse postorder, then finds their dominators
+    private void findDominators() {
+        if (immediateDominators != null) {
+            return;
+        }
+        int blocks = size();
+        int[] postorder = new int[blocks];
+        int[] order = new int[blocks];
+        int count = 0;
+        if (blocks > 0) {
+            // Depth first without recursion; next[] is the successor each block visits next
+            boolean[] visited = new boolean[blocks];
+            int[] stack = new int[blocks];
+            int[] next = new int[blocks];
+            int depth = 0;
+            stack[depth++] = 0;
+            visited[0] = true;
+            while (depth > 0) {
+                int block = stack[depth - 1];
+                if (next[block] < successors[block].length) {
+                    int successor = successors[block][next[block]++];
+                    if (!visited[successor]) {
+                        visited[successor] = true;
+                        stack[depth++] = successor;
+                    }
+                } else {
+                    depth--;
+                    postorder[block] = count;
+                    order[count++] = block;
+                }
+            }
+        }
+        reversePostorder = new int[count];
+        for (int i = 0; i < count; i++) {
+            reversePostorder[i] = order[count - 1 - i];
+        }
+
+        immediateDominators = new int[blocks];
+        Arrays.fill(immediateDominators, -1);
+        if (count == 0) {
+            return;
+        }
+        immediateDominators[0] = 0;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 1; i < count; i++) {
+                int block = reversePostorder[i];
+                int dominator = -1;
+                for (int predecessor : predecessors[block]) {
+                    if (immediateDominators[predecessor] < 0) {
+                        continue; // Not reached yet, or never
+                    }
+                    dominator = (dominator < 0) ? predecessor : intersect(postorder, predecessor, dominator);
+                }
+                if (immediateDominators[block] != dominator) {
+                    immediateDominators[block] = dominator;
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    // The nearest block that dominates both, walking up from the lower one in postorder
+    private int intersect(int[] postorder, int a, int b) {
+        while (a != b) {
+            while (postorder[a] < postorder[b]) {
+                a = immediateDominators[a];
+            }
+            while (postorder[b] < postorder[a]) {
+                b = immediateDominators[b];
+            }
+        }
+        return a;
+    }
+
+    /**********************************************************
+     * METHOD: getImmediateDominator(int block)                 *
+     * RETURN VALUE: int - the closest block that dominates it, *
+     *              the block itself for the first block, or -1 *
+     *              if no path from the first block reaches it. *
+     **********************************************************/
+    public int getImmediateDominator(int block) {
+        findDominators();
+        return immediateDominators[block];
+    }
+
+    public boolean isReachable(int block) {
+        return getImmediateDominator(block) >= 0;
+    }
+
+    /**********************************************************
+     * METHOD: dominates(int dominator, int block)              *
+     * RETURN VALUE: boolean - true if every path from the      *
+     *              first block to the block passes through     *
+     *              the dominator; a block dominates itself.    *
+     **********************************************************/
+    public boolean dominates(int dominator, int block) {
+        findDominators();
+        if (immediateDominators[block] < 0 || immediateDominators[dominator] < 0) {
+            return false;
+        }
+        while (block != dominator && block != 0) {
+            block = immediateDominators[block];
+        }
+        return block == dominator;
+    }
+
+    // The reachable blocks, each one before the blocks it dominates
+    public int[] getReversePostorder() {
+        findDominators();
+        return reversePostorder.clone();
+    }
+
+    /**********************************************************
+     * METHOD: getDominated(int block)                          *
+     * RETURN VALUE: int[] - the blocks whose immediate         *
+     *              dominator it is: its children in the        *
+     *              dominator tree, in reverse postorder.       *
+     **********************************************************/
+    public int[] getDominated(int block) {
+        if (dominated == null) {
+            findDominators();
+            int[] counts = new int[size()];
+            for (int child : reversePostorder) {
+                if (child != 0) {
+                    counts[immediateDominators[child]]++;
+                }
+            }
+            dominated = new int[size()][];
+            for (int parent = 0; parent < size(); parent++) {
+                dominated[parent] = new int[counts[parent]];
+            }
+            Arrays.fill(counts, 0);
+            for (int child : reversePostorder) {
+                if (child != 0) {
+                    int parent = immediateDominators[child];
+                    dominated[parent][counts[parent]++] = child;
+                }
+            }
+        }
+        return dominated[block];
+    }
+
+    /**********************************************************
+     * METHOD: getDominanceFrontier(int block)                  *
+     * RETURN VALUE: int[] - the blocks that have a predecessor *
+     *              it dominates but that it does not strictly  *
+     *              dominate itself, where SSA form needs phis. *
+     *              The first block is in no frontier.          *
+     **********************************************************/
+    public int[] getDominanceFrontier(int block) {
+        if (frontiers == null) {
+            findDominators();
+            List<List<Integer>> found = new ArrayList<>(size());
+            for (int i = 0; i < size(); i++) {
+                found.add(new ArrayList<>(0));
+            }
+            for (int join : reversePostorder) {
+                if (predecessors[join].length < 2) {
+                    continue;
+                }
+                for (int predecessor : predecessors[join]) {
+                    // Walk up from the predecessor to the join's immediate dominator
+                    for (int runner = predecessor; immediateDominators[runner] >= 0
+                            && runner != immediateDominators[join]; runner = immediateDominators[runner]) {
+                        List<Integer> frontier = found.get(runner);
+                        if (frontier.isEmpty() || frontier.get(frontier.size() - 1) != join) {
+                            frontier.add(join);
+                        }
+                    }
+                }
+            }
+            frontiers = new int[size()][];
+            for (int i = 0; i < size(); i++) {
+                frontiers[i] = found.get(i).stream().mapToInt(Integer::intValue).toArray();
+            }
+        }
+        return frontiers[block];
+    }
+
+    /**********************************************************
+     * METHOD: blockOf(int index)                               *
+     * RETURN VALUE: int - the block holding an instruction.    *
+     **********************************************************/
+    public int blockOf(int index) {
+        int block = Arrays.binarySearch(starts, 0, size(), index);
+        return (block >= 0) ? block : -block - 2;
+    }
+}
@@ -0,0 +1,168 @@
+/*******************************************************************
+ * DeadCodeEliminator Class                                        *
+ *                                                                 *
+ * PROGRAMMER: Emily Culp                                          *
+ * COURSE: CS340 - Programming Language Design                     *
+ * DATE: 12/10/2024                                                *
+ * REQUIREMENT: Final - Compiler                                   *
+ *                                                                 *
+ * DESCRIPTION:                                                    *
+ * The DeadCodeEliminator class removes the generated MIPS code    *
+ * that cannot change what the program does, in three steps over   *
+ * the ControlFlowGraph of the code:                               *
+ *                                                                 *
+ *   1. Blocks that no path from the first block reaches, which    *
+ *      have no dominator, are removed whole.                      *
+ *   2. Labels no branch or jump names are removed, so the blocks  *
+ *      they started join the blocks before them.                  *
+ *   3. An instruction that only writes a register, when the value *
+ *      it writes is live nowhere after it, is removed. Each block *
+ *      is walked backward from the values LiveRanges finds live   *
+ *      out of it, so a chain of dead values in a block goes in    *
+ *      one walk; the walks are repeated until one removes nothing *
+ *      because removing a read can end a value in another block.  *
+ *                                                                 *
+ * Only the allocatable registers are followed, as in LiveRanges;  *
+ * writes to $v0, $a0, $sp or memory are always kept, and so is    *
+ * div, which traps on a zero divisor. A line of code kept as text *
+ * could read any register, so code with one is left to steps 1    *
+ * and 2, and a label named in such a line is kept.                *
+ *                                                                 *
+ * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean  *
+ * Zeller.                                                         *
+ *                                                                 *
+ * CREDITS: This code was written with the help of ChatGPT.        *
+ *******************************************************************/
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+
+public class DeadCodeEliminator {
+    private final MipsCode code;
+    private int blocksRemoved;
+    private int labelsRemoved;
+    private int instructionsRemoved;
+    private int rounds;
+    private boolean textFound;
+
+    public DeadCodeEliminator(MipsCode code) {
+        this.code = code;
+    }
+
+    /**********************************************************
+     * METHOD: eliminate()                                      *
+     * DESCRIPTION: Runs the three steps on the code, in place. *
+     * RETURN VALUE: int - the number of lines removed.         *
+     **********************************************************/
+    public int eliminate() {
+        int before = code.size();
+        removeUnreachableBlocks();
+        removeUnusedLabels();
+        if (!textFound) {
+            do {
+                rounds++;
+            } while (removeDeadInstructions() > 0);
+        }
+        return before - code.size();
+    }
+
+    private void removeUnreachableBlocks() {
+        ControlFlowGraph graph = new ControlFlowGraph(code);
+        BitSet removed = new BitSet(code.size());
+        for (int block = 0; block < graph.size(); block++) {
+            if (!graph.isReachable(block)) {
+                removed.set(graph.getStart(block), graph.getEnd(block));
+                blocksRemoved++;
+            }
+        }
+        code.removeAll(removed);
+    }
+
+    private void removeUnusedLabels() {
+        // The labels a branch or jump names, and every word of the lines kept as text
+        Set<String> named = new HashSet<>();
+        for (int i = 0; i < code.size(); i++) {
+            CodeGenerator opcode = code.getOpcode(i);
+            if (opcode.isBranch() || opcode.isJump()) {
+                for (int operand = 0; operand < 3; operand++) {
+                    if (code.getKind(i, operand) == MipsCode.SYM) {
+                        named.add(code.getSymbol(code.getOperand(i, operand)));
+                    }
+                }
+            } else if (opcode == CodeGenerator.TEXT) {
+                String line = code.getSymbol(code.getOperand(i, 0));
+                if (!line.isBlank()) {
+                    textFound = true;
+                    for (String word : line.split("[^A-Za-z0-9_$.]+")) {
+                        named.add(word);
+                    }
+                }
+            }
+        }
+
+        BitSet removed = new BitSet(code.size());
+        for (int i = 0; i < code.size(); i++) {
+            if (code.getOpcode(i) == CodeGenerator.LABEL && !named.contains(code.getSymbol(code.getOperand(i, 0)))) {
+                removed.set(i);
+                labelsRemoved++;
+            }
+        }
+        code.removeAll(removed);
+    }
+
+    // One backward walk over every block; returns how many instructions it removed
+    private int removeDeadInstructions() {
+        LiveRanges ranges = new LiveRanges(new ControlFlowGraph(code));
+        ControlFlowGraph graph = ranges.getGraph();
+        BitSet removed = new BitSet(code.size());
+        for (int block = 0; block < graph.size(); block++) {
+            long[] live = ranges.getLiveOut(block);
+            for (int i = graph.getEnd(block) - 1; i >= graph.getStart(block); i--) {
+                int written = ranges.isDefinition(i, 0) ? ranges.getValue(i, 0) : -1;
+                if (written >= 0) {
+                    if (!LiveRanges.get(live, written) && isRemovable(code.getOpcode(i))) {
+                        removed.set(i); // Its reads do not make anything live
+                        continue;
+                    }
+                    live[written >>> 6] &= ~(1L << written);
+                }
+                for (int operand = 0; operand < 3; operand++) {
+                    int value = ranges.getValue(i, operand);
+                    if (value >= 0 && !ranges.isDefinition(i, operand)) {
+                        LiveRanges.set(live, value);
+                    }
+                }
+            }
+        }
+        code.removeAll(removed);
+        instructionsRemoved += removed.cardinality();
+        return removed.cardinality();
+    }
+
+    // Instructions whose only effect is the register they write
+    private static boolean isRemovable(CodeGenerator opcode) {
+        return opcode.writesFirstOperand() && opcode != CodeGenerator.DIV;
+    }
+
+    public int getBlocksRemoved() {
+        return blocksRemoved;
+    }
+
+    public int getLabelsRemoved() {
+        return labelsRemoved;
+    }
+
+    public int getInstructionsRemoved() {
+        return instructionsRemoved;
+    }
+
+    // The backward walks over the code, the last of which removed nothing
+    public int getRounds() {
+        return rounds;
+    }
+
+    public boolean isTextFound() {
+        return textFound;
+    }
+}
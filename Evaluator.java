@@ -13,22 +13,45 @@
  * variable values. This class ensures proper handling of           *
  * parentheses and operator precedence using stacks.                *
  *                                                                  *
+ * From -Dcompiler.opt=1 an operation on two values known at        *
+ * compile time is folded: it emits no code, and the result of a    *
+ * statement folded this way is loaded with a single li. Folding    *
+ * stops at values only known when the program runs, the ones read  *
+ * by input and the ones a block or loop writes, which are loaded   *
+ * from the data section instead; every assignment stores its       *
+ * result there.                                                    *
+ *                                                                  *
  * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean   *
  * Zeller.                                                          *
  *                                                                  *
  * CREDITS: This code was written with the help of ChatGPT.         *
  *******************************************************************/
 
+import java.io.PrintStream;
 import java.util.*;
 
 public class Evaluator {
     private static final Map<String, Integer> OPERATOR_PRECEDENCE = Map.of(
             "+", 1, "-", 1, "*", 2, "/", 2, "^", 3
     );
-    private static SymbolTable symbolTable;
-    private static LiteralTable literalTable;
-    private MIPSGenerator mipsGenerator;
-
+    private final SymbolTable symbolTable;
+    private final LiteralTable literalTable;
+    private final MIPSGenerator mipsGenerator;
+    private final PrintStream out;
+
+    // Constant folding, from -Dcompiler.opt=1: an operation on values known at compile time emits no code
+    private final boolean foldConstants = MipsOptimizer.getLevel() >= 1;
+    private final Set<String> runtimeValues = new HashSet<>(); // Variables whose values are only known at run time
+    private int operationsFolded;
+    private boolean lastResultKnown;
+
+    // One inline cache per symbol lookup site, so a loop that evaluates the same statement again
+    // finds its variables without hashing their names
+    private final SymbolTable.LookupCache leftOperandSite;
+    private final SymbolTable.LookupCache rightOperandSite;
+    private final SymbolTable.LookupCache operandSite;
+    private final SymbolTable.LookupCache incrementSite;
+    private final List<SymbolTable.LookupCache> expressionSites = new ArrayList<>(); // One per token of an expression
 
     /**********************************************************
      * CONSTRUCTOR: Evaluator(SymbolTable symbolTable)        *
@@ -38,17 +61,41 @@ public class Evaluator {
      *              for accessing variables.                  *
      **********************************************************/
     public Evaluator(SymbolTable symbolTable, LiteralTable literalTable, MIPSGenerator mipsGenerator) {
+        this(symbolTable, literalTable, mipsGenerator, System.out);
+    }
+
+    /**********************************************************
+     * CONSTRUCTOR: Evaluator(SymbolTable symbolTable,        *
+     *              LiteralTable literalTable,                *
+     *              MIPSGenerator mipsGenerator,              *
+     *              PrintStream out)                          *
+     * DESCRIPTION: Initializes the Evaluator with the tables *
+     *              of one run and the stream its debug       *
+     *              output is written to.                     *
+     * PARAMETERS: PrintStream out - the debug output stream. *
+     **********************************************************/
+    public Evaluator(SymbolTable symbolTable, LiteralTable literalTable, MIPSGenerator mipsGenerator, PrintStream out) {
         this.symbolTable = symbolTable;
         this.literalTable = literalTable;
         this.mipsGenerator = mipsGenerator;
+        this.out = out;
+        this.leftOperandSite = symbolTable.newLookupCache();
+        this.rightOperandSite = symbolTable.newLookupCache();
+        this.operandSite = symbolTable.newLookupCache();
+        this.incrementSite = symbolTable.newLookupCache();
     }
 
     /**********************************************************
-     * METHOD: evaluate(String expression)                    *
+     * METHOD: evaluate(String expression, String target)     *
      * DESCRIPTION: Evaluates a mathematical expression,      *
      *              resolving variables and applying PEMDAS.  *
+     *              When constants are folded, an integer     *
+     *              result is stored in the target, so code   *
+     *              that loads it when the program runs finds *
+     *              it there.                                 *
      * PARAMETERS: String expression - the expression to      *
      *             evaluate, with tokens separated by spaces. *
+     *             String target - the variable assigned      *
      * RETURN VALUE: int - the result of the evaluated        *
      *              expression.                               *
      * EXCEPTIONS: Throws an Exception for invalid operations *
@@ -56,42 +103,135 @@ public class Evaluator {
      **********************************************************/
 
     // Evaluate a mathematical expression with support for variables and PEMDAS
-    public Object evaluate(String expression) {
-        Stack<Object> values = new Stack<>();
+    public Object evaluate(String expression, String target) {
+        Stack<Operand> values = new Stack<>();
         Stack<Character> ops = new Stack<>();
+        operationsFolded = 0;
 
         String[] tokens = expression.split("\\s+");
 
-        for (String token : tokens) {
+        for (int position = 0; position < tokens.length; position++) {
+            String token = tokens[position];
             if (isInteger(token)) {
                 int value = Integer.parseInt(token);
-                values.push(value);  // Push as Integer
+                values.push(new Operand(value, true, null, null));  // Push as Integer
                 literalTable.addLiteral(value);  // Add as Integer
             } else if (isDouble(token)) {
                 double value = Double.parseDouble(token);
-                values.push(value);  // Push as Double
+                values.push(new Operand(value, true, null, null));  // Push as Double
                 literalTable.addLiteral(value);  // Add as Double
-            } else if (symbolTable.containsVariable(token)) {
-                Integer id = symbolTable.getIdByName(token);
-                if (id != null) {
-                    Object value = symbolTable.getValueById(id);
-                    values.push(value);
-                } else {
-                    throw new IllegalArgumentException("Variable '" + token + "' not found.");
-                }
+            } else if (symbolTable.containsVariable(expressionSite(position), token)) {
+                Object value = symbolTable.get(expressionSite(position), token);
+                values.push(new Operand(value, isKnownValue(token), token, null));
             } else if (isOperator(token.charAt(0))) {
                 while (!ops.isEmpty() && precedence(ops.peek()) >= precedence(token.charAt(0))) {
-                    values.push(applyOperation(ops.pop(), values.pop(), values.pop()));
+                    values.push(apply(ops.pop(), values.pop(), values.pop()));
                 }
                 ops.push(token.charAt(0));
             }
         }
 
         while (!ops.isEmpty()) {
-            values.push(applyOperation(ops.pop(), values.pop(), values.pop()));
+            values.push(apply(ops.pop(), values.pop(), values.pop()));
         }
 
-        return values.pop();
+        Operand result = values.pop();
+        String register = result.register;
+        if (register != null) {
+            mipsGenerator.countFoldedOperations(operationsFolded);
+        } else if (operationsFolded > 0) {
+            register = mipsGenerator.loadFoldedConstant(result.value, operationsFolded); // One li for the whole expression
+        } else if (foldConstants && target != null) {
+            register = load(result); // A single literal or variable
+        }
+        if (register != null) {
+            // A variable without a .data word has nowhere to be stored, and a sw to it would not assemble
+            if (foldConstants && target != null && result.value instanceof Integer
+                    && mipsGenerator.isVariableInDataSection(target)) {
+                mipsGenerator.storeVariable(register, target);
+            }
+            mipsGenerator.freeRegister(register);
+        }
+        lastResultKnown = result.known;
+        return result.value;
+    }
+
+    /**********************************************************
+     * METHOD: recordValue(String variable, boolean known)    *
+     * DESCRIPTION: Records whether the value just given to a *
+     *              variable is known when the program is     *
+     *              compiled, so later expressions that read  *
+     *              it can be folded. A value read by input,  *
+     *              assigned inside a block or written by a   *
+     *              loop is not.                              *
+     * PARAMETERS: String variable - the variable assigned    *
+     *             boolean known - whether its value is known *
+     **********************************************************/
+    public void recordValue(String variable, boolean known) {
+        if (known) {
+            runtimeValues.remove(variable);
+        } else {
+            runtimeValues.add(variable);
+        }
+    }
+
+    // The lookup site of a token position, so the same statement evaluated again finds each variable in its cache
+    private SymbolTable.LookupCache expressionSite(int position) {
+        while (expressionSites.size() <= position) {
+            expressionSites.add(symbolTable.newLookupCache());
+        }
+        return expressionSites.get(position);
+    }
+
+    // The variables whose values are only known at run time, for TableSnapshot
+    public Set<String> getRuntimeValues() {
+        return Collections.unmodifiableSet(runtimeValues);
+    }
+
+    // Whether the value of the last expression evaluated was folded to a constant
+    public boolean isLastResultKnown() {
+        return lastResultKnown;
+    }
+
+    // A variable's value can be folded only at the top level, where each statement runs once
+    private boolean isKnownValue(String variable) {
+        return symbolTable.getScopeDepth() == 0 && !runtimeValues.contains(variable);
+    }
+
+    // Applies an operator, folding it when both operands are known at compile time
+    private Operand apply(char op, Operand b, Operand a) {
+        if (!foldConstants) {
+            return new Operand(applyOperation(op, b.value, a.value), true, null, null);
+        }
+        if (a.known && b.known) {
+            Object result = calculate(op, b.value, a.value);
+            operationsFolded++;
+            return new Operand(result, true, null, null);
+        }
+
+        // An operand known only when the program runs: emit the operation, keeping its result in a register
+        String reg1 = load(a);
+        String reg2 = load(b);
+        Object result = calculate(op, b.value, a.value);
+        String regResult = mipsGenerator.allocateTempRegister();
+        emitOperation(op, reg1, reg2, regResult);
+        mipsGenerator.freeRegister(reg1);
+        mipsGenerator.freeRegister(reg2);
+        return new Operand(result, false, null, regResult);
+    }
+
+    // The register holding an operand, loading it if it is not in one yet
+    private String load(Operand operand) {
+        if (operand.register != null) {
+            return operand.register;
+        }
+        String register = mipsGenerator.allocateTempRegister();
+        if (operand.known) {
+            mipsGenerator.loadRegister(register, operand.value);
+        } else {
+            mipsGenerator.loadVariable(register, operand.variable, operand.value);
+        }
+        return register;
     }
 
     /**********************************************************
@@ -121,19 +261,56 @@ public class Evaluator {
      *         Throws an ArithmeticException for division by 0*
      **********************************************************/
     private Object applyOperation(char op, Object b, Object a) {
-        double x;
-        double y;
         String reg1 = mipsGenerator.allocateTempRegister();
         String reg2 = mipsGenerator.allocateTempRegister();
         String regResult = mipsGenerator.allocateTempRegister();
 
+        // Load operand 'a' if it's Integer or Double
+        if (a instanceof Integer || a instanceof Double) {
+            mipsGenerator.loadRegister(reg1, a);  // Load operand a into reg1
+        } else {
+            throw new IllegalArgumentException("Unsupported data type for operand a. Only Integer and Double are supported.");
+        }
+
+        // Load operand 'b' if it's Integer or Double
+        if (b instanceof Integer || b instanceof Double) {
+            mipsGenerator.loadRegister(reg2, b);  // Load operand b into reg2
+        } else {
+            throw new IllegalArgumentException("Unsupported data type for operand b. Only Integer and Double are supported.");
+        }
+
+        Object result = calculate(op, b, a);
+        emitOperation(op, reg1, reg2, regResult);
+
+        // Free the registers after use
+        mipsGenerator.freeRegister(reg1);
+        mipsGenerator.freeRegister(reg2);
+        mipsGenerator.freeRegister(regResult);
+        return result;
+    }
+
+    /**********************************************************
+     * METHOD: calculate(char op, Object b, Object a)         *
+     * DESCRIPTION: Computes an operation on two operands at  *
+     *              compile time, without emitting any code.  *
+     * PARAMETERS: char op - the operator (+, -, *, /)        *
+     *             Object b - the second operand              *
+     *             Object a - the first operand               *
+     * RETURN VALUE: Object - an Integer if both operands are *
+     *              integers, otherwise a Double.             *
+     * EXCEPTIONS: Throws an IllegalArgumentException for     *
+     *             other operands or operators, and an        *
+     *             ArithmeticException for division by 0.     *
+     **********************************************************/
+    private Object calculate(char op, Object b, Object a) {
+        double x;
+        double y;
+
         // Convert operand 'a' to double if it's Integer or Double
         if (a instanceof Integer) {
             x = (Integer) a;
-            mipsGenerator.loadRegister(reg1, a);  // Load operand a (integer) into reg1
         } else if (a instanceof Double) {
             x = (Double) a;
-            mipsGenerator.loadRegister(reg1, a);  // Load operand a (double) into reg1
         } else {
             throw new IllegalArgumentException("Unsupported data type for operand a. Only Integer and Double are supported.");
         }
@@ -141,10 +318,8 @@ public class Evaluator {
         // Convert operand 'b' to double if it's Integer or Double
         if (b instanceof Integer) {
             y = (Integer) b;
-            mipsGenerator.loadRegister(reg2, b);  // Load operand b (integer) into reg2
         } else if (b instanceof Double) {
             y = (Double) b;
-            mipsGenerator.loadRegister(reg2, b);  // Load operand b (double) into reg2
         } else {
             throw new IllegalArgumentException("Unsupported data type for operand b. Only Integer and Double are supported.");
         }
@@ -154,31 +329,22 @@ public class Evaluator {
         switch (op) {
             case '+':
                 result = x + y;
-                mipsGenerator.mipsAdd(reg1, reg2,regResult);
                 break;
             case '-':
                 result = x - y;
-                mipsGenerator.mipsSub(reg1, reg2,regResult);
                 break;
             case '*':
                 result = x * y;
-                mipsGenerator.mipsMul(reg1, reg2,regResult);
                 break;
             case '/':
                 if (y == 0) throw new ArithmeticException("Cannot divide by zero.");
                 result = x / y;
-                mipsGenerator.mipsDiv(reg1, reg2,regResult);
                 break;
             default:
-                System.out.println("Unsupported operator: " +op);
+                out.println("Unsupported operator: " +op);
                 throw new IllegalArgumentException("Unsupported operator: " + op);
         }
 
-        // Free the registers after use
-        mipsGenerator.freeRegister(reg1);
-        mipsGenerator.freeRegister(reg2);
-        mipsGenerator.freeRegister(regResult);
-
         // Store the result as the correct type in the literal table
         if (a instanceof Integer && b instanceof Integer) {
             return (int) result;  // Return as Integer if both operands were Integer
@@ -188,6 +354,39 @@ public class Evaluator {
         return result;  // Otherwise, return as Double
     }
 
+    // The instruction for an operator, whose operands calculate has already checked
+    private void emitOperation(char op, String reg1, String reg2, String regResult) {
+        switch (op) {
+            case '+':
+                mipsGenerator.mipsAdd(reg1, reg2, regResult);
+                break;
+            case '-':
+                mipsGenerator.mipsSub(reg1, reg2, regResult);
+                break;
+            case '*':
+                mipsGenerator.mipsMul(reg1, reg2, regResult);
+                break;
+            default:
+                mipsGenerator.mipsDiv(reg1, reg2, regResult);
+                break;
+        }
+    }
+
+    // An operand of an expression: its value, and the variable or register holding it at run time
+    private static final class Operand {
+        final Object value;
+        final boolean known;    // Known when the program is compiled
+        final String variable;  // The variable it was read from, or null
+        final String register;  // The register an emitted operation left it in, or null
+
+        Operand(Object value, boolean known, String variable, String register) {
+            this.value = value;
+            this.known = known;
+            this.variable = variable;
+            this.register = register;
+        }
+    }
+
     /**********************************************************
      * METHOD: precedence(char op)                         *
      * DESCRIPTION: Returns the precedence of the given operator
@@ -256,19 +455,19 @@ public class Evaluator {
         String operator = conditionTokens[1].trim();
         String rightOperand = conditionTokens[2].trim();
 
-        System.out.println("Evaluating condition: " + leftOperand + " " + operator + " " + rightOperand);
+        out.println("Evaluating condition: " + leftOperand + " " + operator + " " + rightOperand);
 
         // Get the values of the operands from the SymbolTable or as literals
-        Object leftValue = getValueFromOperand(leftOperand);
-        Object rightValue = getValueFromOperand(rightOperand);
+        Object leftValue = getValueFromOperand(leftOperand, leftOperandSite);
+        Object rightValue = getValueFromOperand(rightOperand, rightOperandSite);
 
         // Handle null values in operands
         if (leftValue == null || rightValue == null) {
             throw new Exception("One or both operands are null: " + leftOperand + ", " + rightOperand);
         }
 
-        System.out.println("Left Operand Value: " + leftValue + " (type: " + leftValue.getClass().getSimpleName() + ")");
-        System.out.println("Right Operand Value: " + rightValue + " (type: " + rightValue.getClass().getSimpleName() + ")");
+        out.println("Left Operand Value: " + leftValue + " (type: " + leftValue.getClass().getSimpleName() + ")");
+        out.println("Right Operand Value: " + rightValue + " (type: " + rightValue.getClass().getSimpleName() + ")");
 
         // Check for valid operand types
         if (!(leftValue instanceof Integer || leftValue instanceof Double || leftValue instanceof Boolean) ||
@@ -328,22 +527,22 @@ public class Evaluator {
     private boolean evaluateNumericCondition(double left, double right, String operator) throws Exception {
         switch (operator) {
             case ">=":
-                System.out.println("Evaluating >=: " + (left >= right));
+                out.println("Evaluating >=: " + (left >= right));
                 return left >= right;
             case "<=":
-                System.out.println("Evaluating <=: " + (left <= right));
+                out.println("Evaluating <=: " + (left <= right));
                 return left <= right;
             case ">":
-                System.out.println("Evaluating >: " + (left > right));
+                out.println("Evaluating >: " + (left > right));
                 return left > right;
             case "<":
-                System.out.println("Evaluating <: " + (left < right));
+                out.println("Evaluating <: " + (left < right));
                 return left < right;
             case "==":
-                System.out.println("Evaluating ==: " + (left == right));
+                out.println("Evaluating ==: " + (left == right));
                 return left == right;
             case "!=":
-                System.out.println("Evaluating !=: " + (left != right));
+                out.println("Evaluating !=: " + (left != right));
                 return left != right;
             default:
                 throw new Exception("Unsupported operator: " + operator);
@@ -380,11 +579,15 @@ public class Evaluator {
      *      Throws an Exception if the operand is invalid or cannot be resolved
      **********************************************************/
     public Object getValueFromOperand(String operand) throws Exception {
+        return getValueFromOperand(operand, operandSite);
+    }
+
+    private Object getValueFromOperand(String operand, SymbolTable.LookupCache site) throws Exception {
         // Check if the operand is a variable in the SymbolTable
-        if (symbolTable.containsVariable(operand)) {
-            Object value = symbolTable.get(operand);
+        if (symbolTable.containsVariable(site, operand)) {
+            Object value = symbolTable.get(site, operand);
             if (value != null) {
-                System.out.println("Found variable: " + operand + " with value: " + value + " (type: " + value.getClass().getSimpleName() + ")");
+                out.println("Found variable: " + operand + " with value: " + value + " (type: " + value.getClass().getSimpleName() + ")");
                 return value;
             } else {
                 throw new Exception("Variable " + operand + " exists in SymbolTable but has no assigned value.");
@@ -394,18 +597,18 @@ public class Evaluator {
         // Check if the operand is a literal in the LiteralTable
         Object literalValue = literalTable.getLiteralValue(operand);
         if (literalValue != null) {
-            System.out.println("Found literal: " + operand + " with value: " + literalValue + " (type: " + literalValue.getClass().getSimpleName() + ")");
+            out.println("Found literal: " + operand + " with value: " + literalValue + " (type: " + literalValue.getClass().getSimpleName() + ")");
             return literalValue;
         }
 
         // Attempt to parse the operand directly as an integer or double
         if (isInteger(operand)) {
             int intValue = Integer.parseInt(operand);
-            System.out.println("Parsed operand as Integer: " + intValue);
+            out.println("Parsed operand as Integer: " + intValue);
             return intValue;
         } else if (isDouble(operand)) {
             double doubleValue = Double.parseDouble(operand);
-            System.out.println("Parsed operand as Double: " + doubleValue);
+            out.println("Parsed operand as Double: " + doubleValue);
             return doubleValue;
         }
 
@@ -414,8 +617,8 @@ public class Evaluator {
     }
 
     public void evaluateIncrementOrDecrement(String operation, String variableName) throws Exception {
-        System.out.println("Evaluating operation: " + operation + " on variable: " + variableName);  // Debug print
-        Integer varId = symbolTable.getIdByName(variableName);
+        out.println("Evaluating operation: " + operation + " on variable: " + variableName);  // Debug print
+        Integer varId = symbolTable.getIdByName(incrementSite, variableName);
 
         if (varId == null) {
             throw new IllegalArgumentException("Variable '" + variableName + "' is not declared in the symbol table.");
@@ -433,7 +636,8 @@ public class Evaluator {
         }
 
         // Update the symbol table
-        symbolTable.updateValue(variableName, currentValue);
+        symbolTable.updateValue(incrementSite, variableName, currentValue);
+        recordValue(variableName, false); // A loop counter: the loop runs as many times as the program says
     }
 
 }
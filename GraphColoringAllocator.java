@@ -0,0 +1,299 @@
+/*******************************************************************
+ * GraphColoringAllocator Class                                    *
+ *                                                                 *
+ * PROGRAMMER: Emily Culp                                          *
+ * COURSE: CS340 - Programming Language Design                     *
+ * DATE: 12/10/2024                                                *
+ * REQUIREMENT: Final - Compiler                                   *
+ *                                                                 *
+ * DESCRIPTION:                                                    *
+ * The GraphColoringAllocator class assigns registers the Chaitin- *
+ * Briggs way. Two values interfere when one is written while the  *
+ * other is live; the interference graph is kept as a triangular   *
+ * bit matrix, for the "do these interfere" test, and an adjacency *
+ * list per value. A move between two values that do not           *
+ * interfere is coalesced when the joined value has fewer than K   *
+ * neighbors of K or more edges (Briggs' test, K being the 18      *
+ * registers), so the move becomes a move of a register to itself  *
+ * and is removed. The graph is then simplified: values with fewer *
+ * than K neighbors are taken out one at a time, and when none is  *
+ * left the one cheapest to spill is taken out anyway. Values are  *
+ * colored in the reverse order; a value taken out optimistically  *
+ * is only spilled if its neighbors really use every register.     *
+ * Constants are the cheapest values to spill, since li can load   *
+ * them again without touching memory.                             *
+ *                                                                 *
+ * It is slower than LinearScanAllocator but uses fewer registers  *
+ * and moves, so it is meant for code compiled once and run many   *
+ * times. The matrix needs V * V / 2 bits for V values, so code    *
+ * with more than MAX_VALUES values is left to the linear scan.    *
+ *                                                                 *
+ * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean  *
+ * Zeller.                                                         *
+ *                                                                 *
+ * CREDITS: This code was written with the help of ChatGPT.        *
+ *******************************************************************/
+
+import java.util.Arrays;
+
+public class GraphColoringAllocator extends RegisterAllocator {
+    public static final int MAX_VALUES = 23_000; // About 32 MB of matrix
+    private static final int UNCOLORED = -2;
+
+    private int valueCount;
+    private long[] matrix;
+    private int[][] neighbors;
+    private int[] neighborCounts;
+    private int[] degrees;
+    private int[] aliases; // The value each coalesced value was joined into
+    private int movesCoalesced;
+    private boolean fellBack; // Too many values; the linear scan assigned them
+
+    public GraphColoringAllocator(MipsCode code) {
+        super(code);
+    }
+
+    @Override
+    public String getName() {
+        return "Graph coloring";
+    }
+
+    @Override
+    protected int[] assign(LiveRanges ranges) {
+        valueCount = ranges.getValueCount();
+        movesCoalesced = 0; // Spill code is allocated again from the start
+        if (valueCount > MAX_VALUES) {
+            fellBack = true;
+            return assign(new LinearScanAllocator(code), ranges);
+        }
+        build(ranges);
+        coalesce(ranges);
+        int[] colors = color(ranges);
+
+        int[] assigned = new int[valueCount];
+        for (int value = 0; value < valueCount; value++) {
+            assigned[value] = colors[find(value)];
+        }
+        return assigned;
+    }
+
+    // Builds the interference graph, walking each block backward from the values live out of it
+    private void build(LiveRanges ranges) {
+        matrix = new long[(int) ((((long) valueCount * (valueCount - 1)) / 2 + 63) >>> 6)];
+        neighbors = new int[valueCount][];
+        neighborCounts = new int[valueCount];
+        degrees = new int[valueCount];
+        aliases = new int[valueCount];
+        for (int value = 0; value < valueCount; value++) {
+            aliases[value] = value;
+        }
+
+        ControlFlowGraph graph = ranges.getGraph();
+        for (int block = 0; block < graph.size(); block++) {
+            long[] live = ranges.getLiveOut(block);
+            for (int i = graph.getEnd(block) - 1; i >= graph.getStart(block); i--) {
+                int written = ranges.isDefinition(i, 0) ? ranges.getValue(i, 0) : -1;
+                if (written >= 0) {
+                    // A move does not make its target interfere with its source
+                    int source = isRegisterMove(code, i) ? ranges.getValue(i, 1) : -1;
+                    for (int word = 0; word < live.length; word++) {
+                        for (long bits = live[word]; bits != 0; bits &= bits - 1) {
+                            int value = (word << 6) + Long.numberOfTrailingZeros(bits);
+                            if (value != written && value != source) {
+                                addEdge(written, value);
+                            }
+                        }
+                    }
+                    live[written >>> 6] &= ~(1L << written);
+                }
+                for (int operand = 0; operand < 3; operand++) {
+                    int value = ranges.getValue(i, operand);
+                    if (value >= 0 && !ranges.isDefinition(i, operand)) {
+                        live[value >>> 6] |= 1L << value;
+                    }
+                }
+            }
+        }
+    }
+
+    private long bit(int a, int b) {
+        int high = Math.max(a, b);
+        int low = Math.min(a, b);
+        return (long) high * (high - 1) / 2 + low;
+    }
+
+    private boolean interferes(int a, int b) {
+        long bit = bit(a, b);
+        return (matrix[(int) (bit >>> 6)] & (1L << bit)) != 0;
+    }
+
+    private void addEdge(int a, int b) {
+        long bit = bit(a, b);
+        int word = (int) (bit >>> 6);
+        if ((matrix[word] & (1L << bit)) == 0) {
+            matrix[word] |= 1L << bit;
+            addNeighbor(a, b);
+            addNeighbor(b, a);
+        }
+    }
+
+    private void addNeighbor(int value, int neighbor) {
+        if (neighbors[value] == null) {
+            neighbors[value] = new int[4];
+        } else if (neighborCounts[value] == neighbors[value].length) {
+            neighbors[value] = Arrays.copyOf(neighbors[value], neighborCounts[value] * 2);
+        }
+        neighbors[value][neighborCounts[value]++] = neighbor;
+        degrees[value]++;
+    }
+
+    private int find(int value) {
+        while (aliases[value] != value) {
+            aliases[value] = aliases[aliases[value]];
+            value = aliases[value];
+        }
+        return value;
+    }
+
+    private boolean isJoined(int value) {
+        return aliases[value] != value;
+    }
+
+    // Joins the two sides of moves until no move passes Briggs' test
+    private void coalesce(LiveRanges ranges) {
+        int[] seen = new int[valueCount];
+        int stamp = 0;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < code.size(); i++) {
+                if (!isRegisterMove(code, i) || ranges.getValue(i, 0) < 0 || ranges.getValue(i, 1) < 0) {
+                    continue;
+                }
+                int target = find(ranges.getValue(i, 0));
+                int source = find(ranges.getValue(i, 1));
+                if (target == source || interferes(target, source)) {
+                    continue;
+                }
+
+                // Briggs: fewer than K neighbors of significant degree
+                stamp++;
+                int significant = 0;
+                for (int value : new int[] {target, source}) {
+                    for (int n = 0; n < neighborCounts[value]; n++) {
+                        int neighbor = neighbors[value][n];
+                        if (!isJoined(neighbor) && seen[neighbor] != stamp) {
+                            seen[neighbor] = stamp;
+                            if (degrees[neighbor] >= REGISTER_COUNT) {
+                                significant++;
+                            }
+                        }
+                    }
+                }
+                if (significant >= REGISTER_COUNT) {
+                    continue;
+                }
+
+                for (int n = 0; n < neighborCounts[source]; n++) {
+                    int neighbor = neighbors[source][n];
+                    if (!isJoined(neighbor)) {
+                        addEdge(target, neighbor);
+                        degrees[neighbor]--; // It no longer neighbors the source
+                    }
+                }
+                aliases[source] = target;
+                movesCoalesced++;
+                changed = true;
+            }
+        }
+    }
+
+    private int[] color(LiveRanges ranges) {
+        // The cost of spilling a value is how often it is read or written, twice over unless li can load it again
+        int[] costs = new int[valueCount];
+        for (int i = 0; i < code.size(); i++) {
+            for (int operand = 0; operand < 3; operand++) {
+                int value = ranges.getValue(i, operand);
+                if (value >= 0) {
+                    costs[find(value)] += isRematerializable(value) ? 1 : 2;
+                }
+            }
+        }
+        for (int value = 0; value < valueCount; value++) {
+            if (isSpillCode(value)) {
+                costs[find(value)] = Integer.MAX_VALUE; // Never chosen while another value is left
+            }
+        }
+
+        int[] degree = degrees.clone();
+        boolean[] removed = new boolean[valueCount];
+        int[] stack = new int[valueCount];
+        int stackSize = 0;
+        int[] lowDegree = new int[valueCount];
+        int lowCount = 0;
+        int remaining = 0;
+        for (int value = 0; value < valueCount; value++) {
+            if (!isJoined(value)) {
+                remaining++;
+                if (degree[value] < REGISTER_COUNT) {
+                    lowDegree[lowCount++] = value;
+                }
+            }
+        }
+
+        while (remaining > 0) {
+            int value = -1;
+            while (lowCount > 0 && value < 0) {
+                int candidate = lowDegree[--lowCount];
+                if (!removed[candidate]) {
+                    value = candidate;
+                }
+            }
+            if (value < 0) {
+                // Every value left has K or more neighbors: take out the cheapest to spill
+                double best = Double.MAX_VALUE;
+                for (int candidate = 0; candidate < valueCount; candidate++) {
+                    if (!removed[candidate] && !isJoined(candidate)
+                            && (double) costs[candidate] / degree[candidate] < best) {
+                        best = (double) costs[candidate] / degree[candidate];
+                        value = candidate;
+                    }
+                }
+            }
+
+            removed[value] = true;
+            stack[stackSize++] = value;
+            remaining--;
+            for (int n = 0; n < neighborCounts[value]; n++) {
+                int neighbor = neighbors[value][n];
+                if (!isJoined(neighbor) && !removed[neighbor] && --degree[neighbor] == REGISTER_COUNT - 1) {
+                    lowDegree[lowCount++] = neighbor;
+                }
+            }
+        }
+
+        int[] colors = new int[valueCount];
+        Arrays.fill(colors, UNCOLORED);
+        long all = allRegisters();
+        while (stackSize > 0) {
+            int value = stack[--stackSize];
+            long taken = 0;
+            for (int n = 0; n < neighborCounts[value]; n++) {
+                int neighbor = neighbors[value][n];
+                if (!isJoined(neighbor) && colors[neighbor] >= 0) {
+                    taken |= 1L << colors[neighbor];
+                }
+            }
+            colors[value] = pick(all & ~taken, isLongLived(value));
+        }
+        return colors;
+    }
+
+    public int getMovesCoalesced() {
+        return movesCoalesced;
+    }
+
+    public boolean isFallBack() {
+        return fellBack;
+    }
+}
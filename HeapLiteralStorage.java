@@ -0,0 +1,60 @@
+/*******************************************************************
+ * HeapLiteralStorage Class                                        *
+ *                                                                 *
+ * PROGRAMMER: Emily Culp                                          *
+ * COURSE: CS340 - Programming Language Design                     *
+ * DATE: 12/10/2024                                                *
+ * REQUIREMENT: Final - Compiler                                   *
+ *                                                                 *
+ * DESCRIPTION:                                                    *
+ * The HeapLiteralStorage class is the default storage for a       *
+ * literal table. The values are kept in an array on the Java      *
+ * heap, as the canonical instances from an InternPool so that     *
+ * programs compiled side by side share one copy of each.          *
+ *                                                                 *
+ * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean  *
+ * Zeller.                                                         *
+ *                                                                 *
+ * CREDITS: This code was written with the help of ChatGPT.        *
+ *******************************************************************/
+
+import java.util.Arrays;
+import java.util.Objects;
+
+public class HeapLiteralStorage implements LiteralStorage {
+    private final InternPool internPool;
+    private Object[] values = new Object[16];
+    private int size;
+
+    public HeapLiteralStorage() {
+        this(InternPool.shared());
+    }
+
+    public HeapLiteralStorage(InternPool internPool) {
+        this.internPool = internPool;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int add(Object value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size] = internPool.intern(value);
+        return size++;
+    }
+
+    @Override
+    public Object get(int position) {
+        return values[position];
+    }
+
+    @Override
+    public boolean matches(int position, Object value) {
+        return Objects.equals(values[position], value);
+    }
+}
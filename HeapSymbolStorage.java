@@ -0,0 +1,196 @@
+/*******************************************************************
+ * HeapSymbolStorage Class                                         *
+ *                                                                 *
+ * PROGRAMMER: Emily Culp                                          *
+ * COURSE: CS340 - Programming Language Design                     *
+ * DATE: 12/10/2024                                                *
+ * REQUIREMENT: Final - Compiler                                   *
+ *                                                                 *
+ * DESCRIPTION:                                                    *
+ * The HeapSymbolStorage class is the default storage for a        *
+ * SymbolTable. Each field is a column in its own array on the     *
+ * Java heap, one slot per symbol. The names are the canonical     *
+ * copies from an InternPool, and the array of object values is    *
+ * only allocated once a string or other object is stored.         *
+ *                                                                 *
+ * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean  *
+ * Zeller.                                                         *
+ *                                                                 *
+ * CREDITS: This code was written with the help of ChatGPT.        *
+ *******************************************************************/
+
+import java.util.Arrays;
+
+public class HeapSymbolStorage implements SymbolStorage {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final InternPool internPool;
+    private int[] ids;
+    private String[] names;
+    private int[] types;
+    private int[] scopes;
+    private int[] registers;
+    private long[] values;
+    private byte[] valueTags;
+    private Object[] objects; // Only allocated once an object value is stored
+    private int[] levels;
+    private int[] shadowed;
+    private int[] nextInScope;
+
+    public HeapSymbolStorage() {
+        this(InternPool.shared());
+    }
+
+    public HeapSymbolStorage(InternPool internPool) {
+        this.internPool = internPool;
+        ids = new int[INITIAL_CAPACITY];
+        names = new String[INITIAL_CAPACITY];
+        types = new int[INITIAL_CAPACITY];
+        scopes = new int[INITIAL_CAPACITY];
+        registers = new int[INITIAL_CAPACITY];
+        values = new long[INITIAL_CAPACITY];
+        valueTags = new byte[INITIAL_CAPACITY];
+        levels = new int[INITIAL_CAPACITY];
+        shadowed = new int[INITIAL_CAPACITY];
+        nextInScope = new int[INITIAL_CAPACITY];
+    }
+
+    @Override
+    public int capacity() {
+        return ids.length;
+    }
+
+    @Override
+    public void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        names = Arrays.copyOf(names, capacity);
+        types = Arrays.copyOf(types, capacity);
+        scopes = Arrays.copyOf(scopes, capacity);
+        registers = Arrays.copyOf(registers, capacity);
+        values = Arrays.copyOf(values, capacity);
+        valueTags = Arrays.copyOf(valueTags, capacity);
+        levels = Arrays.copyOf(levels, capacity);
+        shadowed = Arrays.copyOf(shadowed, capacity);
+        nextInScope = Arrays.copyOf(nextInScope, capacity);
+        if (objects != null) {
+            objects = Arrays.copyOf(objects, capacity);
+        }
+    }
+
+    @Override
+    public int getId(int slot) {
+        return ids[slot];
+    }
+
+    @Override
+    public void setId(int slot, int id) {
+        ids[slot] = id;
+    }
+
+    @Override
+    public String getName(int slot) {
+        return names[slot];
+    }
+
+    @Override
+    public void setName(int slot, String name) {
+        names[slot] = internPool.intern(name);
+    }
+
+    @Override
+    public boolean nameEquals(int slot, String name) {
+        return names[slot].equals(name);
+    }
+
+    @Override
+    public int nameHash(int slot) {
+        return names[slot].hashCode();
+    }
+
+    @Override
+    public int getType(int slot) {
+        return types[slot];
+    }
+
+    @Override
+    public void setType(int slot, int code) {
+        types[slot] = code;
+    }
+
+    @Override
+    public int getScope(int slot) {
+        return scopes[slot];
+    }
+
+    @Override
+    public void setScope(int slot, int code) {
+        scopes[slot] = code;
+    }
+
+    @Override
+    public int getRegister(int slot) {
+        return registers[slot];
+    }
+
+    @Override
+    public void setRegister(int slot, int code) {
+        registers[slot] = code;
+    }
+
+    @Override
+    public byte getValueTag(int slot) {
+        return valueTags[slot];
+    }
+
+    @Override
+    public long getValueBits(int slot) {
+        return values[slot];
+    }
+
+    @Override
+    public Object getValueObject(int slot) {
+        return objects != null ? objects[slot] : null;
+    }
+
+    @Override
+    public void setValue(int slot, byte tag, long bits, Object object) {
+        valueTags[slot] = tag;
+        values[slot] = bits;
+        if (object != null && objects == null) {
+            objects = new Object[ids.length];
+        }
+        if (objects != null) {
+            objects[slot] = object;
+        }
+    }
+
+    @Override
+    public int getLevel(int slot) {
+        return levels[slot];
+    }
+
+    @Override
+    public void setLevel(int slot, int level) {
+        levels[slot] = level;
+    }
+
+    @Override
+    public int getShadowed(int slot) {
+        return shadowed[slot];
+    }
+
+    @Override
+    public void setShadowed(int slot, int shadowed) {
+        this.shadowed[slot] = shadowed;
+    }
+
+    @Override
+    public int getNextInScope(int slot) {
+        return nextInScope[slot];
+    }
+
+    @Override
+    public void setNextInScope(int slot, int next) {
+        nextInScope[slot] = next;
+    }
+}
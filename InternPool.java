@@ -0,0 +1,161 @@
+/*******************************************************************
+ * InternPool Class                                                *
+ *                                                                 *
+ * PROGRAMMER: Emily Culp                                          *
+ * COURSE: CS340 - Programming Language Design                     *
+ * DATE: 12/10/2024                                                *
+ * REQUIREMENT: Final - Compiler                                   *
+ *                                                                 *
+ * DESCRIPTION:                                                    *
+ * The InternPool class gives every distinct identifier name and   *
+ * literal value one canonical instance, shared by all the         *
+ * compilations running in the process. The symbol and literal     *
+ * tables of each CompilationContext keep the canonical instances, *
+ * so a name used by a thousand programs in a batch is kept on the *
+ * heap once. Interning saves memory only: the tables still find a *
+ * name by its hash code and equals(), which stops at the          *
+ * reference check only when the name looked up is itself the      *
+ * canonical instance. The pool hands out no IDs; the IDs in the   *
+ * listings are the ones each compilation gives its own symbols    *
+ * and literals.                                                   *
+ *                                                                 *
+ * The pool is a ConcurrentHashMap. Looking up a value that is     *
+ * already interned takes no lock; adding a new one locks only the *
+ * one bin it lands in. The pool only holds weak references to the *
+ * canonical instances, and an entry is dropped once the value has *
+ * been collected, so a long-lived process such as CompileDaemon   *
+ * keeps the names and literals of the programs it is compiling,   *
+ * not of every program it has compiled. A value interned again    *
+ * after it was dropped gets a new canonical instance, which is    *
+ * equal to the old one.                                           *
+ *                                                                 *
+ * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean  *
+ * Zeller.                                                         *
+ *                                                                 *
+ * CREDITS: This code was written with the help of ChatGPT.        *
+ *******************************************************************/
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class InternPool {
+    private static final InternPool SHARED = new InternPool();
+
+    private final ConcurrentHashMap<Object, Canonical> pool = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+
+    /**********************************************************
+     * METHOD: shared()                                         *
+     * DESCRIPTION: Returns the pool shared by every            *
+     *              compilation in this process.                *
+     * RETURN VALUE: InternPool - the shared pool.              *
+     **********************************************************/
+    public static InternPool shared() {
+        return SHARED;
+    }
+
+    /**********************************************************
+     * METHOD: intern(String name)                              *
+     * DESCRIPTION: Returns the canonical instance of a name.   *
+     * PARAMETERS: String name - the name.                      *
+     * RETURN VALUE: String - the instance equal to it that is  *
+     *              kept in the pool.                           *
+     **********************************************************/
+    public String intern(String name) {
+        return (String) lookup(name);
+    }
+
+    /**********************************************************
+     * METHOD: intern(Object value)                             *
+     * DESCRIPTION: Returns the canonical instance of a literal *
+     *              value. null is returned as is.              *
+     * PARAMETERS: Object value - the value.                    *
+     * RETURN VALUE: Object - the instance kept in the pool.    *
+     **********************************************************/
+    public Object intern(Object value) {
+        return value == null ? null : lookup(value);
+    }
+
+    // The number of values in the pool, counting those collected since the last lookup
+    public int size() {
+        return pool.size();
+    }
+
+    private Object lookup(Object value) {
+        removeCollected();
+        Canonical canonical = pool.get(new Probe(value));  // Lock-free for values already in the pool
+        Object interned = (canonical != null) ? canonical.get() : null;
+        while (interned == null) {
+            Canonical added = new Canonical(value, collected);
+            canonical = pool.putIfAbsent(added, added);
+            interned = (canonical != null) ? canonical.get() : value;
+            if (interned == null) {
+                pool.remove(canonical, canonical); // Collected after it matched, try again
+            }
+        }
+        return interned;
+    }
+
+    // Drops the entries whose values no table uses any more
+    private void removeCollected() {
+        for (Reference<?> reference = collected.poll(); reference != null; reference = collected.poll()) {
+            pool.remove(reference, reference);
+        }
+    }
+
+    /**********************************************************
+     * CLASS: Canonical                                         *
+     * DESCRIPTION: A weak reference to the canonical instance  *
+     *              of a value, used as both the key and the    *
+     *              value of its entry. Two are equal when they *
+     *              are the same reference or their values are  *
+     *              equal and not yet collected.                *
+     **********************************************************/
+    private static final class Canonical extends WeakReference<Object> {
+        private final int hash;
+
+        private Canonical(Object value, ReferenceQueue<Object> queue) {
+            super(value, queue);
+            this.hash = value.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            Object value = get();
+            return value != null && other instanceof Canonical && value.equals(((Canonical) other).get());
+        }
+    }
+
+    /**********************************************************
+     * CLASS: Probe                                             *
+     * DESCRIPTION: Looks a value up in the pool without        *
+     *              making a weak reference to it.              *
+     **********************************************************/
+    private static final class Probe {
+        private final Object value;
+
+        private Probe(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public int hashCode() {
+            return value.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Canonical && value.equals(((Canonical) other).get());
+        }
+    }
+}
@@ -20,13 +20,15 @@
  *******************************************************************/
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 public class KeywordTable {
 
     private final Map<String, Integer> keywordMap;  // Maps keyword to token ID
-    private Map<String, Token> tokens;  // Stores tokens associated with keywords
+    private final Map<String, Token> tokens;  // Stores tokens associated with keywords
+    private static final KeywordTable STANDARD = new KeywordTable(new KeywordTable());  // Shared read-only copy
 
     /**********************************************************
      * METHOD: KeywordTable() *
@@ -41,6 +43,31 @@ public class KeywordTable {
         tokens = new HashMap<>();
     }
 
+    /**********************************************************
+     * METHOD: KeywordTable(KeywordTable source) *
+     * DESCRIPTION: Creates a read-only copy of another table. The copy keeps the iteration *
+     *              order of the source, and any attempt to add to it throws an *
+     *              UnsupportedOperationException. *
+     * PARAMETERS: KeywordTable source - the table to copy. *
+     * RETURN VALUE: none *
+     **********************************************************/
+    private KeywordTable(KeywordTable source) {
+        keywordMap = Collections.unmodifiableMap(new HashMap<>(source.keywordMap));
+        tokens = Collections.unmodifiableMap(new HashMap<>(source.tokens));
+    }
+
+    /**********************************************************
+     * METHOD: standard() *
+     * DESCRIPTION: Returns the shared, read-only table of the predefined keywords. It is *
+     *              built once per JVM and can be used by any number of compilations at once, *
+     *              so a new run does not have to rebuild it. *
+     * PARAMETERS: none *
+     * RETURN VALUE: KeywordTable - the shared keyword table. *
+     **********************************************************/
+    public static KeywordTable standard() {
+        return STANDARD;
+    }
+
     /**********************************************************
      * METHOD: initializeTable() *
      * DESCRIPTION: Initializes the keyword map with predefined keywords and their token IDs. *
@@ -0,0 +1,102 @@
+/*******************************************************************
+ * LinearScanAllocator Class                                       *
+ *                                                                 *
+ * PROGRAMMER: Emily Culp                                          *
+ * COURSE: CS340 - Programming Language Design                     *
+ * DATE: 12/10/2024                                                *
+ * REQUIREMENT: Final - Compiler                                   *
+ *                                                                 *
+ * DESCRIPTION:                                                    *
+ * The LinearScanAllocator class gives every value in the          *
+ * generated MIPS code a real register, in one pass over the live  *
+ * intervals of LiveRanges sorted by where they start. A value     *
+ * keeps its register for its whole interval, and the register is  *
+ * free again once the interval ends. Values live across a block   *
+ * boundary or a syscall are put in $s0-$s7 first, the others in   *
+ * $t0-$t9. A value copied by a move from a value that dies there  *
+ * gets the same register when it is free, so the move goes away.  *
+ * When every register is taken, the value whose interval ends     *
+ * last is the one spilled, unless spill code made it.             *
+ *                                                                 *
+ * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean  *
+ * Zeller.                                                         *
+ *                                                                 *
+ * CREDITS: This code was written with the help of ChatGPT.        *
+ *******************************************************************/
+
+import java.util.Arrays;
+
+public class LinearScanAllocator extends RegisterAllocator {
+
+    public LinearScanAllocator(MipsCode code) {
+        super(code);
+    }
+
+    @Override
+    public String getName() {
+        return "Linear scan";
+    }
+
+    @Override
+    protected int[] assign(LiveRanges ranges) {
+        int valueCount = ranges.getValueCount();
+
+        // Order the values by the start of their intervals
+        long[] order = new long[valueCount];
+        for (int value = 0; value < valueCount; value++) {
+            order[value] = ((long) ranges.getStart(value) << 32) | value;
+        }
+        Arrays.sort(order);
+
+        int[] assigned = new int[valueCount];
+        int[] active = new int[REGISTER_COUNT];
+        int activeCount = 0;
+        long free = allRegisters();
+        for (long entry : order) {
+            int value = (int) entry;
+            int start = ranges.getStart(value);
+
+            // Expire the intervals that ended before this one starts; an instruction reads before it writes
+            boolean writtenAtStart = ranges.getValue(start, 0) == value && ranges.isDefinition(start, 0);
+            for (int i = activeCount - 1; i >= 0; i--) {
+                int end = ranges.getEnd(active[i]);
+                if (end < start || (end == start && writtenAtStart)) {
+                    free |= 1L << assigned[active[i]];
+                    active[i] = active[--activeCount];
+                }
+            }
+
+            int register = SPILLED;
+            if (writtenAtStart && code.getOpcode(start) == CodeGenerator.MOVE && ranges.getValue(start, 1) >= 0) {
+                int source = assigned[ranges.getValue(start, 1)];
+                if (source != SPILLED && (free & (1L << source)) != 0) {
+                    register = source; // The move becomes a move to itself
+                }
+            }
+            if (register == SPILLED) {
+                register = pick(free, isLongLived(value));
+            }
+            if (register == SPILLED) {
+                // Spill whichever of this value and the active ones is live the longest, but never spill code
+                int furthest = -1;
+                for (int i = 0; i < activeCount; i++) {
+                    if (!isSpillCode(active[i])
+                            && (furthest < 0 || ranges.getEnd(active[i]) > ranges.getEnd(active[furthest]))) {
+                        furthest = i;
+                    }
+                }
+                if (furthest < 0 || (!isSpillCode(value) && ranges.getEnd(active[furthest]) <= ranges.getEnd(value))) {
+                    assigned[value] = SPILLED;
+                    continue;
+                }
+                register = assigned[active[furthest]];
+                assigned[active[furthest]] = SPILLED;
+                active[furthest] = active[--activeCount];
+            }
+            free &= ~(1L << register);
+            assigned[value] = register;
+            active[activeCount++] = value;
+        }
+        return assigned;
+    }
+}
@@ -0,0 +1,48 @@
+/*******************************************************************
+ * LiteralStorage Interface                                        *
+ *                                                                 *
+ * PROGRAMMER: Emily Culp                                          *
+ * COURSE: CS340 - Programming Language Design                     *
+ * DATE: 12/10/2024                                                *
+ * REQUIREMENT: Final - Compiler                                   *
+ *                                                                 *
+ * DESCRIPTION:                                                    *
+ * The LiteralStorage interface holds the values of a literal      *
+ * table in the order they were added; the position of a value     *
+ * plus the table's first ID is its literal ID. HeapLiteralStorage *
+ * keeps the values as objects on the Java heap, and               *
+ * OffHeapLiteralStorage keeps them in fixed-width records outside *
+ * it. The ConstantPool finds values by content on top of either.  *
+ *                                                                 *
+ * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean  *
+ * Zeller.                                                         *
+ *                                                                 *
+ * CREDITS: This code was written with the help of ChatGPT.        *
+ *******************************************************************/
+
+public interface LiteralStorage {
+    int size();
+
+    /**********************************************************
+     * METHOD: add(Object value)                                *
+     * DESCRIPTION: Stores a value after the others.            *
+     * PARAMETERS: Object value - the literal.                  *
+     * RETURN VALUE: int - its position.                        *
+     **********************************************************/
+    int add(Object value);
+
+    /**********************************************************
+     * METHOD: get(int position)                                *
+     * RETURN VALUE: Object - the value at a position, boxed as *
+     *              it was added.                               *
+     **********************************************************/
+    Object get(int position);
+
+    /**********************************************************
+     * METHOD: matches(int position, Object value)              *
+     * DESCRIPTION: Compares the value at a position with a     *
+     *              value, without copying the stored one.      *
+     * RETURN VALUE: boolean - true if they are equal.          *
+     **********************************************************/
+    boolean matches(int position, Object value);
+}
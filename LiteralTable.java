@@ -14,6 +14,12 @@
  * based on their IDs. If the literal already exists, the same ID   *
  * will be returned to ensure consistency. This helps maintain      *
  * efficient tracking of literals during program execution.         *
+ * The literals are kept in a ConstantPool with a sub-pool for each *
+ * type, so a literal is found from its value or its ID in constant *
+ * time, and the table is printed in insertion order. Ints have     *
+ * their own overloads so an int literal is never boxed to be found.*
+ * The values are kept on the heap by default, or outside it with  *
+ * the compiler.offheap flag (see OffHeapLiteralStorage).           *
  *                                                                 *
  * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean   *
  * Zeller.                                                         *
@@ -21,50 +27,103 @@
  * CREDITS: This code was written with the help of ChatGPT.         *
  *******************************************************************/
 
+import java.io.PrintStream;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 public class LiteralTable{
-    private final Map<Integer, Object> literalTable = new HashMap<>();
-
-    private int nextLiteralID = 900;
+    public static final int FIRST_ID = 900; // IDs are handed out in order from here
+    private final ConstantPool pool;
 
     private Map<String, Token> tokens;
+    private final PrintStream out;
+    private Set<Object> lookups; // Values looked up while tracking, see trackLookups
 
     public LiteralTable(){
+        this(System.out);
+    }
+
+    public LiteralTable(PrintStream out){
+        this(out, new HeapLiteralStorage());
+    }
+
+    public LiteralTable(PrintStream out, LiteralStorage storage){
+        this(out, new ConstantPool(FIRST_ID, storage));
+    }
+
+    private LiteralTable(PrintStream out, ConstantPool pool){
+        this.out = out;
+        this.pool = pool;
         tokens = new HashMap<>();
     }
 
+    /**********************************************************
+     * METHOD: trackLookups(Set<Object> lookups)               *
+     * DESCRIPTION:                                            *
+     * Records every value that is added or looked up from now *
+     * on in the given set, so a caller can tell which literals*
+     * a statement depended on. Pass null to stop tracking.    *
+     **********************************************************/
+    public void trackLookups(Set<Object> lookups){
+        this.lookups = lookups;
+    }
+
     public int addLiteral(Object value){
-        if(!literalTable.containsValue(value)){
-            int literalID = nextLiteralID++;
-            literalTable.put(literalID, value);
-            System.out.println("Added literal with ID: " +literalID);
-            return literalID;
+        if(lookups != null){
+            lookups.add(value);
+        }
+        int size = pool.size();
+        int literalID = pool.intern(value);
+        return reportAdded(literalID, size);
+    }
+
+    public int addLiteral(int value){
+        if(lookups != null){
+            lookups.add(value);
+        }
+        int size = pool.size();
+        int literalID = pool.intern(value);
+        return reportAdded(literalID, size);
+    }
+
+    // Prints whether the literal was new, judging by whether the table grew
+    private int reportAdded(int literalID, int sizeBefore){
+        if(pool.size() > sizeBefore){
+            out.println("Added literal with ID: " +literalID);
         }else{
-            for(Map.Entry<Integer, Object> entry : literalTable.entrySet()){
-                if(entry.getValue().equals(value)){
-                    System.out.println("Literal already exists, returning ID: " +entry.getKey());
-                    return entry.getKey();
-                }
-            }
+            out.println("Literal already exists, returning ID: " +literalID);
         }
-        return -1;
+        return literalID;
     }
 
     public int getLiteralID(Object value){
-        for(Map.Entry<Integer, Object> entry : literalTable.entrySet()){
-            if(entry.getValue().equals(value)){
-                return entry.getKey();
-            }
+        if(lookups != null){
+            lookups.add(value);
         }
+        return pool.find(value);
+    }
 
-        return -1;
+    public int getLiteralID(int value){
+        if(lookups != null){
+            lookups.add(value);
+        }
+        return pool.find(value);
     }
 
     public boolean containsValue(Object value){
-        return literalTable.containsValue(value);
+        if(lookups != null){
+            lookups.add(value);
+        }
+        return pool.find(value) != ConstantPool.NOT_FOUND;
+    }
+
+    public boolean containsValue(int value){
+        if(lookups != null){
+            lookups.add(value);
+        }
+        return pool.find(value) != ConstantPool.NOT_FOUND;
     }
 
     public Object getLiteralValue(String operand) {
@@ -86,10 +145,33 @@ public class LiteralTable{
         }
     }
 
-    public Map<Integer, Object> getLiteralTable(){
-        return literalTable;
+    public int size(){
+        return pool.size();
     }
 
+    // Returns the ID of the literal at a position in insertion order
+    public int getIdAt(int position){
+        if(position < 0 || position >= pool.size()){
+            throw new IndexOutOfBoundsException("No literal at position " + position);
+        }
+        return FIRST_ID + position;
+    }
+
+    // Returns the value of a literal by ID, or null if there is none
+    public Object getValueById(int id){
+        return pool.get(id);
+    }
+
+
+    // Writes the table to a snapshot, see TableSnapshot
+    void writeSnapshot(TableSnapshot.Writer writer){
+        pool.writeSnapshot(writer);
+    }
+
+    // Restores a table written by writeSnapshot
+    static LiteralTable readSnapshot(TableSnapshot.Reader reader, PrintStream out){
+        return new LiteralTable(out, ConstantPool.readSnapshot(reader));
+    }
 
     /**********************************************************
      * METHOD: printTable()                                   *
@@ -100,10 +182,10 @@ public class LiteralTable{
      **********************************************************/
 
     public void printTable() {
-        System.out.println();
-        System.out.println("Literal Table:");
-        for (Map.Entry<Integer, Object> entry : literalTable.entrySet()) {
-            System.out.println("ID: " + entry.getKey() + ", Value: " + entry.getValue());
+        out.println();
+        out.println("Literal Table:");
+        for (int i = 0; i < pool.size(); i++) {
+            out.println("ID: " + getIdAt(i) + ", Value: " + pool.get(FIRST_ID + i));
         }
     }
 }
\ No newline at end of file
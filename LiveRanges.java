@@ -0,0 +1,347 @@
+/*******************************************************************
+ * LiveRanges Class                                                *
+ *                                                                 *
+ * PROGRAMMER: Emily Culp                                          *
+ * COURSE: CS340 - Programming Language Design                     *
+ * DATE: 12/10/2024                                                *
+ * REQUIREMENT: Final - Compiler                                   *
+ *                                                                 *
+ * DESCRIPTION:                                                    *
+ * The LiveRanges class works out which values the generated MIPS  *
+ * code keeps in registers and where each one is live, for the     *
+ * register allocators. The generator reuses a register name for   *
+ * many unrelated values, so the code is first split into values:  *
+ * every write to an allocatable register ($t0-$t9, $s0-$s7 or a   *
+ * virtual register) starts a value, and a read belongs to the     *
+ * value written last on the way to it. Where writes on different  *
+ * paths meet, their values are joined into one. A read with no    *
+ * write before it on some path reads the value the register held  *
+ * when the program started.                                       *
+ *                                                                 *
+ * The values live into and out of each basic block are found with *
+ * the usual backward data flow over bitsets, and each value gets  *
+ * a live interval: the first and last instruction, in code order, *
+ * at which it is live. A value live out of a block is live up to  *
+ * the start of the next block, so an interval ends at an          *
+ * instruction only if the value is last read there.               *
+ *                                                                 *
+ * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean  *
+ * Zeller.                                                         *
+ *                                                                 *
+ * CREDITS: This code was written with the help of ChatGPT.        *
+ *******************************************************************/
+
+import java.util.Arrays;
+
+public final class LiveRanges {
+    private static final int NONE = -1;
+
+    private final MipsCode code;
+    private final ControlFlowGraph graph;
+    private final int[] values; // The value of each operand, three per instruction, or NONE
+    private final int valueCount;
+    private final int[] registers; // The register each value is named by in the code
+    private final int[] starts;
+    private final int[] ends;
+    private final long[][] liveIn;
+    private final long[][] liveOut;
+
+    /**********************************************************
+     * CONSTRUCTOR: LiveRanges(ControlFlowGraph graph)        *
+     * DESCRIPTION: Splits the code of a graph into values    *
+     *              and computes their liveness.              *
+     **********************************************************/
+    public LiveRanges(ControlFlowGraph graph) {
+        this.graph = graph;
+        this.code = graph.getCode();
+        values = new int[code.size() * 3];
+        Arrays.fill(values, NONE);
+
+        // Number the registers that occur, and every write
+        int[] registerIndex = new int[0];
+        int registerCount = 0;
+        int definitions = 0;
+        for (int i = 0; i < code.size(); i++) {
+            for (int operand = 0; operand < 3; operand++) {
+                if (isRegisterOperand(i, operand)) {
+                    int register = code.getOperand(i, operand);
+                    if (register >= registerIndex.length) {
+                        int length = registerIndex.length;
+                        registerIndex = Arrays.copyOf(registerIndex, Math.max(register + 1, length * 2));
+                        Arrays.fill(registerIndex, length, registerIndex.length, NONE);
+                    }
+                    if (registerIndex[register] == NONE) {
+                        registerIndex[register] = registerCount++;
+                    }
+                    if (isDefinition(i, operand)) {
+                        values[i * 3] = definitions++; // Renumbered below
+                    }
+                }
+            }
+        }
+
+        // Values are the writes, then one per register for what it held at the start
+        int[] parents = new int[definitions + registerCount];
+        for (int value = 0; value < parents.length; value++) {
+            parents[value] = value;
+        }
+        int blocks = graph.size();
+        int[][] lastWrite = new int[blocks][registerCount];
+        for (int block = 0; block < blocks; block++) {
+            Arrays.fill(lastWrite[block], NONE);
+            for (int i = graph.getStart(block); i < graph.getEnd(block); i++) {
+                if (values[i * 3] != NONE) {
+                    lastWrite[block][registerIndex[code.getOperand(i, 0)]] = values[i * 3];
+                }
+            }
+        }
+
+        // Find the value each register holds on entry to each block, joining values that meet
+        int[][] entry = new int[blocks][registerCount];
+        for (int[] registersOnEntry : entry) {
+            Arrays.fill(registersOnEntry, NONE);
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int block = 0; block < blocks; block++) {
+                for (int register = 0; register < registerCount; register++) {
+                    int value = (block == 0) ? find(parents, definitions + register) : NONE;
+                    for (int predecessor : graph.getPredecessors(block)) {
+                        int reaching = (lastWrite[predecessor][register] != NONE)
+                                ? lastWrite[predecessor][register] : entry[predecessor][register];
+                        if (reaching == NONE) {
+                            continue;
+                        }
+                        value = (value == NONE) ? find(parents, reaching) : union(parents, value, reaching);
+                    }
+                    if (value == NONE) {
+                        continue;
+                    }
+                    int current = entry[block][register];
+                    if (current == NONE) {
+                        entry[block][register] = value;
+                        changed = true;
+                    } else if (find(parents, current) != find(parents, value)) {
+                        union(parents, current, value);
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        // Give every operand its value
+        int[] holding = new int[registerCount];
+        for (int block = 0; block < blocks; block++) {
+            for (int register = 0; register < registerCount; register++) {
+                int value = entry[block][register];
+                holding[register] = (value != NONE) ? value : definitions + register; // Unreachable from the start
+            }
+            for (int i = graph.getStart(block); i < graph.getEnd(block); i++) {
+                int written = values[i * 3];
+                for (int operand = 0; operand < 3; operand++) {
+                    if (isRegisterOperand(i, operand) && !isDefinition(i, operand)) {
+                        values[i * 3 + operand] = holding[registerIndex[code.getOperand(i, operand)]];
+                    }
+                }
+                if (written != NONE) {
+                    holding[registerIndex[code.getOperand(i, 0)]] = written;
+                }
+            }
+        }
+
+        // Number the joined values densely
+        int[] number = new int[parents.length];
+        Arrays.fill(number, NONE);
+        int count = 0;
+        int[] registersOfValues = new int[parents.length];
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != NONE) {
+                int root = find(parents, values[i]);
+                if (number[root] == NONE) {
+                    number[root] = count;
+                    registersOfValues[count++] = code.getOperand(i / 3, i % 3);
+                }
+                values[i] = number[root];
+            }
+        }
+        valueCount = count;
+        registers = Arrays.copyOf(registersOfValues, count);
+
+        // Liveness
+        int words = (valueCount + 63) >>> 6;
+        long[][] used = new long[blocks][words];
+        long[][] written = new long[blocks][words];
+        for (int block = 0; block < blocks; block++) {
+            for (int i = graph.getStart(block); i < graph.getEnd(block); i++) {
+                for (int operand = 0; operand < 3; operand++) {
+                    int value = values[i * 3 + operand];
+                    if (value != NONE && !isDefinition(i, operand) && !get(written[block], value)) {
+                        set(used[block], value);
+                    }
+                }
+                if (values[i * 3] != NONE && isDefinition(i, 0)) {
+                    set(written[block], values[i * 3]);
+                }
+            }
+        }
+        liveIn = new long[blocks][words];
+        liveOut = new long[blocks][words];
+        changed = true;
+        while (changed) {
+            changed = false;
+            for (int block = blocks - 1; block >= 0; block--) {
+                long[] out = liveOut[block];
+                for (int successor : graph.getSuccessors(block)) {
+                    for (int word = 0; word < words; word++) {
+                        out[word] |= liveIn[successor][word];
+                    }
+                }
+                long[] in = liveIn[block];
+                for (int word = 0; word < words; word++) {
+                    long value = used[block][word] | (out[word] & ~written[block][word]);
+                    if (value != in[word]) {
+                        in[word] = value;
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        // Live intervals
+        starts = new int[valueCount];
+        ends = new int[valueCount];
+        Arrays.fill(starts, Integer.MAX_VALUE);
+        Arrays.fill(ends, NONE);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != NONE) {
+                extend(values[i], i / 3, i / 3);
+            }
+        }
+        for (int block = 0; block < blocks; block++) {
+            for (int word = 0; word < words; word++) {
+                for (long bits = liveIn[block][word]; bits != 0; bits &= bits - 1) {
+                    int value = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    extend(value, graph.getStart(block), graph.getStart(block));
+                }
+                for (long bits = liveOut[block][word]; bits != 0; bits &= bits - 1) {
+                    int value = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    extend(value, graph.getEnd(block), graph.getEnd(block)); // Past the last read in the block
+                }
+            }
+        }
+    }
+
+    private void extend(int value, int start, int end) {
+        starts[value] = Math.min(starts[value], start);
+        ends[value] = Math.max(ends[value], end);
+    }
+
+    private static int find(int[] parents, int value) {
+        while (parents[value] != value) {
+            parents[value] = parents[parents[value]];
+            value = parents[value];
+        }
+        return value;
+    }
+
+    private static int union(int[] parents, int a, int b) {
+        int rootA = find(parents, a);
+        int rootB = find(parents, b);
+        if (rootA != rootB) {
+            parents[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+        }
+        return Math.min(rootA, rootB);
+    }
+
+    static boolean get(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    static void set(long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    /**********************************************************
+     * METHOD: isAllocatable(int register)                      *
+     * RETURN VALUE: boolean - true for $t0-$t9, $s0-$s7 and    *
+     *              the virtual registers, whose values the     *
+     *              allocators may move to other registers.     *
+     **********************************************************/
+    public static boolean isAllocatable(int register) {
+        return (register >= 8 && register <= 25) || MipsCode.isVirtual(register);
+    }
+
+    private boolean isRegisterOperand(int index, int operand) {
+        return isRegisterOperand(code, index, operand);
+    }
+
+    // An operand naming an allocatable register in an instruction, not in a comment or label
+    static boolean isRegisterOperand(MipsCode code, int index, int operand) {
+        CodeGenerator opcode = code.getOpcode(index);
+        return opcode != CodeGenerator.COMMENT && opcode != CodeGenerator.LABEL && opcode != CodeGenerator.TEXT
+                && code.getKind(index, operand) == MipsCode.REG && isAllocatable(code.getOperand(index, operand));
+    }
+
+    /**********************************************************
+     * METHOD: isDefinition(int index, int operand)             *
+     * RETURN VALUE: boolean - true if the instruction writes   *
+     *              that operand.                               *
+     **********************************************************/
+    public boolean isDefinition(int index, int operand) {
+        return isDefinition(code, index, operand);
+    }
+
+    static boolean isDefinition(MipsCode code, int index, int operand) {
+        if (operand != 0) {
+            return false;
+        }
+        CodeGenerator opcode = code.getOpcode(index);
+        return opcode.writesFirstOperand()
+                && (opcode != CodeGenerator.DIV || code.getKind(index, 2) != MipsCode.NONE);
+    }
+
+    public ControlFlowGraph getGraph() {
+        return graph;
+    }
+
+    public int getValueCount() {
+        return valueCount;
+    }
+
+    /**********************************************************
+     * METHOD: getValue(int index, int operand)                 *
+     * RETURN VALUE: int - the value an operand reads or        *
+     *              writes, or -1 if it is not an allocatable   *
+     *              register.                                   *
+     **********************************************************/
+    public int getValue(int index, int operand) {
+        return values[index * 3 + operand];
+    }
+
+    // The register a value is named by in the code
+    public int getRegister(int value) {
+        return registers[value];
+    }
+
+    public int getStart(int value) {
+        return starts[value];
+    }
+
+    public int getEnd(int value) {
+        return ends[value];
+    }
+
+    public boolean isLiveOut(int block, int value) {
+        return get(liveOut[block], value);
+    }
+
+    public boolean isLiveIn(int block, int value) {
+        return get(liveIn[block], value);
+    }
+
+    // A copy of the values live at the end of a block, as a bitset
+    public long[] getLiveOut(int block) {
+        return liveOut[block].clone();
+    }
+}
@@ -22,42 +22,44 @@
  *******************************************************************/
 
 
+import java.io.PrintStream;
+import java.io.PrintWriter;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class MIPSGenerator {
-    private Deque<String> tempRegisters;
-    private Deque<String> savedRegisters;
-    private Deque<String> tempFloatRegisters;
-    private Deque<String> savedFloatRegisters;
-    private Set<String> usedRegisters;
-    private Deque<String> freeRegisters;
-    private static List<String> mipsCode;  // List to store MIPS instructions
-    private static int labelCounter = 0;
-    private int stackPointer = 0x7fffe000;
-    private Map<String, Integer> stackMap;
+    private final RegisterFile registers = new RegisterFile(); // Every register pool, as bitmasks
+    private final MipsCode mipsCode;  // The generated instructions, rendered when printed
+    private final int optimizationLevel = MipsOptimizer.getLevel();
+    private final boolean virtualRegisters = optimizationLevel >= 1; // Temporaries are left to the allocator
+    private boolean optimized = false;
+    private int operationsFolded = 0;  // Operations the Evaluator computed without emitting code
+    private int constantsFolded = 0;   // The li instructions emitted for their results
+    private int labelCounter = 0;
+    private int stackPointer = 0x7fffe000;  // Set to the size of the stack frame once the code is allocated
+    private Map<String, Integer> stackMap;  // The stack slots of spilled values, as offsets from $sp
     private int stackOffset = -4;
     private Map<String, String> dataSection = new HashMap<>();
-    private Set<String> usedSavedRegisters;
-    private static SymbolTable symbolTable;
-    private Queue<String> availableRegisters = new LinkedList<>(Arrays.asList("$t0", "$t1", "$t2", "$t3", "$t4"));
+    private final SymbolTable symbolTable;
     private int registerCounter = 0;
     private int currentRegister = 0;
+    private final PrintStream out;
+    private static final Pattern PRINT_PATTERN = Pattern.compile("print\\s*\\(\\s*(\\w+)\\s*\\)");
+    private static final Pattern DECLARATION_PATTERN = Pattern.compile("int\\s+\\w+\\s*=\\s*\\d+");
+    private static final Pattern ASSIGNMENT_PATTERN = Pattern.compile("\\w+\\s*=\\s*.+");
+    private static final Pattern INTEGER_PATTERN = Pattern.compile("-?\\d+");
 
     public MIPSGenerator(SymbolTable symbolTable) {
-        // Initialize register pools
-        tempRegisters = new ArrayDeque<>(List.of("$t0", "$t1", "$t2", "$t3", "$t4", "$t5", "$t6", "$t7", "$t8", "$t9"));
-        savedRegisters = new ArrayDeque<>(List.of("$s0", "$s1", "$s2", "$s3", "$s4", "$s5", "$s6", "$s7"));
-        tempFloatRegisters = new ArrayDeque<>(List.of("$f0", "$f2", "$f4", "$f6", "$f8", "$f10", "$f12", "$f14", "$f16", "$f18"));
-        savedFloatRegisters = new ArrayDeque<>(List.of("$f20", "$f22", "$f24", "$f26", "$f28", "$f30"));
-        usedRegisters = new HashSet<>();
-        freeRegisters = new ArrayDeque<>(List.of("$t0", "$t1", "$t2", "$t3", "$t4", "$t5", "$t6", "$t7", "$t8", "$t9"));
-        mipsCode = new ArrayList<>();  // Initialize the list to store MIPS code
+        this(symbolTable, System.out);
+    }
+
+    public MIPSGenerator(SymbolTable symbolTable, PrintStream out) {
+        mipsCode = new MipsCode();  // Initialize the instruction list
         stackMap = new HashMap<>();
         stackPointer = 0;
-        usedSavedRegisters = new HashSet<>();
         this.symbolTable = symbolTable;
+        this.out = out;
     }
 
     /**********************************************************
@@ -98,7 +100,7 @@ public class MIPSGenerator {
                         initValue = "0.0"; // Default to 0.0 for double
                         break;
                     default:
-                        System.out.println("Unknown data type: " + dataType);
+                        out.println("Unknown data type: " + dataType);
                         return;
                 }
             }
@@ -119,11 +121,11 @@ public class MIPSGenerator {
                     dataSection.put(variableName, variableName + ": .double " + initValue);
                     break;
                 default:
-                    System.out.println("Unknown data type: " + dataType);
+                    out.println("Unknown data type: " + dataType);
                     break;
             }
         } else {
-            System.out.println("Variable " + variableName + " already exists in the .data section.");
+            out.println("Variable " + variableName + " already exists in the .data section.");
         }
     }
 
@@ -147,18 +149,24 @@ public class MIPSGenerator {
      **********************************************************/
     // Method to allocate a temporary register
     public String allocateTempRegister() {
-        if (freeRegisters.isEmpty()) {
-            addMipsInstruction("# No available temporary registers, resetting register pool.");
+        if (virtualRegisters) {
+            // The allocator assigns the real register, so the pool never runs out
+            String reg = MipsCode.registerName(registers.allocateVirtual());
+            mipsCode.comment("Allocating temporary register: ", reg);
+            return reg;
+        }
+
+        if (!registers.isFree(RegisterFile.Kind.TEMP)) {
+            addComment("No available temporary registers, resetting register pool.");
             resetRegisterPools();
         }
 
-        if(freeRegisters.isEmpty()){
+        if(!registers.isFree(RegisterFile.Kind.TEMP)){
             throw  new RuntimeException("No available temporary registers even after reset.");
         }
 
-        String reg = freeRegisters.poll(); // Get a free register
-        usedRegisters.add(reg);            // Mark the register as used
-        addMipsInstruction("# Allocating temporary register: " + reg);
+        String reg = MipsCode.registerName(registers.allocateTemp()); // Get a free register and mark it used
+        mipsCode.comment("Allocating temporary register: ", reg);
 //        printRegisterState();
         return reg;
     }
@@ -166,31 +174,35 @@ public class MIPSGenerator {
     /**********************************************************
      * METHOD: allocateSavedRegister() *
      * DESCRIPTION: Allocates a saved register from the pool. If no registers are available, *
-     * it resets the register pool and attempts to allocate a register again. *
+     * it resets the register pool and attempts to allocate a register again. With virtual *
+     * registers a variable gets one of its own, which the allocator maps or spills. *
      * PARAMETERS: none *
      * RETURN VALUE: String - the name of the allocated saved register. *
      **********************************************************/
     // Method to allocate a saved register
     public String allocateSavedRegister() {
-        for (String reg : savedRegisters) {
-            if (!usedRegisters.contains(reg)) {
-                usedRegisters.add(reg);
-                usedSavedRegisters.add(reg);
-                addMipsInstruction("# Allocating saved register: " + reg);
-                return reg;
-            }
+        if (virtualRegisters) {
+            // A variable's register is never freed, so it is not counted as in use
+            String reg = MipsCode.registerName(registers.newVirtual());
+            mipsCode.comment("Allocating saved register: ", reg);
+            return reg;
+        }
+
+        int register = registers.allocate(RegisterFile.Kind.SAVED); // The lowest free one
+        if (register != RegisterFile.NO_REGISTER) {
+            String reg = MipsCode.registerName(register);
+            mipsCode.comment("Allocating saved register: ", reg);
+            return reg;
         }
 
-        addMipsInstruction("# No available saved registers, resetting register pool.");
+        addComment("No available saved registers, resetting register pool.");
         resetRegisterPools();
 
-        for (String reg : savedRegisters) {
-            if (!usedRegisters.contains(reg)) {
-                usedRegisters.add(reg);
-                usedSavedRegisters.add(reg);
-                addMipsInstruction("# Allocating saved register after reset: " + reg);
-                return reg;
-            }
+        register = registers.allocate(RegisterFile.Kind.SAVED);
+        if (register != RegisterFile.NO_REGISTER) {
+            String reg = MipsCode.registerName(register);
+            mipsCode.comment("Allocating saved register after reset: ", reg);
+            return reg;
         }
 
         throw new RuntimeException("No available saved registers even after resetting.");
@@ -206,20 +218,12 @@ public class MIPSGenerator {
      **********************************************************/
     // Method to free a register
     public void freeRegister(String reg) {
-        if (usedRegisters.contains(reg)) {
-            usedRegisters.remove(reg);
-            if(tempRegisters.contains(reg) && !freeRegisters.contains(reg)){
-                freeRegisters.offerFirst(reg);
-            }
-
-            if(savedRegisters.contains(reg)){
-                usedSavedRegisters.remove(reg);
-            }
-
-            addMipsInstruction("# Register freed: " + reg);
+        // A freed temporary or virtual register is the next of its kind to be handed out
+        if (registers.free(MipsCode.register(reg))) {
+            mipsCode.comment("Register freed: ", reg);
 //            printRegisterState();
         } else {
-            addMipsInstruction("# Warning: Attempted to free an unallocated register: " + reg);
+            mipsCode.comment("Warning: Attempted to free an unallocated register: ", reg);
         }
     }
 
@@ -233,14 +237,11 @@ public class MIPSGenerator {
      * RETURN VALUE: void *
      **********************************************************/
     public void resetRegisterPools() {
-        // Reset the register pools to their initial states
-        tempRegisters = new ArrayDeque<>(List.of("$t0", "$t1", "$t2", "$t3", "$t4", "$t5", "$t6", "$t7", "$t8", "$t9"));
-        usedRegisters.clear();  // Clear the set of used registers
-        freeRegisters = new ArrayDeque<>(tempRegisters);  // Reinitialize free registers from tempRegisters
-        usedSavedRegisters.clear();
+        // Reset the register pools to their initial states: nothing used, $t0-$t9 free in order
+        registers.reset();
 
         // Optionally log or output a message for debugging
-        addMipsInstruction("# Reset all register pools");
+        addComment("Reset all register pools");
 //        printRegisterState();
     }
 
@@ -271,27 +272,68 @@ public class MIPSGenerator {
 
         if (operand instanceof Integer) {
             // If the operand is an integer, load it directly
-            addMipsInstruction("li " + register + ", " + operand);  // li = Load immediate
+            mipsCode.add(CodeGenerator.LI, register, operand.toString());  // li = Load immediate
         } else if (operand instanceof Double) {
-            System.out.println("Double operand: " +operand);
+            out.println("Double operand: " +operand);
             // If the operand is a double, load it directly from the data section
             // Assuming the double value is already stored in the data section
             String label = generateUniqueLabelForDouble((Double) operand);
-            addMipsInstruction("l.d " + register + ", " + label);  // Load double into target register
+            mipsCode.add(CodeGenerator.L_D, register, label);  // Load double into target register
         } else if (operand instanceof Boolean) {
             // If the operand is a boolean (true/false)
-            addMipsInstruction("li " + register + ", " + ((Boolean) operand ? "1" : "0"));
+            mipsCode.add(CodeGenerator.LI, register, (Boolean) operand ? "1" : "0");
         } else if (operand instanceof String) {
             // If the operand is a string (assuming it is a label)
             String addressRegister = allocateTempRegister();
-            addMipsInstruction("la " + addressRegister + ", " + operand);  // Load address of the string
-            addMipsInstruction("lw " + register + ", " + stackOffset + "(" + addressRegister + ")");  // Load string address into register
+            mipsCode.add(CodeGenerator.LA, addressRegister, (String) operand);  // Load address of the string
+            mipsCode.addMemory(CodeGenerator.LW, register, stackOffset, addressRegister);  // Load string address into register
             freeRegister(addressRegister);
         } else {
             throw new IllegalArgumentException("Unsupported operand type: " + operand.getClass().getSimpleName());
         }
     }
 
+    /**********************************************************
+     * METHOD: loadVariable(String register, String variable) *
+     * DESCRIPTION: Loads the value a variable holds when the program
+     *      runs from its word in the data section, for a value that is
+     *      not known when it is compiled*
+     * PARAMETERS: String register - the register to load
+     *      String variable - the variable in the data section
+     *      Object value - the value the variable holds now, for its type*
+     * RETURN VALUE: void *
+     **********************************************************/
+    public void loadVariable(String register, String variable, Object value) {
+        mipsCode.add(value instanceof Double ? CodeGenerator.L_D : CodeGenerator.LW, register, variable);
+    }
+
+    // Stores an integer to its variable's word in the data section, where loadVariable finds it
+    public void storeVariable(String register, String variable) {
+        mipsCode.add(CodeGenerator.SW, register, variable);
+    }
+
+    /**********************************************************
+     * METHOD: loadFoldedConstant(Object value, int operations) *
+     * DESCRIPTION: Loads the result of operations folded at compile
+     *      time with one instruction, in place of the code for each
+     *      operation, and counts them for the optimization report*
+     * PARAMETERS: Object value - the folded result
+     *      int operations - the operations it replaces*
+     * RETURN VALUE: String - the register loaded, for the caller to free *
+     **********************************************************/
+    public String loadFoldedConstant(Object value, int operations) {
+        String register = allocateTempRegister();
+        loadRegister(register, value);
+        constantsFolded++;
+        operationsFolded += operations;
+        return register;
+    }
+
+    // Operations folded into an operand of code that is still emitted
+    public void countFoldedOperations(int operations) {
+        operationsFolded += operations;
+    }
+
     /**********************************************************
      * METHOD: generateUniqueLabelForDouble(double value) *
      * DESCRIPTION: This method generates a unique label by appending
@@ -316,8 +358,8 @@ public class MIPSGenerator {
      *      int value : The immediate value to load into the register
      * RETURN VALUE: void*
      **********************************************************/
-    public static void loadImmediate(String reg, int value){
-        addMipsInstruction("li " +reg+ ", " +value);
+    public void loadImmediate(String reg, int value){
+        mipsCode.add(CodeGenerator.LI, reg, Integer.toString(value));
     }
 
     /**********************************************************
@@ -337,6 +379,18 @@ public class MIPSGenerator {
      **********************************************************/
     // Example evaluateExpression method (simplified)
     public String evaluateExpression(String expression, String endLabel) {
+        emitExpression(expression, endLabel);
+
+        // Render the code into a single string with line breaks
+        return mipsCode.join("\n");
+    }
+
+    /**********************************************************
+     * METHOD: emitExpression(String expression, String endLabel) *
+     * DESCRIPTION: Generates the code of evaluateExpression(). *
+     * RETURN VALUE: String - the register holding the result. *
+     **********************************************************/
+    private String emitExpression(String expression, String endLabel) {
         // Split the expression into operands and operator (assuming basic "operand operator operand" format)
         String[] tokens = expression.split(" ");
         if (tokens.length != 3) {
@@ -367,38 +421,45 @@ public class MIPSGenerator {
                 mipsDiv(reg1, reg2, regResult);
                 break;
             case "<":
-                addMipsInstruction("slt " + regResult + ", " + reg1 + ", " + reg2); // Set less than
-                addMipsInstruction("bne " + regResult + ", $zero, " + endLabel); // Branch if equal
+                mipsCode.add(CodeGenerator.SLT, regResult, reg1, reg2); // Set less than
+                mipsCode.add(CodeGenerator.BNE, regResult, "$zero", endLabel); // Branch if equal
                 break;
             case ">":
-                addMipsInstruction("slt " + regResult + ", " + reg2 + ", " + reg1); // Set less than (reverse the operands)
-                addMipsInstruction("beq " + regResult + ", $zero, " + endLabel); // Branch if equal
+                mipsCode.add(CodeGenerator.SLT, regResult, reg2, reg1); // Set less than (reverse the operands)
+                mipsCode.add(CodeGenerator.BEQ, regResult, "$zero", endLabel); // Branch if equal
                 break;
             case "==":
-                addMipsInstruction("sub " + regResult + ", " + reg1 + ", " + reg2);
-                addMipsInstruction("beq " + regResult + ", $zero, " + endLabel); // Branch if equal
+                mipsCode.add(CodeGenerator.SUB, regResult, reg1, reg2);
+                mipsCode.add(CodeGenerator.BEQ, regResult, "$zero", endLabel); // Branch if equal
                 break;
             case "!=":
-                addMipsInstruction("sub " + regResult + ", " + reg1 + ", " + reg2);
-                addMipsInstruction("bne " + regResult + ", $zero, " + endLabel); // Branch if not equal
+                mipsCode.add(CodeGenerator.SUB, regResult, reg1, reg2);
+                mipsCode.add(CodeGenerator.BNE, regResult, "$zero", endLabel); // Branch if not equal
                 break;
             case "<=":
                 // For <=, check if greater than and jump if true
-                addMipsInstruction("slt " + regResult + ", " + reg2 + ", " + reg1); // Set less than
-                addMipsInstruction("beq " + regResult + ", $zero, " + endLabel); // Jump if greater (i.e., less than or equal)
+                mipsCode.add(CodeGenerator.SLT, regResult, reg2, reg1); // Set less than
+                mipsCode.add(CodeGenerator.BEQ, regResult, "$zero", endLabel); // Jump if greater (i.e., less than or equal)
                 break;
             case ">=":
                 // For >=, check if less than and jump if true
-                addMipsInstruction("slt " + regResult + ", " + reg1 + ", " + reg2); // Set less than
-                addMipsInstruction("beq " + regResult + ", $zero, " + endLabel); // Jump if less (i.e., greater than or equal)
+                mipsCode.add(CodeGenerator.SLT, regResult, reg1, reg2); // Set less than
+                mipsCode.add(CodeGenerator.BEQ, regResult, "$zero", endLabel); // Jump if less (i.e., greater than or equal)
                 break;
             default:
                 throw new IllegalArgumentException("Unsupported operator: " + operator);
         }
-        mipsCode.add(endLabel + ":");
+        mipsCode.label(endLabel);
+        return regResult;
+    }
 
-        // Join the list into a single string with line breaks
-        return String.join("\n", mipsCode);
+    /**********************************************************
+     * METHOD: evaluateResult(String expression, String endLabel) *
+     * DESCRIPTION: Evaluates an expression whose result is moved into a variable. With virtual registers the result register is returned, so the move is a real register move the allocator can coalesce; otherwise the rendered code is returned, as evaluateExpression() always has. *
+     * RETURN VALUE: String - what the move reads. *
+     **********************************************************/
+    private String evaluateResult(String expression, String endLabel) {
+        return virtualRegisters ? emitExpression(expression, endLabel) : evaluateExpression(expression, endLabel);
     }
 
     /**********************************************************
@@ -411,16 +472,16 @@ public class MIPSGenerator {
      * RETURN VALUE: none *
      **********************************************************/
     public void mipsAdd(String reg1, String reg2, String regResult) {
-        System.out.println("mipsAdd called with reg1=" + reg1 + ", reg2=" + reg2 + ", regResult=" + regResult);
+        out.println("mipsAdd called with reg1=" + reg1 + ", reg2=" + reg2 + ", regResult=" + regResult);
 
         if (isRegister(reg1) && isRegister(reg2)) {
             // Case 1: Both operands are registers
-            addMipsInstruction("add " + regResult + ", " + reg1 + ", " + reg2); // Integer addition
+            mipsCode.add(CodeGenerator.ADD, regResult, reg1, reg2); // Integer addition
         } else if (isInteger(reg2)) {
             // Case 2: reg2 is an immediate value, so use addi
-            addMipsInstruction("addi " + regResult + ", " + reg1 + ", " + reg2); // Integer addition with immediate
+            mipsCode.add(CodeGenerator.ADDI, regResult, reg1, reg2); // Integer addition with immediate
         } else {
-            System.out.println("Invalid operands for mipsAdd: reg1=" + reg1 + ", reg2=" + reg2);
+            out.println("Invalid operands for mipsAdd: reg1=" + reg1 + ", reg2=" + reg2);
         }
     }
 
@@ -437,12 +498,12 @@ public class MIPSGenerator {
     public void mipsSub(String reg1, String reg2, String regResult) {
         if (isRegister(reg1) && isRegister(reg2)) {
             // Case 1: Both operands are registers (integers)
-            addMipsInstruction("sub " + regResult + ", " + reg1 + ", " + reg2); // Integer subtraction
+            mipsCode.add(CodeGenerator.SUB, regResult, reg1, reg2); // Integer subtraction
         } else if (isInteger(reg2)) {
             // Case 2: reg2 is an immediate value, so use subi
-            addMipsInstruction("subi " + regResult + ", " + reg1 + ", " + reg2); // Integer subtraction with immediate
+            mipsCode.add(CodeGenerator.SUBI, regResult, reg1, reg2); // Integer subtraction with immediate
         } else {
-            System.out.println("Invalid operands for mipsSub: reg1=" + reg1 + ", reg2=" + reg2);
+            out.println("Invalid operands for mipsSub: reg1=" + reg1 + ", reg2=" + reg2);
         }
     }
 
@@ -458,12 +519,12 @@ public class MIPSGenerator {
     public void mipsMul(String reg1, String reg2, String regResult) {
         if (isRegister(reg1) && isRegister(reg2)) {
             // Case 1: Both operands are registers (integers)
-            addMipsInstruction("mul " + regResult + ", " + reg1 + ", " + reg2); // Integer multiplication
+            mipsCode.add(CodeGenerator.MULT, regResult, reg1, reg2); // Integer multiplication
         } else if (isInteger(reg2)) {
             // Case 2: reg2 is an immediate value, so use muli
-            addMipsInstruction("muli " + regResult + ", " + reg1 + ", " + reg2); // Integer multiplication with immediate
+            mipsCode.add(CodeGenerator.MULI, regResult, reg1, reg2); // Integer multiplication with immediate
         } else {
-            System.out.println("Invalid operands for mipsMul: reg1=" + reg1 + ", reg2=" + reg2);
+            out.println("Invalid operands for mipsMul: reg1=" + reg1 + ", reg2=" + reg2);
         }
     }
 
@@ -477,20 +538,20 @@ public class MIPSGenerator {
      * RETURN VALUE: none *
      **********************************************************/
     public void mipsDiv(String reg1, String reg2, String regResult) {
-        if(Integer.parseInt(reg2) == 0){
+        if(isInteger(reg2) && Integer.parseInt(reg2) == 0){ // A register divisor is checked when the program runs
             throw new ArithmeticException("Division by 0");
         }
 
         if (isRegister(reg1) && isRegister(reg2)) {
             // Case 1: Both operands are registers (integers)
-            addMipsInstruction("div " + reg1 + ", " + reg2);  // Perform integer division
-            addMipsInstruction("mflo " + regResult); // Move result to regResult (quotient)
+            mipsCode.add(CodeGenerator.DIV, reg1, reg2);  // Perform integer division
+            mipsCode.add(CodeGenerator.MFLO, regResult); // Move result to regResult (quotient)
         } else if (isInteger(reg2)) {
             // Case 2: reg2 is an immediate value, so perform division with immediate
-            addMipsInstruction("div " + reg1 + ", " + reg2);  // Perform integer division
-            addMipsInstruction("mflo " + regResult); // Move result to regResult (quotient)
+            mipsCode.add(CodeGenerator.DIV, reg1, reg2);  // Perform integer division
+            mipsCode.add(CodeGenerator.MFLO, regResult); // Move result to regResult (quotient)
         } else {
-            System.out.println("Invalid operands for mipsDiv: reg1=" + reg1 + ", reg2=" + reg2);
+            out.println("Invalid operands for mipsDiv: reg1=" + reg1 + ", reg2=" + reg2);
         }
     }
 
@@ -520,18 +581,18 @@ public class MIPSGenerator {
         // Check if operand is an integer literal
         if (isInteger(operand)) {
             // If operand is a literal, return the literal value instead of a register
-            System.out.println("Using immediate value: " + operand);
+            out.println("Using immediate value: " + operand);
             return operand;  // Return the literal as a string
         } else {
             // If operand is a variable, get its register from the SymbolTable
             String variableRegister = symbolTable.getRegisterForVariable(operand);
 
             if (variableRegister == null) {
-                System.out.println("Error: Variable '" + operand + "' not found in SymbolTable.");
+                out.println("Error: Variable '" + operand + "' not found in SymbolTable.");
                 throw new IllegalArgumentException("Variable '" + operand + "' not found in SymbolTable.");
             }
 
-            System.out.println("Resolved variable '" + operand + "' to register " + variableRegister);
+            out.println("Resolved variable '" + operand + "' to register " + variableRegister);
             return variableRegister;
         }
     }
@@ -564,6 +625,21 @@ public class MIPSGenerator {
      *    String - The generated MIPS assembly code as a string. *
      **********************************************************/
     public String convertConditionToMips(String condition, String label, SymbolTable symbolTable) {
+        MipsCode code = new MipsCode();
+        if (!appendCondition(code, condition, label, symbolTable)) {
+            return "";
+        }
+
+        // Return the generated MIPS code
+        return code.join("\n") + "\n";
+    }
+
+    /**********************************************************
+     * METHOD: appendCondition(MipsCode code, String condition, String label, SymbolTable symbolTable) *
+     * DESCRIPTION: Appends the comparison and branch of convertConditionToMips() to the given code as typed instructions. *
+     * RETURN VALUE: boolean - false if the condition could not be converted; nothing is appended then. *
+     **********************************************************/
+    private boolean appendCondition(MipsCode code, String condition, String label, SymbolTable symbolTable) {
         // Split the condition into parts (e.g., "x < 5" -> ["x", "<", "5"])
         String[] conditionParts = condition.split(" ");
         String operator = conditionParts[1]; // Get the operator
@@ -574,45 +650,42 @@ public class MIPSGenerator {
         String leftRegister = symbolTable.getRegisterForVariable(leftOperand);
 
         if (leftRegister == null) {
-            System.out.println("Error: No register found for variable '" + leftOperand + "'");
-            return "";
+            out.println("Error: No register found for variable '" + leftOperand + "'");
+            return false;
         }
 
         // We need a temporary register to store the comparison result
-        String tempRegister = "$t1"; // Temporary register for condition result
-        StringBuilder mipsCode = new StringBuilder();
+        String tempRegister = virtualRegisters ? MipsCode.registerName(registers.newVirtual()) : "$t1"; // Temporary register for condition result
 
         // Generate MIPS code based on the operator
         switch (operator) {
             case "<":
-                mipsCode.append("slt ").append(tempRegister).append(", ").append(leftRegister).append(", ").append(rightOperand).append("\n");
-                mipsCode.append("bne ").append(tempRegister).append(", $zero, ").append(label).append("\n"); // Branch if true
+                code.add(CodeGenerator.SLT, tempRegister, leftRegister, rightOperand);
+                code.add(CodeGenerator.BNE, tempRegister, "$zero", label); // Branch if true
                 break;
             case ">":
-                mipsCode.append("sgt ").append(tempRegister).append(", ").append(leftRegister).append(", ").append(rightOperand).append("\n");
-                mipsCode.append("bne ").append(tempRegister).append(", $zero, ").append(label).append("\n"); // Branch if true
+                code.add(CodeGenerator.SGN, tempRegister, leftRegister, rightOperand);
+                code.add(CodeGenerator.BNE, tempRegister, "$zero", label); // Branch if true
                 break;
             case "<=":
-                mipsCode.append("sle ").append(tempRegister).append(", ").append(leftRegister).append(", ").append(rightOperand).append("\n");
-                mipsCode.append("bne ").append(tempRegister).append(", $zero, ").append(label).append("\n"); // Branch if true
+                code.add(CodeGenerator.SLE, tempRegister, leftRegister, rightOperand);
+                code.add(CodeGenerator.BNE, tempRegister, "$zero", label); // Branch if true
                 break;
             case ">=":
-                mipsCode.append("sge ").append(tempRegister).append(", ").append(leftRegister).append(", ").append(rightOperand).append("\n");
-                mipsCode.append("bne ").append(tempRegister).append(", $zero, ").append(label).append("\n"); // Branch if true
+                code.add(CodeGenerator.SGE, tempRegister, leftRegister, rightOperand);
+                code.add(CodeGenerator.BNE, tempRegister, "$zero", label); // Branch if true
                 break;
             case "==":
-                mipsCode.append("beq ").append(leftRegister).append(", ").append(rightOperand).append(", ").append(label).append("\n"); // Branch if equal
+                code.add(CodeGenerator.BEQ, leftRegister, rightOperand, label); // Branch if equal
                 break;
             case "!=":
-                mipsCode.append("bne ").append(leftRegister).append(", ").append(rightOperand).append(", ").append(label).append("\n"); // Branch if not equal
+                code.add(CodeGenerator.BNE, leftRegister, rightOperand, label); // Branch if not equal
                 break;
             default:
-                System.out.println("Error: Unsupported operator '" + operator + "'");
-                return "";
+                out.println("Error: Unsupported operator '" + operator + "'");
+                return false;
         }
-
-        // Return the generated MIPS code
-        return mipsCode.toString();
+        return true;
     }
 
     /**********************************************************
@@ -647,20 +720,20 @@ public class MIPSGenerator {
 //        addMipsInstruction("beq " + conditionRegister + ", $zero, " + elseLabel);
 
         // If block
-        addMipsInstruction(ifLabel + ":");
+        mipsCode.label(ifLabel);
         processBodyTokens(ifBodyTokens); // Generate MIPS for if block
 
         // Jump to the end label after if block
-        addMipsInstruction("j " + endLabel);
+        mipsCode.add(CodeGenerator.J, endLabel);
 
         // Else block (only if else body tokens are not empty)
         if (!elseBodyTokens.isEmpty()) {
-            addMipsInstruction(elseLabel + ":");
+            mipsCode.label(elseLabel);
             processBodyTokens(elseBodyTokens); // Generate MIPS for else block
         }
 
         // End of if-else structure
-        addMipsInstruction(endLabel + ":");
+        mipsCode.label(endLabel);
     }
 
     /**********************************************************
@@ -675,14 +748,14 @@ public class MIPSGenerator {
             if (token.startsWith("print")) {
                 // Example: print("Hello")
                 String message = extractPrintMessage(token);
-                addMipsInstruction("# Printing message: " + message);
+                mipsCode.comment("Printing message: ", message);
                 generatePrint(message);
             } else if (token.contains("=")) {
                 // Example: x = 10
                 String[] parts = token.split("=");
                 String variable = parts[0].trim();
                 String value = parts[1].trim();
-                addMipsInstruction("# Assigning value to variable: " + variable);
+                mipsCode.comment("Assigning value to variable: ", variable);
                 generateAssignmentInstruction(variable, value);
             } else if (token.startsWith("if")) {
                 // Nested if-else handling
@@ -691,7 +764,7 @@ public class MIPSGenerator {
                 List<String> nestedElseBodyTokens = extractElseBodyTokens(token);
                 generateIfElse(condition, nestedIfBodyTokens, nestedElseBodyTokens);
             } else {
-                addMipsInstruction("# Unknown token: " + token);
+                mipsCode.comment("Unknown token: ", token);
             }
         }
     }
@@ -720,8 +793,12 @@ public class MIPSGenerator {
      **********************************************************/
     private void generateAssignmentInstruction(String variable, String value) {
         // Assuming integer assignment
-        addMipsInstruction("li $t0, " + value); // Load immediate value into a temporary register
-        addMipsInstruction("sw $t0, " + variable); // Store the value into the variable's memory address
+        String register = virtualRegisters ? allocateTempRegister() : "$t0";
+        mipsCode.add(CodeGenerator.LI, register, value); // Load immediate value into a temporary register
+        mipsCode.add(CodeGenerator.SW, register, variable); // Store the value into the variable's memory address
+        if (virtualRegisters) {
+            freeRegister(register);
+        }
     }
 
     /**********************************************************
@@ -784,7 +861,7 @@ public class MIPSGenerator {
         // Start of the loop
         String startLabel = "label_6";
         String endLabel = "label_7";
-        addMipsInstruction(startLabel + ":");
+        mipsCode.label(startLabel);
 
         // Condition check using the evaluateExpression method
         addComment("Check condition for " + loopVar + " " + operator + " " + constant);
@@ -822,14 +899,14 @@ public class MIPSGenerator {
                         throw new IllegalStateException("Operand variable '" + operand1 + "' not found in symbol table");
                     }
 
-                    String resultRegister = evaluateExpression(rightSide, endLabel);
+                    String resultRegister = evaluateResult(rightSide, endLabel);
 
                     // Store the result back into the left-hand side variable register
-                    addMipsInstruction("move " + leftRegister + ", " + resultRegister);
+                    mipsCode.add(CodeGenerator.MOVE, leftRegister, resultRegister);
                 } else {
                     // Handle simple assignments without arithmetic expressions
-                    String resultRegister = evaluateExpression(rightSide, endLabel); // Evaluate the arithmetic expression
-                    addMipsInstruction("move " + leftRegister + ", " + resultRegister);
+                    String resultRegister = evaluateResult(rightSide, endLabel); // Evaluate the arithmetic expression
+                    mipsCode.add(CodeGenerator.MOVE, leftRegister, resultRegister);
                 }
             } else if (bodyToken.equals("++") || bodyToken.equals("--")) {
                 handleIncrementOrDecrement(bodyToken);
@@ -842,13 +919,13 @@ public class MIPSGenerator {
 
 
         // Store the updated value of the loop variable back to memory (if applicable)
-        addMipsInstruction("sw " + dataRegister + ", " + loopVar);
+        mipsCode.add(CodeGenerator.SW, dataRegister, loopVar);
 
         // Jump back to the start of the loop
-        addMipsInstruction("j " + startLabel);
+        mipsCode.add(CodeGenerator.J, startLabel);
 
         // End of the loop
-        addMipsInstruction(endLabel + ":");
+        mipsCode.label(endLabel);
     }
 
     /**********************************************************
@@ -859,9 +936,7 @@ public class MIPSGenerator {
      **********************************************************/
     private void handlePrintStatement(String statement) {
         // Parse the print statement
-        String regex = "print\\s*\\(\\s*(\\w+)\\s*\\)";
-        Pattern pattern = Pattern.compile(regex);
-        Matcher matcher = pattern.matcher(statement);
+        Matcher matcher = PRINT_PATTERN.matcher(statement);
 
         if (matcher.find()) {
             String variableName = matcher.group(1);
@@ -870,13 +945,24 @@ public class MIPSGenerator {
             if (printRegister != null) {
                 generatePrint(printRegister);
             } else {
-                System.out.println("Error: No register found for variable '" + variableName + "' in print statement.");
+                out.println("Error: No register found for variable '" + variableName + "' in print statement.");
             }
         } else {
-            System.out.println("Error: Malformed print statement: " + statement);
+            out.println("Error: Malformed print statement: " + statement);
         }
     }
 
+    /**********************************************************
+     * METHOD: takeLoadRegister() *
+     * DESCRIPTION: Takes the next of the five registers assignRegister() loads values into; they are never given back. *
+     * PARAMETERS: None *
+     * RETURN VALUE: String - the register, or null once all five are taken. *
+     **********************************************************/
+    private String takeLoadRegister() {
+        int register = registers.takeLoadRegister();
+        return (register != RegisterFile.NO_REGISTER) ? MipsCode.registerName(register) : null;
+    }
+
     /**********************************************************
      * METHOD: assignRegister(String variable) *
      * DESCRIPTION: Assigns a register for a given variable. If the variable is a constant, it is handled differently by loading the immediate value into a register. *
@@ -890,12 +976,12 @@ public class MIPSGenerator {
         // If the variable is constant, we handle it differently
         if (isConstant) {
             // Assign register and load immediate value (constant)
-            String register = availableRegisters.poll();  // Get and remove the first available register
+            String register = virtualRegisters ? allocateTempRegister() : takeLoadRegister();  // Get and remove the first available register
             if (register == null) {
                 throw new RuntimeException("No available registers for constant: " + variable);
             }
 
-            addMipsInstruction("li " + register + ", " + variable);  // Load immediate value into register
+            mipsCode.add(CodeGenerator.LI, register, variable);  // Load immediate value into register
             return register;
         }
 
@@ -907,7 +993,7 @@ public class MIPSGenerator {
 
         // Determine if the variable is stored in the data section
         boolean isInDataSection = isVariableInDataSection(variable);
-        register = availableRegisters.poll();  // Get and remove the first available register
+        register = virtualRegisters ? allocateTempRegister() : takeLoadRegister();  // Get and remove the first available register
         if (register == null) {
             throw new RuntimeException("No available registers for variable: " + variable);
         }
@@ -917,10 +1003,10 @@ public class MIPSGenerator {
 
         // If the variable is in the data section, load its value from memory
         if (isInDataSection) {
-            addMipsInstruction("lw " + register + ", " + variable);  // Load word for data section variable
+            mipsCode.add(CodeGenerator.LW, register, variable);  // Load word for data section variable
         } else {
             // Otherwise, assume it's an immediate value
-            addMipsInstruction("li " + register + ", " + variable);  // Load immediate value
+            mipsCode.add(CodeGenerator.LI, register, variable);  // Load immediate value
         }
 
         return register;
@@ -951,11 +1037,11 @@ public class MIPSGenerator {
     // Method to generate the MIPS code for printing an integer (value in $a0)
     public void generatePrint(String register) {
         if (register != null) {
-            addMipsInstruction("li $v0, 1");  // Load syscall number for print integer
-            addMipsInstruction("move $a0, " + register);  // Move the value (register) to $a0
-            addMipsInstruction("syscall");  // Perform the syscall to print the value
+            mipsCode.add(CodeGenerator.LI, "$v0", "1");  // Load syscall number for print integer
+            mipsCode.add(CodeGenerator.MOVE, "$a0", register);  // Move the value (register) to $a0
+            mipsCode.add(CodeGenerator.SYSCALL);  // Perform the syscall to print the value
         } else {
-            System.out.println("No valid register for print statement.");
+            out.println("No valid register for print statement.");
         }
     }
 
@@ -974,7 +1060,7 @@ public class MIPSGenerator {
                 // If the variable is valid, treat it as an increment
                 generateIncrementOrDecrement(variable, true);  // True for increment
             } else {
-                System.out.println("Error: Invalid increment expression: " + expression);
+                out.println("Error: Invalid increment expression: " + expression);
             }
         } else if (expression.contains("--")) {
             // Extract the variable part before '--' (e.g., "i" from "i--")
@@ -983,10 +1069,10 @@ public class MIPSGenerator {
                 // If the variable is valid, treat it as a decrement
                 generateIncrementOrDecrement(variable, false);  // False for decrement
             } else {
-                System.out.println("Error: Invalid decrement expression: " + expression);
+                out.println("Error: Invalid decrement expression: " + expression);
             }
         } else {
-            System.out.println("Invalid increment/decrement operation: " + expression);
+            out.println("Invalid increment/decrement operation: " + expression);
         }
     }
 
@@ -1005,22 +1091,22 @@ public class MIPSGenerator {
             // If the variable doesn't have a register, assign one
             register = allocateTempRegister();
             symbolTable.addRegisterToVariable(variable, register);
-            System.out.println("Allocated new register for " + variable + ": " + register);
+            out.println("Allocated new register for " + variable + ": " + register);
         } else {
-            System.out.println("Register for " + variable + ": " + register);
+            out.println("Register for " + variable + ": " + register);
         }
 
         // Determine the operation type (increment or decrement)
         if (isIncrement) {
             // Debugging message to confirm the increment is being used
-            System.out.println("Incrementing variable " + variable);  // Debug message
-            addMipsInstruction("# Increment variable " + variable);
-            addMipsInstruction("addi " + register + ", " + register + ", 1");  // This should print the instruction
+            out.println("Incrementing variable " + variable);  // Debug message
+            mipsCode.comment("Increment variable ", variable);
+            mipsCode.add(CodeGenerator.ADDI, register, register, "1");  // This should print the instruction
         } else {
             // Debugging message to confirm the decrement is being used
-            System.out.println("Decrementing variable " + variable);  // Debug message
-            addMipsInstruction("# Decrement variable " + variable);
-            addMipsInstruction("subi " + register + ", " + register + ", 1");  // This should print the instruction
+            out.println("Decrementing variable " + variable);  // Debug message
+            mipsCode.comment("Decrement variable ", variable);
+            mipsCode.add(CodeGenerator.SUBI, register, register, "1");  // This should print the instruction
         }
     }
 
@@ -1049,12 +1135,12 @@ public class MIPSGenerator {
         String endLabel = "label_9";   // End of the loop
 
         // Start of the loop
-        addMipsInstruction(startLabel + ":");
+        mipsCode.label(startLabel);
 
         // Condition check
         addComment("Check condition for " + loopVar);
-        String mipsCondition = convertConditionToMips(condition, endLabel, symbolTable); // Pass the endLabel for conditional branching
-        addMipsInstruction(mipsCondition); // Add the condition check MIPS instructions
+        appendCondition(mipsCode, condition, endLabel, symbolTable); // Pass the endLabel for conditional branching
+        mipsCode.text(""); // The condition check ends with a blank line
 
         // Process the body of the loop
         for (int i = 0; i < bodyTokens.size(); i++) {
@@ -1066,7 +1152,7 @@ public class MIPSGenerator {
                     String value = bodyTokens.get(i + 2).trim(); // Variable inside parentheses
 
                     if (value.isEmpty()) {
-                        System.out.println("Error: Malformed print statement near index " + i);
+                        out.println("Error: Malformed print statement near index " + i);
                         continue;
                     }
 
@@ -1074,7 +1160,7 @@ public class MIPSGenerator {
                     String printRegister = symbolTable.getRegisterForVariable(value);
 
                     if (printRegister == null) {
-                        System.out.println("Error: No register found for variable '" + value + "' in print statement.");
+                        out.println("Error: No register found for variable '" + value + "' in print statement.");
                     } else {
                         generatePrint(printRegister);
                     }
@@ -1082,7 +1168,7 @@ public class MIPSGenerator {
                     // Skip the processed tokens: 'print', '(', variable, ')'
                     i += 3;
                 } else {
-                    System.out.println("Error: Malformed print statement near index " + i);
+                    out.println("Error: Malformed print statement near index " + i);
                 }
             } else {
                 processBodyToken(bodyToken); // Process other tokens
@@ -1098,10 +1184,10 @@ public class MIPSGenerator {
         }
 
         // Jump back to the start of the loop
-        addMipsInstruction("j " + startLabel);
+        mipsCode.add(CodeGenerator.J, startLabel);
 
         // End of the loop
-        addMipsInstruction(endLabel + ":");
+        mipsCode.label(endLabel);
     }
 
     /**********************************************************
@@ -1112,21 +1198,21 @@ public class MIPSGenerator {
      **********************************************************/
     private void processBodyToken(String bodyToken) {
         bodyToken = bodyToken.trim();
-        System.out.println("Processing body token: '" + bodyToken + "'");
+        out.println("Processing body token: '" + bodyToken + "'");
 
         if(bodyToken.equals(";")){
             return;
         }else if (bodyToken.equals("print")) {
             // Edge case: print keyword without parentheses
-            System.out.println("Invalid print statement: Missing parentheses or argument.");
-        } else if (bodyToken.matches("int\\s+\\w+\\s*=\\s*\\d+")) {
+            out.println("Invalid print statement: Missing parentheses or argument.");
+        } else if (DECLARATION_PATTERN.matcher(bodyToken).matches()) {
             // Handle variable declarations
             String[] parts = bodyToken.split("\\s+");
             String variableName = parts[1];
             String value = parts[3];
             declareVariable(variableName, value, false);
 
-        } else if (bodyToken.matches("\\w+\\s*=\\s*.+")) {
+        } else if (ASSIGNMENT_PATTERN.matcher(bodyToken).matches()) {
             // Handle assignments and arithmetic expressions
             String variableName = bodyToken.split("=")[0].trim();
             String expression = bodyToken.split("=")[1].trim();
@@ -1171,12 +1257,12 @@ public class MIPSGenerator {
      **********************************************************/
     public void generateMove(String destinationRegister, String sourceRegister) {
         // Check if sourceRegister is a literal (immediate value)
-        if (sourceRegister.matches("-?\\d+")) {  // If it's a literal (integer)
+        if (INTEGER_PATTERN.matcher(sourceRegister).matches()) {  // If it's a literal (integer)
             // If the source is an immediate value, use the "li" instruction (load immediate)
-            System.out.println("li " + destinationRegister + ", " + sourceRegister);  // li destination, immediate
+            out.println("li " + destinationRegister + ", " + sourceRegister);  // li destination, immediate
         } else {
             // If both are registers, use the "move" instruction
-            System.out.println("move " + destinationRegister + ", " + sourceRegister);  // move destination, source
+            out.println("move " + destinationRegister + ", " + sourceRegister);  // move destination, source
         }
     }
 
@@ -1262,7 +1348,7 @@ public class MIPSGenerator {
 
         if (inMainMethod) {
             // If the variable should be in the main method, use the li instruction
-            addMipsInstruction("li " + reg + ", " + value);  // Load immediate value to the register
+            mipsCode.add(CodeGenerator.LI, reg, value);  // Load immediate value to the register
         }
     }
 
@@ -1278,13 +1364,13 @@ public class MIPSGenerator {
 
     /**********************************************************
      * METHOD: addMipsInstruction(String instruction) *
-     * DESCRIPTION: Adds a MIPS instruction to the list of generated MIPS code. *
+     * DESCRIPTION: Adds a MIPS instruction written as text to the generated MIPS code. It is stored typed when MipsCode can read it back exactly, see MipsCode.addLine(). *
      * PARAMETERS: String instruction - The MIPS instruction to add to the code. *
      * RETURN VALUE: None *
      **********************************************************/
     // Add an instruction to the list of generated MIPS code
-    public static void addMipsInstruction(String instruction) {
-        mipsCode.add(instruction);
+    public void addMipsInstruction(String instruction) {
+        mipsCode.addLine(instruction);
     }
 
     /**********************************************************
@@ -1294,7 +1380,234 @@ public class MIPSGenerator {
      * RETURN VALUE: None *
      **********************************************************/
     public void addComment(String comment){
-        mipsCode.add("# " +comment);
+        mipsCode.comment(comment);
+    }
+
+    /**********************************************************
+     * METHOD: getCodeSize() *
+     * DESCRIPTION: Returns the number of MIPS instructions generated so far, so a caller can find the fragment a statement produced. *
+     * PARAMETERS: None *
+     * RETURN VALUE: int - the number of instructions. *
+     **********************************************************/
+    public int getCodeSize() {
+        return mipsCode.size();
+    }
+
+    /**********************************************************
+     * METHOD: getCodeFrom(int start) *
+     * DESCRIPTION: Returns a copy of the instructions generated from the given position on. *
+     * PARAMETERS: int start - the first instruction to copy. *
+     * RETURN VALUE: MipsCode - the instructions. *
+     **********************************************************/
+    public MipsCode getCodeFrom(int start) {
+        return mipsCode.copyFrom(start);
+    }
+
+    /**********************************************************
+     * METHOD: addMipsCode(MipsCode code) *
+     * DESCRIPTION: Appends a previously generated fragment of MIPS code unchanged. *
+     * PARAMETERS: MipsCode code - the instructions to append. *
+     * RETURN VALUE: None *
+     **********************************************************/
+    public void addMipsCode(MipsCode code) {
+        mipsCode.append(code);
+    }
+
+    /**********************************************************
+     * METHOD: getMipsCode() *
+     * DESCRIPTION: Returns the generated instructions, for passes that read or rewrite them. *
+     * PARAMETERS: None *
+     * RETURN VALUE: MipsCode - the instructions, not a copy. *
+     **********************************************************/
+    public MipsCode getMipsCode() {
+        return mipsCode;
+    }
+
+    public RegisterFile getRegisterFile() {
+        return registers;
+    }
+
+    /**********************************************************
+     * METHOD: getDataSize() *
+     * DESCRIPTION: Returns the number of entries in the data section. *
+     * PARAMETERS: None *
+     * RETURN VALUE: int - the number of entries. *
+     **********************************************************/
+    public int getDataSize() {
+        return dataSection.size();
+    }
+
+    /**********************************************************
+     * METHOD: getDataNames() *
+     * DESCRIPTION: Returns the variables in the data section, in the order it is written. *
+     * PARAMETERS: None *
+     * RETURN VALUE: Set<String> - a view of the names. *
+     **********************************************************/
+    public Set<String> getDataNames() {
+        return Collections.unmodifiableSet(dataSection.keySet());
+    }
+
+    /**********************************************************
+     * METHOD: getDataEntry(String variableName) *
+     * DESCRIPTION: Returns the data section line of a variable. *
+     * PARAMETERS: String variableName - the variable. *
+     * RETURN VALUE: String - the line, or null if the variable is not in the data section. *
+     **********************************************************/
+    public String getDataEntry(String variableName) {
+        return dataSection.get(variableName);
+    }
+
+    /**********************************************************
+     * METHOD: putDataEntry(String variableName, String entry) *
+     * DESCRIPTION: Puts a previously generated data section line back unchanged. *
+     * PARAMETERS: String variableName - the variable. *
+     *             String entry - the data section line. *
+     * RETURN VALUE: None *
+     **********************************************************/
+    public void putDataEntry(String variableName, String entry) {
+        dataSection.put(variableName, entry);
+    }
+
+    /**********************************************************
+     * METHOD: saveState() *
+     * DESCRIPTION: Takes a copy of the register pools, the label counter and the stack bookkeeping. Two states are equal when the generator would allocate the same registers and labels from them. *
+     * PARAMETERS: None *
+     * RETURN VALUE: State - the copy. *
+     **********************************************************/
+    public State saveState() {
+        return new State(this);
+    }
+
+    /**********************************************************
+     * METHOD: restoreState(State state) *
+     * DESCRIPTION: Puts the register pools, the virtual register numbering, the label counter and the stack bookkeeping back to a saved state. *
+     * PARAMETERS: State state - the state to restore. *
+     * RETURN VALUE: None *
+     **********************************************************/
+    public void restoreState(State state) {
+        registers.restore(state.registers);
+        registers.restoreVirtuals(state.registers.getVirtualCount(), state.registers.getFreeVirtuals());
+        stackMap = new HashMap<>(state.stackMap);
+        labelCounter = state.labelCounter;
+        stackPointer = state.stackPointer;
+        stackOffset = state.stackOffset;
+        registerCounter = state.registerCounter;
+        currentRegister = state.currentRegister;
+    }
+
+    /**********************************************************
+     * CLASS: State *
+     * DESCRIPTION: A copy of the allocation state of a generator, see saveState(). *
+     **********************************************************/
+    public static final class State {
+        private final RegisterFile registers;
+        private final Map<String, Integer> stackMap;
+        private final int labelCounter;
+        private final int stackPointer;
+        private final int stackOffset;
+        private final int registerCounter;
+        private final int currentRegister;
+
+        private State(MIPSGenerator generator) {
+            registers = new RegisterFile(generator.registers);
+            stackMap = new HashMap<>(generator.stackMap);
+            labelCounter = generator.labelCounter;
+            stackPointer = generator.stackPointer;
+            stackOffset = generator.stackOffset;
+            registerCounter = generator.registerCounter;
+            currentRegister = generator.currentRegister;
+        }
+
+        private State(TableSnapshot.Reader reader) {
+            // The register classes and the saved registers in use are written for the format only
+            readList(reader);
+            readList(reader);
+            readList(reader);
+            readList(reader);
+            List<String> usedRegisters = readList(reader);
+            List<String> freeRegisters = readList(reader);
+            readList(reader);
+            List<String> availableRegisters = readList(reader);
+            registers = new RegisterFile();
+            registers.restore(usedRegisters, freeRegisters, availableRegisters);
+            int virtualCount = reader.getInt();
+            registers.restoreVirtuals(virtualCount, reader.getInts());
+            stackMap = new HashMap<>();
+            int entries = reader.getInt();
+            for (int i = 0; i < entries; i++) {
+                String name = reader.getString();
+                stackMap.put(name, reader.getInt());
+            }
+            labelCounter = reader.getInt();
+            stackPointer = reader.getInt();
+            stackOffset = reader.getInt();
+            registerCounter = reader.getInt();
+            currentRegister = reader.getInt();
+        }
+
+        /**********************************************************
+         * METHOD: writeSnapshot(TableSnapshot.Writer writer) *
+         * DESCRIPTION: Writes the state to a snapshot, see TableSnapshot. *
+         **********************************************************/
+        void writeSnapshot(TableSnapshot.Writer writer) {
+            writeList(writer, RegisterFile.Kind.TEMP.names());
+            writeList(writer, RegisterFile.Kind.SAVED.names());
+            writeList(writer, RegisterFile.Kind.FLOAT_TEMP.names());
+            writeList(writer, RegisterFile.Kind.FLOAT_SAVED.names());
+            writeList(writer, registers.usedNames());
+            writeList(writer, registers.freeTempNames());
+            writeList(writer, registers.usedNames(RegisterFile.Kind.SAVED));
+            writeList(writer, registers.loadRegisterNames());
+            writer.putInt(registers.getVirtualCount());
+            writer.putInts(registers.getFreeVirtuals());
+            writer.putInt(stackMap.size());
+            for (Map.Entry<String, Integer> entry : stackMap.entrySet()) {
+                writer.putString(entry.getKey());
+                writer.putInt(entry.getValue());
+            }
+            writer.putInt(labelCounter);
+            writer.putInt(stackPointer);
+            writer.putInt(stackOffset);
+            writer.putInt(registerCounter);
+            writer.putInt(currentRegister);
+        }
+
+        static State readSnapshot(TableSnapshot.Reader reader) {
+            return new State(reader);
+        }
+
+        private static void writeList(TableSnapshot.Writer writer, Collection<String> strings) {
+            writer.putInt(strings.size());
+            for (String string : strings) {
+                writer.putString(string);
+            }
+        }
+
+        private static List<String> readList(TableSnapshot.Reader reader) {
+            int count = reader.getInt();
+            List<String> strings = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                strings.add(reader.getString());
+            }
+            return strings;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof State)) {
+                return false;
+            }
+            State state = (State) other;
+            return labelCounter == state.labelCounter && stackPointer == state.stackPointer
+                    && stackOffset == state.stackOffset && registerCounter == state.registerCounter
+                    && currentRegister == state.currentRegister
+                    && registers.equals(state.registers) && stackMap.equals(state.stackMap);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(labelCounter, registers);
+        }
     }
 
     /**********************************************************
@@ -1304,10 +1617,31 @@ public class MIPSGenerator {
      * RETURN VALUE: None *
      **********************************************************/
     public void generateDataSection(){
-        System.out.println();
-        System.out.println(".data");
+        out.println();
+        out.println(".data");
         for(String entry : dataSection.values()){
-            System.out.println(entry);
+            out.println(entry);
+        }
+    }
+
+    /**********************************************************
+     * METHOD: optimize() *
+     * DESCRIPTION: Runs the MipsOptimizer passes of the -Dcompiler.opt level on the generated code, once, before it is first printed. *
+     * PARAMETERS: None *
+     * RETURN VALUE: None *
+     **********************************************************/
+    private void optimize() {
+        if (!optimized) {
+            optimized = true;
+            MipsOptimizer optimizer = new MipsOptimizer(optimizationLevel, out);
+            if (optimizationLevel >= 1) {
+                out.println(registers.describePressure());
+                out.println("Constant folding: " + operationsFolded + " operations computed at compile time, "
+                        + constantsFolded + " results loaded with one li");
+            }
+            optimizer.optimize(mipsCode);
+            stackMap.putAll(optimizer.getStackSlots()); // Where the spilled values live, from $sp
+            stackPointer = optimizer.getFrameSize();
         }
     }
 
@@ -1319,10 +1653,26 @@ public class MIPSGenerator {
      **********************************************************/
     // Print the generated MIPS code
     public void printMipsCode() {
-        System.out.println();
-        System.out.println(".main");
-        for (String instruction : mipsCode) {
-            System.out.println(instruction);
+        optimize();
+        out.println();
+        out.println(".main");
+        mipsCode.writeTo(out);
+    }
+
+    /**********************************************************
+     * METHOD: writeAssembly(PrintWriter writer) *
+     * DESCRIPTION: Writes the data section followed by the generated MIPS code, in the same layout as generateDataSection() and printMipsCode(), to the given writer. *
+     * PARAMETERS: PrintWriter writer - the writer the assembly is written to. *
+     * RETURN VALUE: None *
+     **********************************************************/
+    public void writeAssembly(PrintWriter writer) {
+        optimize();
+        writer.println(".data");
+        for (String entry : dataSection.values()) {
+            writer.println(entry);
         }
+        writer.println();
+        writer.println(".main");
+        mipsCode.writeTo(writer);
     }
 }
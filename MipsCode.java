@@ -0,0 +1,539 @@
+/*******************************************************************
+ * MipsCode Class                                                  *
+ *                                                                 *
+ * PROGRAMMER: Emily Culp                                          *
+ * COURSE: CS340 - Programming Language Design                     *
+ * DATE: 12/10/2024                                                *
+ * REQUIREMENT: Final - Compiler                                   *
+ *                                                                 *
+ * DESCRIPTION:                                                    *
+ * The MipsCode class holds the code made by the MIPS generator as *
+ * typed instructions instead of lines of text. Every instruction  *
+ * is four ints in one growable int array: a header with the       *
+ * opcode (a CodeGenerator) and the kind of each operand, and up   *
+ * to three operands. An operand is a register number (0-31 for    *
+ * the integer registers, 32-63 for $f0-$f31), an immediate value, *
+ * or the index of a symbol: a label, a variable name or the text  *
+ * of a comment, each kept once in the symbol pool. Numbers from   *
+ * 64 on are virtual registers, written $vr0, $vr1, ..., which the *
+ * register allocator replaces with real ones. Labels,             *
+ * comments and lines of free text are stored the same way, as the *
+ * LABEL, COMMENT and TEXT opcodes.                                *
+ *                                                                 *
+ * No text is built while code is generated; each instruction is   *
+ * rendered in MIPS syntax only when the code is printed. Passes   *
+ * that rewrite the code read and replace instructions by index.   *
+ *                                                                 *
+ * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean  *
+ * Zeller.                                                         *
+ *                                                                 *
+ * CREDITS: This code was written with the help of ChatGPT.        *
+ *******************************************************************/
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class MipsCode {
+    // Operand kinds
+    public static final int NONE = 0;
+    public static final int REG = 1;
+    public static final int IMM = 2;
+    public static final int SYM = 3;
+
+    public static final int NO_REGISTER = -1;
+    public static final int FIRST_VIRTUAL = 64; // Register numbers from here on are virtual
+    private static final String VIRTUAL_PREFIX = "$vr";
+
+    private static final int WORDS = 4; // The header and three operands
+    private static final CodeGenerator[] OPCODES = CodeGenerator.values();
+
+    private static final String[] REGISTER_NAMES = {
+            "$zero", "$at", "$v0", "$v1", "$a0", "$a1", "$a2", "$a3",
+            "$t0", "$t1", "$t2", "$t3", "$t4", "$t5", "$t6", "$t7",
+            "$s0", "$s1", "$s2", "$s3", "$s4", "$s5", "$s6", "$s7",
+            "$t8", "$t9", "$k0", "$k1", "$gp", "$sp", "$fp", "$ra",
+            "$f0", "$f1", "$f2", "$f3", "$f4", "$f5", "$f6", "$f7",
+            "$f8", "$f9", "$f10", "$f11", "$f12", "$f13", "$f14", "$f15",
+            "$f16", "$f17", "$f18", "$f19", "$f20", "$f21", "$f22", "$f23",
+            "$f24", "$f25", "$f26", "$f27", "$f28", "$f29", "$f30", "$f31"
+    };
+    private static final Map<String, Integer> REGISTER_NUMBERS = new HashMap<>();
+    private static final Map<String, CodeGenerator> MNEMONICS = new HashMap<>();
+
+    static {
+        for (int i = 0; i < REGISTER_NAMES.length; i++) {
+            REGISTER_NUMBERS.put(REGISTER_NAMES[i], i);
+        }
+        for (CodeGenerator opcode : OPCODES) {
+            if (opcode.getMnemonic() != null) {
+                MNEMONICS.put(opcode.getMnemonic(), opcode);
+            }
+        }
+    }
+
+    private int[] words = new int[WORDS * 64];
+    private int size;
+    private final List<String> symbols = new ArrayList<>();
+    private final Map<String, Integer> symbolIds = new HashMap<>();
+
+    /**********************************************************
+     * METHOD: register(String name)                            *
+     * DESCRIPTION: Looks up the number of a register.          *
+     * PARAMETERS: String name - such as "$t0" or "$f2".        *
+     * RETURN VALUE: int - 0-63, FIRST_VIRTUAL on for a       *
+     *              virtual register, or NO_REGISTER.           *
+     **********************************************************/
+    public static int register(String name) {
+        Integer number = REGISTER_NUMBERS.get(name);
+        if (number != null) {
+            return number;
+        }
+        if (name.startsWith(VIRTUAL_PREFIX) && name.length() > VIRTUAL_PREFIX.length()
+                && isImmediate(name.substring(VIRTUAL_PREFIX.length())) && name.charAt(VIRTUAL_PREFIX.length()) != '-') {
+            return FIRST_VIRTUAL + Integer.parseInt(name.substring(VIRTUAL_PREFIX.length()));
+        }
+        return NO_REGISTER;
+    }
+
+    public static String registerName(int number) {
+        return (number < FIRST_VIRTUAL) ? REGISTER_NAMES[number] : virtualName(number - FIRST_VIRTUAL);
+    }
+
+    public static String virtualName(int index) {
+        return VIRTUAL_PREFIX + index;
+    }
+
+    public static boolean isVirtual(int register) {
+        return register >= FIRST_VIRTUAL;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public CodeGenerator getOpcode(int index) {
+        return OPCODES[words[index * WORDS] & 0xFF];
+    }
+
+    /**********************************************************
+     * METHOD: getKind(int index, int operand)                  *
+     * RETURN VALUE: int - NONE, REG, IMM or SYM for operand 0, *
+     *              1 or 2 of an instruction.                   *
+     **********************************************************/
+    public int getKind(int index, int operand) {
+        return (words[index * WORDS] >>> (8 + 2 * operand)) & 3;
+    }
+
+    public int getOperand(int index, int operand) {
+        return words[index * WORDS + 1 + operand];
+    }
+
+    public String getSymbol(int id) {
+        return symbols.get(id);
+    }
+
+    /**********************************************************
+     * METHOD: symbol(String text)                              *
+     * DESCRIPTION: Puts a label, name or text in the symbol    *
+     *              pool, once.                                 *
+     * RETURN VALUE: int - its index.                           *
+     **********************************************************/
+    public int symbol(String text) {
+        Integer id = symbolIds.get(text);
+        if (id == null) {
+            id = symbols.size();
+            symbols.add(text);
+            symbolIds.put(text, id);
+        }
+        return id;
+    }
+
+    /**********************************************************
+     * METHOD: add(CodeGenerator opcode, int kinds, int a,      *
+     *         int b, int c)                                    *
+     * DESCRIPTION: Appends a typed instruction.                *
+     * PARAMETERS: CodeGenerator opcode - the instruction.      *
+     *             int kinds - kinds(...) of the operands.      *
+     *             int a, b, c - the operands.                  *
+     * RETURN VALUE: int - its index.                           *
+     **********************************************************/
+    public int add(CodeGenerator opcode, int kinds, int a, int b, int c) {
+        if ((size + 1) * WORDS > words.length) {
+            words = Arrays.copyOf(words, words.length * 2);
+        }
+        set(size, opcode, kinds, a, b, c);
+        return size++;
+    }
+
+    /**********************************************************
+     * METHOD: set(int index, CodeGenerator opcode, int kinds,  *
+     *         int a, int b, int c)                             *
+     * DESCRIPTION: Replaces an instruction.                    *
+     **********************************************************/
+    public void set(int index, CodeGenerator opcode, int kinds, int a, int b, int c) {
+        int at = index * WORDS;
+        words[at] = opcode.ordinal() | (kinds << 8);
+        words[at + 1] = a;
+        words[at + 2] = b;
+        words[at + 3] = c;
+    }
+
+    public void setOperand(int index, int operand, int value) {
+        words[index * WORDS + 1 + operand] = value;
+    }
+
+    /**********************************************************
+     * METHOD: removeAll(BitSet indexes)                        *
+     * DESCRIPTION: Removes the instructions at the given       *
+     *              positions, keeping the order of the rest.   *
+     **********************************************************/
+    public void removeAll(BitSet indexes) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (!indexes.get(i)) {
+                System.arraycopy(words, i * WORDS, words, kept * WORDS, WORDS);
+                kept++;
+            }
+        }
+        size = kept;
+    }
+
+    /**********************************************************
+     * METHOD: move(int from, int to)                           *
+     * DESCRIPTION: Moves an instruction to another position,   *
+     *              shifting the ones in between by one.        *
+     **********************************************************/
+    public void move(int from, int to) {
+        int[] moved = Arrays.copyOfRange(words, from * WORDS, (from + 1) * WORDS);
+        if (from < to) {
+            System.arraycopy(words, (from + 1) * WORDS, words, from * WORDS, (to - from) * WORDS);
+        } else {
+            System.arraycopy(words, to * WORDS, words, (to + 1) * WORDS, (from - to) * WORDS);
+        }
+        System.arraycopy(moved, 0, words, to * WORDS, WORDS);
+    }
+
+    // Removes every instruction; the symbol pool is kept
+    public void clear() {
+        size = 0;
+    }
+
+    public static int kinds(int a, int b, int c) {
+        return a | (b << 2) | (c << 4);
+    }
+
+    /**********************************************************
+     * METHOD: add(CodeGenerator opcode, String... operands)    *
+     * DESCRIPTION: Appends an instruction whose operands are   *
+     *              written as in MIPS: a register name, an     *
+     *              integer, or anything else as a symbol.      *
+     * RETURN VALUE: int - its index.                           *
+     **********************************************************/
+    public int add(CodeGenerator opcode) {
+        return add(opcode, 0, 0, 0, 0);
+    }
+
+    public int add(CodeGenerator opcode, String a) {
+        long first = operand(a);
+        return add(opcode, kinds(kindOf(first), NONE, NONE), (int) first, 0, 0);
+    }
+
+    public int add(CodeGenerator opcode, String a, String b) {
+        long first = operand(a);
+        long second = operand(b);
+        return add(opcode, kinds(kindOf(first), kindOf(second), NONE), (int) first, (int) second, 0);
+    }
+
+    public int add(CodeGenerator opcode, String a, String b, String c) {
+        long first = operand(a);
+        long second = operand(b);
+        long third = operand(c);
+        return add(opcode, kinds(kindOf(first), kindOf(second), kindOf(third)), (int) first, (int) second, (int) third);
+    }
+
+    // A memory access such as lw $t0, -4($t1)
+    public int addMemory(CodeGenerator opcode, String register, int offset, String base) {
+        if (register(register) == NO_REGISTER || register(base) == NO_REGISTER) {
+            return add(opcode, register, offset + "(" + base + ")");
+        }
+        return add(opcode, kinds(REG, IMM, REG), register(register), offset, register(base));
+    }
+
+    public int label(String name) {
+        return add(CodeGenerator.LABEL, kinds(SYM, NONE, NONE), symbol(name), 0, 0);
+    }
+
+    public int comment(String text) {
+        return add(CodeGenerator.COMMENT, kinds(SYM, NONE, NONE), symbol(text), 0, 0);
+    }
+
+    // A comment made of fixed text followed by an operand, such as "Register freed: $t0"
+    public int comment(String text, String operand) {
+        long value = operand(operand);
+        return add(CodeGenerator.COMMENT, kinds(SYM, kindOf(value), NONE), symbol(text), (int) value, 0);
+    }
+
+    public int text(String line) {
+        return add(CodeGenerator.TEXT, kinds(SYM, NONE, NONE), symbol(line), 0, 0);
+    }
+
+    /**********************************************************
+     * METHOD: addLine(String line)                             *
+     * DESCRIPTION: Appends a line of MIPS written as text. A   *
+     *              label, a comment or an instruction the      *
+     *              generator knows is stored typed; any other  *
+     *              line, or one that would not be written back *
+     *              exactly as given, is stored as TEXT.        *
+     * RETURN VALUE: int - its index.                           *
+     **********************************************************/
+    public int addLine(String line) {
+        if (line.startsWith("# ")) {
+            return comment(line.substring(2));
+        }
+        if (line.length() > 1 && line.endsWith(":") && line.indexOf(' ') < 0) {
+            return label(line.substring(0, line.length() - 1));
+        }
+
+        int space = line.indexOf(' ');
+        CodeGenerator opcode = MNEMONICS.get(space < 0 ? line : line.substring(0, space));
+        if (opcode == null) {
+            return text(line);
+        }
+        int index;
+        if (space < 0) {
+            index = add(opcode);
+        } else {
+            String[] operands = line.substring(space + 1).split(", ", -1);
+            int open = operands[operands.length - 1].indexOf('(');
+            if (operands.length == 2 && opcode.isMemoryAccess() && open > 0 && operands[1].endsWith(")")
+                    && isImmediate(operands[1].substring(0, open))
+                    && register(operands[1].substring(open + 1, operands[1].length() - 1)) != NO_REGISTER
+                    && register(operands[0]) != NO_REGISTER) {
+                index = addMemory(opcode, operands[0], Integer.parseInt(operands[1].substring(0, open)),
+                        operands[1].substring(open + 1, operands[1].length() - 1));
+            } else if (operands.length == 1) {
+                index = add(opcode, operands[0]);
+            } else if (operands.length == 2) {
+                index = add(opcode, operands[0], operands[1]);
+            } else if (operands.length == 3) {
+                index = add(opcode, operands[0], operands[1], operands[2]);
+            } else {
+                return text(line);
+            }
+        }
+        if (!render(index).equals(line)) {
+            size--; // Spacing the renderer would not reproduce
+            return text(line);
+        }
+        return index;
+    }
+
+    // Classifies an operand; the kind is in the high half and the value in the low half
+    private long operand(String text) {
+        int register = register(text);
+        if (register != NO_REGISTER) {
+            return ((long) REG << 32) | register;
+        }
+        if (isImmediate(text)) {
+            try {
+                return ((long) IMM << 32) | (Integer.parseInt(text) & 0xFFFFFFFFL);
+            } catch (NumberFormatException e) {
+                // Too large for an int, kept as written
+            }
+        }
+        return ((long) SYM << 32) | symbol(text);
+    }
+
+    private static int kindOf(long operand) {
+        return (int) (operand >>> 32);
+    }
+
+    // Only integers written the way they render, so "007" or "-0" stay symbols
+    private static boolean isImmediate(String text) {
+        int start = text.startsWith("-") ? 1 : 0;
+        if (text.length() == start || text.length() - start > 10) {
+            return false;
+        }
+        if (text.charAt(start) == '0' && (text.length() > start + 1 || start == 1)) {
+            return false;
+        }
+        for (int i = start; i < text.length(); i++) {
+            if (!Character.isDigit(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**********************************************************
+     * METHOD: copyFrom(int start)                              *
+     * DESCRIPTION: Copies the instructions from a position on. *
+     * RETURN VALUE: MipsCode - the copy, with its own pool.    *
+     **********************************************************/
+    public MipsCode copyFrom(int start) {
+        MipsCode copy = new MipsCode();
+        copy.append(this, start, size);
+        return copy;
+    }
+
+    public void append(MipsCode other) {
+        append(other, 0, other.size);
+    }
+
+    /**********************************************************
+     * METHOD: writeSnapshot(TableSnapshot.Writer writer)       *
+     * DESCRIPTION: Writes the instructions, typed, and the     *
+     *              symbol pool to a snapshot. readSnapshot()   *
+     *              reads them back, see TableSnapshot.         *
+     **********************************************************/
+    void writeSnapshot(TableSnapshot.Writer writer) {
+        writer.putInts(Arrays.copyOf(words, size * WORDS));
+        writer.putInt(symbols.size());
+        for (String symbol : symbols) {
+            writer.putString(symbol);
+        }
+    }
+
+    static MipsCode readSnapshot(TableSnapshot.Reader reader) {
+        MipsCode code = new MipsCode();
+        int[] saved = reader.getInts();
+        code.words = Arrays.copyOf(saved, Math.max(saved.length, code.words.length));
+        code.size = saved.length / WORDS;
+        int count = reader.getInt();
+        for (int i = 0; i < count; i++) {
+            code.symbol(reader.getString());
+        }
+        return code;
+    }
+
+    // Appends the instructions of another code in [from, to)
+    public void append(MipsCode other, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int at = i * WORDS;
+            int header = other.words[at];
+            int[] operands = {other.words[at + 1], other.words[at + 2], other.words[at + 3]};
+            for (int operand = 0; operand < 3; operand++) {
+                if (((header >>> (8 + 2 * operand)) & 3) == SYM) {
+                    operands[operand] = symbol(other.symbols.get(operands[operand]));
+                }
+            }
+            add(OPCODES[header & 0xFF], header >>> 8, operands[0], operands[1], operands[2]);
+        }
+    }
+
+    /**********************************************************
+     * METHOD: render(int index, StringBuilder line)            *
+     * DESCRIPTION: Writes one instruction in MIPS syntax.      *
+     **********************************************************/
+    public void render(int index, StringBuilder line) {
+        CodeGenerator opcode = getOpcode(index);
+        switch (opcode) {
+            case LABEL:
+                line.append(symbols.get(getOperand(index, 0))).append(':');
+                return;
+            case TEXT:
+                line.append(symbols.get(getOperand(index, 0)));
+                return;
+            case COMMENT:
+                line.append("# ").append(symbols.get(getOperand(index, 0)));
+                renderOperand(index, 1, line);
+                return;
+            default:
+                break;
+        }
+
+        line.append(opcode.getMnemonic() != null ? opcode.getMnemonic() : opcode.name());
+        if (getKind(index, 0) == NONE) {
+            return;
+        }
+        line.append(' ');
+        renderOperand(index, 0, line);
+        if (opcode.isMemoryAccess() && getKind(index, 1) == IMM && getKind(index, 2) == REG) {
+            line.append(", ");
+            renderOperand(index, 1, line);
+            line.append('(');
+            renderOperand(index, 2, line);
+            line.append(')');
+            return;
+        }
+        for (int operand = 1; operand < 3 && getKind(index, operand) != NONE; operand++) {
+            line.append(", ");
+            renderOperand(index, operand, line);
+        }
+    }
+
+    public String render(int index) {
+        StringBuilder line = new StringBuilder();
+        render(index, line);
+        return line.toString();
+    }
+
+    private void renderOperand(int index, int operand, StringBuilder line) {
+        int value = getOperand(index, operand);
+        switch (getKind(index, operand)) {
+            case REG:
+                line.append(registerName(value));
+                break;
+            case IMM:
+                line.append(value);
+                break;
+            case SYM:
+                line.append(symbols.get(value));
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**********************************************************
+     * METHOD: writeTo(PrintStream out)                         *
+     * DESCRIPTION: Prints every instruction, one per line.     *
+     **********************************************************/
+    public void writeTo(PrintStream out) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            line.setLength(0);
+            render(i, line);
+            out.append(line).println();
+        }
+    }
+
+    public void writeTo(PrintWriter writer) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            line.setLength(0);
+            render(i, line);
+            writer.append(line).println();
+        }
+    }
+
+    /**********************************************************
+     * METHOD: join(String separator)                           *
+     * RETURN VALUE: String - every instruction rendered, with  *
+     *              the separator between them.                 *
+     **********************************************************/
+    public String join(String separator) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                text.append(separator);
+            }
+            render(i, text);
+        }
+        return text.toString();
+    }
+
+    public List<String> lines() {
+        List<String> lines = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            lines.add(render(i));
+        }
+        return lines;
+    }
+}
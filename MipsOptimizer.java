@@ -0,0 +1,155 @@
+/*******************************************************************
+ * MipsOptimizer Class                                             *
+ *                                                                 *
+ * PROGRAMMER: Emily Culp                                          *
+ * COURSE: CS340 - Programming Language Design                     *
+ * DATE: 12/10/2024                                                *
+ * REQUIREMENT: Final - Compiler                                   *
+ *                                                                 *
+ * DESCRIPTION:                                                    *
+ * The MipsOptimizer class runs the passes that improve the        *
+ * generated MIPS code before it is printed. Which passes run is   *
+ * set with -Dcompiler.opt=<level>:                                *
+ *                                                                 *
+ *   0  (the default) none; the code is printed as generated.      *
+ *   1  the generator hands out virtual registers for temporary    *
+ *      values. SsaOptimizer propagates constants, folds branches  *
+ *      and removes expressions computed twice, StrengthReducer    *
+ *      turns multiplies and divides by constants into shifts and  *
+ *      adds where they are cheaper, DeadCodeEliminator            *
+ *      removes the blocks, labels and instructions that do        *
+ *      nothing, LinearScanAllocator maps the registers left to    *
+ *      real ones, and PeepholeOptimizer rewrites the short        *
+ *      patterns of waste left in the allocated code.              *
+ *   2  GraphColoringAllocator maps them instead, coalescing       *
+ *      moves; the report compares its spills with the linear      *
+ *      scan's on the same code.                                   *
+ *                                                                 *
+ * Each pass that runs prints one line about what it did. Values   *
+ * that do not fit in the registers are spilled to a stack frame   *
+ * at either level.                                                *
+ *                                                                 *
+ * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean  *
+ * Zeller.                                                         *
+ *                                                                 *
+ * CREDITS: This code was written with the help of ChatGPT.        *
+ *******************************************************************/
+
+import java.io.PrintStream;
+import java.util.Map;
+
+public class MipsOptimizer {
+    public static final String LEVEL_PROPERTY = "compiler.opt";
+
+    private final int level;
+    private final PrintStream out;
+    private Map<String, Integer> stackSlots = Map.of();
+    private int frameSize;
+
+    public MipsOptimizer(int level, PrintStream out) {
+        this.level = level;
+        this.out = out;
+    }
+
+    /**********************************************************
+     * METHOD: getLevel()                                       *
+     * RETURN VALUE: int - the level set with -Dcompiler.opt,   *
+     *              or 0.                                       *
+     **********************************************************/
+    public static int getLevel() {
+        return Math.max(0, Integer.getInteger(LEVEL_PROPERTY, 0));
+    }
+
+    /**********************************************************
+     * METHOD: optimize(MipsCode code)                          *
+     * DESCRIPTION: Runs the passes of the level on the code,   *
+     *              in place.                                   *
+     * PARAMETERS: MipsCode code - the generated code.          *
+     * RETURN VALUE: None                                        *
+     **********************************************************/
+    public void optimize(MipsCode code) {
+        if (level >= 1) {
+            optimizeSsa(code);
+            reduceStrength(code);
+            eliminateDeadCode(code);
+        }
+        if (level >= 2) {
+            int linearScanSpills = new LinearScanAllocator(code).plan(); // Leaves the code as it is
+            GraphColoringAllocator allocator = new GraphColoringAllocator(code);
+            allocator.allocate();
+            report(allocator);
+            out.println("  " + allocator.getMovesCoalesced() + " moves coalesced, "
+                    + (linearScanSpills - allocator.getSpillCount()) + " spills avoided over linear scan"
+                    + (allocator.isFallBack() ? " (too many values, linear scan used)" : ""));
+        } else if (level >= 1) {
+            LinearScanAllocator allocator = new LinearScanAllocator(code);
+            allocator.allocate();
+            report(allocator);
+        }
+        if (level >= 1) {
+            optimizePeephole(code);
+        }
+    }
+
+    private void optimizeSsa(MipsCode code) {
+        SsaOptimizer optimizer = new SsaOptimizer(code);
+        optimizer.optimize();
+        out.println("SSA optimization: " + optimizer.getNameCount() + " names and " + optimizer.getPhiCount()
+                + " phis");
+        out.println("  Constant propagation: " + optimizer.getConstantsFolded() + " values made li, "
+                + optimizer.getOperandsFolded() + " operands made immediates, " + optimizer.getBranchesFolded()
+                + " branches resolved, " + optimizer.getBlocksUnreachable() + " blocks never run");
+        out.println("  Value numbering: " + optimizer.getRedundant() + " redundant expressions removed, "
+                + optimizer.getSimplified() + " algebraic simplifications");
+    }
+
+    private void reduceStrength(MipsCode code) {
+        StrengthReducer reducer = new StrengthReducer(code);
+        reducer.reduce();
+        out.println("Strength reduction: " + reducer.getMultiplies() + " multiplies and " + reducer.getDivides()
+                + " divides (" + reducer.getRemainders() + " with a remainder) by constants lowered, "
+                + reducer.getCyclesBefore() + " -> " + reducer.getCyclesAfter() + " cycles");
+    }
+
+    private void eliminateDeadCode(MipsCode code) {
+        int before = code.size();
+        DeadCodeEliminator eliminator = new DeadCodeEliminator(code);
+        eliminator.eliminate();
+        out.println("Dead code elimination: " + eliminator.getBlocksRemoved() + " unreachable blocks, "
+                + eliminator.getLabelsRemoved() + " unused labels and " + eliminator.getInstructionsRemoved()
+                + " dead instructions removed, " + before + " -> " + code.size() + " lines"
+                + (eliminator.isTextFound() ? " (code kept as text, no liveness)"
+                        : " (liveness run " + eliminator.getRounds() + " times)"));
+    }
+
+    private void optimizePeephole(MipsCode code) {
+        int before = code.size();
+        PeepholeOptimizer optimizer = new PeepholeOptimizer(code);
+        optimizer.optimize();
+        out.println("Peephole optimization: " + optimizer.getRewrites() + " rewrites (" + optimizer.describeHits()
+                + "), " + before + " -> " + code.size() + " lines (window slid " + optimizer.getRounds() + " times)");
+    }
+
+    private void report(RegisterAllocator allocator) {
+        out.println(allocator.getName() + " allocation: " + allocator.getValueCount() + " values in "
+                + allocator.getRegistersUsed() + " registers, " + allocator.getMovesRemoved()
+                + " moves and " + allocator.getCommentsRemoved() + " register comments removed");
+        stackSlots = allocator.getStackSlots();
+        frameSize = allocator.getFrameSize();
+        if (allocator.getSpilledValues() > 0) {
+            out.println("  " + allocator.getSpilledValues() + " values spilled: " + stackSlots.size()
+                    + " stack slots in a " + frameSize + "-byte frame, " + allocator.getLoads() + " loads, "
+                    + allocator.getStores() + " stores, " + allocator.getRematerialized()
+                    + " constants loaded again with li");
+        }
+    }
+
+    // The stack slots of the values spilled by optimize(), by register name, as offsets from $sp
+    public Map<String, Integer> getStackSlots() {
+        return stackSlots;
+    }
+
+    public int getFrameSize() {
+        return frameSize;
+    }
+}
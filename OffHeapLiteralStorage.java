@@ -0,0 +1,166 @@
+/*******************************************************************
+ * OffHeapLiteralStorage Class                                     *
+ *                                                                 *
+ * PROGRAMMER: Emily Culp                                          *
+ * COURSE: CS340 - Programming Language Design                     *
+ * DATE: 12/10/2024                                                *
+ * REQUIREMENT: Final - Compiler                                   *
+ *                                                                 *
+ * DESCRIPTION:                                                    *
+ * The OffHeapLiteralStorage class keeps the values of a literal   *
+ * table outside the Java heap. Each value is a 16-byte record in  *
+ * a direct ByteBuffer: a tag saying what kind of value it is and  *
+ * eight bytes of content. Ints, doubles and booleans are stored   *
+ * in the content directly; a string is stored in an               *
+ * OffHeapStrings arena and its record holds the offset and        *
+ * length. Any other kind of value stays on the heap in a map.     *
+ *                                                                 *
+ * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean  *
+ * Zeller.                                                         *
+ *                                                                 *
+ * CREDITS: This code was written with the help of ChatGPT.        *
+ *******************************************************************/
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+public class OffHeapLiteralStorage implements LiteralStorage {
+    private static final int TAG = 0;
+    private static final int CONTENT = 8;
+    private static final int RECORD_SIZE = 16;
+
+    private static final byte NULL_VALUE = 0;
+    private static final byte INT_VALUE = 1;
+    private static final byte DOUBLE_VALUE = 2;
+    private static final byte BOOLEAN_VALUE = 3;
+    private static final byte STRING_VALUE = 4;
+    private static final byte HEAP_VALUE = 5;
+
+    private ByteBuffer records;
+    private final OffHeapStrings strings;
+    private final Map<Integer, Object> heapValues = new HashMap<>();
+    private int size;
+
+    public OffHeapLiteralStorage() {
+        records = OffHeapStrings.allocate(16 * RECORD_SIZE);
+        strings = new OffHeapStrings(256);
+    }
+
+    // Wraps records and strings that were stored before, such as a mapped snapshot
+    OffHeapLiteralStorage(ByteBuffer records, OffHeapStrings strings) {
+        this.records = records.order(ByteOrder.LITTLE_ENDIAN);
+        this.strings = strings;
+        this.size = records.capacity() / RECORD_SIZE;
+    }
+
+    /**********************************************************
+     * METHOD: copyOf(LiteralStorage values)                    *
+     * DESCRIPTION: Copies any literal storage into records.    *
+     * PARAMETERS: LiteralStorage values - the storage.         *
+     * RETURN VALUE: OffHeapLiteralStorage - the copy.          *
+     **********************************************************/
+    static OffHeapLiteralStorage copyOf(LiteralStorage values) {
+        OffHeapLiteralStorage copy = new OffHeapLiteralStorage();
+        for (int i = 0; i < values.size(); i++) {
+            copy.add(values.get(i));
+        }
+        return copy;
+    }
+
+    // Returns the records in use, as a read-only view
+    ByteBuffer recordContents() {
+        if (!heapValues.isEmpty()) {
+            throw new IllegalStateException("Only int, double, boolean and string literals can be saved.");
+        }
+        return records.asReadOnlyBuffer().position(0).limit(size * RECORD_SIZE);
+    }
+
+    OffHeapStrings getStrings() {
+        return strings;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int add(Object value) {
+        if ((size + 1) * RECORD_SIZE > records.capacity()) {
+            grow();
+        }
+        int record = size * RECORD_SIZE;
+        byte tag;
+        long content = 0;
+        if (value == null) {
+            tag = NULL_VALUE;
+        } else if (value instanceof Integer i) {
+            tag = INT_VALUE;
+            content = i;
+        } else if (value instanceof Double d) {
+            tag = DOUBLE_VALUE;
+            content = Double.doubleToRawLongBits(d);
+        } else if (value instanceof Boolean b) {
+            tag = BOOLEAN_VALUE;
+            content = b ? 1 : 0;
+        } else if (value instanceof String string) {
+            tag = STRING_VALUE;
+            content = ((long) strings.add(string) << 32) | string.length();
+        } else {
+            tag = HEAP_VALUE;
+            heapValues.put(size, value);
+        }
+        records.put(record + TAG, tag);
+        records.putLong(record + CONTENT, content);
+        return size++;
+    }
+
+    @Override
+    public Object get(int position) {
+        int record = position * RECORD_SIZE;
+        long content = records.getLong(record + CONTENT);
+        switch (records.get(record + TAG)) {
+            case INT_VALUE:
+                return (int) content;
+            case DOUBLE_VALUE:
+                return Double.longBitsToDouble(content);
+            case BOOLEAN_VALUE:
+                return content != 0;
+            case STRING_VALUE:
+                return strings.get((int) (content >>> 32), (int) content);
+            case HEAP_VALUE:
+                return heapValues.get(position);
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public boolean matches(int position, Object value) {
+        int record = position * RECORD_SIZE;
+        byte tag = records.get(record + TAG);
+        if (tag == STRING_VALUE) {
+            long content = records.getLong(record + CONTENT);
+            return value instanceof String string && strings.matches((int) (content >>> 32), (int) content, string);
+        }
+        return Objects.equals(get(position), value);
+    }
+
+    public long getOffHeapBytes() {
+        return records.capacity() + strings.getBytesUsed();
+    }
+
+    private void grow() {
+        long capacity = (long) records.capacity() * 2;
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IllegalStateException("The off-heap literal table is full.");
+        }
+        ByteBuffer larger = OffHeapStrings.allocate((int) capacity);
+        records.clear();
+        larger.put(records);
+        records = larger;
+    }
+}
@@ -0,0 +1,144 @@
+/*******************************************************************
+ * OffHeapStrings Class                                            *
+ *                                                                 *
+ * PROGRAMMER: Emily Culp                                          *
+ * COURSE: CS340 - Programming Language Design                     *
+ * DATE: 12/10/2024                                                *
+ * REQUIREMENT: Final - Compiler                                   *
+ *                                                                 *
+ * DESCRIPTION:                                                    *
+ * The OffHeapStrings class is an append-only arena of characters  *
+ * kept in a direct ByteBuffer, outside the Java heap. A string is *
+ * stored as its UTF-16 chars and found again by its offset and    *
+ * length, so the off-heap tables can keep names and string values *
+ * without any String objects for the garbage collector to trace.  *
+ * Strings can be compared and hashed where they lie, without      *
+ * being copied back onto the heap. Space is never reused; the     *
+ * arena is freed with the table that owns it. The off-heap tables *
+ * lay out their buffers in little-endian order, so a TableSnapshot*
+ * can write them to a file and map them back on any machine.      *
+ *                                                                 *
+ * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean  *
+ * Zeller.                                                         *
+ *                                                                 *
+ * CREDITS: This code was written with the help of ChatGPT.        *
+ *******************************************************************/
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public class OffHeapStrings {
+    private ByteBuffer chars;
+    private int used; // In chars
+
+    public OffHeapStrings(int initialChars) {
+        chars = allocate(Math.max(initialChars, 16) * Character.BYTES);
+    }
+
+    // Wraps chars that were stored before, such as a mapped snapshot
+    OffHeapStrings(ByteBuffer chars) {
+        this.chars = chars.order(ByteOrder.LITTLE_ENDIAN);
+        this.used = chars.capacity() / Character.BYTES;
+    }
+
+    /**********************************************************
+     * METHOD: allocate(int bytes)                              *
+     * DESCRIPTION: Allocates a zeroed direct buffer in the     *
+     *              byte order all off-heap tables use.         *
+     * PARAMETERS: int bytes - its size.                        *
+     * RETURN VALUE: ByteBuffer - the buffer.                   *
+     **********************************************************/
+    static ByteBuffer allocate(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // Returns the chars stored so far, as a read-only view
+    ByteBuffer contents() {
+        return chars.asReadOnlyBuffer().position(0).limit(used * Character.BYTES);
+    }
+
+    /**********************************************************
+     * METHOD: add(String string)                               *
+     * DESCRIPTION: Copies a string into the arena.             *
+     * PARAMETERS: String string - the string.                  *
+     * RETURN VALUE: int - its offset, to be kept along with    *
+     *              its length.                                 *
+     **********************************************************/
+    public int add(String string) {
+        int length = string.length();
+        ensureCapacity(used + length);
+        int offset = used;
+        for (int i = 0; i < length; i++) {
+            chars.putChar((offset + i) * Character.BYTES, string.charAt(i));
+        }
+        used += length;
+        return offset;
+    }
+
+    /**********************************************************
+     * METHOD: get(int offset, int length)                      *
+     * DESCRIPTION: Copies a stored string back onto the heap.  *
+     * PARAMETERS: int offset - where it starts.                *
+     *             int length - how many chars it has.          *
+     * RETURN VALUE: String - the string.                       *
+     **********************************************************/
+    public String get(int offset, int length) {
+        char[] copy = new char[length];
+        for (int i = 0; i < length; i++) {
+            copy[i] = chars.getChar((offset + i) * Character.BYTES);
+        }
+        return new String(copy);
+    }
+
+    /**********************************************************
+     * METHOD: matches(int offset, int length, String string)   *
+     * DESCRIPTION: Compares a stored string with a heap string *
+     *              char by char, without copying it.           *
+     * RETURN VALUE: boolean - true if they are equal.          *
+     **********************************************************/
+    public boolean matches(int offset, int length, String string) {
+        if (string.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (chars.getChar((offset + i) * Character.BYTES) != string.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**********************************************************
+     * METHOD: hash(int offset, int length)                     *
+     * DESCRIPTION: Computes the same hash code String does for *
+     *              a stored string.                            *
+     * RETURN VALUE: int - the hash code.                       *
+     **********************************************************/
+    public int hash(int offset, int length) {
+        int h = 0;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + chars.getChar((offset + i) * Character.BYTES);
+        }
+        return h;
+    }
+
+    public long getBytesUsed() {
+        return (long) used * Character.BYTES;
+    }
+
+    private void ensureCapacity(int neededChars) {
+        int capacity = chars.capacity() / Character.BYTES;
+        if (neededChars <= capacity) {
+            return;
+        }
+        long grown = Math.max((long) capacity * 2, neededChars);
+        if (grown * Character.BYTES > Integer.MAX_VALUE) {
+            throw new IllegalStateException("The off-heap string arena is full.");
+        }
+        ByteBuffer larger = allocate((int) grown * Character.BYTES);
+        chars.clear();
+        chars.limit(used * Character.BYTES);
+        larger.put(chars);
+        chars = larger;
+    }
+}
@@ -0,0 +1,270 @@
+/*******************************************************************
+ * OffHeapSymbolStorage Class                                      *
+ *                                                                 *
+ * PROGRAMMER: Emily Culp                                          *
+ * COURSE: CS340 - Programming Language Design                     *
+ * DATE: 12/10/2024                                                *
+ * REQUIREMENT: Final - Compiler                                   *
+ *                                                                 *
+ * DESCRIPTION:                                                    *
+ * The OffHeapSymbolStorage class keeps the symbols of a           *
+ * SymbolTable outside the Java heap, in a direct ByteBuffer of    *
+ * fixed-width records, one per slot. Names and string values are  *
+ * kept in an OffHeapStrings arena and referred to by offset and   *
+ * length, and the hash of each name is stored in its record, so   *
+ * the name index never has to bring a name back onto the heap.    *
+ * A table of millions of symbols is then a couple of buffers as   *
+ * far as the garbage collector is concerned. The rare value that  *
+ * is neither primitive nor a string stays on the heap in a map.   *
+ *                                                                 *
+ * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean  *
+ * Zeller.                                                         *
+ *                                                                 *
+ * CREDITS: This code was written with the help of ChatGPT.        *
+ *******************************************************************/
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Map;
+
+public class OffHeapSymbolStorage implements SymbolStorage {
+    private static final int INITIAL_CAPACITY = 16;
+
+    // The layout of one record
+    private static final int ID = 0;
+    private static final int NAME_OFFSET = 4;
+    private static final int NAME_LENGTH = 8;
+    private static final int NAME_HASH = 12;
+    private static final int VALUE_BITS = 16; // For a string value, its offset and length
+    private static final int LEVEL = 24;
+    private static final int SHADOWED = 28;
+    private static final int NEXT_IN_SCOPE = 32;
+    private static final int TYPE = 36;
+    private static final int SCOPE = 40;
+    private static final int REGISTER = 44;
+    private static final int VALUE_TAG = 48;
+    private static final int OBJECT_KIND = 49;
+    private static final int RECORD_SIZE = 56;
+
+    // What an object value is, and so where it is kept
+    private static final byte NO_OBJECT = 0;
+    private static final byte STRING_OBJECT = 1;
+    private static final byte HEAP_OBJECT = 2;
+
+    private ByteBuffer records;
+    private final OffHeapStrings strings;
+    private final Map<Integer, Object> heapObjects = new HashMap<>();
+
+    public OffHeapSymbolStorage() {
+        records = OffHeapStrings.allocate(INITIAL_CAPACITY * RECORD_SIZE);
+        strings = new OffHeapStrings(INITIAL_CAPACITY * 8);
+    }
+
+    // Wraps records and strings that were stored before, such as a mapped snapshot
+    OffHeapSymbolStorage(ByteBuffer records, OffHeapStrings strings) {
+        this.records = records.order(ByteOrder.LITTLE_ENDIAN);
+        this.strings = strings;
+    }
+
+    /**********************************************************
+     * METHOD: copyOf(SymbolStorage storage, int size)          *
+     * DESCRIPTION: Copies the first slots of any symbol        *
+     *              storage into records.                       *
+     * PARAMETERS: SymbolStorage storage - the storage.         *
+     *             int size - how many slots are in use.        *
+     * RETURN VALUE: OffHeapSymbolStorage - the copy.           *
+     **********************************************************/
+    static OffHeapSymbolStorage copyOf(SymbolStorage storage, int size) {
+        OffHeapSymbolStorage copy = new OffHeapSymbolStorage();
+        copy.grow(Math.max(size, INITIAL_CAPACITY));
+        for (int slot = 0; slot < size; slot++) {
+            copy.setId(slot, storage.getId(slot));
+            copy.setName(slot, storage.getName(slot));
+            copy.setType(slot, storage.getType(slot));
+            copy.setScope(slot, storage.getScope(slot));
+            copy.setRegister(slot, storage.getRegister(slot));
+            copy.setValue(slot, storage.getValueTag(slot), storage.getValueBits(slot), storage.getValueObject(slot));
+            copy.setLevel(slot, storage.getLevel(slot));
+            copy.setShadowed(slot, storage.getShadowed(slot));
+            copy.setNextInScope(slot, storage.getNextInScope(slot));
+        }
+        return copy;
+    }
+
+    // Returns the records of the first slots, as a read-only view
+    ByteBuffer recordContents(int size) {
+        if (!heapObjects.isEmpty()) {
+            throw new IllegalStateException("Only int, double, boolean and string values can be saved.");
+        }
+        return records.asReadOnlyBuffer().position(0).limit(size * RECORD_SIZE);
+    }
+
+    OffHeapStrings getStrings() {
+        return strings;
+    }
+
+    @Override
+    public int capacity() {
+        return records.capacity() / RECORD_SIZE;
+    }
+
+    @Override
+    public void grow(int capacity) {
+        if ((long) capacity * RECORD_SIZE > Integer.MAX_VALUE) {
+            throw new IllegalStateException("The off-heap symbol table is full.");
+        }
+        ByteBuffer larger = OffHeapStrings.allocate(capacity * RECORD_SIZE);
+        records.clear();
+        larger.put(records);
+        records = larger;
+    }
+
+    /**********************************************************
+     * METHOD: getOffHeapBytes()                                *
+     * RETURN VALUE: long - the bytes held outside the heap by  *
+     *              the records and the string arena.           *
+     **********************************************************/
+    public long getOffHeapBytes() {
+        return records.capacity() + strings.getBytesUsed();
+    }
+
+    private static int at(int slot, int field) {
+        return slot * RECORD_SIZE + field;
+    }
+
+    @Override
+    public int getId(int slot) {
+        return records.getInt(at(slot, ID));
+    }
+
+    @Override
+    public void setId(int slot, int id) {
+        records.putInt(at(slot, ID), id);
+    }
+
+    @Override
+    public String getName(int slot) {
+        return strings.get(records.getInt(at(slot, NAME_OFFSET)), records.getInt(at(slot, NAME_LENGTH)));
+    }
+
+    @Override
+    public void setName(int slot, String name) {
+        records.putInt(at(slot, NAME_OFFSET), strings.add(name));
+        records.putInt(at(slot, NAME_LENGTH), name.length());
+        records.putInt(at(slot, NAME_HASH), name.hashCode());
+    }
+
+    @Override
+    public boolean nameEquals(int slot, String name) {
+        return records.getInt(at(slot, NAME_HASH)) == name.hashCode()
+                && strings.matches(records.getInt(at(slot, NAME_OFFSET)), records.getInt(at(slot, NAME_LENGTH)), name);
+    }
+
+    @Override
+    public int nameHash(int slot) {
+        return records.getInt(at(slot, NAME_HASH));
+    }
+
+    @Override
+    public int getType(int slot) {
+        return records.getInt(at(slot, TYPE));
+    }
+
+    @Override
+    public void setType(int slot, int code) {
+        records.putInt(at(slot, TYPE), code);
+    }
+
+    @Override
+    public int getScope(int slot) {
+        return records.getInt(at(slot, SCOPE));
+    }
+
+    @Override
+    public void setScope(int slot, int code) {
+        records.putInt(at(slot, SCOPE), code);
+    }
+
+    @Override
+    public int getRegister(int slot) {
+        return records.getInt(at(slot, REGISTER));
+    }
+
+    @Override
+    public void setRegister(int slot, int code) {
+        records.putInt(at(slot, REGISTER), code);
+    }
+
+    @Override
+    public byte getValueTag(int slot) {
+        return records.get(at(slot, VALUE_TAG));
+    }
+
+    @Override
+    public long getValueBits(int slot) {
+        return records.getLong(at(slot, VALUE_BITS));
+    }
+
+    @Override
+    public Object getValueObject(int slot) {
+        switch (records.get(at(slot, OBJECT_KIND))) {
+            case STRING_OBJECT:
+                long reference = records.getLong(at(slot, VALUE_BITS));
+                return strings.get((int) (reference >>> 32), (int) reference);
+            case HEAP_OBJECT:
+                return heapObjects.get(slot);
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public void setValue(int slot, byte tag, long bits, Object object) {
+        if (records.get(at(slot, OBJECT_KIND)) == HEAP_OBJECT) {
+            heapObjects.remove(slot);
+        }
+
+        byte kind = NO_OBJECT;
+        if (object instanceof String string) {
+            kind = STRING_OBJECT;
+            bits = ((long) strings.add(string) << 32) | string.length();
+        } else if (object != null) {
+            kind = HEAP_OBJECT;
+            heapObjects.put(slot, object);
+        }
+        records.put(at(slot, VALUE_TAG), tag);
+        records.putLong(at(slot, VALUE_BITS), bits);
+        records.put(at(slot, OBJECT_KIND), kind);
+    }
+
+    @Override
+    public int getLevel(int slot) {
+        return records.getInt(at(slot, LEVEL));
+    }
+
+    @Override
+    public void setLevel(int slot, int level) {
+        records.putInt(at(slot, LEVEL), level);
+    }
+
+    @Override
+    public int getShadowed(int slot) {
+        return records.getInt(at(slot, SHADOWED));
+    }
+
+    @Override
+    public void setShadowed(int slot, int shadowed) {
+        records.putInt(at(slot, SHADOWED), shadowed);
+    }
+
+    @Override
+    public int getNextInScope(int slot) {
+        return records.getInt(at(slot, NEXT_IN_SCOPE));
+    }
+
+    @Override
+    public void setNextInScope(int slot, int next) {
+        records.putInt(at(slot, NEXT_IN_SCOPE), next);
+    }
+}
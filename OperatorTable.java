@@ -21,13 +21,15 @@
  * *
  *******************************************************************/
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 public class OperatorTable {
 
     private final Map<String, Integer> operatorMap;
-    private Map<String, Token> tokens;
+    private final Map<String, Token> tokens;
+    private static final OperatorTable STANDARD = new OperatorTable(new OperatorTable());  // Shared read-only copy
 
     public OperatorTable() {
         operatorMap = new HashMap<>();
@@ -35,6 +37,30 @@ public class OperatorTable {
         tokens = new HashMap<>();
     }
 
+    /**********************************************************
+     * METHOD: OperatorTable(OperatorTable source) *
+     * DESCRIPTION: Creates a read-only copy of another table. The copy keeps the iteration *
+     *              order of the source, and any attempt to add to it throws an *
+     *              UnsupportedOperationException. *
+     * PARAMETERS: OperatorTable source - the table to copy. *
+     * RETURN VALUE: none *
+     **********************************************************/
+    private OperatorTable(OperatorTable source) {
+        operatorMap = Collections.unmodifiableMap(new HashMap<>(source.operatorMap));
+        tokens = Collections.unmodifiableMap(new HashMap<>(source.tokens));
+    }
+
+    /**********************************************************
+     * METHOD: standard() *
+     * DESCRIPTION: Returns the shared, read-only table of the predefined operators. It is *
+     *              built once per JVM and can be used by any number of compilations at once. *
+     * PARAMETERS: none *
+     * RETURN VALUE: OperatorTable - the shared operator table. *
+     **********************************************************/
+    public static OperatorTable standard() {
+        return STANDARD;
+    }
+
     /**********************************************************
      * METHOD: initializeTable() *
      * DESCRIPTION: Initializes the operator table with predefined operators and their token IDs. *
@@ -0,0 +1,377 @@
+/*******************************************************************
+ * PeepholeOptimizer Class                                         *
+ *                                                                 *
+ * PROGRAMMER: Emily Culp                                          *
+ * COURSE: CS340 - Programming Language Design                     *
+ * DATE: 12/10/2024                                                *
+ * REQUIREMENT: Final - Compiler                                   *
+ *                                                                 *
+ * DESCRIPTION:                                                    *
+ * The PeepholeOptimizer class slides a window over the allocated  *
+ * MIPS code and rewrites the short patterns the generator leaves  *
+ * behind. The window holds the next instructions in order,        *
+ * passing over comments and blank lines, and the rules in RULES   *
+ * are tried on it in turn:                                        *
+ *                                                                 *
+ *   li-move     li r, k then move d, r where r dies: li d, k.     *
+ *   store-load  sw r, A then lw d, A: move d, r, or nothing when  *
+ *               d is r.                                           *
+ *   add-zero    add, addu, sub or subu of $zero, or addi or subi  *
+ *               of 0: a move, or nothing when it moves a register *
+ *               to itself.                                        *
+ *   jump-next   a jump or branch to the label right after it is   *
+ *               removed.                                          *
+ *   loop-store  the sw of a loop variable before the jump back,   *
+ *               as generateWhileLoop writes it, runs once after   *
+ *               the loop instead of on every iteration, or not at *
+ *               all when the loop never changes the register.     *
+ *                                                                 *
+ * A rewrite can make a new pattern, so the window is slid over    *
+ * the code again until it finds nothing; the hits of each rule    *
+ * are counted. The rules run can be chosen with                   *
+ * -Dcompiler.peephole=<rule>,<rule>,...; all of them run by       *
+ * default. A line of code kept as text could read any register,   *
+ * so li-move, which needs to know a register dies, and loop-store *
+ * leave code with one alone.                                      *
+ *                                                                 *
+ * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean  *
+ * Zeller.                                                         *
+ *                                                                 *
+ * CREDITS: This code was written with the help of ChatGPT.        *
+ *******************************************************************/
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+public class PeepholeOptimizer {
+    public static final String RULES_PROPERTY = "compiler.peephole";
+
+    // A rule looks at the window starting at instructions[at] and rewrites it in place, if it matches
+    @FunctionalInterface
+    private interface Rewrite {
+        boolean apply(PeepholeOptimizer optimizer, int[] instructions, int at);
+    }
+
+    private record Rule(String name, int size, Rewrite rewrite) {
+    }
+
+    private static final Rule[] RULES = {
+            new Rule("li-move", 2, PeepholeOptimizer::loadImmediateIntoMove),
+            new Rule("store-load", 2, PeepholeOptimizer::forwardStore),
+            new Rule("add-zero", 1, PeepholeOptimizer::removeAddZero),
+            new Rule("jump-next", 2, PeepholeOptimizer::removeJumpToNext),
+            new Rule("loop-store", 2, PeepholeOptimizer::sinkLoopStore),
+    };
+
+    private static final int ZERO = 0; // $zero
+
+    private final MipsCode code;
+    private final boolean[] enabled = new boolean[RULES.length];
+    private final int[] hits = new int[RULES.length];
+    private int rounds;
+
+    // For the current slide of the window
+    private LiveRanges ranges;            // Null when the code has a line kept as text
+    private Map<Integer, Integer> labels; // The first position of each label, by symbol
+    private BitSet redefined;             // The symbols of the labels defined more than once
+    private int[] targets;                // The branches and jumps to each label, by symbol
+    private BitSet removed;
+    private boolean moved;                // An instruction changed position, so the positions are stale
+
+    public PeepholeOptimizer(MipsCode code) {
+        this(code, System.getProperty(RULES_PROPERTY));
+    }
+
+    /**********************************************************
+     * CONSTRUCTOR: PeepholeOptimizer(MipsCode code,          *
+     *              String rules)                             *
+     * DESCRIPTION: Sets up the rules to run on the code.     *
+     * PARAMETERS: String rules - the names of the rules,     *
+     *              separated by commas, or null for all.     *
+     *              Unknown names are ignored.                *
+     **********************************************************/
+    public PeepholeOptimizer(MipsCode code, String rules) {
+        this.code = code;
+        for (int rule = 0; rule < RULES.length; rule++) {
+            enabled[rule] = rules == null;
+        }
+        if (rules != null) {
+            for (String name : rules.split(",")) {
+                for (int rule = 0; rule < RULES.length; rule++) {
+                    if (RULES[rule].name().equals(name.trim())) {
+                        enabled[rule] = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /**********************************************************
+     * METHOD: optimize()                                       *
+     * DESCRIPTION: Slides the window over the code until no    *
+     *              rule matches, rewriting it in place.        *
+     * RETURN VALUE: int - the number of lines removed.         *
+     **********************************************************/
+    public int optimize() {
+        int before = code.size();
+        do {
+            rounds++;
+        } while (slide() > 0);
+        return before - code.size();
+    }
+
+    // One slide of the window over the code; returns how many rewrites it made
+    private int slide() {
+        ranges = hasText() ? null : new LiveRanges(new ControlFlowGraph(code));
+        findLabels();
+        removed = new BitSet(code.size());
+        moved = false;
+
+        int[] instructions = new int[code.size()];
+        int count = 0;
+        for (int i = 0; i < code.size(); i++) {
+            if (!isSkipped(i)) {
+                instructions[count++] = i;
+            }
+        }
+        instructions = Arrays.copyOf(instructions, count);
+
+        int rewrites = 0;
+        for (int at = 0; at < count && !moved; ) {
+            int matched = 0;
+            for (int rule = 0; rule < RULES.length; rule++) {
+                if (enabled[rule] && at + RULES[rule].size() <= count
+                        && RULES[rule].rewrite().apply(this, instructions, at)) {
+                    hits[rule]++;
+                    matched = RULES[rule].size();
+                    break;
+                }
+            }
+            rewrites += matched > 0 ? 1 : 0;
+            at += Math.max(1, matched); // Windows that were rewritten never overlap
+        }
+        code.removeAll(removed); // Every removal comes before a moved instruction, so it is still in place
+        return rewrites;
+    }
+
+    // Comments and blank lines, which the window passes over
+    private boolean isSkipped(int index) {
+        CodeGenerator opcode = code.getOpcode(index);
+        return opcode == CodeGenerator.COMMENT
+                || (opcode == CodeGenerator.TEXT && code.getSymbol(code.getOperand(index, 0)).isBlank());
+    }
+
+    private boolean hasText() {
+        for (int i = 0; i < code.size(); i++) {
+            if (code.getOpcode(i) == CodeGenerator.TEXT && !isSkipped(i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void findLabels() {
+        labels = new HashMap<>();
+        redefined = new BitSet();
+        targets = new int[0];
+        for (int i = 0; i < code.size(); i++) {
+            CodeGenerator opcode = code.getOpcode(i);
+            if (opcode == CodeGenerator.LABEL) {
+                Integer symbol = code.getOperand(i, 0);
+                if (labels.putIfAbsent(symbol, i) != null) {
+                    redefined.set(symbol); // Branches go to the first one
+                }
+            } else if (opcode.isBranch() || opcode.isJump()) {
+                int symbol = target(i);
+                if (symbol >= targets.length) {
+                    targets = Arrays.copyOf(targets, Math.max(symbol + 1, targets.length * 2));
+                }
+                targets[symbol]++;
+            }
+        }
+    }
+
+    // The symbol of the label a branch or jump goes to
+    private int target(int index) {
+        for (int operand = 2; operand >= 0; operand--) {
+            if (code.getKind(index, operand) == MipsCode.SYM) {
+                return code.getOperand(index, operand);
+            }
+        }
+        return 0;
+    }
+
+    private boolean isRegister(int index, int operand, int register) {
+        return code.getKind(index, operand) == MipsCode.REG && code.getOperand(index, operand) == register;
+    }
+
+    private boolean sameOperand(int first, int second, int operand) {
+        return code.getKind(first, operand) == code.getKind(second, operand)
+                && code.getOperand(first, operand) == code.getOperand(second, operand);
+    }
+
+    private void setMove(int index, int destination, int source) {
+        if (destination == source) {
+            removed.set(index);
+        } else {
+            code.set(index, CodeGenerator.MOVE, MipsCode.kinds(MipsCode.REG, MipsCode.REG, MipsCode.NONE),
+                    destination, source, 0);
+        }
+    }
+
+    // ---- The rules ----
+
+    // li r, k then move d, r, when the move is the last read of r: li d, k
+    private boolean loadImmediateIntoMove(int[] instructions, int at) {
+        int load = instructions[at];
+        int move = instructions[at + 1];
+        if (ranges == null || code.getOpcode(load) != CodeGenerator.LI || code.getOpcode(move) != CodeGenerator.MOVE
+                || !LiveRanges.isRegisterOperand(code, load, 0)
+                || !isRegister(move, 1, code.getOperand(load, 0)) || code.getKind(move, 0) != MipsCode.REG) {
+            return false;
+        }
+        int value = ranges.getValue(move, 1);
+        if (value < 0 || ranges.getEnd(value) != move) {
+            return false;
+        }
+        code.setOperand(load, 0, code.getOperand(move, 0));
+        removed.set(move);
+        return true;
+    }
+
+    // sw r, A then lw d, A: the value is still in r
+    private boolean forwardStore(int[] instructions, int at) {
+        int store = instructions[at];
+        int load = instructions[at + 1];
+        if (code.getOpcode(store) != CodeGenerator.SW || code.getOpcode(load) != CodeGenerator.LW
+                || code.getKind(store, 0) != MipsCode.REG || code.getKind(load, 0) != MipsCode.REG
+                || !sameOperand(store, load, 1) || !sameOperand(store, load, 2)) {
+            return false;
+        }
+        setMove(load, code.getOperand(load, 0), code.getOperand(store, 0));
+        return true;
+    }
+
+    // add d, s, $zero and the like: move d, s
+    private boolean removeAddZero(int[] instructions, int at) {
+        int i = instructions[at];
+        CodeGenerator opcode = code.getOpcode(i);
+        if (code.getKind(i, 0) != MipsCode.REG || code.getKind(i, 1) != MipsCode.REG) {
+            return false;
+        }
+        int source;
+        boolean add = opcode == CodeGenerator.ADD || opcode == CodeGenerator.ADDU;
+        if ((add || opcode == CodeGenerator.SUB || opcode == CodeGenerator.SUBU) && isRegister(i, 2, ZERO)) {
+            source = code.getOperand(i, 1);
+        } else if (add && isRegister(i, 1, ZERO) && code.getKind(i, 2) == MipsCode.REG) {
+            source = code.getOperand(i, 2);
+        } else if ((opcode == CodeGenerator.ADDI || opcode == CodeGenerator.SUBI)
+                && code.getKind(i, 2) == MipsCode.IMM && code.getOperand(i, 2) == 0) {
+            source = code.getOperand(i, 1);
+        } else {
+            return false;
+        }
+        setMove(i, code.getOperand(i, 0), source);
+        return true;
+    }
+
+    // j L or a branch to L, right before L: (the first one, if L is defined twice)
+    private boolean removeJumpToNext(int[] instructions, int at) {
+        int jump = instructions[at];
+        int next = instructions[at + 1];
+        CodeGenerator opcode = code.getOpcode(jump);
+        if (!(opcode.isJump() || opcode.isBranch()) || code.getOpcode(next) != CodeGenerator.LABEL
+                || target(jump) != code.getOperand(next, 0) || labels.get(target(jump)) != next) {
+            return false;
+        }
+        removed.set(jump);
+        return true;
+    }
+
+    // lw r, X / L: / ... / sw r, X / j L / E: where the loop leaves only by branches to E
+    private boolean sinkLoopStore(int[] instructions, int at) {
+        int store = instructions[at];
+        int jump = instructions[at + 1];
+        if (ranges == null || code.getOpcode(store) != CodeGenerator.SW || code.getOpcode(jump) != CodeGenerator.J
+                || code.getKind(store, 0) != MipsCode.REG || code.getKind(store, 1) != MipsCode.SYM
+                || at + 2 >= instructions.length || code.getOpcode(instructions[at + 2]) != CodeGenerator.LABEL) {
+            return false;
+        }
+        int register = code.getOperand(store, 0);
+        int variable = code.getOperand(store, 1);
+        int exit = instructions[at + 2];
+        int exitLabel = code.getOperand(exit, 0);
+        int start = labels.getOrDefault(target(jump), -1);
+        if (start < 0 || start > store || redefined.get(target(jump)) || redefined.get(exitLabel)) {
+            return false;
+        }
+
+        // The register must hold the variable on the way in
+        int before = start - 1;
+        while (before >= 0 && isSkipped(before)) {
+            before--;
+        }
+        if (before < 0 || code.getOpcode(before) != CodeGenerator.LW || !isRegister(before, 0, register)
+                || code.getKind(before, 1) != MipsCode.SYM || code.getOperand(before, 1) != variable) {
+            return false;
+        }
+
+        // Nothing in the loop may touch memory, jump elsewhere, be jumped into, or write the register before an exit
+        int exits = 0;
+        int lastExit = -1;
+        int firstWrite = -1;
+        for (int i = start + 1; i < store; i++) {
+            CodeGenerator opcode = code.getOpcode(i);
+            if (opcode == CodeGenerator.LABEL || opcode.isJump() || opcode.isMemoryAccess() || opcode == CodeGenerator.LA) {
+                return false;
+            }
+            if (opcode.isBranch()) {
+                if (target(i) != exitLabel) {
+                    return false;
+                }
+                exits++;
+                lastExit = i;
+            } else if (firstWrite < 0 && LiveRanges.isDefinition(code, i, 0) && isRegister(i, 0, register)) {
+                firstWrite = i;
+            }
+        }
+        if (exits == 0 || exits != targets[exitLabel]) {
+            return false;
+        }
+        if (firstWrite < 0) {
+            removed.set(store); // The variable never changes
+        } else if (firstWrite > lastExit) {
+            code.move(store, exit); // Right after E:, reached only from the loop
+            moved = true;
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**********************************************************
+     * METHOD: describeHits()                                   *
+     * RETURN VALUE: String - the hits of each rule run, as in  *
+     *              "li-move 2, store-load 0, ...".             *
+     **********************************************************/
+    public String describeHits() {
+        StringBuilder line = new StringBuilder();
+        for (int rule = 0; rule < RULES.length; rule++) {
+            if (enabled[rule]) {
+                line.append(line.length() > 0 ? ", " : "").append(RULES[rule].name()).append(' ').append(hits[rule]);
+            }
+        }
+        return line.toString();
+    }
+
+    public int getRewrites() {
+        return Arrays.stream(hits).sum();
+    }
+
+    // The slides of the window over the code, the last of which rewrote nothing
+    public int getRounds() {
+        return rounds;
+    }
+}
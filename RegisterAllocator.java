@@ -0,0 +1,475 @@
+/*******************************************************************
+ * RegisterAllocator Class                                         *
+ *                                                                 *
+ * PROGRAMMER: Emily Culp                                          *
+ * COURSE: CS340 - Programming Language Design                     *
+ * DATE: 12/10/2024                                                *
+ * REQUIREMENT: Final - Compiler                                   *
+ *                                                                 *
+ * DESCRIPTION:                                                    *
+ * The RegisterAllocator class is the base of the register         *
+ * allocators. A subclass decides which of $t0-$t9 and $s0-$s7     *
+ * each value of LiveRanges goes in; this class then rewrites      *
+ * every operand, removes the comments the generator wrote about   *
+ * its own register pools, which no longer describe the code, and  *
+ * removes every move of a register to itself. It also keeps the   *
+ * counts the optimizer reports.                                   *
+ *                                                                 *
+ * A value the subclass could not fit is spilled. A value that is  *
+ * only ever set by li to one constant is loaded again with li     *
+ * where it is read. Any other value gets a word in a stack frame  *
+ * the code opens by moving $sp down: it is stored there after     *
+ * each write and loaded into a short-lived register before a read *
+ * (unless the instruction before left it in one). The new         *
+ * registers are allocated again, until every value has one.       *
+ *                                                                 *
+ * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean  *
+ * Zeller.                                                         *
+ *                                                                 *
+ * CREDITS: This code was written with the help of ChatGPT.        *
+ *******************************************************************/
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public abstract class RegisterAllocator {
+    protected static final int[] TEMP_REGISTERS = {8, 9, 10, 11, 12, 13, 14, 15, 24, 25}; // $t0-$t9
+    protected static final int[] SAVED_REGISTERS = {16, 17, 18, 19, 20, 21, 22, 23};      // $s0-$s7
+    protected static final int REGISTER_COUNT = TEMP_REGISTERS.length + SAVED_REGISTERS.length;
+    protected static final int SPILLED = -1;
+    private static final int STACK_POINTER = MipsCode.register("$sp");
+    private static final int WORD_SIZE = 4;
+    private static final int MAX_ROUNDS = 8; // Spill code only adds short values, so a round or two does
+
+    protected final MipsCode code;
+    private LiveRanges ranges;
+    private int[] syscalls;
+    private int[] assigned;
+    private int spillCount;
+    private int registersUsed;
+    private int movesRemoved;
+    private int commentsRemoved;
+    private int[] constants;      // The immediate of each rematerializable value
+    private boolean[] isConstant;
+    private int nextVirtual = -1;
+    private int firstSpillRegister = Integer.MAX_VALUE; // Registers from here on hold spill code values
+    private final Map<String, Integer> stackSlots = new LinkedHashMap<>();
+    private int spilledValues;
+    private int rematerialized;
+    private int loads;
+    private int stores;
+
+    protected RegisterAllocator(MipsCode code) {
+        this.code = code;
+    }
+
+    public abstract String getName();
+
+    /**********************************************************
+     * METHOD: assign(LiveRanges ranges)                        *
+     * DESCRIPTION: Chooses a register for every value.         *
+     * RETURN VALUE: int[] - the register of each value, or     *
+     *              SPILLED if it did not get one.              *
+     **********************************************************/
+    protected abstract int[] assign(LiveRanges ranges);
+
+    /**********************************************************
+     * METHOD: plan()                                           *
+     * DESCRIPTION: Chooses the registers without changing the  *
+     *              code, so allocators can be compared.        *
+     * RETURN VALUE: int - the number of values spilled.        *
+     **********************************************************/
+    public int plan() {
+        if (assigned == null) {
+            spillCount = assignAll();
+        }
+        return spillCount;
+    }
+
+    // Splits the code into values and assigns them; returns how many were spilled
+    private int assignAll() {
+        ranges = new LiveRanges(new ControlFlowGraph(code));
+        syscalls = syscallPositions();
+        findConstants();
+        assigned = assign(ranges);
+        int spills = 0;
+        long used = 0;
+        for (int register : assigned) {
+            if (register == SPILLED) {
+                spills++;
+            } else {
+                used |= 1L << register;
+            }
+        }
+        registersUsed = Long.bitCount(used);
+        return spills;
+    }
+
+    /**********************************************************
+     * METHOD: assign(RegisterAllocator allocator,              *
+     *         LiveRanges ranges)                               *
+     * DESCRIPTION: Lets another allocator choose the registers *
+     *              for the values of this one.                 *
+     **********************************************************/
+    protected int[] assign(RegisterAllocator allocator, LiveRanges ranges) {
+        allocator.ranges = ranges;
+        allocator.syscalls = syscalls;
+        allocator.constants = constants;
+        allocator.isConstant = isConstant;
+        allocator.firstSpillRegister = firstSpillRegister;
+        return allocator.assign(ranges);
+    }
+
+    /**********************************************************
+     * METHOD: allocate()                                       *
+     * DESCRIPTION: Assigns registers and rewrites the code,  *
+     *              spilling the values that do not fit.        *
+     * RETURN VALUE: None                                        *
+     * EXCEPTIONS: Throws an IllegalStateException if spilling  *
+     *             does not make the values fit, which only     *
+     *             code reading more than 18 registers in one   *
+     *             instruction could cause.                     *
+     **********************************************************/
+    public void allocate() {
+        int spills = plan();
+        for (int round = 1; spills > 0; round++) {
+            if (round > MAX_ROUNDS) {
+                throw new IllegalStateException(getName() + " allocation still spills " + spills
+                        + " value(s) after " + MAX_ROUNDS + " rounds of spill code.");
+            }
+            spilledValues += spills;
+            spill();
+            spills = assignAll();
+        }
+        for (int i = 0; i < code.size(); i++) {
+            for (int operand = 0; operand < 3; operand++) {
+                int value = ranges.getValue(i, operand);
+                if (value >= 0) {
+                    code.setOperand(i, operand, assigned[value]);
+                }
+            }
+        }
+        openFrame();
+        removeDeadBookkeeping();
+    }
+
+    // Finds the values every write of which is an li of the same immediate
+    private void findConstants() {
+        int valueCount = ranges.getValueCount();
+        constants = new int[valueCount];
+        isConstant = new boolean[valueCount];
+        boolean[] seen = new boolean[valueCount];
+        for (int value = 0; value < valueCount; value++) {
+            // What a register held when the program started cannot be loaded again
+            isConstant[value] = !ranges.isLiveIn(0, value);
+        }
+        for (int i = 0; i < code.size(); i++) {
+            int value = ranges.isDefinition(i, 0) ? ranges.getValue(i, 0) : -1;
+            if (value < 0) {
+                continue;
+            }
+            if (code.getOpcode(i) != CodeGenerator.LI || code.getKind(i, 1) != MipsCode.IMM
+                    || (seen[value] && constants[value] != code.getOperand(i, 1))) {
+                isConstant[value] = false;
+            } else {
+                constants[value] = code.getOperand(i, 1);
+            }
+            seen[value] = true;
+        }
+    }
+
+    /**********************************************************
+     * METHOD: isRematerializable(int value)                    *
+     * RETURN VALUE: boolean - true if the value is a constant  *
+     *              loaded with li, which is cheaper to load    *
+     *              again than to keep in the stack frame.      *
+     **********************************************************/
+    protected boolean isRematerializable(int value) {
+        return isConstant[value];
+    }
+
+    /**********************************************************
+     * METHOD: isSpillCode(int value)                           *
+     * RETURN VALUE: boolean - true if spill code loaded or     *
+     *              wrote the value. Spilling it again would    *
+     *              only add the same code, so it must not be.  *
+     **********************************************************/
+    protected boolean isSpillCode(int value) {
+        return ranges.getRegister(value) >= firstSpillRegister;
+    }
+
+    // Rewrites the code so that every spilled value lives in short-lived registers around its uses
+    private void spill() {
+        int valueCount = ranges.getValueCount();
+        int[] slots = new int[valueCount];
+        Arrays.fill(slots, SPILLED);
+        for (int value = 0; value < valueCount; value++) {
+            if (assigned[value] == SPILLED && !isConstant[value]) {
+                String name = MipsCode.registerName(ranges.getRegister(value));
+                if (stackSlots.containsKey(name)) {
+                    name += "#" + stackSlots.size(); // The generator reused the register for another value
+                }
+                slots[value] = stackSlots.size();
+                stackSlots.put(name, stackSlots.size() * WORD_SIZE);
+            }
+        }
+        if (nextVirtual < 0) {
+            nextVirtual = MipsCode.FIRST_VIRTUAL;
+            for (int i = 0; i < code.size(); i++) {
+                for (int operand = 0; operand < 3; operand++) {
+                    if (code.getKind(i, operand) == MipsCode.REG && MipsCode.isVirtual(code.getOperand(i, operand))) {
+                        nextVirtual = Math.max(nextVirtual, code.getOperand(i, operand) + 1);
+                    }
+                }
+            }
+            firstSpillRegister = nextVirtual;
+        }
+
+        // LiveRanges reads the code, so what each instruction writes is found before it is rebuilt
+        int[] writes = new int[code.size()];
+        for (int i = 0; i < code.size(); i++) {
+            writes[i] = ranges.isDefinition(i, 0) ? ranges.getValue(i, 0) : -1;
+        }
+        MipsCode original = code.copyFrom(0);
+        code.clear();
+
+        // Values live when the program starts are stored before anything else runs; a virtual register holds nothing yet
+        for (int value = 0; value < valueCount; value++) {
+            if (slots[value] != SPILLED && ranges.isLiveIn(0, value) && !MipsCode.isVirtual(ranges.getRegister(value))) {
+                store(ranges.getRegister(value), slots[value]);
+            }
+        }
+
+        // A spilled value read or written by one instruction is still in its register for the next one
+        int[] held = new int[valueCount];
+        Arrays.fill(held, MipsCode.NO_REGISTER);
+        int[] heldAt = new int[valueCount];
+        int[] holding = new int[valueCount];
+        int holdingCount = 0;
+        int previous = -1; // The last instruction that was not a comment
+        for (int i = 0; i < original.size(); i++) {
+            CodeGenerator opcode = original.getOpcode(i);
+            if (opcode == CodeGenerator.COMMENT || opcode == CodeGenerator.TEXT) {
+                code.append(original, i, i + 1);
+                continue;
+            }
+            boolean boundary = opcode == CodeGenerator.LABEL
+                    || (previous >= 0 && (original.getOpcode(previous).isBranch() || original.getOpcode(previous).isJump()));
+            int kept = 0;
+            for (int h = 0; h < holdingCount; h++) {
+                if (!boundary && heldAt[holding[h]] == previous) {
+                    holding[kept++] = holding[h];
+                } else {
+                    held[holding[h]] = MipsCode.NO_REGISTER;
+                }
+            }
+            holdingCount = kept;
+
+            int written = writes[i];
+            if (written >= 0 && assigned[written] == SPILLED && isConstant[written]) {
+                continue; // Loaded again where it is read
+            }
+            int[] replacements = {MipsCode.NO_REGISTER, MipsCode.NO_REGISTER, MipsCode.NO_REGISTER};
+            for (int operand = 0; operand < 3; operand++) {
+                int value = ranges.getValue(i, operand);
+                if (value < 0 || assigned[value] != SPILLED || (operand == 0 && written >= 0)) {
+                    continue;
+                }
+                if (held[value] == MipsCode.NO_REGISTER) {
+                    held[value] = nextVirtual++;
+                    holding[holdingCount++] = value;
+                    if (isConstant[value]) {
+                        code.add(CodeGenerator.LI, MipsCode.kinds(MipsCode.REG, MipsCode.IMM, MipsCode.NONE),
+                                held[value], constants[value], 0);
+                        rematerialized++;
+                    } else {
+                        code.add(CodeGenerator.LW, MipsCode.kinds(MipsCode.REG, MipsCode.IMM, MipsCode.REG),
+                                held[value], slots[value] * WORD_SIZE, STACK_POINTER);
+                        loads++;
+                    }
+                }
+                heldAt[value] = i;
+                replacements[operand] = held[value];
+            }
+            if (written >= 0 && assigned[written] == SPILLED) {
+                if (held[written] == MipsCode.NO_REGISTER) {
+                    holding[holdingCount++] = written;
+                }
+                held[written] = nextVirtual++;
+                heldAt[written] = i;
+                replacements[0] = held[written];
+            }
+
+            int index = code.size();
+            code.append(original, i, i + 1);
+            for (int operand = 0; operand < 3; operand++) {
+                if (replacements[operand] != MipsCode.NO_REGISTER) {
+                    code.setOperand(index, operand, replacements[operand]);
+                }
+            }
+            if (written >= 0 && assigned[written] == SPILLED) {
+                store(held[written], slots[written]);
+            }
+            previous = i;
+        }
+    }
+
+    private void store(int register, int slot) {
+        code.add(CodeGenerator.SW, MipsCode.kinds(MipsCode.REG, MipsCode.IMM, MipsCode.REG),
+                register, slot * WORD_SIZE, STACK_POINTER);
+        stores++;
+    }
+
+    // Moves $sp down over the stack slots when the code starts, and back up when it ends
+    private void openFrame() {
+        if (stackSlots.isEmpty()) {
+            return;
+        }
+        int frameSize = getFrameSize();
+        MipsCode body = code.copyFrom(0);
+        code.clear();
+        code.add(CodeGenerator.SUBI, MipsCode.kinds(MipsCode.REG, MipsCode.REG, MipsCode.IMM),
+                STACK_POINTER, STACK_POINTER, frameSize);
+        code.append(body);
+        code.add(CodeGenerator.ADDI, MipsCode.kinds(MipsCode.REG, MipsCode.REG, MipsCode.IMM),
+                STACK_POINTER, STACK_POINTER, frameSize);
+    }
+
+    /**********************************************************
+     * METHOD: isLongLived(int value)                           *
+     * RETURN VALUE: boolean - true if the value is live across *
+     *              a block boundary or a syscall, and so is    *
+     *              better kept in a saved register.            *
+     **********************************************************/
+    protected boolean isLongLived(int value) {
+        int start = ranges.getStart(value);
+        int end = ranges.getEnd(value);
+        ControlFlowGraph graph = ranges.getGraph();
+        if (graph.blockOf(start) != graph.blockOf(end)) {
+            return true;
+        }
+        int next = Arrays.binarySearch(syscalls, start + 1);
+        next = (next >= 0) ? next : -next - 1;
+        return next < syscalls.length && syscalls[next] < end;
+    }
+
+    /**********************************************************
+     * METHOD: pick(long free, boolean longLived)               *
+     * DESCRIPTION: Chooses a free register, a saved one first  *
+     *              for a long-lived value and a temporary one  *
+     *              first otherwise.                            *
+     * PARAMETERS: long free - the free registers, one bit per  *
+     *              register number.                            *
+     * RETURN VALUE: int - the register, or SPILLED.            *
+     **********************************************************/
+    protected static int pick(long free, boolean longLived) {
+        int register = pick(free, longLived ? SAVED_REGISTERS : TEMP_REGISTERS);
+        return (register != SPILLED) ? register : pick(free, longLived ? TEMP_REGISTERS : SAVED_REGISTERS);
+    }
+
+    private static int pick(long free, int[] registers) {
+        for (int register : registers) {
+            if ((free & (1L << register)) != 0) {
+                return register;
+            }
+        }
+        return SPILLED;
+    }
+
+    protected static long allRegisters() {
+        long mask = 0;
+        for (int register : TEMP_REGISTERS) {
+            mask |= 1L << register;
+        }
+        for (int register : SAVED_REGISTERS) {
+            mask |= 1L << register;
+        }
+        return mask;
+    }
+
+    private int[] syscallPositions() {
+        int count = 0;
+        int[] positions = new int[16];
+        for (int i = 0; i < code.size(); i++) {
+            if (code.getOpcode(i) == CodeGenerator.SYSCALL) {
+                if (count == positions.length) {
+                    positions = Arrays.copyOf(positions, count * 2);
+                }
+                positions[count++] = i;
+            }
+        }
+        return Arrays.copyOf(positions, count);
+    }
+
+    // Drops the generator's register pool comments and moves of a register to itself
+    private void removeDeadBookkeeping() {
+        BitSet removed = new BitSet(code.size());
+        for (int i = 0; i < code.size(); i++) {
+            CodeGenerator opcode = code.getOpcode(i);
+            if (opcode == CodeGenerator.COMMENT && code.getKind(i, 1) == MipsCode.REG) {
+                removed.set(i);
+                commentsRemoved++;
+            } else if (isRegisterMove(code, i) && code.getOperand(i, 0) == code.getOperand(i, 1)) {
+                removed.set(i);
+                movesRemoved++;
+            }
+        }
+        code.removeAll(removed);
+    }
+
+    static boolean isRegisterMove(MipsCode code, int index) {
+        return code.getOpcode(index) == CodeGenerator.MOVE && code.getKind(index, 0) == MipsCode.REG
+                && code.getKind(index, 1) == MipsCode.REG;
+    }
+
+    public int getValueCount() {
+        return (ranges != null) ? ranges.getValueCount() : 0;
+    }
+
+    public int getRegistersUsed() {
+        return registersUsed;
+    }
+
+    // The values spilled when the registers were first chosen, before any spill code
+    public int getSpillCount() {
+        return spillCount;
+    }
+
+    // The values spilled over every round of allocate()
+    public int getSpilledValues() {
+        return spilledValues;
+    }
+
+    public int getRematerialized() {
+        return rematerialized;
+    }
+
+    public int getLoads() {
+        return loads;
+    }
+
+    public int getStores() {
+        return stores;
+    }
+
+    // The stack slot of each value kept in the frame, by the register it was named by, as an offset from $sp
+    public Map<String, Integer> getStackSlots() {
+        return Collections.unmodifiableMap(stackSlots);
+    }
+
+    // The bytes the frame moves $sp by, kept a multiple of 8 for doubles
+    public int getFrameSize() {
+        return (stackSlots.size() * WORD_SIZE + 7) & ~7;
+    }
+
+    public int getMovesRemoved() {
+        return movesRemoved;
+    }
+
+    public int getCommentsRemoved() {
+        return commentsRemoved;
+    }
+}
@@ -0,0 +1,426 @@
+/*******************************************************************
+ * RegisterFile Class                                              *
+ *                                                                 *
+ * PROGRAMMER: Emily Culp                                          *
+ * COURSE: CS340 - Programming Language Design                     *
+ * DATE: 12/10/2024                                                *
+ * REQUIREMENT: Final - Compiler                                   *
+ *                                                                 *
+ * DESCRIPTION:                                                    *
+ * The RegisterFile class keeps track of which registers the MIPS  *
+ * generator has handed out. The 32 integer and 32 floating point  *
+ * registers are the bits of one long, numbered as in MipsCode,    *
+ * and each calling convention class (temporary, saved, argument,  *
+ * floating point temporary and saved) is a mask over them, so     *
+ * allocating, freeing and testing a register take constant time.  *
+ *                                                                 *
+ * Temporaries are handed out in the order the generator has       *
+ * always used: $t0-$t9 at first, and a freed one is the next to   *
+ * be reused. That order is kept as a stack of register numbers,   *
+ * with a mask of the registers on it. Saved registers are handed  *
+ * out lowest first. Virtual registers, for the allocator, are     *
+ * numbered from MipsCode.FIRST_VIRTUAL and recycled the same way  *
+ * as temporaries. The file also counts allocations, frees and     *
+ * resets and the most registers of each class in use at once.     *
+ *                                                                 *
+ * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean  *
+ * Zeller.                                                         *
+ *                                                                 *
+ * CREDITS: This code was written with the help of ChatGPT.        *
+ *******************************************************************/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+public final class RegisterFile {
+    public static final int NO_REGISTER = MipsCode.NO_REGISTER;
+
+    /**********************************************************
+     * ENUM: Kind                                               *
+     * DESCRIPTION: The calling convention classes, each the    *
+     *              mask of its registers in order.             *
+     **********************************************************/
+    public enum Kind {
+        TEMP(8, 9, 10, 11, 12, 13, 14, 15, 24, 25),             // $t0-$t9
+        SAVED(16, 17, 18, 19, 20, 21, 22, 23),                  // $s0-$s7
+        ARG(4, 5, 6, 7),                                        // $a0-$a3
+        FLOAT_TEMP(32, 34, 36, 38, 40, 42, 44, 46, 48, 50),     // $f0-$f18, even
+        FLOAT_SAVED(52, 54, 56, 58, 60, 62);                    // $f20-$f30, even
+
+        private final int[] registers;
+        private final long mask;
+
+        Kind(int... registers) {
+            this.registers = registers;
+            long bits = 0;
+            for (int register : registers) {
+                bits |= 1L << register;
+            }
+            this.mask = bits;
+        }
+
+        public long getMask() {
+            return mask;
+        }
+
+        public boolean contains(int register) {
+            return register >= 0 && register < MipsCode.FIRST_VIRTUAL && (mask & (1L << register)) != 0;
+        }
+
+        // The names of the registers of the class, in order
+        public List<String> names() {
+            List<String> names = new ArrayList<>(registers.length);
+            for (int register : registers) {
+                names.add(MipsCode.registerName(register));
+            }
+            return names;
+        }
+    }
+
+    private static final Kind[] KINDS = Kind.values();
+    private static final int[] LOAD_REGISTERS = {8, 9, 10, 11, 12}; // $t0-$t4, see takeLoadRegister()
+
+    private long used;
+    private final int[] freeTemps = new int[Kind.TEMP.registers.length]; // A stack, the next one on top
+    private int freeTempCount;
+    private long freeTempMask;
+    private long loadRegisters;
+
+    private final BitSet usedVirtual = new BitSet();
+    private int[] freeVirtual = new int[16]; // A stack of virtual register indexes
+    private int freeVirtualCount;
+    private int virtualCount;
+
+    private final int[] peaks = new int[KINDS.length];
+    private int peakVirtual;
+    private int allocations;
+    private int frees;
+    private int resets;
+
+    public RegisterFile() {
+        reset();
+        resets = 0;
+        for (int register : LOAD_REGISTERS) {
+            loadRegisters |= 1L << register;
+        }
+    }
+
+    // A copy of another register file, counts included
+    public RegisterFile(RegisterFile other) {
+        restore(other);
+        freeVirtual = Arrays.copyOf(other.freeVirtual, other.freeVirtual.length);
+        freeVirtualCount = other.freeVirtualCount;
+        virtualCount = other.virtualCount;
+        System.arraycopy(other.peaks, 0, peaks, 0, peaks.length);
+        peakVirtual = other.peakVirtual;
+        allocations = other.allocations;
+        frees = other.frees;
+        resets = other.resets;
+    }
+
+    /**********************************************************
+     * METHOD: allocateTemp()                                   *
+     * DESCRIPTION: Takes the next free temporary register.     *
+     * RETURN VALUE: int - its number, or NO_REGISTER if every  *
+     *              temporary is in use.                        *
+     **********************************************************/
+    public int allocateTemp() {
+        if (freeTempCount == 0) {
+            return NO_REGISTER;
+        }
+        int register = freeTemps[--freeTempCount];
+        freeTempMask &= ~(1L << register);
+        markUsed(register);
+        return register;
+    }
+
+    /**********************************************************
+     * METHOD: allocate(Kind kind)                              *
+     * DESCRIPTION: Takes the lowest numbered register of the   *
+     *              class that is not in use.                   *
+     * RETURN VALUE: int - its number, or NO_REGISTER.          *
+     **********************************************************/
+    public int allocate(Kind kind) {
+        long free = kind.mask & ~used;
+        if (free == 0) {
+            return NO_REGISTER;
+        }
+        int register = Long.numberOfTrailingZeros(free);
+        if ((freeTempMask & (1L << register)) != 0) {
+            removeFreeTemp(register);
+        }
+        markUsed(register);
+        return register;
+    }
+
+    /**********************************************************
+     * METHOD: allocateVirtual()                                *
+     * DESCRIPTION: Takes the virtual register freed last, or a *
+     *              new one.                                    *
+     * RETURN VALUE: int - its number.                          *
+     **********************************************************/
+    public int allocateVirtual() {
+        int index = (freeVirtualCount > 0) ? freeVirtual[--freeVirtualCount] : virtualCount++;
+        markUsed(MipsCode.FIRST_VIRTUAL + index);
+        return MipsCode.FIRST_VIRTUAL + index;
+    }
+
+    // A new virtual register that is not marked in use, for a value the generator never frees
+    public int newVirtual() {
+        return MipsCode.FIRST_VIRTUAL + virtualCount++;
+    }
+
+    // The number of virtual registers handed out so far
+    public int getVirtualCount() {
+        return virtualCount;
+    }
+
+    // The freed virtual registers, the one allocateVirtual() takes next last
+    public int[] getFreeVirtuals() {
+        return Arrays.copyOf(freeVirtual, freeVirtualCount);
+    }
+
+    // Puts back the virtual register numbering of a saved run
+    public void restoreVirtuals(int count, int[] free) {
+        virtualCount = count;
+        freeVirtual = Arrays.copyOf(free, Math.max(free.length, 16));
+        freeVirtualCount = free.length;
+    }
+
+    /**********************************************************
+     * METHOD: takeLoadRegister()                               *
+     * DESCRIPTION: Takes the next of $t0-$t4 from the pool     *
+     *              assignRegister() loads values with. The     *
+     *              pool is separate from the temporaries and   *
+     *              is never given back.                        *
+     * RETURN VALUE: int - its number, or NO_REGISTER.          *
+     **********************************************************/
+    public int takeLoadRegister() {
+        if (loadRegisters == 0) {
+            return NO_REGISTER;
+        }
+        int register = Long.numberOfTrailingZeros(loadRegisters);
+        loadRegisters &= loadRegisters - 1;
+        return register;
+    }
+
+    private void markUsed(int register) {
+        allocations++;
+        if (MipsCode.isVirtual(register)) {
+            usedVirtual.set(register - MipsCode.FIRST_VIRTUAL);
+            peakVirtual = Math.max(peakVirtual, usedVirtual.cardinality());
+            return;
+        }
+        used |= 1L << register;
+        for (Kind kind : KINDS) {
+            if (kind.contains(register)) {
+                peaks[kind.ordinal()] = Math.max(peaks[kind.ordinal()], Long.bitCount(used & kind.mask));
+            }
+        }
+    }
+
+    /**********************************************************
+     * METHOD: free(int register)                               *
+     * DESCRIPTION: Gives a register back. A temporary goes on  *
+     *              top of the free ones, so it is the next to  *
+     *              be taken, and so does a virtual register.   *
+     * RETURN VALUE: boolean - false if it was not in use.      *
+     **********************************************************/
+    public boolean free(int register) {
+        if (!isUsed(register)) {
+            return false;
+        }
+        frees++;
+        if (MipsCode.isVirtual(register)) {
+            int index = register - MipsCode.FIRST_VIRTUAL;
+            usedVirtual.clear(index);
+            if (freeVirtualCount == freeVirtual.length) {
+                freeVirtual = Arrays.copyOf(freeVirtual, freeVirtualCount * 2);
+            }
+            freeVirtual[freeVirtualCount++] = index;
+            return true;
+        }
+        used &= ~(1L << register);
+        if (Kind.TEMP.contains(register) && (freeTempMask & (1L << register)) == 0) {
+            pushFreeTemp(register);
+        }
+        return true;
+    }
+
+    public boolean isUsed(int register) {
+        if (register < 0) {
+            return false;
+        }
+        return MipsCode.isVirtual(register)
+                ? usedVirtual.get(register - MipsCode.FIRST_VIRTUAL) : (used & (1L << register)) != 0;
+    }
+
+    public boolean isFree(Kind kind) {
+        return (kind == Kind.TEMP) ? freeTempCount > 0 : (kind.mask & ~used) != 0;
+    }
+
+    /**********************************************************
+     * METHOD: reset()                                          *
+     * DESCRIPTION: Marks every register free, virtual ones     *
+     *              included, and puts $t0-$t9 back in order.   *
+     *              Freed virtual registers stay free.          *
+     **********************************************************/
+    public void reset() {
+        used = 0;
+        usedVirtual.clear();
+        freeTempCount = 0;
+        freeTempMask = 0;
+        int[] temps = Kind.TEMP.registers;
+        for (int i = temps.length - 1; i >= 0; i--) {
+            pushFreeTemp(temps[i]);
+        }
+        resets++;
+    }
+
+    private void pushFreeTemp(int register) {
+        freeTemps[freeTempCount++] = register;
+        freeTempMask |= 1L << register;
+    }
+
+    private void removeFreeTemp(int register) {
+        int kept = 0;
+        for (int i = 0; i < freeTempCount; i++) {
+            if (freeTemps[i] != register) {
+                freeTemps[kept++] = freeTemps[i];
+            }
+        }
+        freeTempCount = kept;
+        freeTempMask &= ~(1L << register);
+    }
+
+    /**********************************************************
+     * METHOD: restore(Collection<String> usedNames,            *
+     *         List<String> freeTempNames,                      *
+     *         List<String> loadRegisterNames)                  *
+     * DESCRIPTION: Puts back the registers in use, the free    *
+     *              temporaries, next one first, and the load   *
+     *              pool, as written by the methods below.      *
+     **********************************************************/
+    public void restore(Collection<String> usedNames, List<String> freeTempNames, List<String> loadRegisterNames) {
+        used = 0;
+        usedVirtual.clear();
+        for (String name : usedNames) {
+            int register = MipsCode.register(name);
+            if (MipsCode.isVirtual(register)) {
+                usedVirtual.set(register - MipsCode.FIRST_VIRTUAL);
+            } else if (register != NO_REGISTER) {
+                used |= 1L << register;
+            }
+        }
+        freeTempCount = 0;
+        freeTempMask = 0;
+        for (int i = freeTempNames.size() - 1; i >= 0; i--) {
+            pushFreeTemp(MipsCode.register(freeTempNames.get(i)));
+        }
+        loadRegisters = 0;
+        for (String name : loadRegisterNames) {
+            loadRegisters |= 1L << MipsCode.register(name);
+        }
+    }
+
+    // Puts back the registers in use, the free temporaries and the load pool of another file
+    public void restore(RegisterFile other) {
+        used = other.used;
+        usedVirtual.clear();
+        usedVirtual.or(other.usedVirtual);
+        System.arraycopy(other.freeTemps, 0, freeTemps, 0, other.freeTempCount);
+        freeTempCount = other.freeTempCount;
+        freeTempMask = other.freeTempMask;
+        loadRegisters = other.loadRegisters;
+    }
+
+    // The registers in use, integer and floating point ones first, then the virtual ones
+    public List<String> usedNames() {
+        List<String> names = namesOf(used);
+        for (int index = usedVirtual.nextSetBit(0); index >= 0; index = usedVirtual.nextSetBit(index + 1)) {
+            names.add(MipsCode.virtualName(index));
+        }
+        return names;
+    }
+
+    public List<String> usedNames(Kind kind) {
+        return namesOf(used & kind.mask);
+    }
+
+    // The free temporaries, the next one to be taken first
+    public List<String> freeTempNames() {
+        List<String> names = new ArrayList<>(freeTempCount);
+        for (int i = freeTempCount - 1; i >= 0; i--) {
+            names.add(MipsCode.registerName(freeTemps[i]));
+        }
+        return names;
+    }
+
+    public List<String> loadRegisterNames() {
+        return namesOf(loadRegisters);
+    }
+
+    private static List<String> namesOf(long registers) {
+        List<String> names = new ArrayList<>(Long.bitCount(registers));
+        for (long bits = registers; bits != 0; bits &= bits - 1) {
+            names.add(MipsCode.registerName(Long.numberOfTrailingZeros(bits)));
+        }
+        return names;
+    }
+
+    public int getPeak(Kind kind) {
+        return peaks[kind.ordinal()];
+    }
+
+    public int getPeakVirtual() {
+        return peakVirtual;
+    }
+
+    public int getAllocations() {
+        return allocations;
+    }
+
+    public int getFrees() {
+        return frees;
+    }
+
+    public int getResets() {
+        return resets;
+    }
+
+    /**********************************************************
+     * METHOD: describePressure()                               *
+     * RETURN VALUE: String - one line with the most registers  *
+     *              of each class in use at once and the counts.*
+     **********************************************************/
+    public String describePressure() {
+        StringBuilder line = new StringBuilder("Register pressure: peak");
+        for (Kind kind : KINDS) {
+            line.append(' ').append(peaks[kind.ordinal()]).append('/').append(kind.registers.length)
+                    .append(' ').append(kind.name().toLowerCase().replace('_', ' '));
+        }
+        line.append(", ").append(peakVirtual).append(" virtual; ").append(allocations).append(" allocations, ")
+                .append(frees).append(" frees, ").append(resets).append(" resets");
+        return line.toString();
+    }
+
+    // Two files are equal when they would hand out the same registers; counts are not compared
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof RegisterFile)) {
+            return false;
+        }
+        RegisterFile file = (RegisterFile) other;
+        return used == file.used && usedVirtual.equals(file.usedVirtual) && loadRegisters == file.loadRegisters
+                && freeTempCount == file.freeTempCount
+                && Arrays.equals(freeTemps, 0, freeTempCount, file.freeTemps, 0, file.freeTempCount);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(used) * 31 + Arrays.hashCode(Arrays.copyOf(freeTemps, freeTempCount));
+    }
+}
@@ -0,0 +1,139 @@
+/*******************************************************************
+ * RegressionCheck Class                                           *
+ *                                                                 *
+ * PROGRAMMER: Emily Culp                                          *
+ * COURSE: CS340 - Programming Language Design                     *
+ * DATE: 12/10/2024                                                *
+ * REQUIREMENT: Final - Compiler                                   *
+ *                                                                 *
+ * DESCRIPTION:                                                    *
+ * The RegressionCheck class compiles small programs at every      *
+ * optimization level and checks the generated code against what   *
+ * the compiler has always produced for them. Each check prints    *
+ * PASS or FAIL, and the exit status is 1 if any check failed.     *
+ *                                                                 *
+ * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean  *
+ * Zeller.                                                         *
+ *                                                                 *
+ * CREDITS: This code was written with the help of ChatGPT.        *
+ *******************************************************************/
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class RegressionCheck {
+    private static final int LEVELS = 3;
+
+    // Variables declared inside if, while and for bodies
+    private static final String BLOCK_DECLARATIONS = String.join("\n",
+            "integer x = 5;",
+            "double d = 1.5;",
+            "if(x<10){",
+            "  double e = 2.5;",
+            "  double f;",
+            "  integer z;",
+            "  z=x+1;",
+            "}else{",
+            "  integer w = 3;",
+            "}",
+            "integer y;",
+            "while(y < 3){",
+            "  integer q;",
+            "  q = y + 2;",
+            "  y=y+1;",
+            "}",
+            "integer i;",
+            "for(i=0; i<3; i++){",
+            "  integer r = 4;",
+            "  print(i);",
+            "}");
+
+    // The .data section the compiler has always given BLOCK_DECLARATIONS
+    private static final List<String> BLOCK_DECLARATIONS_DATA = List.of(
+            "d: .double 1.5",
+            "e: .double 2.5",
+            "f: .double 0.0",
+            "x: .word 5",
+            "y: .word 0",
+            "i: .word 0",
+            "z: .word 0");
+
+    private int failures;
+
+    /**********************************************************
+     * METHOD: main(String[] args)                              *
+     * DESCRIPTION: Runs every check at every level.            *
+     * PARAMETERS: String[] args - None                         *
+     * RETURN VALUE: None                                        *
+     **********************************************************/
+    public static void main(String[] args) throws IOException {
+        RegressionCheck check = new RegressionCheck();
+        for (int level = 0; level < LEVELS; level++) {
+            System.setProperty(MipsOptimizer.LEVEL_PROPERTY, String.valueOf(level));
+            String output = compile(BLOCK_DECLARATIONS);
+            check.report("block declarations keep their .data words", level,
+                    dataSection(output).equals(BLOCK_DECLARATIONS_DATA));
+            check.report("every variable loaded or stored has a .data word", level,
+                    undefinedVariables(output).isEmpty());
+        }
+        System.out.println(check.failures == 0 ? "All checks passed." : check.failures + " check(s) failed.");
+        if (check.failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private void report(String name, int level, boolean passed) {
+        System.out.println((passed ? "PASS " : "FAIL ") + name + " (-Dcompiler.opt=" + level + ")");
+        if (!passed) {
+            failures++;
+        }
+    }
+
+    // Everything a run of the program prints, the tables and the MIPS code included
+    private static String compile(String source) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        BatchRunner.runProgram(source, InputStream.nullInputStream(), output);
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    // The variables that lw, sw, l.d or s.d in the .main section name but the .data section does not define
+    private static List<String> undefinedVariables(String output) {
+        List<String> defined = new ArrayList<>();
+        for (String entry : dataSection(output)) {
+            defined.add(entry.substring(0, entry.indexOf(':')));
+        }
+        List<String> undefined = new ArrayList<>();
+        boolean inMain = false;
+        for (String line : output.split("\\R")) {
+            if (line.equals(".main")) {
+                inMain = true;
+            } else if (inMain && line.matches("(lw|sw|l\\.d|s\\.d) \\S+, \\w+")) {
+                String variable = line.substring(line.lastIndexOf(' ') + 1);
+                if (!defined.contains(variable)) {
+                    undefined.add(variable);
+                }
+            }
+        }
+        return undefined;
+    }
+
+    // The "name: .directive value" lines of the .data section, without the optimizer's report lines
+    private static List<String> dataSection(String output) {
+        List<String> entries = new ArrayList<>();
+        boolean inData = false;
+        for (String line : output.split("\\R")) {
+            if (line.equals(".data")) {
+                inData = true;
+            } else if (line.isEmpty()) {
+                inData = false;
+            } else if (inData && line.matches("\\w+: \\..*")) {
+                entries.add(line);
+            }
+        }
+        return entries;
+    }
+}
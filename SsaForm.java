@@ -0,0 +1,324 @@
+/*******************************************************************
+ * SsaForm Class                                                   *
+ *                                                                 *
+ * PROGRAMMER: Emily Culp                                          *
+ * COURSE: CS340 - Programming Language Design                     *
+ * DATE: 12/10/2024                                                *
+ * REQUIREMENT: Final - Compiler                                   *
+ *                                                                 *
+ * DESCRIPTION:                                                    *
+ * The SsaForm class puts the generated MIPS code in static single *
+ * assignment form without changing it: every write to an          *
+ * allocatable register gets a name of its own, and every read is  *
+ * given the name of the one write that reaches it. Where writes   *
+ * on different paths meet, a phi names the register's value on    *
+ * the way in; the phis are placed at the iterated dominance       *
+ * frontiers of the blocks that write the register (minimal SSA,   *
+ * so the name on top of a register's stack is always the value it *
+ * holds) and the names are handed out walking the dominator tree. *
+ * A register read before any write names its value at the start   *
+ * of the program.                                                 *
+ *                                                                 *
+ * The code keeps its registers, so a pass that uses the names can *
+ * rewrite an instruction in place as long as the register it      *
+ * writes stays the same. Blocks no path reaches get no names.     *
+ *                                                                 *
+ * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean  *
+ * Zeller.                                                         *
+ *                                                                 *
+ * CREDITS: This code was written with the help of ChatGPT.        *
+ *******************************************************************/
+
+import java.util.Arrays;
+
+public class SsaForm {
+    public static final int NONE = -1;
+    public static final int ENTRY = Integer.MIN_VALUE; // Defined by the start of the program
+
+    private final MipsCode code;
+    private final ControlFlowGraph graph;
+    private final int[] names; // The name of each operand, three per instruction, or NONE
+    private int nameCount;
+    private int[] nameSlots = new int[64];       // The register slot of each name
+    private int[] nameDefinitions = new int[64]; // The instruction writing each name, ENTRY, or -1 - phi
+    private int[] registers = new int[0];        // The register of each slot
+    private int[] slots = new int[0];            // The slot of each register number, or NONE
+
+    // Phis, by number
+    private int phiCount;
+    private int[] phiBlocks = new int[16];
+    private int[] phiSlots = new int[16];
+    private int[] phiNames = new int[16];
+    private int[][] phiOperands = new int[16][]; // One name per predecessor of the block, or NONE
+    private int[][] blockPhis;
+
+    /**********************************************************
+     * CONSTRUCTOR: SsaForm(ControlFlowGraph graph)           *
+     * DESCRIPTION: Places the phis and names every write and *
+     *              read of an allocatable register.          *
+     **********************************************************/
+    public SsaForm(ControlFlowGraph graph) {
+        this.graph = graph;
+        this.code = graph.getCode();
+        names = new int[code.size() * 3];
+        Arrays.fill(names, NONE);
+
+        // Slots for the registers, and the blocks that write each one
+        int blocks = graph.size();
+        int slotCount = 0;
+        long[][] writtenIn = new long[0][];
+        for (int block = 0; block < blocks; block++) {
+            if (!graph.isReachable(block)) {
+                continue;
+            }
+            for (int i = graph.getStart(block); i < graph.getEnd(block); i++) {
+                for (int operand = 0; operand < 3; operand++) {
+                    if (!LiveRanges.isRegisterOperand(code, i, operand)) {
+                        continue;
+                    }
+                    int register = code.getOperand(i, operand);
+                    if (register >= slots.length) {
+                        int length = slots.length;
+                        slots = Arrays.copyOf(slots, Math.max(register + 1, length * 2));
+                        Arrays.fill(slots, length, slots.length, NONE);
+                    }
+                    if (slots[register] == NONE) {
+                        if (slotCount == registers.length) {
+                            registers = Arrays.copyOf(registers, Math.max(8, slotCount * 2));
+                            writtenIn = Arrays.copyOf(writtenIn, registers.length);
+                        }
+                        slots[register] = slotCount;
+                        registers[slotCount] = register;
+                        writtenIn[slotCount++] = new long[(blocks + 63) >>> 6];
+                    }
+                    if (LiveRanges.isDefinition(code, i, operand)) {
+                        LiveRanges.set(writtenIn[slots[register]], block);
+                    }
+                }
+            }
+        }
+        registers = Arrays.copyOf(registers, slotCount);
+
+        // Phis at the iterated dominance frontiers of the writes
+        int[] phiAt = new int[blocks]; // The last slot given a phi in each block, plus one
+        int[] queued = new int[blocks];
+        int[] work = new int[blocks];
+        for (int slot = 0; slot < slotCount; slot++) {
+            int count = 0;
+            long[] written = writtenIn[slot];
+            for (int word = 0; word < written.length; word++) {
+                for (long bits = written[word]; bits != 0; bits &= bits - 1) {
+                    int block = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    queued[block] = slot + 1;
+                    work[count++] = block;
+                }
+            }
+            while (count > 0) {
+                for (int join : graph.getDominanceFrontier(work[--count])) {
+                    if (phiAt[join] != slot + 1) {
+                        phiAt[join] = slot + 1;
+                        addPhi(join, slot);
+                        if (queued[join] != slot + 1) {
+                            queued[join] = slot + 1;
+                            work[count++] = join;
+                        }
+                    }
+                }
+            }
+        }
+        int[] phisPerBlock = new int[blocks];
+        for (int phi = 0; phi < phiCount; phi++) {
+            phisPerBlock[phiBlocks[phi]]++;
+        }
+        blockPhis = new int[blocks][];
+        for (int block = 0; block < blocks; block++) {
+            blockPhis[block] = new int[phisPerBlock[block]];
+        }
+        Arrays.fill(phisPerBlock, 0);
+        for (int phi = 0; phi < phiCount; phi++) {
+            blockPhis[phiBlocks[phi]][phisPerBlock[phiBlocks[phi]]++] = phi;
+        }
+
+        rename(slotCount);
+    }
+
+    private void addPhi(int block, int slot) {
+        if (phiCount == phiBlocks.length) {
+            int length = phiCount * 2;
+            phiBlocks = Arrays.copyOf(phiBlocks, length);
+            phiSlots = Arrays.copyOf(phiSlots, length);
+            phiNames = Arrays.copyOf(phiNames, length);
+            phiOperands = Arrays.copyOf(phiOperands, length);
+        }
+        phiBlocks[phiCount] = block;
+        phiSlots[phiCount] = slot;
+        phiOperands[phiCount] = new int[graph.getPredecessors(block).length];
+        Arrays.fill(phiOperands[phiCount], NONE);
+        phiCount++;
+    }
+
+    private int newName(int slot, int definition) {
+        if (nameCount == nameSlots.length) {
+            nameSlots = Arrays.copyOf(nameSlots, nameCount * 2);
+            nameDefinitions = Arrays.copyOf(nameDefinitions, nameCount * 2);
+        }
+        nameSlots[nameCount] = slot;
+        nameDefinitions[nameCount] = definition;
+        return nameCount++;
+    }
+
+    // Walks the dominator tree, keeping the name each register holds; undo holds what each write replaced
+    private void rename(int slotCount) {
+        int[] current = new int[slotCount];
+        Arrays.fill(current, NONE);
+        int[] entries = new int[slotCount];
+        Arrays.fill(entries, NONE);
+        int[] undo = new int[64];
+        int undoSize = 0;
+        int[] marks = new int[graph.size()];
+
+        int[] stack = new int[graph.size() * 2];
+        int depth = 0;
+        if (graph.size() > 0) {
+            stack[depth++] = 0;
+        }
+        while (depth > 0) {
+            int top = stack[--depth];
+            if (top < 0) {
+                // Leaving a block: give the registers back the names they had on the way in
+                int block = -top - 1;
+                while (undoSize > marks[block]) {
+                    undoSize -= 2;
+                    current[undo[undoSize]] = undo[undoSize + 1];
+                }
+                continue;
+            }
+            int block = top;
+            marks[block] = undoSize;
+            if (undoSize + 2 * (blockPhis[block].length + graph.getEnd(block) - graph.getStart(block)) > undo.length) {
+                undo = Arrays.copyOf(undo, Math.max(undo.length * 2,
+                        undoSize + 2 * (blockPhis[block].length + graph.getEnd(block) - graph.getStart(block))));
+            }
+            for (int phi : blockPhis[block]) {
+                int slot = phiSlots[phi];
+                undo[undoSize++] = slot;
+                undo[undoSize++] = current[slot];
+                phiNames[phi] = newName(slot, -1 - phi);
+                current[slot] = phiNames[phi];
+            }
+            for (int i = graph.getStart(block); i < graph.getEnd(block); i++) {
+                for (int operand = 0; operand < 3; operand++) {
+                    if (LiveRanges.isRegisterOperand(code, i, operand) && !LiveRanges.isDefinition(code, i, operand)) {
+                        int slot = slots[code.getOperand(i, operand)];
+                        if (current[slot] == NONE) {
+                            if (entries[slot] == NONE) {
+                                entries[slot] = newName(slot, ENTRY);
+                            }
+                            current[slot] = entries[slot]; // Never undone: it holds on every path in
+                        }
+                        names[i * 3 + operand] = current[slot];
+                    }
+                }
+                if (LiveRanges.isRegisterOperand(code, i, 0) && LiveRanges.isDefinition(code, i, 0)) {
+                    int slot = slots[code.getOperand(i, 0)];
+                    undo[undoSize++] = slot;
+                    undo[undoSize++] = current[slot];
+                    current[slot] = newName(slot, i);
+                    names[i * 3] = current[slot];
+                }
+            }
+            for (int successor : graph.getSuccessors(block)) {
+                int[] predecessors = graph.getPredecessors(successor);
+                int edge = 0;
+                while (predecessors[edge] != block) {
+                    edge++;
+                }
+                for (int phi : blockPhis[successor]) {
+                    int slot = phiSlots[phi];
+                    if (current[slot] == NONE) {
+                        if (entries[slot] == NONE) {
+                            entries[slot] = newName(slot, ENTRY);
+                        }
+                        current[slot] = entries[slot];
+                    }
+                    phiOperands[phi][edge] = current[slot];
+                }
+            }
+
+            stack[depth++] = -block - 1;
+            int[] children = graph.getDominated(block);
+            for (int child = children.length - 1; child >= 0; child--) {
+                stack[depth++] = children[child];
+            }
+        }
+    }
+
+    public ControlFlowGraph getGraph() {
+        return graph;
+    }
+
+    /**********************************************************
+     * METHOD: getName(int index, int operand)                  *
+     * RETURN VALUE: int - the name an operand reads or writes, *
+     *              or NONE if it is not an allocatable         *
+     *              register or its block is unreachable.       *
+     **********************************************************/
+    public int getName(int index, int operand) {
+        return names[index * 3 + operand];
+    }
+
+    public int getNameCount() {
+        return nameCount;
+    }
+
+    /**********************************************************
+     * METHOD: getDefinition(int name)                          *
+     * RETURN VALUE: int - the instruction that writes the      *
+     *              name, ENTRY for a register's value at the   *
+     *              start, or -1 - phi for the result of a phi. *
+     **********************************************************/
+    public int getDefinition(int name) {
+        return nameDefinitions[name];
+    }
+
+    // The register holding a name
+    public int getRegister(int name) {
+        return registers[nameSlots[name]];
+    }
+
+    /**********************************************************
+     * METHOD: getSlot(int name)                                *
+     * RETURN VALUE: int - a number from 0 to getSlotCount()    *
+     *              for the register of the name, so passes     *
+     *              can keep what each register holds in an     *
+     *              array.                                      *
+     **********************************************************/
+    public int getSlot(int name) {
+        return nameSlots[name];
+    }
+
+    public int getSlotCount() {
+        return registers.length;
+    }
+
+    public int getPhiCount() {
+        return phiCount;
+    }
+
+    public int[] getPhis(int block) {
+        return blockPhis[block];
+    }
+
+    public int getPhiBlock(int phi) {
+        return phiBlocks[phi];
+    }
+
+    public int getPhiName(int phi) {
+        return phiNames[phi];
+    }
+
+    // The name coming in on each edge, in the order of the block's predecessors
+    public int[] getPhiOperands(int phi) {
+        return phiOperands[phi];
+    }
+}
@@ -0,0 +1,811 @@
+/*******************************************************************
+ * SsaOptimizer Class                                              *
+ *                                                                 *
+ * PROGRAMMER: Emily Culp                                          *
+ * COURSE: CS340 - Programming Language Design                     *
+ * DATE: 12/10/2024                                                *
+ * REQUIREMENT: Final - Compiler                                   *
+ *                                                                 *
+ * DESCRIPTION:                                                    *
+ * The SsaOptimizer class runs the passes that work on the SsaForm *
+ * names of the generated MIPS code:                               *
+ *                                                                 *
+ * Sparse conditional constant propagation (Wegman and Zadeck)     *
+ * gives every name a value on the lattice "not known yet", one    *
+ * constant, or "varies", starting from the first block and only   *
+ * following the edges a branch can take with what is known. A     *
+ * write of a constant becomes li, a branch that always goes one   *
+ * way becomes a j or is removed, and a constant operand of add,   *
+ * sub or a comparison becomes an immediate, so its li can go.     *
+ *                                                                 *
+ * Global value numbering then walks the dominator tree with a     *
+ * table of the expressions computed on the way down. An           *
+ * expression already computed becomes a move from the register    *
+ * that holds it, if that register still does. Before an           *
+ * expression is looked up it is simplified: x + 0, x - 0, x * 1   *
+ * and x / 1 are x, and x - x and x * 0 are 0.                     *
+ *                                                                 *
+ * Every change keeps the register an instruction writes, so the   *
+ * code needs no translation out of SSA form; the instructions     *
+ * left without a reader are removed by DeadCodeEliminator.        *
+ *                                                                 *
+ * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean  *
+ * Zeller.                                                         *
+ *                                                                 *
+ * CREDITS: This code was written with the help of ChatGPT.        *
+ *******************************************************************/
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+public class SsaOptimizer {
+    // The lattice: any int value is a constant
+    private static final long UNKNOWN = Long.MIN_VALUE; // Not known yet
+    private static final long VARIES = Long.MAX_VALUE;
+
+    private static final int ZERO = 0; // $zero
+    private static final int MIN_IMMEDIATE = -32768;
+    private static final int MAX_IMMEDIATE = 32767;
+
+    private final MipsCode code;
+    private ControlFlowGraph graph;
+    private SsaForm ssa;
+    private long[] values;
+    private int[] blocks;     // The block of each instruction
+    private int[] divisions;  // The div whose result each mflo or mfhi reads, or -1
+    private boolean[] executable;
+    private boolean[][] executableEdges; // In the order of each block's predecessors
+    private boolean hiLoAcrossBlocks;    // Some mflo or mfhi reads a div of another block
+    private int[] numbers;               // The value number of each name
+    private int[] holders;               // The name each register slot holds at the point of the walk
+    private int[] operandNames;          // Operand 1 of the instructions whose operands were rewritten
+    private final BitSet removed = new BitSet();
+
+    private int nameCount;
+    private int phiCount;
+    private int constantsFolded;
+    private int operandsFolded;
+    private int branchesFolded;
+    private int blocksUnreachable;
+    private int simplified;
+    private int redundant;
+
+    // An expression for the value numbering: the opcode and two operands, each a kind and a value
+    private record Expression(CodeGenerator opcode, long first, long second) {
+    }
+
+    public SsaOptimizer(MipsCode code) {
+        this.code = code;
+    }
+
+    /**********************************************************
+     * METHOD: optimize()                                       *
+     * DESCRIPTION: Builds the SSA form and runs the constant   *
+     *              propagation and value numbering on the      *
+     *              code, in place.                             *
+     * RETURN VALUE: None                                        *
+     **********************************************************/
+    public void optimize() {
+        graph = new ControlFlowGraph(code);
+        ssa = new SsaForm(graph);
+        nameCount = ssa.getNameCount();
+        phiCount = ssa.getPhiCount();
+
+        blocks = new int[code.size()];
+        divisions = new int[code.size()];
+        for (int block = 0; block < graph.size(); block++) {
+            int division = -1;
+            for (int i = graph.getStart(block); i < graph.getEnd(block); i++) {
+                blocks[i] = block;
+                divisions[i] = division;
+                if (division < 0 && isMoveFromDivision(code.getOpcode(i))) {
+                    hiLoAcrossBlocks = true;
+                }
+                if (code.getOpcode(i) == CodeGenerator.DIV && !LiveRanges.isDefinition(code, i, 0)) {
+                    division = i; // Sets hi and lo
+                }
+            }
+        }
+
+        propagateConstants();
+        rewriteConstants();
+        numberValues();
+        code.removeAll(removed);
+    }
+
+    // ---- Sparse conditional constant propagation ----
+
+    private void propagateConstants() {
+        values = new long[nameCount];
+        Arrays.fill(values, UNKNOWN);
+        for (int name = 0; name < nameCount; name++) {
+            if (ssa.getDefinition(name) == SsaForm.ENTRY) {
+                values[name] = VARIES;
+            }
+        }
+
+        // The instructions and phis that read each name: i for an instruction, -1 - phi for a phi
+        int[][] uses = new int[nameCount][];
+        int[] useCounts = new int[nameCount];
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < code.size(); i++) {
+                for (int operand = 0; operand < 3; operand++) {
+                    int name = ssa.getName(i, operand);
+                    if (name != SsaForm.NONE && !LiveRanges.isDefinition(code, i, operand)) {
+                        addUse(uses, useCounts, name, i, pass);
+                    }
+                }
+                if (divisions[i] >= 0 && isMoveFromDivision(code.getOpcode(i))) {
+                    for (int operand = 0; operand < 2; operand++) {
+                        int name = ssa.getName(divisions[i], operand);
+                        if (name != SsaForm.NONE) {
+                            addUse(uses, useCounts, name, i, pass);
+                        }
+                    }
+                }
+            }
+            for (int phi = 0; phi < phiCount; phi++) {
+                for (int name : ssa.getPhiOperands(phi)) {
+                    if (name != SsaForm.NONE) {
+                        addUse(uses, useCounts, name, -1 - phi, pass);
+                    }
+                }
+            }
+            if (pass == 0) {
+                for (int name = 0; name < nameCount; name++) {
+                    uses[name] = new int[useCounts[name]];
+                }
+                Arrays.fill(useCounts, 0);
+            }
+        }
+
+        executable = new boolean[graph.size()];
+        executableEdges = new boolean[graph.size()][];
+        for (int block = 0; block < graph.size(); block++) {
+            executableEdges[block] = new boolean[graph.getPredecessors(block).length];
+        }
+        ArrayDeque<long[]> edges = new ArrayDeque<>(); // {from, to}
+        ArrayDeque<Integer> changed = new ArrayDeque<>();
+        if (graph.size() > 0) {
+            edges.add(new long[] {-1, 0});
+        }
+        while (!edges.isEmpty() || !changed.isEmpty()) {
+            while (!edges.isEmpty()) {
+                long[] edge = edges.poll();
+                int from = (int) edge[0];
+                int to = (int) edge[1];
+                if (from >= 0) {
+                    int index = predecessorIndex(to, from);
+                    if (executableEdges[to][index]) {
+                        continue;
+                    }
+                    executableEdges[to][index] = true;
+                }
+                for (int phi : ssa.getPhis(to)) {
+                    visitPhi(phi, changed);
+                }
+                if (!executable[to]) {
+                    executable[to] = true;
+                    for (int i = graph.getStart(to); i < graph.getEnd(to); i++) {
+                        visit(i, changed, edges);
+                    }
+                    int last = graph.getEnd(to) - 1;
+                    if (!code.getOpcode(last).isBranch()) {
+                        for (int successor : graph.getSuccessors(to)) {
+                            edges.add(new long[] {to, successor});
+                        }
+                    }
+                }
+            }
+            if (!changed.isEmpty()) {
+                int name = changed.poll();
+                for (int use : uses[name]) {
+                    if (use < 0) {
+                        if (executable[ssa.getPhiBlock(-1 - use)]) {
+                            visitPhi(-1 - use, changed);
+                        }
+                    } else if (executable[blocks[use]]) {
+                        visit(use, changed, edges);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void addUse(int[][] uses, int[] useCounts, int name, int use, int pass) {
+        if (pass == 1) {
+            uses[name][useCounts[name]] = use;
+        }
+        useCounts[name]++;
+    }
+
+    private int predecessorIndex(int block, int predecessor) {
+        int[] predecessors = graph.getPredecessors(block);
+        int index = 0;
+        while (predecessors[index] != predecessor) {
+            index++;
+        }
+        return index;
+    }
+
+    private void visitPhi(int phi, ArrayDeque<Integer> changed) {
+        int block = ssa.getPhiBlock(phi);
+        int[] operands = ssa.getPhiOperands(phi);
+        long value = UNKNOWN;
+        for (int edge = 0; edge < operands.length; edge++) {
+            if (executableEdges[block][edge] && operands[edge] != SsaForm.NONE) {
+                value = meet(value, values[operands[edge]]);
+            }
+        }
+        update(ssa.getPhiName(phi), value, changed);
+    }
+
+    private void visit(int index, ArrayDeque<Integer> changed, ArrayDeque<long[]> edges) {
+        CodeGenerator opcode = code.getOpcode(index);
+        int written = ssa.getName(index, 0);
+        if (written != SsaForm.NONE && LiveRanges.isDefinition(code, index, 0)) {
+            update(written, evaluate(index), changed);
+        } else if (opcode.isBranch()) {
+            int block = blocks[index];
+            int taken = branchTaken(index);
+            for (int successor : graph.getSuccessors(block)) {
+                boolean target = isLabelOf(successor, index);
+                boolean fallThrough = successor == block + 1;
+                if (taken == -1 || (taken == 1 && target) || (taken == 0 && fallThrough)) {
+                    edges.add(new long[] {block, successor});
+                }
+            }
+        }
+    }
+
+    private void update(int name, long value, ArrayDeque<Integer> changed) {
+        if (values[name] != value) {
+            values[name] = value;
+            changed.add(name);
+        }
+    }
+
+    private static long meet(long a, long b) {
+        if (a == UNKNOWN) {
+            return b;
+        }
+        if (b == UNKNOWN || a == b) {
+            return a;
+        }
+        return VARIES;
+    }
+
+    // The value of an operand: an immediate, $zero, the value of its name, or VARIES
+    private long operandValue(int index, int operand) {
+        switch (code.getKind(index, operand)) {
+            case MipsCode.IMM:
+                return code.getOperand(index, operand);
+            case MipsCode.REG:
+                if (code.getOperand(index, operand) == ZERO) {
+                    return 0;
+                }
+                int name = nameOf(index, operand);
+                return (name != SsaForm.NONE) ? values[name] : VARIES;
+            default:
+                return VARIES;
+        }
+    }
+
+    private long evaluate(int index) {
+        CodeGenerator opcode = code.getOpcode(index);
+        switch (opcode) {
+            case LI:
+                return (code.getKind(index, 1) == MipsCode.IMM) ? code.getOperand(index, 1) : VARIES;
+            case MOVE:
+                return operandValue(index, 1);
+            case MFLO:
+            case MFHI:
+                if (divisions[index] < 0) {
+                    return VARIES;
+                }
+                return fold(opcode == CodeGenerator.MFLO ? CodeGenerator.DIV : null,
+                        operandValue(divisions[index], 0), operandValue(divisions[index], 1));
+            case ADD: case SUB: case MULT: case DIV: case ADDI: case SUBI: case MULI:
+            case SLT: case SGN: case SLE: case SGE:
+                return fold(opcode, operandValue(index, 1), operandValue(index, 2));
+            default:
+                return VARIES; // Loads
+        }
+    }
+
+    /**********************************************************
+     * METHOD: fold(CodeGenerator opcode, long a, long b)       *
+     * DESCRIPTION: Works out an operation on two lattice       *
+     *              values. A null opcode is the remainder left *
+     *              in hi by div. An add or sub that overflows, *
+     *              which traps, and a division that could trap *
+     *              are left to run.                            *
+     * RETURN VALUE: long - the lattice value of the result.    *
+     **********************************************************/
+    private static long fold(CodeGenerator opcode, long a, long b) {
+        boolean multiply = opcode == CodeGenerator.MULT || opcode == CodeGenerator.MULI;
+        if (multiply && (a == 0 || b == 0)) {
+            return 0; // Whatever the other one is
+        }
+        if (a == VARIES || b == VARIES) {
+            return VARIES;
+        }
+        if (a == UNKNOWN || b == UNKNOWN) {
+            return UNKNOWN;
+        }
+        int x = (int) a;
+        int y = (int) b;
+        if (opcode == null || opcode == CodeGenerator.DIV) {
+            if (y == 0 || (x == Integer.MIN_VALUE && y == -1)) {
+                return VARIES;
+            }
+            return (opcode == null) ? x % y : x / y;
+        }
+        switch (opcode) {
+            case ADD: case ADDI:
+                return ((long) x + y == x + y) ? x + y : VARIES;
+            case SUB: case SUBI:
+                return ((long) x - y == x - y) ? x - y : VARIES;
+            case MULT: case MULI:
+                return x * y;
+            case SLT:
+                return (x < y) ? 1 : 0;
+            case SGN:
+                return (x > y) ? 1 : 0;
+            case SLE:
+                return (x <= y) ? 1 : 0;
+            case SGE:
+                return (x >= y) ? 1 : 0;
+            default:
+                return VARIES;
+        }
+    }
+
+    private static boolean isMoveFromDivision(CodeGenerator opcode) {
+        return opcode == CodeGenerator.MFLO || opcode == CodeGenerator.MFHI;
+    }
+
+    // 1 if a branch is always taken, 0 if never, -1 if it depends
+    private int branchTaken(int index) {
+        long a = operandValue(index, 0);
+        long b = operandValue(index, 1);
+        if (a == VARIES || b == VARIES) {
+            return -1;
+        }
+        if (a == UNKNOWN || b == UNKNOWN) {
+            return 2; // No edge yet
+        }
+        switch (code.getOpcode(index)) {
+            case BEQ:
+                return (a == b) ? 1 : 0;
+            case BNE:
+                return (a != b) ? 1 : 0;
+            case BLT:
+                return (a < b) ? 1 : 0;
+            case BGT:
+                return (a > b) ? 1 : 0;
+            default:
+                return -1;
+        }
+    }
+
+    // Whether a block starts with the label a branch names
+    private boolean isLabelOf(int block, int branch) {
+        int start = graph.getStart(block);
+        return code.getOpcode(start) == CodeGenerator.LABEL && code.getKind(branch, 2) == MipsCode.SYM
+                && code.getOperand(start, 0) == code.getOperand(branch, 2);
+    }
+
+    // Makes the constants li, the branches that go one way j or nothing, and constant operands immediates
+    private void rewriteConstants() {
+        int[] unread = new int[code.size()]; // The mflo and mfhi left reading each div
+        for (int i = 0; i < code.size(); i++) {
+            if (divisions[i] >= 0 && isMoveFromDivision(code.getOpcode(i)) && executable[blocks[i]]) {
+                unread[divisions[i]]++;
+            }
+        }
+
+        for (int block = 0; block < graph.size(); block++) {
+            if (!executable[block]) {
+                if (graph.isReachable(block)) {
+                    blocksUnreachable++;
+                }
+                continue;
+            }
+            for (int i = graph.getStart(block); i < graph.getEnd(block); i++) {
+                CodeGenerator opcode = code.getOpcode(i);
+                int written = ssa.getName(i, 0);
+                if (written != SsaForm.NONE && LiveRanges.isDefinition(code, i, 0)) {
+                    long value = values[written];
+                    if (value != VARIES && value != UNKNOWN) {
+                        if (opcode != CodeGenerator.LI || code.getKind(i, 1) != MipsCode.IMM) {
+                            code.set(i, CodeGenerator.LI, MipsCode.kinds(MipsCode.REG, MipsCode.IMM, MipsCode.NONE),
+                                    code.getOperand(i, 0), (int) value, 0);
+                            constantsFolded++;
+                            if (isMoveFromDivision(opcode) && --unread[divisions[i]] == 0 && !hiLoAcrossBlocks
+                                    && operandValue(divisions[i], 1) != 0) {
+                                removed.set(divisions[i]); // Cannot trap, and nothing reads it
+                            }
+                        }
+                        continue;
+                    }
+                    foldOperands(i);
+                } else if (opcode.isBranch()) {
+                    int taken = branchTaken(i);
+                    if (taken == 1) {
+                        code.set(i, CodeGenerator.J, MipsCode.kinds(MipsCode.SYM, MipsCode.NONE, MipsCode.NONE),
+                                code.getOperand(i, 2), 0, 0);
+                        branchesFolded++;
+                    } else if (taken == 0) {
+                        removed.set(i);
+                        branchesFolded++;
+                    }
+                }
+            }
+        }
+    }
+
+    // Turns a constant register operand into an immediate where the instruction has a form for one
+    private void foldOperands(int index) {
+        CodeGenerator opcode = code.getOpcode(index);
+        long first = operandValue(index, 1);
+        long second = operandValue(index, 2);
+        if (code.getKind(index, 1) != MipsCode.REG || code.getKind(index, 2) != MipsCode.REG) {
+            return;
+        }
+        int target = code.getOperand(index, 0);
+        switch (opcode) {
+            case ADD:
+                if (fits(second)) {
+                    setImmediate(index, CodeGenerator.ADDI, target, code.getOperand(index, 1), (int) second);
+                } else if (fits(first)) {
+                    setImmediate(index, CodeGenerator.ADDI, target, code.getOperand(index, 2), (int) first);
+                }
+                break;
+            case SUB:
+                if (fits(second)) {
+                    setImmediate(index, CodeGenerator.SUBI, target, code.getOperand(index, 1), (int) second);
+                }
+                break;
+            case SLT: case SGN: case SLE: case SGE:
+                if (fits(second)) {
+                    setImmediate(index, opcode, target, code.getOperand(index, 1), (int) second);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static boolean fits(long value) {
+        return value != VARIES && value != UNKNOWN && value >= MIN_IMMEDIATE && value <= MAX_IMMEDIATE;
+    }
+
+    private void setImmediate(int index, CodeGenerator opcode, int target, int source, int immediate) {
+        int name = ssa.getName(index, 1);
+        if (code.getOperand(index, 1) != source) {
+            name = ssa.getName(index, 2);
+        }
+        code.set(index, opcode, MipsCode.kinds(MipsCode.REG, MipsCode.REG, MipsCode.IMM), target, source, immediate);
+        if (name != SsaForm.NONE) {
+            renameOperand(index, name); // The source moved to operand 1
+        }
+        operandsFolded++;
+    }
+
+    // ---- Global value numbering ----
+
+    private void renameOperand(int index, int name) {
+        if (operandNames == null) {
+            operandNames = new int[code.size()];
+            Arrays.fill(operandNames, SsaForm.NONE - 1);
+        }
+        operandNames[index] = name;
+    }
+
+    // The name an operand reads, after the rewrites
+    private int nameOf(int index, int operand) {
+        if (code.getKind(index, operand) != MipsCode.REG) {
+            return SsaForm.NONE;
+        }
+        if (operand == 1 && operandNames != null && operandNames[index] != SsaForm.NONE - 1) {
+            return operandNames[index];
+        }
+        return ssa.getName(index, operand);
+    }
+
+    private void numberValues() {
+        numbers = new int[nameCount];
+        for (int name = 0; name < nameCount; name++) {
+            numbers[name] = name;
+        }
+        holders = new int[ssa.getSlotCount()];
+        Arrays.fill(holders, SsaForm.NONE);
+        Map<Expression, Integer> available = new HashMap<>();
+        Map<Long, Integer> constants = new HashMap<>(); // The first name of each constant, for its number
+
+        // What each block changed, to undo on the way out: {slot, name} and {expression, name}
+        int[] slotUndo = new int[64];
+        int slotUndoSize = 0;
+        Expression[] tableUndo = new Expression[16];
+        int[] tableUndoNames = new int[16];
+        int tableUndoSize = 0;
+        int[] slotMarks = new int[graph.size()];
+        int[] tableMarks = new int[graph.size()];
+
+        int[] stack = new int[graph.size() * 2];
+        int depth = 0;
+        if (graph.size() > 0) {
+            stack[depth++] = 0;
+        }
+        while (depth > 0) {
+            int top = stack[--depth];
+            if (top < 0) {
+                int block = -top - 1;
+                while (slotUndoSize > slotMarks[block]) {
+                    slotUndoSize -= 2;
+                    holders[slotUndo[slotUndoSize]] = slotUndo[slotUndoSize + 1];
+                }
+                while (tableUndoSize > tableMarks[block]) {
+                    tableUndoSize--;
+                    if (tableUndoNames[tableUndoSize] == SsaForm.NONE) {
+                        available.remove(tableUndo[tableUndoSize]);
+                    } else {
+                        available.put(tableUndo[tableUndoSize], tableUndoNames[tableUndoSize]);
+                    }
+                }
+                continue;
+            }
+            int block = top;
+            slotMarks[block] = slotUndoSize;
+            tableMarks[block] = tableUndoSize;
+            int needed = slotUndoSize + 2 * (ssa.getPhis(block).length + graph.getEnd(block) - graph.getStart(block));
+            if (needed > slotUndo.length) {
+                slotUndo = Arrays.copyOf(slotUndo, Math.max(needed, slotUndo.length * 2));
+            }
+
+            if (executable[block]) {
+                for (int phi : ssa.getPhis(block)) {
+                    int name = ssa.getPhiName(phi);
+                    numbers[name] = phiNumber(phi);
+                    slotUndo[slotUndoSize++] = ssa.getSlot(name);
+                    slotUndo[slotUndoSize++] = holders[ssa.getSlot(name)];
+                    holders[ssa.getSlot(name)] = name;
+                }
+                for (int i = graph.getStart(block); i < graph.getEnd(block); i++) {
+                    if (removed.get(i)) {
+                        continue;
+                    }
+                    simplify(i);
+                    int written = ssa.getName(i, 0);
+                    if (written == SsaForm.NONE || !LiveRanges.isDefinition(code, i, 0)) {
+                        continue;
+                    }
+
+                    long value = values[written];
+                    if (value != VARIES && value != UNKNOWN) {
+                        numbers[written] = numbers[constants.computeIfAbsent(value, k -> written)];
+                    } else if (code.getOpcode(i) == CodeGenerator.MOVE && nameOf(i, 1) != SsaForm.NONE) {
+                        numbers[written] = numbers[nameOf(i, 1)];
+                    } else {
+                        Expression expression = expressionOf(i);
+                        Integer leader = (expression != null) ? available.get(expression) : null;
+                        if (leader != null) {
+                            numbers[written] = numbers[leader];
+                            if (holders[ssa.getSlot(leader)] == leader) {
+                                replaceWithMove(i, leader);
+                            }
+                        }
+                        if (expression != null && (leader == null || holders[ssa.getSlot(leader)] != leader)) {
+                            // This name now stands for the expression; the old one is no longer held
+                            if (tableUndoSize == tableUndo.length) {
+                                tableUndo = Arrays.copyOf(tableUndo, tableUndoSize * 2);
+                                tableUndoNames = Arrays.copyOf(tableUndoNames, tableUndoSize * 2);
+                            }
+                            tableUndo[tableUndoSize] = expression;
+                            tableUndoNames[tableUndoSize++] = (leader != null) ? leader : SsaForm.NONE;
+                            available.put(expression, written);
+                        }
+                    }
+                    slotUndo[slotUndoSize++] = ssa.getSlot(written);
+                    slotUndo[slotUndoSize++] = holders[ssa.getSlot(written)];
+                    holders[ssa.getSlot(written)] = written;
+                }
+            }
+
+            stack[depth++] = -block - 1;
+            int[] children = graph.getDominated(block);
+            for (int child = children.length - 1; child >= 0; child--) {
+                stack[depth++] = children[child];
+            }
+        }
+    }
+
+    // A phi whose incoming values all have one number has that number too
+    private int phiNumber(int phi) {
+        int block = ssa.getPhiBlock(phi);
+        int[] operands = ssa.getPhiOperands(phi);
+        int number = SsaForm.NONE;
+        for (int edge = 0; edge < operands.length; edge++) {
+            if (!executableEdges[block][edge] || operands[edge] == SsaForm.NONE) {
+                continue;
+            }
+            if (number == SsaForm.NONE) {
+                number = numbers[operands[edge]];
+            } else if (number != numbers[operands[edge]]) {
+                return ssa.getPhiName(phi);
+            }
+        }
+        return (number == SsaForm.NONE) ? ssa.getPhiName(phi) : number;
+    }
+
+    // The key of a pure instruction: its opcode and its operands as numbers, or null if it has side effects
+    private Expression expressionOf(int index) {
+        CodeGenerator opcode = code.getOpcode(index);
+        switch (opcode) {
+            case ADD: case SUB: case MULT: case DIV: case ADDI: case SUBI: case MULI:
+            case SLT: case SGN: case SLE: case SGE: case LA: case LI:
+                break;
+            default:
+                return null;
+        }
+        long first = operandKey(index, 1);
+        long second = operandKey(index, 2);
+        if (first == VARIES || second == VARIES) {
+            return null;
+        }
+        if ((opcode == CodeGenerator.ADD || opcode == CodeGenerator.MULT) && first > second) {
+            long swap = first;
+            first = second;
+            second = swap;
+        }
+        return new Expression(opcode, first, second);
+    }
+
+    // An operand as its kind and its value number, immediate or symbol; VARIES if it can change unseen
+    private long operandKey(int index, int operand) {
+        int kind = code.getKind(index, operand);
+        int value = code.getOperand(index, operand);
+        if (kind == MipsCode.REG) {
+            if (value == ZERO) {
+                return ((long) MipsCode.IMM << 32) | 0;
+            }
+            int name = nameOf(index, operand);
+            if (name == SsaForm.NONE) {
+                return VARIES; // $v0, $a0 and the like
+            }
+            value = numbers[name];
+        }
+        return ((long) kind << 32) | (value & 0xFFFFFFFFL);
+    }
+
+    private void replaceWithMove(int index, int leader) {
+        int register = ssa.getRegister(leader);
+        if (register == code.getOperand(index, 0)) {
+            removed.set(index); // The register already holds it
+        } else {
+            code.set(index, CodeGenerator.MOVE, MipsCode.kinds(MipsCode.REG, MipsCode.REG, MipsCode.NONE),
+                    code.getOperand(index, 0), register, 0);
+            renameOperand(index, leader);
+        }
+        redundant++;
+    }
+
+    // Algebraic identities, with what the constant propagation found and the value numbers so far
+    private void simplify(int index) {
+        CodeGenerator opcode = code.getOpcode(index);
+        if (ssa.getName(index, 0) == SsaForm.NONE || !LiveRanges.isDefinition(code, index, 0)) {
+            return;
+        }
+        long written = values[ssa.getName(index, 0)];
+        if (written != VARIES && written != UNKNOWN) {
+            return; // Already li
+        }
+        long first = operandValue(index, 1);
+        long second = operandValue(index, 2);
+        switch (opcode) {
+            case ADD: case ADDI:
+                if (second == 0) {
+                    toMove(index, 1);
+                } else if (first == 0) {
+                    toMove(index, 2);
+                }
+                break;
+            case SUB: case SUBI:
+                if (second == 0) {
+                    toMove(index, 1);
+                } else if (sameValue(index)) {
+                    toConstant(index, 0);
+                }
+                break;
+            case MULT: case MULI:
+                if (second == 1) {
+                    toMove(index, 1);
+                } else if (first == 1) {
+                    toMove(index, 2);
+                }
+                break;
+            case DIV:
+                if (second == 1) {
+                    toMove(index, 1);
+                }
+                break;
+            case SLT: case SGN:
+                if (sameValue(index)) {
+                    toConstant(index, 0);
+                }
+                break;
+            case SLE: case SGE:
+                if (sameValue(index)) {
+                    toConstant(index, 1);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    // Whether operands 1 and 2 are registers with the same value number
+    private boolean sameValue(int index) {
+        int first = nameOf(index, 1);
+        int second = nameOf(index, 2);
+        return first != SsaForm.NONE && second != SsaForm.NONE && numbers[first] == numbers[second];
+    }
+
+    private void toMove(int index, int operand) {
+        if (code.getKind(index, operand) != MipsCode.REG || nameOf(index, operand) == SsaForm.NONE) {
+            return;
+        }
+        int name = nameOf(index, operand);
+        code.set(index, CodeGenerator.MOVE, MipsCode.kinds(MipsCode.REG, MipsCode.REG, MipsCode.NONE),
+                code.getOperand(index, 0), code.getOperand(index, operand), 0);
+        renameOperand(index, name);
+        simplified++;
+    }
+
+    private void toConstant(int index, int constant) {
+        code.set(index, CodeGenerator.LI, MipsCode.kinds(MipsCode.REG, MipsCode.IMM, MipsCode.NONE),
+                code.getOperand(index, 0), constant, 0);
+        values[ssa.getName(index, 0)] = constant;
+        simplified++;
+    }
+
+    public int getNameCount() {
+        return nameCount;
+    }
+
+    public int getPhiCount() {
+        return phiCount;
+    }
+
+    // Instructions made li because their value is a constant
+    public int getConstantsFolded() {
+        return constantsFolded;
+    }
+
+    // Register operands made immediates
+    public int getOperandsFolded() {
+        return operandsFolded;
+    }
+
+    public int getBranchesFolded() {
+        return branchesFolded;
+    }
+
+    // Blocks the constant propagation found no branch goes to
+    public int getBlocksUnreachable() {
+        return blocksUnreachable;
+    }
+
+    public int getSimplified() {
+        return simplified;
+    }
+
+    // Expressions computed again, made moves or removed
+    public int getRedundant() {
+        return redundant;
+    }
+}
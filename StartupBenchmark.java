@@ -0,0 +1,148 @@
+/*******************************************************************
+ * StartupBenchmark Class                                          *
+ *                                                                 *
+ * PROGRAMMER: Emily Culp                                          *
+ * COURSE: CS340 - Programming Language Design                     *
+ * DATE: 12/10/2024                                                *
+ * REQUIREMENT: Final - Compiler                                   *
+ *                                                                 *
+ * DESCRIPTION:                                                    *
+ * The StartupBenchmark class measures how long a one-shot         *
+ * "java Compiler" run takes from launch to exit. AppCDS can only  *
+ * archive classes loaded from a JAR, so the compiled classes are  *
+ * packed into one first. If the archive does not exist yet, it is *
+ * created with a training run of the source file                  *
+ * (-XX:ArchiveClassesAtExit). The benchmark then                  *
+ * times the default launch against the fast-start launch, which   *
+ * maps the archive and stops the JIT at the C1 tier, the same     *
+ * flags faststart.sh and faststart.bat use.                       *
+ *                                                                 *
+ * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean  *
+ * Zeller.                                                         *
+ *                                                                 *
+ * CREDITS: This code was written with the help of ChatGPT.        *
+ *******************************************************************/
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.spi.ToolProvider;
+
+public class StartupBenchmark {
+    private static final String[] FAST_START_FLAGS = {"-XX:TieredStopAtLevel=1"};
+
+    private final String java;
+    private final String classPath;
+    private final Path source;
+    private final Path output;
+
+    public StartupBenchmark(String classPath, Path source, Path output) {
+        this.java = ProcessHandle.current().info().command().orElse("java");
+        this.classPath = classPath;
+        this.source = source;
+        this.output = output;
+    }
+
+    /**********************************************************
+     * METHOD: main(String[] args)                              *
+     * DESCRIPTION: Builds the archive if needed and prints the *
+     *              average and best launch times of each mode. *
+     * PARAMETERS: String[] args - [runs] [archive] [source]    *
+     * RETURN VALUE: None                                        *
+     **********************************************************/
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        Path archive = Path.of(args.length > 1 ? args[1] : "compiler.jsa");
+        Path source = Path.of(args.length > 2 ? args[2] : "input.txt");
+        Path output = Files.createTempFile("startup", ".txt");
+        Path jar = Path.of(archive.toString().replaceFirst("\\.jsa$", "") + ".jar");
+
+        try {
+            String classPath = System.getProperty("java.class.path");
+            if (Files.isDirectory(Path.of(classPath))) {
+                packJar(Path.of(classPath), jar);
+                Files.deleteIfExists(archive);  // An archive is only valid for the jar it was made from
+                classPath = jar.toString();
+            }
+
+            StartupBenchmark benchmark = new StartupBenchmark(classPath, source, output);
+            if (!Files.exists(archive)) {
+                long millis = benchmark.launch("-XX:ArchiveClassesAtExit=" + archive);
+                System.out.printf("Created %s from a training run of %s in %d ms%n", archive, source, millis);
+            }
+
+            benchmark.measure("default", runs);
+            benchmark.measure("CDS archive", runs, "-XX:SharedArchiveFile=" + archive);
+            List<String> fastStart = new ArrayList<>(Arrays.asList(FAST_START_FLAGS));
+            fastStart.add("-XX:SharedArchiveFile=" + archive);
+            benchmark.measure("fast start", runs, fastStart.toArray(new String[0]));
+        } finally {
+            Files.deleteIfExists(output);
+        }
+    }
+
+    /**********************************************************
+     * METHOD: packJar(Path classes, Path jar)                  *
+     * DESCRIPTION: Packs a directory of classes into a jar     *
+     *              using the JDK's jar tool.                   *
+     * PARAMETERS: Path classes - the compiled classes.         *
+     *             Path jar - the jar file to create.           *
+     * RETURN VALUE: None                                        *
+     **********************************************************/
+    private static void packJar(Path classes, Path jar) throws IOException {
+        ToolProvider jarTool = ToolProvider.findFirst("jar")
+                .orElseThrow(() -> new IOException("The jar tool is not available in this JDK."));
+        int status = jarTool.run(System.out, System.err, "cf", jar.toString(), "-C", classes.toString(), ".");
+        if (status != 0) {
+            throw new IOException("Could not create " + jar);
+        }
+    }
+
+    /**********************************************************
+     * METHOD: measure(String mode, int runs, String... flags)  *
+     * DESCRIPTION: Launches the compiler the given number of   *
+     *              times with the JVM flags and prints the     *
+     *              average and best wall-clock times.          *
+     * PARAMETERS: String mode - the label for the report.      *
+     *             int runs - the number of launches.           *
+     *             String... flags - extra JVM flags.           *
+     * RETURN VALUE: None                                        *
+     **********************************************************/
+    private void measure(String mode, int runs, String... flags) throws IOException, InterruptedException {
+        launch(flags);  // Let the OS page cache settle before timing
+        long total = 0;
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < runs; i++) {
+            long millis = launch(flags);
+            total += millis;
+            best = Math.min(best, millis);
+        }
+        System.out.printf("%-12s: average %d ms, best %d ms over %d runs%n", mode, total / runs, best, runs);
+    }
+
+    /**********************************************************
+     * METHOD: launch(String... flags)                          *
+     * DESCRIPTION: Runs "java Compiler <source> <output>" in a *
+     *              new JVM and waits for it to exit.           *
+     * PARAMETERS: String... flags - extra JVM flags.           *
+     * RETURN VALUE: long - the wall-clock time in ms.          *
+     **********************************************************/
+    private long launch(String... flags) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(java);
+        command.addAll(Arrays.asList(flags));
+        command.addAll(List.of("-cp", classPath, "Compiler", source.toString(), output.toString()));
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        process.getOutputStream().close();
+        process.waitFor();
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+}
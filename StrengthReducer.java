@@ -0,0 +1,482 @@
+/*******************************************************************
+ * StrengthReducer Class                                           *
+ *                                                                 *
+ * PROGRAMMER: Emily Culp                                          *
+ * COURSE: CS340 - Programming Language Design                     *
+ * DATE: 12/10/2024                                                *
+ * REQUIREMENT: Final - Compiler                                   *
+ *                                                                 *
+ * DESCRIPTION:                                                    *
+ * The StrengthReducer class replaces the multiplies, divides and  *
+ * remainders of the generated MIPS code whose second operand is   *
+ * a constant, an immediate or a register loaded with li earlier   *
+ * in the block, with cheaper instructions:                        *
+ *                                                                 *
+ *   x * k   shifts and adds: a shift for a power of two, a shift  *
+ *           and an add or subtract for each factor 2^n + 1 or     *
+ *           2^n - 1 of k, or one per nonzero digit of k written   *
+ *           with digits -1, 0 and 1, whichever is shorter.        *
+ *   x / k   for a power of two, a shift of x plus k - 1 when x    *
+ *           is negative, so the quotient rounds toward zero;      *
+ *           otherwise the high word of x times a magic number,    *
+ *           shifted and corrected for the sign (mult and mfhi).   *
+ *   x % k   x minus the quotient times k.                         *
+ *                                                                 *
+ * The new form is used only if it costs fewer cycles than the     *
+ * instruction it replaces, by the table in COSTS. The sums wrap   *
+ * around as mul does, with addu and subu. The quotient and        *
+ * remainder of a two-operand div are found where the div was and  *
+ * moved to the registers of its mflo and mfhi, so the div goes    *
+ * only when every mflo and mfhi that reads it is in its block.    *
+ *                                                                 *
+ * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean  *
+ * Zeller.                                                         *
+ *                                                                 *
+ * CREDITS: This code was written with the help of ChatGPT.        *
+ *******************************************************************/
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+public class StrengthReducer {
+    // Cycles per instruction, as on the R3000, where the multiplier and divider hold up the pipeline
+    private static final Map<CodeGenerator, Integer> COSTS = new EnumMap<>(CodeGenerator.class);
+
+    static {
+        COSTS.put(CodeGenerator.MULT, 13);      // mult, then mflo
+        COSTS.put(CodeGenerator.MULI, 13);
+        COSTS.put(CodeGenerator.MULT_HILO, 12);
+        COSTS.put(CodeGenerator.DIV, 35);       // Plus an mflo in the three-operand form
+    }
+
+    private static final int ZERO = 0; // $zero
+
+    private final MipsCode code;
+    private final Map<Long, long[]> plans = new HashMap<>(); // The cheapest shifts and adds for each factor
+    private int firstTemporary;                              // The first virtual register this pass made
+    private int nextRegister;                                // The next unused one
+    private int multiplies;
+    private int divides;
+    private int remainders;
+    private int cyclesBefore;
+    private int cyclesAfter;
+
+    public StrengthReducer(MipsCode code) {
+        this.code = code;
+    }
+
+    /**********************************************************
+     * METHOD: reduce()                                         *
+     * DESCRIPTION: Replaces the operations by constants that   *
+     *              have a cheaper form, in place.              *
+     * RETURN VALUE: None                                        *
+     **********************************************************/
+    public void reduce() {
+        ControlFlowGraph graph = new ControlFlowGraph(code);
+        nextRegister = MipsCode.FIRST_VIRTUAL;
+        for (int i = 0; i < code.size(); i++) {
+            for (int operand = 0; operand < 3; operand++) {
+                if (LiveRanges.isRegisterOperand(code, i, operand)) {
+                    nextRegister = Math.max(nextRegister, code.getOperand(i, operand) + 1);
+                }
+            }
+        }
+
+        firstTemporary = nextRegister;
+
+        // Whether an mflo or mfhi reads the div of another block, as the SsaOptimizer finds it
+        boolean hiLoAcrossBlocks = false;
+        for (int block = 0; block < graph.size(); block++) {
+            boolean divided = false;
+            for (int i = graph.getStart(block); i < graph.getEnd(block); i++) {
+                hiLoAcrossBlocks |= !divided && isMoveFromDivision(code.getOpcode(i));
+                divided |= setsHiLo(i);
+            }
+        }
+
+        MipsCode reduced = new MipsCode();
+        int[] moveFrom = new int[code.size()]; // The register holding what an mflo or mfhi reads, once its div is gone
+        Map<Integer, Integer> constants = new HashMap<>(); // The registers loaded with li in the block
+        for (int block = 0; block < graph.size(); block++) {
+            constants.clear();
+            for (int i = graph.getStart(block); i < graph.getEnd(block); i++) {
+                CodeGenerator opcode = code.getOpcode(i);
+                if (moveFrom[i] != 0) {
+                    reduced.add(CodeGenerator.MOVE, MipsCode.kinds(MipsCode.REG, MipsCode.REG, MipsCode.NONE),
+                            code.getOperand(i, 0), moveFrom[i], 0);
+                    constants.remove(code.getOperand(i, 0));
+                    continue;
+                }
+
+                MipsCode sequence = null;
+                if ((opcode == CodeGenerator.MULT || opcode == CodeGenerator.MULI) && isRegister(i, 1)) {
+                    Integer factor = constant(i, 2, constants);
+                    int source = code.getOperand(i, 1);
+                    if (factor == null && opcode == CodeGenerator.MULT && isRegister(i, 2)) {
+                        factor = constant(i, 1, constants); // mul is commutative
+                        source = code.getOperand(i, 2);
+                    }
+                    if (factor != null) {
+                        sequence = new MipsCode();
+                        finish(sequence, multiply(sequence, source, factor), code.getOperand(i, 0));
+                    }
+                } else if (opcode == CodeGenerator.DIV && code.getKind(i, 2) != MipsCode.NONE && isRegister(i, 1)) {
+                    Integer divisor = constant(i, 2, constants);
+                    if (divisor != null && divisor != 0) {
+                        sequence = new MipsCode();
+                        finish(sequence, divide(sequence, code.getOperand(i, 1), divisor, true, false)[0],
+                                code.getOperand(i, 0));
+                    }
+                } else if (opcode == CodeGenerator.DIV && isRegister(i, 0) && !hiLoAcrossBlocks) {
+                    Integer divisor = constant(i, 1, constants);
+                    if (divisor != null && divisor != 0) {
+                        sequence = lowerDivision(i, graph.getEnd(block), divisor, moveFrom);
+                    }
+                }
+
+                // Its mflo and mfhi cost the same as the moves they become, so only the div is weighed
+                if (sequence != null && cost(sequence) < cost(i)) {
+                    cyclesBefore += cost(i);
+                    cyclesAfter += cost(sequence);
+                    if (opcode != CodeGenerator.DIV) {
+                        multiplies++;
+                    } else {
+                        divides++;
+                        for (int reader = i + 1; reader < graph.getEnd(block) && !setsHiLo(reader); reader++) {
+                            if (code.getOpcode(reader) == CodeGenerator.MFHI) {
+                                remainders++;
+                                break;
+                            }
+                        }
+                    }
+                    reduced.append(sequence);
+                } else {
+                    if (setsHiLo(i)) {
+                        for (int reader = i + 1; reader < graph.getEnd(block) && !setsHiLo(reader); reader++) {
+                            moveFrom[reader] = 0; // The div stays, and so do they
+                        }
+                    }
+                    reduced.append(code, i, i + 1);
+                }
+
+                // Follow the constants
+                if (LiveRanges.isDefinition(code, i, 0) && code.getKind(i, 0) == MipsCode.REG) {
+                    if (opcode == CodeGenerator.LI && code.getKind(i, 1) == MipsCode.IMM) {
+                        constants.put(code.getOperand(i, 0), code.getOperand(i, 1));
+                    } else {
+                        constants.remove(code.getOperand(i, 0));
+                    }
+                }
+            }
+        }
+        code.clear();
+        code.append(reduced);
+    }
+
+    // The sequence for a two-operand div and the mflo and mfhi after it, which become moves
+    private MipsCode lowerDivision(int division, int end, int divisor, int[] moveFrom) {
+        boolean quotient = false;
+        boolean remainder = false;
+        for (int reader = division + 1; reader < end && !setsHiLo(reader); reader++) {
+            quotient |= code.getOpcode(reader) == CodeGenerator.MFLO;
+            remainder |= code.getOpcode(reader) == CodeGenerator.MFHI;
+        }
+        MipsCode sequence = new MipsCode();
+        int dividend = code.getOperand(division, 0);
+        int[] results = divide(sequence, dividend, divisor, quotient, remainder);
+        if (quotient && results[0] == dividend) {
+            // Dividing by 1: copy it, since the register may change before the mflo
+            results[0] = emit(sequence, CodeGenerator.ADDU, MipsCode.REG, dividend, ZERO);
+        }
+        for (int reader = division + 1; reader < end && !setsHiLo(reader); reader++) {
+            if (code.getOpcode(reader) == CodeGenerator.MFLO) {
+                moveFrom[reader] = results[0];
+            } else if (code.getOpcode(reader) == CodeGenerator.MFHI) {
+                moveFrom[reader] = results[1];
+            }
+        }
+        return sequence;
+    }
+
+    // Puts the value of a sequence in the register the replaced instruction wrote
+    private void finish(MipsCode sequence, int value, int result) {
+        int last = sequence.size() - 1;
+        if (last >= 0 && value >= firstTemporary && sequence.getOperand(last, 0) == value) {
+            sequence.setOperand(last, 0, result); // A temporary of this sequence, read by nothing else
+        } else {
+            sequence.add(CodeGenerator.MOVE, MipsCode.kinds(MipsCode.REG, MipsCode.REG, MipsCode.NONE), result, value, 0);
+        }
+    }
+
+    // ---- Multiplying by a constant ----
+
+    // Appends source * factor to the sequence; returns the register holding it
+    private int multiply(MipsCode sequence, int source, long factor) {
+        if (factor == 0) {
+            return emit(sequence, CodeGenerator.LI, MipsCode.IMM, 0, 0);
+        }
+        int product = multiplyPositive(sequence, source, Math.abs(factor));
+        return factor < 0 ? emit(sequence, CodeGenerator.SUBU, MipsCode.REG, ZERO, product) : product;
+    }
+
+    private int multiplyPositive(MipsCode sequence, int source, long factor) {
+        if (factor == 1) {
+            return source;
+        }
+        long choice = plan(factor)[1];
+        if (choice < 0) {
+            // An even factor: the odd part, then a shift
+            int odd = multiplyPositive(sequence, source, factor >> -choice);
+            return emit(sequence, CodeGenerator.SLL, MipsCode.REG, odd, (int) -choice);
+        }
+        if (choice > 0) {
+            // A factor 2^n + 1 or 2^n - 1 of it, then the rest
+            int shift = 63 - Long.numberOfLeadingZeros(choice + 1);
+            int shifted = emit(sequence, CodeGenerator.SLL, MipsCode.REG, source, shift);
+            int part = emit(sequence, choice == (1L << shift) + 1 ? CodeGenerator.ADDU : CodeGenerator.SUBU,
+                    MipsCode.REG, shifted, source);
+            return multiplyPositive(sequence, part, factor / choice);
+        }
+
+        // One term per nonzero digit, from the highest, which is always 1
+        int[] digits = digits(factor);
+        int sum = -1;
+        for (int bit = 63; bit >= 0; bit--) {
+            if (digits[bit] != 0) {
+                int term = bit == 0 ? source : emit(sequence, CodeGenerator.SLL, MipsCode.REG, source, bit);
+                sum = sum < 0 ? term
+                        : emit(sequence, digits[bit] > 0 ? CodeGenerator.ADDU : CodeGenerator.SUBU, MipsCode.REG, sum, term);
+            }
+        }
+        return sum;
+    }
+
+    // {instructions, choice} for a factor above 1: choice is 0 for the digits, -n for a shift by n, or a factor
+    private long[] plan(long factor) {
+        long[] plan = plans.get(factor);
+        if (plan != null) {
+            return plan;
+        }
+        if ((factor & 1) == 0) {
+            int shift = Long.numberOfTrailingZeros(factor);
+            long odd = factor >> shift;
+            plan = new long[]{(odd == 1 ? 0 : plan(odd)[0]) + 1, -shift};
+        } else {
+            int nonzero = 0;
+            int[] digits = digits(factor);
+            for (int digit : digits) {
+                nonzero += digit != 0 ? 1 : 0;
+            }
+            plan = new long[]{2L * nonzero - 1 - (digits[0] != 0 ? 1 : 0), 0};
+            for (int shift = 1; shift < 32; shift++) {
+                for (long part : new long[]{(1L << shift) + 1, (1L << shift) - 1}) {
+                    if (part > 1 && part <= factor && factor % part == 0) {
+                        long rest = factor / part;
+                        long instructions = (rest == 1 ? 0 : plan(rest)[0]) + 2;
+                        if (instructions < plan[0]) {
+                            plan = new long[]{instructions, part};
+                        }
+                    }
+                }
+            }
+        }
+        plans.put(factor, plan);
+        return plan;
+    }
+
+    // The digits of a positive number in non-adjacent form: -1, 0 or 1, and no two nonzero side by side
+    private static int[] digits(long number) {
+        int[] digits = new int[64];
+        for (int bit = 0; number != 0; bit++) {
+            if ((number & 1) != 0) {
+                digits[bit] = 2 - (int) (number & 3); // 1 if the next bit is 0, -1 if it is 1
+                number -= digits[bit];
+            }
+            number >>= 1;
+        }
+        return digits;
+    }
+
+    // ---- Dividing by a constant ----
+
+    // Appends the quotient and remainder of dividend / divisor, rounded toward zero; returns {quotient, remainder}
+    private int[] divide(MipsCode sequence, int dividend, int divisor, boolean quotient, boolean remainder) {
+        long magnitude = Math.abs((long) divisor);
+        int[] results = new int[2];
+        if (magnitude == 1) {
+            results[0] = divisor > 0 ? dividend : emit(sequence, CodeGenerator.SUBU, MipsCode.REG, ZERO, dividend);
+            results[1] = remainder ? emit(sequence, CodeGenerator.LI, MipsCode.IMM, 0, 0) : 0;
+            return results;
+        }
+        if ((magnitude & (magnitude - 1)) == 0) {
+            // Add 2^n - 1 to a negative dividend, then shift
+            int shift = Long.numberOfTrailingZeros(magnitude);
+            int sign = shift == 1 ? dividend : emit(sequence, CodeGenerator.SRA, MipsCode.REG, dividend, 31);
+            int bias = emit(sequence, CodeGenerator.SRL, MipsCode.REG, sign, 32 - shift);
+            int biased = emit(sequence, CodeGenerator.ADDU, MipsCode.REG, dividend, bias);
+            int shifted = emit(sequence, CodeGenerator.SRA, MipsCode.REG, biased, shift);
+            if (quotient) {
+                results[0] = divisor > 0 ? shifted : emit(sequence, CodeGenerator.SUBU, MipsCode.REG, ZERO, shifted);
+            }
+            if (remainder) {
+                int multiple = emit(sequence, CodeGenerator.SLL, MipsCode.REG, shifted, shift);
+                results[1] = emit(sequence, CodeGenerator.SUBU, MipsCode.REG, dividend, multiple);
+            }
+            return results;
+        }
+
+        // The high word of dividend * magic, then the shift and the sign correction
+        long[] magic = magic(divisor);
+        int number = emit(sequence, CodeGenerator.LI, MipsCode.IMM, (int) magic[0], 0);
+        sequence.add(CodeGenerator.MULT_HILO, MipsCode.kinds(MipsCode.REG, MipsCode.REG, MipsCode.NONE), dividend, number, 0);
+        int high = emit(sequence, CodeGenerator.MFHI, MipsCode.NONE, 0, 0);
+        if (divisor > 0 && (int) magic[0] < 0) {
+            high = emit(sequence, CodeGenerator.ADDU, MipsCode.REG, high, dividend);
+        } else if (divisor < 0 && (int) magic[0] > 0) {
+            high = emit(sequence, CodeGenerator.SUBU, MipsCode.REG, high, dividend);
+        }
+        if (magic[1] > 0) {
+            high = emit(sequence, CodeGenerator.SRA, MipsCode.REG, high, (int) magic[1]);
+        }
+        int negative = emit(sequence, CodeGenerator.SRL, MipsCode.REG, high, 31);
+        results[0] = emit(sequence, CodeGenerator.ADDU, MipsCode.REG, high, negative);
+        if (remainder) {
+            // The product by the cheaper of the shifts and adds or a mul
+            MipsCode shifts = new MipsCode();
+            int saved = nextRegister;
+            int product = multiply(shifts, results[0], divisor);
+            if (cost(shifts) >= COSTS.get(CodeGenerator.MULT) + 1) {
+                nextRegister = saved;
+                shifts = new MipsCode();
+                int factor = emit(shifts, CodeGenerator.LI, MipsCode.IMM, divisor, 0);
+                product = emit(shifts, CodeGenerator.MULT, MipsCode.REG, results[0], factor);
+            }
+            sequence.append(shifts);
+            results[1] = emit(sequence, CodeGenerator.SUBU, MipsCode.REG, dividend, product);
+        }
+        return results;
+    }
+
+    // {magic, shift} for a signed divisor that is not 0, 1, -1 or a power of two (Hacker's Delight, 10-1)
+    private static long[] magic(int divisor) {
+        final long twoTo31 = 0x80000000L;
+        final long mask = 0xFFFFFFFFL;
+        long magnitude = Math.abs((long) divisor);
+        long t = twoTo31 + ((divisor & mask) >>> 31);
+        long anc = t - 1 - t % magnitude; // The absolute value of nc
+        int p = 31;
+        long q1 = twoTo31 / anc;
+        long r1 = twoTo31 - q1 * anc;
+        long q2 = twoTo31 / magnitude;
+        long r2 = twoTo31 - q2 * magnitude;
+        long delta;
+        do {
+            p++;
+            q1 = (2 * q1) & mask;
+            r1 = (2 * r1) & mask;
+            if (r1 >= anc) {
+                q1 = (q1 + 1) & mask;
+                r1 = (r1 - anc) & mask;
+            }
+            q2 = (2 * q2) & mask;
+            r2 = (2 * r2) & mask;
+            if (r2 >= magnitude) {
+                q2 = (q2 + 1) & mask;
+                r2 = (r2 - magnitude) & mask;
+            }
+            delta = magnitude - r2;
+        } while (q1 < delta || (q1 == delta && r1 == 0));
+        int magic = (int) (q2 + 1);
+        return new long[]{divisor < 0 ? -magic : magic, p - 32};
+    }
+
+    // ---- Helpers ----
+
+    // Appends an instruction writing a new register; the operands are a kind and value, then an int
+    private int emit(MipsCode sequence, CodeGenerator opcode, int kind, int first, int second) {
+        int register = nextRegister++; // Never read outside the sequence, unless finish() makes it the result
+        switch (opcode) {
+            case LI:
+                sequence.add(opcode, MipsCode.kinds(MipsCode.REG, MipsCode.IMM, MipsCode.NONE), register, first, 0);
+                break;
+            case MFHI:
+                sequence.add(opcode, MipsCode.kinds(MipsCode.REG, MipsCode.NONE, MipsCode.NONE), register, 0, 0);
+                break;
+            case SLL: case SRA: case SRL:
+                sequence.add(opcode, MipsCode.kinds(MipsCode.REG, kind, MipsCode.IMM), register, first, second);
+                break;
+            default:
+                sequence.add(opcode, MipsCode.kinds(MipsCode.REG, kind, MipsCode.REG), register, first, second);
+                break;
+        }
+        return register;
+    }
+
+    private boolean isRegister(int index, int operand) {
+        return code.getKind(index, operand) == MipsCode.REG;
+    }
+
+    // The value of an operand known in the block: an immediate, $zero, or a register loaded with li
+    private Integer constant(int index, int operand, Map<Integer, Integer> constants) {
+        switch (code.getKind(index, operand)) {
+            case MipsCode.IMM:
+                return code.getOperand(index, operand);
+            case MipsCode.REG:
+                return code.getOperand(index, operand) == ZERO ? Integer.valueOf(0)
+                        : constants.get(code.getOperand(index, operand));
+            default:
+                return null;
+        }
+    }
+
+    // A two-operand div or mult, which leaves its results in hi and lo
+    private boolean setsHiLo(int index) {
+        CodeGenerator opcode = code.getOpcode(index);
+        return (opcode == CodeGenerator.DIV && code.getKind(index, 2) == MipsCode.NONE)
+                || opcode == CodeGenerator.MULT_HILO;
+    }
+
+    private static boolean isMoveFromDivision(CodeGenerator opcode) {
+        return opcode == CodeGenerator.MFLO || opcode == CodeGenerator.MFHI;
+    }
+
+    private int cost(int index) {
+        CodeGenerator opcode = code.getOpcode(index);
+        if (opcode == CodeGenerator.LABEL || opcode == CodeGenerator.COMMENT || opcode == CodeGenerator.TEXT) {
+            return 0;
+        }
+        int cost = COSTS.getOrDefault(opcode, 1);
+        return opcode == CodeGenerator.DIV && code.getKind(index, 2) != MipsCode.NONE ? cost + 1 : cost;
+    }
+
+    private static int cost(MipsCode sequence) {
+        int cost = 0;
+        for (int i = 0; i < sequence.size(); i++) {
+            cost += COSTS.getOrDefault(sequence.getOpcode(i), 1);
+        }
+        return cost;
+    }
+
+    public int getMultiplies() {
+        return multiplies;
+    }
+
+    // The divs replaced, with an mfhi reading the remainder in getRemainders() of them
+    public int getDivides() {
+        return divides;
+    }
+
+    public int getRemainders() {
+        return remainders;
+    }
+
+    // The cycles of the replaced instructions, by COSTS, and of what replaced them
+    public int getCyclesBefore() {
+        return cyclesBefore;
+    }
+
+    public int getCyclesAfter() {
+        return cyclesAfter;
+    }
+}
@@ -0,0 +1,101 @@
+/*******************************************************************
+ * SymbolStorage Interface                                         *
+ *                                                                 *
+ * PROGRAMMER: Emily Culp                                          *
+ * COURSE: CS340 - Programming Language Design                     *
+ * DATE: 12/10/2024                                                *
+ * REQUIREMENT: Final - Compiler                                   *
+ *                                                                 *
+ * DESCRIPTION:                                                    *
+ * The SymbolStorage interface holds the fields of every symbol in *
+ * a SymbolTable, one numbered slot per symbol. The table decides  *
+ * what goes in each slot (the codes for the type, scope and       *
+ * register, the tag and bits of a packed value, the scope links)  *
+ * and the storage only keeps them. HeapSymbolStorage keeps them   *
+ * in arrays on the Java heap; OffHeapSymbolStorage keeps them in  *
+ * fixed-width records outside it, for tables so large that the    *
+ * garbage collector would spend a long time tracing them.         *
+ *                                                                 *
+ * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean  *
+ * Zeller.                                                         *
+ *                                                                 *
+ * CREDITS: This code was written with the help of ChatGPT.        *
+ *******************************************************************/
+
+public interface SymbolStorage {
+    /**********************************************************
+     * METHOD: capacity()                                       *
+     * RETURN VALUE: int - the number of slots available.       *
+     **********************************************************/
+    int capacity();
+
+    /**********************************************************
+     * METHOD: grow(int capacity)                               *
+     * DESCRIPTION: Makes room for more slots, keeping every    *
+     *              slot already stored.                        *
+     * PARAMETERS: int capacity - the new number of slots.      *
+     **********************************************************/
+    void grow(int capacity);
+
+    int getId(int slot);
+
+    void setId(int slot, int id);
+
+    String getName(int slot);
+
+    void setName(int slot, String name);
+
+    /**********************************************************
+     * METHOD: nameEquals(int slot, String name)                *
+     * DESCRIPTION: Compares the name in a slot with a string   *
+     *              without having to copy the stored name.     *
+     * RETURN VALUE: boolean - true if they are equal.          *
+     **********************************************************/
+    boolean nameEquals(int slot, String name);
+
+    /**********************************************************
+     * METHOD: nameHash(int slot)                               *
+     * RETURN VALUE: int - the String hash code of the name in  *
+     *              a slot.                                     *
+     **********************************************************/
+    int nameHash(int slot);
+
+    int getType(int slot);
+
+    void setType(int slot, int code);
+
+    int getScope(int slot);
+
+    void setScope(int slot, int code);
+
+    int getRegister(int slot);
+
+    void setRegister(int slot, int code);
+
+    byte getValueTag(int slot);
+
+    long getValueBits(int slot);
+
+    Object getValueObject(int slot);
+
+    /**********************************************************
+     * METHOD: setValue(int slot, byte tag, long bits,          *
+     *              Object object)                              *
+     * DESCRIPTION: Stores a packed value. Primitive values are *
+     *              given as bits; any other value is given as  *
+     *              an object, and null otherwise.              *
+     **********************************************************/
+    void setValue(int slot, byte tag, long bits, Object object);
+
+    int getLevel(int slot);
+
+    void setLevel(int slot, int level);
+
+    int getShadowed(int slot);
+
+    void setShadowed(int slot, int shadowed);
+
+    int getNextInScope(int slot);
+
+    void setNextInScope(int slot, int next);
+}
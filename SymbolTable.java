@@ -13,91 +13,207 @@
  * receives a unique ID starting from 600. The class also provides  *
  * a method to print the current state of the table for debugging.  *
  *                                                                 *
+ * The symbols are stored column by column in parallel arrays, one  *
+ * slot per symbol in declaration order: the ID, the name, the int  *
+ * codes for the type, scope and register, and the value packed     *
+ * into a long with a one-byte tag saying how to read it. Only      *
+ * strings and other objects are kept as references. An Entry is a *
+ * small view of one slot that is created when asked for. Where the *
+ * slots are kept is up to the SymbolStorage: by default they are   *
+ * arrays on the heap holding the canonical names from the shared   *
+ * InternPool, and with the compiler.offheap flag they are records  *
+ * outside the heap (see OffHeapSymbolStorage).                     *
+ *                                                                 *
+ * Names are kept in an open-addressing hash index that maps each   *
+ * name to the slot currently visible under it, so lookups by name  *
+ * do not scan the table. Blocks open a scope with enterScope() and *
+ * close it with exitScope(); an entry declared in a block shadows  *
+ * an outer entry with the same name until the block is closed.     *
+ * Every scope keeps a linked list of the entries declared in it,   *
+ * so opening a scope is O(1) and closing it only touches its own   *
+ * entries. Closed entries stay in the table under their IDs.       *
+ *                                                                 *
+ * A lookup site that asks for the same name over and over, such as *
+ * a statement in a loop body, can keep a LookupCache. The cache    *
+ * remembers the slot the name resolved to along with the table's   *
+ * version, which changes whenever a declaration or the end of a    *
+ * scope changes what a name is bound to. While the version still  *
+ * matches, the cached slot is used without hashing the name.       *
+ *                                                                 *
  * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean   *
  * Zeller.                                                         *
  *                                                                 *
  * CREDITS: This code was written with the help of ChatGPT.         *
  *******************************************************************/
 
-import java.util.Collection;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class SymbolTable {
-    final Map<Integer, Entry> table; // Map to store variable names and their details
+    public static final int FIRST_ID = 600; // IDs are handed out in order from here
+    private static final int NONE = -1; // No slot, or no code for a null string
+
+    // Tags saying how a packed value is read back
+    private static final byte NULL_VALUE = 0;
+    private static final byte INT_VALUE = 1;
+    private static final byte DOUBLE_VALUE = 2;
+    private static final byte BOOLEAN_VALUE = 3;
+    private static final byte OBJECT_VALUE = 4; // Strings and anything else, kept as objects
+
+    // One slot per symbol. Besides the fields of the entry, each slot has the depth of the scope it
+    // was declared in, the slot it hides (if any) and the slot declared before it in the same scope.
+    private final SymbolStorage storage;
+    private int size;
+
+    private final Codes typeCodes = new Codes();
+    private final Codes scopeCodes = new Codes();
+    private final Codes registerCodes = new Codes();
+
+    private int[] index; // Open-addressing hash index from name to visible slot + 1, 0 is empty
+    private int indexed; // The number of names in the index
+    private int[] scopes; // Head of the list of slots declared in each open scope
+    private int depth; // 0 is the global scope
     private int nextId; // To keep track of the next available ID
+    private int version; // Changes whenever a name is bound to a different slot
     private Map<String, String> conditionRegisters;
     private Map<String, Token> tokens;
+    private final PrintStream out;
 
     /**********************************************************
-     * CONSTRUCTOR: SymbolTable()                             *
+     * CLASS: Entry                                            *
      * DESCRIPTION:                                            *
-     * Initializes the symbol table with an empty map and sets *
-     * the next ID to 600.                                     *
+     * A view of one symbol. It reads and writes the table's   *
+     * columns directly, so changes made through it are seen  *
+     * by the table and the other way around.                  *
      **********************************************************/
-
     public static class Entry{
-        private final int id;
-        String name;
-        String type;
-        Object value;
-        String scope;
-        String register;
-
-        public Entry(int id, String name, String type, Object value, String scope, String register){
-            this.id = id;
-            this.name = name;
-            this.type = type;
-            this.value = value;
-            this.scope = scope;
-            this.register = register;
+        private final SymbolTable table;
+        private final int slot;
+
+        private Entry(SymbolTable table, int slot){
+            this.table = table;
+            this.slot = slot;
         }
 
         public int getId(){
-            return id;
+            return table.storage.getId(slot);
         }
 
         public String getName(){
-            return name;
+            return table.storage.getName(slot);
         }
 
         public String getType(){
-            return type;
+            return table.typeCodes.decode(table.storage.getType(slot));
         }
 
         public void setType(String value){
-            this.type = value;
+            table.storage.setType(slot, table.typeCodes.encode(value));
         }
 
         public Object getValue(){
-            return value;
+            return table.valueAt(slot);
         }
 
         public void setValue(Object value){
-            this.value = value;
+            table.storeValue(slot, value);
         }
 
         public String getScope(){
-            return scope;
+            return table.scopeCodes.decode(table.storage.getScope(slot));
+        }
+
+        public void setScope(String scope){
+            table.storage.setScope(slot, table.scopeCodes.encode(scope));
         }
 
         public String getRegister(){
-            return register;
+            return table.registerCodes.decode(table.storage.getRegister(slot));
+        }
+
+        public int getLevel(){
+            return table.storage.getLevel(slot);
         }
 
         public void setRegister(String reg){
-            this.register = reg;
+            table.storage.setRegister(slot, table.registerCodes.encode(reg));
         }
 
         @Override
         public String toString(){
-            return String.format("Name: %s, Type: %s, Value: %s, Scope: %s", name, type, value, scope);
+            return String.format("Name: %s, Type: %s, Value: %s, Scope: %s", getName(), getType(), getValue(), getScope());
         }
     }
 
+    /**********************************************************
+     * CLASS: LookupCache                                      *
+     * DESCRIPTION:                                            *
+     * A monomorphic inline cache for one lookup site. It     *
+     * keeps the last name looked up there, the slot it was    *
+     * bound to (or NONE) and the table version at the time.   *
+     * A name that is not declared is cached too, since it can *
+     * only become declared by changing the version.           *
+     **********************************************************/
+    public static final class LookupCache{
+        private final SymbolTable table;
+        private String name;
+        private int slot = NONE;
+        private int version = -1;
+        private long hits;
+        private long misses;
+
+        private LookupCache(SymbolTable table){
+            this.table = table;
+        }
+
+        int slotOf(String name){
+            if(version == table.version && name.equals(this.name)){
+                hits++;
+                return slot;
+            }
+            misses++;
+            this.slot = table.findSlot(name);
+            this.name = name;
+            this.version = table.version;
+            return slot;
+        }
+
+        public long getHits(){
+            return hits;
+        }
+
+        public long getMisses(){
+            return misses;
+        }
+    }
+
+    /**********************************************************
+     * CONSTRUCTOR: SymbolTable()                             *
+     * DESCRIPTION:                                            *
+     * Initializes the symbol table with empty columns and     *
+     * sets the next ID to 600. The other constructors choose  *
+     * where the table prints and where the symbols are kept.  *
+     **********************************************************/
     public SymbolTable() {
-        this.table = new HashMap<>();
-        this.nextId = 600; // Start IDs from 600
+        this(System.out);
+    }
+
+    public SymbolTable(PrintStream out) {
+        this(out, new HeapSymbolStorage());
+    }
+
+    public SymbolTable(PrintStream out, SymbolStorage storage) {
+        this.out = out;
+        this.storage = storage;
+        index = new int[storage.capacity() * 2];
+        scopes = new int[8];
+        scopes[0] = NONE;
+        this.nextId = FIRST_ID; // Start IDs from 600
         conditionRegisters = new HashMap<>();
         tokens = new HashMap<>();
     }
@@ -116,8 +232,179 @@ public class SymbolTable {
      *  String register - the register assigned to the variable*
      **********************************************************/
     public void addEntry(String name, String type, Object value, String scope, String register){
-        table.put(nextId, new Entry(nextId, name, type, value, scope, register));
-        nextId++;
+        if(size == storage.capacity()){
+            storage.grow(Math.max(size * 2, 16));
+        }
+
+        int slot = size++;
+        storage.setId(slot, nextId++);
+        storage.setName(slot, name);
+        storage.setType(slot, typeCodes.encode(type));
+        storage.setScope(slot, scopeCodes.encode(scope));
+        storage.setRegister(slot, registerCodes.encode(register));
+        storeValue(slot, value);
+
+        // Link the entry into the current scope, hiding any outer entry with the same name
+        storage.setLevel(slot, depth);
+        storage.setShadowed(slot, putIndex(name, slot));
+        storage.setNextInScope(slot, scopes[depth]);
+        scopes[depth] = slot;
+        version++;
+    }
+
+    /**********************************************************
+     * METHOD: enterScope()                                    *
+     * DESCRIPTION:                                            *
+     * Opens a new scope for a block. Entries added until the  *
+     * matching exitScope() are local to the block.            *
+     **********************************************************/
+    public void enterScope(){
+        depth++;
+        if(depth == scopes.length){
+            scopes = Arrays.copyOf(scopes, depth * 2);
+        }
+        scopes[depth] = NONE;
+    }
+
+    /**********************************************************
+     * METHOD: exitScope()                                     *
+     * DESCRIPTION:                                            *
+     * Closes the innermost scope. Its entries are no longer   *
+     * found by name and any entries they hid are visible      *
+     * again. The global scope cannot be closed.               *
+     **********************************************************/
+    public void exitScope(){
+        if(depth == 0){
+            throw new IllegalStateException("The global scope cannot be closed.");
+        }
+        for(int slot = scopes[depth]; slot != NONE; slot = storage.getNextInScope(slot)){
+            String name = storage.getName(slot);
+            if(storage.getShadowed(slot) != NONE){
+                putIndex(name, storage.getShadowed(slot));
+            }else{
+                removeIndex(name);
+            }
+        }
+        if(scopes[depth] != NONE){
+            version++; // Only a scope that declared something changes what names are bound to
+        }
+        scopes[depth] = NONE;
+        depth--;
+    }
+
+    /**********************************************************
+     * METHOD: getScopeDepth()                                 *
+     * DESCRIPTION:                                            *
+     * Returns how many block scopes are open.                 *
+     * RETURN VALUE:                                           *
+     *  int - 0 in the global scope                            *
+     **********************************************************/
+    public int getScopeDepth(){
+        return depth;
+    }
+
+    /**********************************************************
+     * METHOD: size()                                          *
+     * DESCRIPTION:                                            *
+     * Returns the number of entries, including entries whose  *
+     * scope has been closed.                                  *
+     * RETURN VALUE:                                           *
+     *  int - the number of entries                            *
+     **********************************************************/
+    public int size(){
+        return size;
+    }
+
+    /**********************************************************
+     * METHOD: getIdAt(int position)                           *
+     * DESCRIPTION:                                            *
+     * Returns the ID of the entry at a position in declaration*
+     * order, for walking the table without creating entries. *
+     * PARAMETERS:                                             *
+     *  int position - from 0 to size() - 1                    *
+     * RETURN VALUE:                                           *
+     *  int - the ID of the entry                              *
+     **********************************************************/
+    public int getIdAt(int position){
+        if(position < 0 || position >= size){
+            throw new IndexOutOfBoundsException("No symbol at position " + position);
+        }
+        return storage.getId(position);
+    }
+
+    /**********************************************************
+     * METHOD: getEntry(String name)                           *
+     * DESCRIPTION:                                            *
+     * Retrieves the entry visible under a name.               *
+     * PARAMETERS:                                             *
+     *  String name - the name of the variable                 *
+     * RETURN VALUE:                                           *
+     *  Entry - the entry, or null if the name is not declared *
+     **********************************************************/
+    public Entry getEntry(String name){
+        int slot = findSlot(name);
+        return (slot != NONE) ? new Entry(this, slot) : null;
+    }
+
+    /**********************************************************
+     * METHOD: newLookupCache()                                *
+     * DESCRIPTION:                                            *
+     * Creates an empty inline cache for one lookup site. The  *
+     * cache methods below take it as their first argument.    *
+     * RETURN VALUE:                                           *
+     *  LookupCache - the cache                                *
+     **********************************************************/
+    public LookupCache newLookupCache(){
+        return new LookupCache(this);
+    }
+
+    /**********************************************************
+     * METHOD: getVersion()                                    *
+     * DESCRIPTION:                                            *
+     * Returns the binding version, which changes whenever an  *
+     * entry is declared or a scope is closed.                 *
+     * RETURN VALUE:                                           *
+     *  int - the version                                      *
+     **********************************************************/
+    public int getVersion(){
+        return version;
+    }
+
+    public boolean containsVariable(LookupCache site, String name){
+        return site.slotOf(name) != NONE;
+    }
+
+    public Object get(LookupCache site, String name){
+        int slot = site.slotOf(name);
+        return (slot != NONE) ? valueAt(slot) : null;
+    }
+
+    public Integer getIdByName(LookupCache site, String name){
+        int slot = site.slotOf(name);
+        return (slot != NONE) ? storage.getId(slot) : null;
+    }
+
+    public String getTypeByName(LookupCache site, String name){
+        int slot = site.slotOf(name);
+        return (slot != NONE) ? typeCodes.decode(storage.getType(slot)) : null;
+    }
+
+    public void updateValue(LookupCache site, String name, Object newValue){
+        updateSlot(site.slotOf(name.trim()), name, newValue);
+    }
+
+    /**********************************************************
+     * METHOD: getEntryById(int id)                            *
+     * DESCRIPTION:                                            *
+     * Retrieves the entry with an ID.                         *
+     * PARAMETERS:                                             *
+     *  int id - the ID of the variable                        *
+     * RETURN VALUE:                                           *
+     *  Entry - the entry, or null if there is no such ID      *
+     **********************************************************/
+    public Entry getEntryById(int id){
+        int slot = id - FIRST_ID;
+        return (slot >= 0 && slot < size) ? new Entry(this, slot) : null;
     }
 
     /**********************************************************
@@ -131,13 +418,8 @@ public class SymbolTable {
      *  or null if the variable is not found                   *
      **********************************************************/
     public String getRegister(String variableName){
-        // Iterate through the map and find the entry with the matching variable name
-        for(Map.Entry<Integer, Entry> entry : table.entrySet()){
-            if(entry.getValue().getName().equals(variableName)){
-                return entry.getValue().getRegister();  // Return the register of the matching variable
-            }
-        }
-        return null; // Return null if the variable is not found
+        int slot = findSlot(variableName);
+        return (slot != NONE) ? registerCodes.decode(storage.getRegister(slot)) : null; // Return null if the variable is not found
     }
 
     /**********************************************************
@@ -149,14 +431,12 @@ public class SymbolTable {
      *  String register - the register to assign to the variable *
      **********************************************************/
     public void addRegisterToVariable(String variableName, String register) {
-        // Iterate through the map to find the entry with the matching variable name
-        for (Map.Entry<Integer, Entry> entry : table.entrySet()) {
-            if (entry.getValue().getName().equals(variableName)) {
-                // Update the register of the variable
-                entry.getValue().setRegister(register);
-                System.out.println("Register " + register + " has been assigned to variable " + variableName);
-                return;
-            }
+        int slot = findSlot(variableName);
+        if (slot != NONE) {
+            // Update the register of the variable
+            storage.setRegister(slot, registerCodes.encode(register));
+            out.println("Register " + register + " has been assigned to variable " + variableName);
+            return;
         }
 
         // If the variable is not found, throw an exception
@@ -176,17 +456,14 @@ public class SymbolTable {
      *      null if the variable is not found
      **********************************************************/
     public String getRegisterForVariable(String variableName) {
-        System.out.println("Looking up register for variable name: " + variableName);  // Debug print
-
-        for (Map.Entry<Integer, Entry> entry : table.entrySet()) {
-            System.out.println("Checking variable: " + entry.getValue().getName());  // Debug print
+        out.println("Looking up register for variable name: " + variableName);  // Debug print
 
-            if (entry.getValue().getName().equals(variableName)) {
-                return entry.getValue().getRegister();
-            }
+        int slot = findSlot(variableName);
+        if (slot != NONE) {
+            return registerCodes.decode(storage.getRegister(slot));
         }
 
-        System.out.println("No register found for variable: " + variableName);  // Debug print
+        out.println("No register found for variable: " + variableName);  // Debug print
         return null; // Return null if the variable is not found
     }
 
@@ -203,8 +480,8 @@ public class SymbolTable {
 
     // Retrieves the value associated with a variable name
     public Object getValueById(int id){
-        Entry entry = table.get(id);
-        return (entry != null) ? entry.value : null;
+        int slot = id - FIRST_ID;
+        return (slot >= 0 && slot < size) ? valueAt(slot) : null;
     }
 
     /**********************************************************
@@ -217,12 +494,8 @@ public class SymbolTable {
      *  Integer - the ID of the variable, or null if not found *
      **********************************************************/
     public Integer getIdByName(String name){
-        for(Map.Entry<Integer, Entry> entry : table.entrySet()){
-            if(entry.getValue().getName().equals(name)){
-                return entry.getValue().getId();
-            }
-        }
-        return null;    //not found
+        int slot = findSlot(name);
+        return (slot != NONE) ? storage.getId(slot) : null;    //null if not found
     }
 
     /**********************************************************
@@ -238,22 +511,28 @@ public class SymbolTable {
 
     // Updates the value of a variable
     public void updateValue(String name, Object newValue) {
-        boolean variableUpdated = false;
-
-        for(Map.Entry<Integer, Entry> entry : table.entrySet()){
-            System.out.println("Checking Variable: " +entry.getValue().name + ", Current Value: " +entry.getValue().value);
+        updateSlot(findSlot(name.trim()), name, newValue);
+    }
 
-            if(entry.getValue().name.trim().equalsIgnoreCase(name.trim())){
-                System.out.println("Updating variable '" +name+ "' to new value: " +newValue);
-                entry.getValue().value = newValue;
-                variableUpdated = true;
-                break;
+    private void updateSlot(int slot, String name, Object newValue){
+        if(slot == NONE){
+            // Names are matched without regard to case, which the index cannot do
+            for(int candidate = 0; candidate < size; candidate++){
+                String candidateName = storage.getName(candidate);
+                if(findSlot(candidateName) == candidate && candidateName.equalsIgnoreCase(name.trim())){
+                    slot = candidate;
+                    break;
+                }
             }
         }
 
-        if(!variableUpdated){
+        if(slot == NONE){
             throw new IllegalArgumentException("Variable '" +name+ "' not found in the SymbolTable. Ensure it's declared");
         }
+
+        out.println("Checking Variable: " +storage.getName(slot) + ", Current Value: " +valueAt(slot));
+        out.println("Updating variable '" +name+ "' to new value: " +newValue);
+        storeValue(slot, newValue);
     }
 
 
@@ -269,12 +548,7 @@ public class SymbolTable {
 
     // Checks if a variable exists in the symbol table
     public boolean containsVariable(String name) {
-        for(Entry entry : table.values()){
-            if(entry.getName().equals(name)){
-                return true;
-            }
-        }
-        return false;
+        return findSlot(name) != NONE;
     }
 
     /**********************************************************
@@ -288,12 +562,8 @@ public class SymbolTable {
      *  String - the type of the variable, or null if not found
      **********************************************************/
     public String getTypeByName(String variableName){
-        for(Map.Entry<Integer, Entry> entry : table.entrySet()){
-            if(entry.getValue().getName().equals(variableName)){
-                return entry.getValue().getType();
-            }
-        }
-        return null;
+        int slot = findSlot(variableName);
+        return (slot != NONE) ? typeCodes.decode(storage.getType(slot)) : null;
     }
 
     /**********************************************************
@@ -307,43 +577,290 @@ public class SymbolTable {
      *  Object - the value of the variable, or null if not found *
      **********************************************************/
     public Object get(String name) {
-        for (Map.Entry<Integer, Entry> entry : table.entrySet()) {
-            if (entry.getValue().name.equals(name)) {
-                return entry.getValue().value;
+        int slot = findSlot(name);
+        return (slot != NONE) ? valueAt(slot) : null; // Return null if the variable name is not found
+    }
+
+    /**********************************************************
+     * METHOD: display()                                    *
+     * DESCRIPTION:                                            *
+     * Prints the contents of the symbol table to the console, *
+     * displaying each variable's name, value, and ID.         *
+     **********************************************************/
+
+    // Method to display all entries in the symbol table
+    public void display() {
+        out.println();
+        out.println("Symbol Table:");
+        out.println("ID     | Name       | Type       | Value      | Scope  | Register");
+        out.println("---------------------------------------------------------------------");
+        for (int slot = 0; slot < size; slot++) {
+            out.printf("%-6d | %-10s | %-10s | %-10s | %-6s | %-10s\n",
+                    storage.getId(slot), storage.getName(slot), typeCodes.decode(storage.getType(slot)), valueAt(slot),
+                    scopeCodes.decode(storage.getScope(slot)), registerCodes.decode(storage.getRegister(slot)));
+        }
+    }
+
+    /**********************************************************
+     * METHOD: valueAt(int slot)                               *
+     * DESCRIPTION:                                            *
+     * Unpacks the value stored in a slot.                     *
+     * PARAMETERS:                                             *
+     *  int slot - the slot                                    *
+     * RETURN VALUE:                                           *
+     *  Object - the value, boxed as it was stored             *
+     **********************************************************/
+    private Object valueAt(int slot){
+        switch(storage.getValueTag(slot)){
+            case INT_VALUE:
+                return (int) storage.getValueBits(slot);
+            case DOUBLE_VALUE:
+                return Double.longBitsToDouble(storage.getValueBits(slot));
+            case BOOLEAN_VALUE:
+                return storage.getValueBits(slot) != 0;
+            case OBJECT_VALUE:
+                return storage.getValueObject(slot);
+            default:
+                return null;
+        }
+    }
+
+    /**********************************************************
+     * METHOD: storeValue(int slot, Object value)              *
+     * DESCRIPTION:                                            *
+     * Packs a value into a slot. Integers, doubles and        *
+     * booleans are stored in the long column; anything else  *
+     * is kept as a reference.                                 *
+     * PARAMETERS:                                             *
+     *  int slot - the slot                                    *
+     *  Object value - the value to store                      *
+     **********************************************************/
+    private void storeValue(int slot, Object value){
+        if(value == null){
+            storage.setValue(slot, NULL_VALUE, 0, null);
+        }else if(value instanceof Integer){
+            storage.setValue(slot, INT_VALUE, (Integer) value, null);
+        }else if(value instanceof Double){
+            storage.setValue(slot, DOUBLE_VALUE, Double.doubleToRawLongBits((Double) value), null);
+        }else if(value instanceof Boolean){
+            storage.setValue(slot, BOOLEAN_VALUE, ((Boolean) value) ? 1 : 0, null);
+        }else{
+            storage.setValue(slot, OBJECT_VALUE, 0, value);
+        }
+    }
+
+    /**********************************************************
+     * METHOD: findSlot(String name)                           *
+     * DESCRIPTION:                                            *
+     * Looks a name up in the hash index.                      *
+     * PARAMETERS:                                             *
+     *  String name - the name                                 *
+     * RETURN VALUE:                                           *
+     *  int - the visible slot, or NONE if it is not declared  *
+     **********************************************************/
+    private int findSlot(String name){
+        int mask = index.length - 1;
+        for(int bucket = hash(name.hashCode()) & mask; index[bucket] != 0; bucket = (bucket + 1) & mask){
+            int slot = index[bucket] - 1;
+            if(storage.nameEquals(slot, name)){
+                return slot;
             }
         }
-        return null; // Return null if the variable name is not found
+        return NONE;
     }
 
     /**********************************************************
-     * METHOD: getAllEntries()                               *
+     * METHOD: putIndex(String name, int slot)                 *
      * DESCRIPTION:                                            *
-     * Returns a map containing all entries in the symbol table.*
-     * The map associates variable IDs with their corresponding
-     * entries.
-     * RETURN VALUE:
-     *  Map<Integer, Entry> - a map of all entries in the symbol table*
+     * Makes a slot the one visible under its name.            *
+     * PARAMETERS:                                             *
+     *  String name - the name                                 *
+     *  int slot - the slot                                    *
+     * RETURN VALUE:                                           *
+     *  int - the slot that was visible before, or NONE        *
      **********************************************************/
-    public Map<Integer, Entry> getAllEntries(){
+    private int putIndex(String name, int slot){
+        if((indexed + 1) * 2 > index.length){
+            rehash(index.length * 2);
+        }
+
+        int mask = index.length - 1;
+        int bucket = hash(name.hashCode()) & mask;
+        for(; index[bucket] != 0; bucket = (bucket + 1) & mask){
+            int previous = index[bucket] - 1;
+            if(storage.nameEquals(previous, name)){
+                index[bucket] = slot + 1;
+                return previous;
+            }
+        }
+        index[bucket] = slot + 1;
+        indexed++;
+        return NONE;
+    }
+
+    /**********************************************************
+     * METHOD: removeIndex(String name)                        *
+     * DESCRIPTION:                                            *
+     * Removes a name from the hash index, shifting later      *
+     * entries of the same probe run back so none is lost.     *
+     * PARAMETERS:                                             *
+     *  String name - the name                                 *
+     **********************************************************/
+    private void removeIndex(String name){
+        int mask = index.length - 1;
+        int bucket = hash(name.hashCode()) & mask;
+        while(index[bucket] != 0 && !storage.nameEquals(index[bucket] - 1, name)){
+            bucket = (bucket + 1) & mask;
+        }
+        if(index[bucket] == 0){
+            return;
+        }
+
+        int hole = bucket;
+        for(int next = (hole + 1) & mask; index[next] != 0; next = (next + 1) & mask){
+            int home = hash(storage.nameHash(index[next] - 1)) & mask;
+            // Move the entry into the hole unless its home lies cyclically after the hole
+            if(((next - home) & mask) >= ((next - hole) & mask)){
+                index[hole] = index[next];
+                hole = next;
+            }
+        }
+        index[hole] = 0;
+        indexed--;
+    }
+
+    /**********************************************************
+     * METHOD: rehash(int capacity)                            *
+     * DESCRIPTION:                                            *
+     * Rebuilds the hash index with a new power-of-two size.   *
+     * PARAMETERS:                                             *
+     *  int capacity - the new number of buckets               *
+     **********************************************************/
+    private void rehash(int capacity){
+        int[] old = index;
+        index = new int[capacity];
+        int mask = capacity - 1;
+        for(int entry : old){
+            if(entry != 0){
+                int bucket = hash(storage.nameHash(entry - 1)) & mask;
+                while(index[bucket] != 0){
+                    bucket = (bucket + 1) & mask;
+                }
+                index[bucket] = entry;
+            }
+        }
+    }
+
+    /**********************************************************
+     * METHOD: writeSnapshot(TableSnapshot.Writer writer)      *
+     * DESCRIPTION:                                            *
+     * Writes the table to a snapshot: the counters, the codes *
+     * of each column, the name index and open scopes, and the *
+     * slots in the off-heap record layout.                    *
+     **********************************************************/
+    void writeSnapshot(TableSnapshot.Writer writer){
+        OffHeapSymbolStorage records = (storage instanceof OffHeapSymbolStorage offHeap)
+                ? offHeap : OffHeapSymbolStorage.copyOf(storage, size);
+        writer.putInt(size);
+        writer.putInt(nextId);
+        writer.putInt(depth);
+        writer.putInt(indexed);
+        typeCodes.writeSnapshot(writer);
+        scopeCodes.writeSnapshot(writer);
+        registerCodes.writeSnapshot(writer);
+        writer.putInts(index);
+        writer.putInts(Arrays.copyOf(scopes, depth + 1));
+        writer.putBytes(records.recordContents(size));
+        writer.putBytes(records.getStrings().contents());
+    }
+
+    /**********************************************************
+     * METHOD: readSnapshot(TableSnapshot.Reader reader,       *
+     *         PrintStream out)                                *
+     * DESCRIPTION:                                            *
+     * Restores a table written by writeSnapshot. The slots    *
+     * stay in the mapped snapshot and are decoded on use.     *
+     **********************************************************/
+    static SymbolTable readSnapshot(TableSnapshot.Reader reader, PrintStream out){
+        int size = reader.getInt();
+        int nextId = reader.getInt();
+        int depth = reader.getInt();
+        int indexed = reader.getInt();
+        Codes typeCodes = Codes.readSnapshot(reader);
+        Codes scopeCodes = Codes.readSnapshot(reader);
+        Codes registerCodes = Codes.readSnapshot(reader);
+        int[] index = reader.getInts();
+        int[] scopes = reader.getInts();
+        ByteBuffer records = reader.getBytes();
+        OffHeapStrings strings = new OffHeapStrings(reader.getBytes());
+
+        SymbolTable table = new SymbolTable(out, new OffHeapSymbolStorage(records, strings));
+        table.size = size;
+        table.nextId = nextId;
+        table.depth = depth;
+        table.indexed = indexed;
+        table.typeCodes.copyFrom(typeCodes);
+        table.scopeCodes.copyFrom(scopeCodes);
+        table.registerCodes.copyFrom(registerCodes);
+        table.index = index;
+        table.scopes = Arrays.copyOf(scopes, Math.max(scopes.length, 8));
         return table;
     }
 
+    private static int hash(int h){
+        return h ^ (h >>> 16);
+    }
+
     /**********************************************************
-     * METHOD: display()                                    *
+     * CLASS: Codes                                            *
      * DESCRIPTION:                                            *
-     * Prints the contents of the symbol table to the console, *
-     * displaying each variable's name, value, and ID.         *
+     * Gives each distinct string of a column (a type, scope   *
+     * or register name) an int code, in the order they are    *
+     * first seen. null has the code -1. The register column   *
+     * has one string per virtual register, so the codes are   *
+     * as wide as the slots.                                   *
      **********************************************************/
+    private static final class Codes{
+        private final List<String> strings = new ArrayList<>();
+        private final Map<String, Integer> codes = new HashMap<>();
 
-    // Method to display all entries in the symbol table
-    public void display() {
-        System.out.println();
-        System.out.println("Symbol Table:");
-        System.out.println("ID     | Name       | Type       | Value      | Scope  | Register");
-        System.out.println("---------------------------------------------------------------------");
-        for (Map.Entry<Integer, Entry> entry : table.entrySet()) {
-            System.out.printf("%-6d | %-10s | %-10s | %-10s | %-6s | %-10s\n",
-                    entry.getKey(), entry.getValue().name, entry.getValue().type, entry.getValue().value, entry.getValue().scope, entry.getValue().getRegister());
+        int encode(String string){
+            if(string == null){
+                return NONE;
+            }
+            Integer code = codes.get(string);
+            if(code == null){
+                code = strings.size();
+                strings.add(string);
+                codes.put(string, code);
+            }
+            return code;
+        }
+
+        String decode(int code){
+            return (code == NONE) ? null : strings.get(code);
+        }
+
+        void writeSnapshot(TableSnapshot.Writer writer){
+            writer.putInt(strings.size());
+            for(String string : strings){
+                writer.putString(string);
+            }
+        }
+
+        static Codes readSnapshot(TableSnapshot.Reader reader){
+            Codes codes = new Codes();
+            int count = reader.getInt();
+            for(int i = 0; i < count; i++){
+                codes.encode(reader.getString());
+            }
+            return codes;
+        }
+
+        void copyFrom(Codes other){
+            for(String string : other.strings){
+                encode(string);
+            }
         }
     }
 }
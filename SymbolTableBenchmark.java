@@ -0,0 +1,156 @@
+/*******************************************************************
+ * SymbolTableBenchmark Class                                      *
+ *                                                                 *
+ * PROGRAMMER: Emily Culp                                          *
+ * COURSE: CS340 - Programming Language Design                     *
+ * DATE: 12/10/2024                                                *
+ * REQUIREMENT: Final - Compiler                                   *
+ *                                                                 *
+ * DESCRIPTION:                                                    *
+ * The SymbolTableBenchmark class measures how the SymbolTable     *
+ * scales with the number of symbols. For each table size it times *
+ * declaring the symbols, looking every one of them up by name,    *
+ * updating every value, and opening and closing block scopes that *
+ * shadow global names, and prints the cost per operation along    *
+ * with the heap used per symbol. With the name index the          *
+ * per-operation cost stays flat as the table grows. Passing        *
+ * "offheap" runs the same measurements on OffHeapSymbolStorage,   *
+ * and the heap column then shows how little of the table is left  *
+ * for the garbage collector.                                      *
+ *                                                                 *
+ * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean  *
+ * Zeller.                                                         *
+ *                                                                 *
+ * CREDITS: This code was written with the help of ChatGPT.        *
+ *******************************************************************/
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+public class SymbolTableBenchmark {
+    private static final int BLOCK_SIZE = 8;  // Symbols declared in each block scope
+    private static final PrintStream NO_OUTPUT = new PrintStream(OutputStream.nullOutputStream());
+    private static boolean offHeap;
+
+    /**********************************************************
+     * METHOD: main(String[] args)                              *
+     * DESCRIPTION: Runs the benchmark for table sizes from a   *
+     *              thousand up to the given maximum.           *
+     * PARAMETERS: String[] args - [maxSymbols] [rounds]        *
+     *              [heap | offheap]                            *
+     * RETURN VALUE: None                                        *
+     **********************************************************/
+    public static void main(String[] args) {
+        int maxSymbols = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        offHeap = args.length > 2 && args[2].equals("offheap");
+
+        String[] names = new String[maxSymbols];
+        for (int i = 0; i < maxSymbols; i++) {
+            names[i] = "v" + i;
+        }
+
+        measure(names, 1000, 20);  // Warm up the JIT before anything is reported
+        System.out.printf("%10s | %12s | %12s | %12s | %12s | %12s%n",
+                "Symbols", "add ns/op", "lookup ns/op", "update ns/op", "scope ns/op", "bytes/symbol");
+        System.out.println("-------------------------------------------------------------------------------------");
+        for (int size = 1000; size <= maxSymbols; size *= 10) {
+            long[] best = measure(names, size, rounds);
+            System.out.printf("%10d | %12.1f | %12.1f | %12.1f | %12.1f | %12.1f%n", size,
+                    (double) best[0] / size, (double) best[1] / size, (double) best[2] / size, (double) best[3] / size,
+                    bytesPerSymbol(names, size));
+        }
+    }
+
+    /**********************************************************
+     * METHOD: bytesPerSymbol(String[] names, int size)         *
+     * DESCRIPTION: Estimates the heap a table of the given     *
+     *              size uses per symbol, not counting the name *
+     *              strings, which the caller already holds.    *
+     * PARAMETERS: String[] names - the symbol names.           *
+     *             int size - how many symbols to add.          *
+     * RETURN VALUE: double - the bytes used per symbol.        *
+     **********************************************************/
+    private static double bytesPerSymbol(String[] names, int size) {
+        long before = usedHeap();
+        SymbolTable table = newTable();
+        for (int i = 0; i < size; i++) {
+            table.addEntry(names[i], "int", i, "global", "$s0");
+        }
+        long after = usedHeap();
+        if (table.size() != size) {
+            throw new IllegalStateException("Not every symbol was added.");
+        }
+        return (double) (after - before) / size;
+    }
+
+    private static SymbolTable newTable() {
+        return new SymbolTable(NO_OUTPUT, offHeap ? new OffHeapSymbolStorage() : new HeapSymbolStorage());
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**********************************************************
+     * METHOD: measure(String[] names, int size, int rounds)    *
+     * DESCRIPTION: Fills a table with the given number of      *
+     *              symbols and times each kind of operation.   *
+     * PARAMETERS: String[] names - the symbol names.           *
+     *             int size - how many symbols to use.          *
+     *             int rounds - how many times to repeat it.    *
+     * RETURN VALUE: long[] - the best time in ns of adding,    *
+     *              looking up, updating and scoping.           *
+     **********************************************************/
+    private static long[] measure(String[] names, int size, int rounds) {
+        long[] best = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE};
+        long checksum = 0;
+
+        for (int round = 0; round < rounds; round++) {
+            SymbolTable table = newTable();
+
+            long start = System.nanoTime();
+            for (int i = 0; i < size; i++) {
+                table.addEntry(names[i], "int", i, "global", null);
+            }
+            best[0] = Math.min(best[0], System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < size; i++) {
+                checksum += table.getIdByName(names[i]);
+            }
+            best[1] = Math.min(best[1], System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < size; i++) {
+                table.updateValue(names[i], i + 1);
+            }
+            best[2] = Math.min(best[2], System.nanoTime() - start);
+
+            // Blocks that shadow global names, looked up while they are open
+            start = System.nanoTime();
+            for (int i = 0; i + BLOCK_SIZE <= size; i += BLOCK_SIZE) {
+                table.enterScope();
+                for (int j = i; j < i + BLOCK_SIZE; j++) {
+                    table.addEntry(names[j], "int", j, "local", null);
+                    checksum += table.getIdByName(names[j]);
+                }
+                table.exitScope();
+            }
+            best[3] = Math.min(best[3], System.nanoTime() - start);
+
+            if (!table.containsVariable(names[size - 1])) {
+                throw new IllegalStateException("A global symbol was lost when a scope was closed.");
+            }
+        }
+
+        if (checksum == 42) {
+            System.out.println();  // Keeps the lookups from being optimized away
+        }
+        return best;
+    }
+}
@@ -0,0 +1,358 @@
+/*******************************************************************
+ * TableSnapshot Class                                             *
+ *                                                                 *
+ * PROGRAMMER: Emily Culp                                          *
+ * COURSE: CS340 - Programming Language Design                     *
+ * DATE: 12/10/2024                                                *
+ * REQUIREMENT: Final - Compiler                                   *
+ *                                                                 *
+ * DESCRIPTION:                                                    *
+ * The TableSnapshot class saves the symbol table, the literal     *
+ * table, the MIPS data section and the MIPS code generated so far *
+ * of a run to a binary file, and maps the file back with          *
+ * FileChannel.map so a later run can start from those tables      *
+ * instead of rebuilding them. The register, virtual register and  *
+ * label state of the MIPS generator is saved with the data        *
+ * section, and the code is saved typed and before it is           *
+ * optimized, so a resumed run appends its code to the saved code  *
+ * and prints the same code the uninterrupted run would have. The  *
+ * register and constant folding counts printed with the code only *
+ * count the resumed run. The variables whose values the evaluator *
+ * only knows at run time are saved too, so the resumed run folds  *
+ * the same expressions.                                           *
+ *                                                                 *
+ * The file starts with a header (magic number, version and the    *
+ * number of sections) followed by one section per table, each     *
+ * with a tag and a length. Opening a snapshot only reads the      *
+ * header; a section is read when its table is asked for. The      *
+ * symbol and literal records are written in the same fixed-width  *
+ * layout the off-heap tables use, so restoring a table wraps the  *
+ * mapped bytes in an OffHeapSymbolStorage or OffHeapLiteralStorage *
+ * without decoding them, and a name or string is only decoded     *
+ * when it is looked at. The mapping is private (copy-on-write),   *
+ * so changing a restored table never changes the file. The hash   *
+ * indexes are stored as int arrays and read back in bulk.         *
+ *                                                                 *
+ * A run saves a checkpoint when -Dcompiler.checkpoint=<file> is   *
+ * set and resumes from one when -Dcompiler.resume=<file> is set.  *
+ *                                                                 *
+ * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean  *
+ * Zeller.                                                         *
+ *                                                                 *
+ * CREDITS: This code was written with the help of ChatGPT.        *
+ *******************************************************************/
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+
+public class TableSnapshot {
+    public static final String CHECKPOINT_PROPERTY = "compiler.checkpoint";
+    public static final String RESUME_PROPERTY = "compiler.resume";
+
+    private static final int MAGIC = 0x54534E50; // "TSNP"
+    private static final int VERSION = 3; // 2: int codes for the type, scope and register of a symbol, 3: the code and runtime values
+
+    // Section tags
+    private static final int SYMBOLS = 1;
+    private static final int LITERALS = 2;
+    private static final int DATA = 3; // The data section and the generator state
+    private static final int TEXT = 4; // The generated code, before it is optimized
+    private static final int RUNTIME_VALUES = 5; // The variables the evaluator cannot fold
+
+    private final ByteBuffer file;
+    private final int[] sectionStarts = new int[RUNTIME_VALUES + 1];
+
+    private TableSnapshot(ByteBuffer file) {
+        this.file = file;
+    }
+
+    /**********************************************************
+     * METHOD: write(Path path, CompilationContext context)     *
+     * DESCRIPTION: Saves the symbol table, the literal table,  *
+     *              the data section, the generated code and    *
+     *              the variables only known at run time of a   *
+     *              context. It is called before the code is    *
+     *              printed, which optimizes it.                *
+     * PARAMETERS: Path path - the snapshot file.               *
+     *             CompilationContext context - the run.        *
+     * RETURN VALUE: None                                        *
+     * EXCEPTIONS: Throws an IOException if the file cannot be  *
+     *             written.                                     *
+     **********************************************************/
+    public static void write(Path path, CompilationContext context) throws IOException {
+        Writer writer = new Writer();
+        writer.putInt(MAGIC);
+        writer.putInt(VERSION);
+        writer.putInt(5);
+
+        int start = writer.beginSection(SYMBOLS);
+        context.getSymbolTable().writeSnapshot(writer);
+        writer.endSection(start);
+
+        start = writer.beginSection(LITERALS);
+        context.getLiteralTable().writeSnapshot(writer);
+        writer.endSection(start);
+
+        start = writer.beginSection(DATA);
+        MIPSGenerator generator = context.getMipsGenerator();
+        writer.putInt(generator.getDataSize());
+        for (String name : generator.getDataNames()) {
+            writer.putString(name);
+            writer.putString(generator.getDataEntry(name));
+        }
+        generator.saveState().writeSnapshot(writer);
+        writer.endSection(start);
+
+        start = writer.beginSection(TEXT);
+        generator.getMipsCode().writeSnapshot(writer);
+        writer.endSection(start);
+
+        start = writer.beginSection(RUNTIME_VALUES);
+        Set<String> runtimeValues = context.getEvaluator().getRuntimeValues();
+        writer.putInt(runtimeValues.size());
+        for (String variable : runtimeValues) {
+            writer.putString(variable);
+        }
+        writer.endSection(start);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer contents = writer.contents();
+            while (contents.hasRemaining()) {
+                channel.write(contents);
+            }
+        }
+    }
+
+    /**********************************************************
+     * METHOD: open(Path path)                                  *
+     * DESCRIPTION: Maps a snapshot file and reads its header.  *
+     * PARAMETERS: Path path - the snapshot file.               *
+     * RETURN VALUE: TableSnapshot - the snapshot.              *
+     * EXCEPTIONS: Throws an IOException if the file cannot be  *
+     *             read or is not a snapshot.                   *
+     **********************************************************/
+    public static TableSnapshot open(Path path) throws IOException {
+        ByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // A private mapping needs a writable channel, but writes only go to private copies of the pages
+            mapped = channel.map(FileChannel.MapMode.PRIVATE, 0, checkSize(channel, path)); // Stays valid once closed
+        } catch (AccessDeniedException e) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                mapped = ByteBuffer.allocateDirect((int) checkSize(channel, path));
+                while (mapped.hasRemaining() && channel.read(mapped) >= 0) {
+                    // Read-only file: load a copy instead
+                }
+                mapped.flip();
+            }
+        }
+
+        TableSnapshot snapshot = new TableSnapshot(mapped.order(ByteOrder.LITTLE_ENDIAN));
+        ByteBuffer file = snapshot.file;
+        if (file.limit() < 12 || file.getInt(0) != MAGIC) {
+            throw new IOException("Not a table snapshot: " + path);
+        }
+        if (file.getInt(4) != VERSION) {
+            throw new IOException("Unsupported snapshot version " + file.getInt(4) + ": " + path);
+        }
+        int position = 12;
+        for (int i = 0; i < file.getInt(8); i++) {
+            int tag = file.getInt(position);
+            int length = file.getInt(position + 4);
+            if (tag > 0 && tag < snapshot.sectionStarts.length) {
+                snapshot.sectionStarts[tag] = position + 8;
+            }
+            position += 8 + length;
+        }
+        return snapshot;
+    }
+
+    private static long checkSize(FileChannel channel, Path path) throws IOException {
+        if (channel.size() > Integer.MAX_VALUE) {
+            throw new IOException("The snapshot is too large: " + path);
+        }
+        return channel.size();
+    }
+
+    public SymbolTable restoreSymbolTable(PrintStream out) {
+        return SymbolTable.readSnapshot(section(SYMBOLS), out);
+    }
+
+    public LiteralTable restoreLiteralTable(PrintStream out) {
+        return LiteralTable.readSnapshot(section(LITERALS), out);
+    }
+
+    /**********************************************************
+     * METHOD: restoreGenerator(MIPSGenerator generator)        *
+     * DESCRIPTION: Puts the saved data section entries back    *
+     *              into a generator, in the saved order,       *
+     *              restores its register and label state and   *
+     *              puts the saved code back in front of the    *
+     *              code the resumed run generates.             *
+     * PARAMETERS: MIPSGenerator generator - the generator.     *
+     * RETURN VALUE: None                                        *
+     **********************************************************/
+    public void restoreGenerator(MIPSGenerator generator) {
+        Reader reader = section(DATA);
+        int count = reader.getInt();
+        for (int i = 0; i < count; i++) {
+            String name = reader.getString();
+            generator.putDataEntry(name, reader.getString());
+        }
+        generator.restoreState(MIPSGenerator.State.readSnapshot(reader));
+
+        generator.addMipsCode(MipsCode.readSnapshot(section(TEXT)));
+    }
+
+    // Marks the variables the saved run only knew at run time, so the resumed run does not fold them either
+    public void restoreEvaluator(Evaluator evaluator) {
+        Reader reader = section(RUNTIME_VALUES);
+        int count = reader.getInt();
+        for (int i = 0; i < count; i++) {
+            evaluator.recordValue(reader.getString(), false);
+        }
+    }
+
+    private Reader section(int tag) {
+        if (sectionStarts[tag] == 0) {
+            throw new IllegalStateException("The snapshot has no section " + tag + ".");
+        }
+        return new Reader(file, sectionStarts[tag]);
+    }
+
+    /**********************************************************
+     * CLASS: Writer                                            *
+     * DESCRIPTION: Builds the contents of a snapshot file in a *
+     *              growable little-endian buffer.              *
+     **********************************************************/
+    public static final class Writer {
+        private ByteBuffer buffer = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN);
+
+        private Writer() {
+        }
+
+        void putInt(int value) {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putInts(int[] values) {
+            putInt(values.length);
+            ensure(values.length * Integer.BYTES);
+            buffer.asIntBuffer().put(values);
+            buffer.position(buffer.position() + values.length * Integer.BYTES);
+        }
+
+        void putLongs(long[] values) {
+            putInt(values.length);
+            ensure(values.length * Long.BYTES);
+            buffer.asLongBuffer().put(values);
+            buffer.position(buffer.position() + values.length * Long.BYTES);
+        }
+
+        void putBytes(ByteBuffer bytes) {
+            putInt(bytes.remaining());
+            ensure(bytes.remaining());
+            buffer.put(bytes);
+        }
+
+        void putString(String string) {
+            if (string == null) {
+                putInt(-1);
+                return;
+            }
+            putInt(string.length());
+            ensure(string.length() * Character.BYTES);
+            for (int i = 0; i < string.length(); i++) {
+                buffer.putChar(string.charAt(i));
+            }
+        }
+
+        private int beginSection(int tag) {
+            putInt(tag);
+            putInt(0); // The length, filled in by endSection
+            return buffer.position();
+        }
+
+        private void endSection(int start) {
+            buffer.putInt(start - Integer.BYTES, buffer.position() - start);
+        }
+
+        private ByteBuffer contents() {
+            return buffer.duplicate().flip();
+        }
+
+        private void ensure(int bytes) {
+            if (buffer.remaining() < bytes) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes))
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+        }
+    }
+
+    /**********************************************************
+     * CLASS: Reader                                            *
+     * DESCRIPTION: Reads one section of a mapped snapshot from *
+     *              the front. Blocks of bytes are returned as  *
+     *              slices of the mapping, not copies.          *
+     **********************************************************/
+    public static final class Reader {
+        private final ByteBuffer file;
+        private int position;
+
+        private Reader(ByteBuffer file, int position) {
+            this.file = file;
+            this.position = position;
+        }
+
+        int getInt() {
+            int value = file.getInt(position);
+            position += Integer.BYTES;
+            return value;
+        }
+
+        int[] getInts() {
+            int[] values = new int[getInt()];
+            file.slice(position, values.length * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(values);
+            position += values.length * Integer.BYTES;
+            return values;
+        }
+
+        long[] getLongs() {
+            long[] values = new long[getInt()];
+            file.slice(position, values.length * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(values);
+            position += values.length * Long.BYTES;
+            return values;
+        }
+
+        ByteBuffer getBytes() {
+            int length = getInt();
+            ByteBuffer bytes = file.slice(position, length).order(ByteOrder.LITTLE_ENDIAN);
+            position += length;
+            return bytes;
+        }
+
+        String getString() {
+            int length = getInt();
+            if (length < 0) {
+                return null;
+            }
+            char[] chars = new char[length];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = file.getChar(position);
+                position += Character.BYTES;
+            }
+            return new String(chars);
+        }
+    }
+}
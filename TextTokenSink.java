@@ -0,0 +1,117 @@
+/*******************************************************************
+ * TextTokenSink Class                                             *
+ *                                                                 *
+ * PROGRAMMER: Emily Culp                                          *
+ * COURSE: CS340 - Programming Language Design                     *
+ * DATE: 12/10/2024                                                *
+ * REQUIREMENT: Final - Compiler                                   *
+ *                                                                 *
+ * DESCRIPTION:                                                    *
+ * The TextTokenSink class writes token output in the text form of *
+ * output.txt: each listing line as it is, the IDs of a statement  *
+ * on a "Token IDs:" line, and the IDs of a table in decimal and   *
+ * binary under a heading, as TokenIDConverter prints them. The    *
+ * writer is flushed every TokenSink.BATCH_SIZE statements.        *
+ *                                                                 *
+ * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean  *
+ * Zeller.                                                         *
+ *                                                                 *
+ * CREDITS: This code was written with the help of ChatGPT.        *
+ *******************************************************************/
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class TextTokenSink implements TokenSink {
+    private final PrintWriter writer;
+    private final boolean ownsWriter; // Only a writer the sink opened is closed with it
+    private int pending; // Statements written since the last flush
+    private int remainingIds; // IDs still owed to the open table
+    private boolean inTables;
+
+    /**********************************************************
+     * CONSTRUCTOR: TextTokenSink(PrintWriter writer)         *
+     * DESCRIPTION: Creates a sink over a writer the caller   *
+     *              keeps; closing the sink only flushes it.  *
+     * PARAMETERS: PrintWriter writer - the text output.      *
+     **********************************************************/
+    public TextTokenSink(PrintWriter writer) {
+        this(writer, false);
+    }
+
+    private TextTokenSink(PrintWriter writer, boolean ownsWriter) {
+        this.writer = writer;
+        this.ownsWriter = ownsWriter;
+    }
+
+    public static TextTokenSink open(Path path) throws IOException {
+        return new TextTokenSink(new PrintWriter(Files.newBufferedWriter(path)), true);
+    }
+
+    @Override
+    public void writeLine(String line) {
+        if (pending == BATCH_SIZE) {
+            flush(); // The statements before this one are complete
+        }
+        writer.println(line);
+        pending++;
+    }
+
+    @Override
+    public void writeStatementIds(int[] ids) {
+        StringBuilder line = new StringBuilder("Token IDs:");
+        for (int id : ids) {
+            line.append(' ').append(id);
+        }
+        writer.println(line);
+    }
+
+    @Override
+    public void beginTable(int kind, int count) {
+        if (remainingIds != 0) {
+            throw new IllegalStateException("The open table still has " + remainingIds + " ID(s) to write.");
+        }
+        if (!inTables) {
+            writer.println(); // The tables are set off from the listing
+            inTables = true;
+        }
+        writer.println("Token IDs in Binary for " + TokenStream.tableName(kind) + " Table:");
+        remainingIds = count;
+        if (count == 0) {
+            endTable();
+        }
+    }
+
+    @Override
+    public void writeId(int id) {
+        if (remainingIds == 0) {
+            throw new IllegalStateException("No table has IDs left to write.");
+        }
+        TokenIDConverter.writeTokenIDInBinary(id, writer);
+        if (--remainingIds == 0) {
+            endTable();
+        }
+    }
+
+    private void endTable() {
+        writer.println();  // Add a blank line for readability
+        writer.println();
+    }
+
+    @Override
+    public void flush() {
+        writer.flush();
+        pending = 0;
+    }
+
+    @Override
+    public void close() {
+        if (ownsWriter) {
+            writer.close();
+        } else {
+            flush();
+        }
+    }
+}
@@ -13,6 +13,9 @@
  * in binary format to a PrintWriter. It supports multiple tables for different
  * types of tokens, such as symbols, literals, operators, and keywords. The token
  * IDs are printed with their corresponding binary values.*
+ * The IDs of each table can also be written to a TokenStream, the compact
+ * binary form of the token output, which renders its text form through
+ * this class as well.*
  * *
  * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean Zeller. *
  * *
@@ -20,6 +23,7 @@
  * *
  *******************************************************************/
 
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.HashMap;
 import java.util.Map;
@@ -64,14 +68,14 @@ public class TokenIDConverter {
         if (table instanceof SymbolTable) {
             SymbolTable symbolTable = (SymbolTable) table;
             writer.println("Token IDs in Binary for Symbol Table:");
-            for (Map.Entry<Integer, SymbolTable.Entry> entry : symbolTable.getAllEntries().entrySet()) {
-                writeTokenIDInBinary(entry.getKey(), writer); // entry.getKey() is the token ID
+            for (int i = 0; i < symbolTable.size(); i++) {
+                writeTokenIDInBinary(symbolTable.getIdAt(i), writer); // Walks the ID column in declaration order
             }
         } else if (table instanceof LiteralTable) {
             LiteralTable literalTable = (LiteralTable) table;
             writer.println("Token IDs in Binary for Literal Table:");
-            for (Map.Entry<Integer, Object> entry : literalTable.getLiteralTable().entrySet()) {
-                writeTokenIDInBinary(entry.getKey(), writer); // entry.getKey() is the token ID
+            for (int i = 0; i < literalTable.size(); i++) {
+                writeTokenIDInBinary(literalTable.getIdAt(i), writer); // IDs in insertion order
             }
         } else if (table instanceof OperatorTable) {
             OperatorTable operatorTable = (OperatorTable) table;
@@ -89,6 +93,81 @@ public class TokenIDConverter {
         writer.println();  // Add a blank line for readability
     }
 
+    /**********************************************************
+     * METHOD: writeTokenIDs(Object table, TokenSink stream)    *
+     * DESCRIPTION: Writes the token IDs of a table to a token  *
+     *          sink, in the order printTokenIDsInBinary        *
+     *          prints them.                                    *
+     * PARAMETERS: Object table - the token table.              *
+     *          TokenSink stream - the token output.            *
+     * RETURN VALUE: None                                        *
+     * EXCEPTIONS: Throws an IOException if the sink cannot be  *
+     *          written.                                        *
+     **********************************************************/
+    public void writeTokenIDs(Object table, TokenSink stream) throws IOException {
+        if (table instanceof SymbolTable symbolTable) {
+            stream.beginTable(TokenStream.SYMBOL_TABLE, symbolTable.size());
+            for (int i = 0; i < symbolTable.size(); i++) {
+                stream.writeId(symbolTable.getIdAt(i));
+            }
+        } else if (table instanceof LiteralTable literalTable) {
+            stream.beginTable(TokenStream.LITERAL_TABLE, literalTable.size());
+            for (int i = 0; i < literalTable.size(); i++) {
+                stream.writeId(literalTable.getIdAt(i));
+            }
+        } else if (table instanceof OperatorTable operatorTable) {
+            writeIds(TokenStream.OPERATOR_TABLE, operatorTable.getOperatorMap(), stream);
+        } else if (table instanceof KeywordTable keywordTable) {
+            writeIds(TokenStream.KEYWORD_TABLE, keywordTable.getKeywordMap(), stream);
+        }
+    }
+
+    private static void writeIds(int kind, Map<String, Integer> ids, TokenSink stream) throws IOException {
+        stream.beginTable(kind, ids.size());
+        for (int id : ids.values()) {
+            stream.writeId(id);
+        }
+    }
+
+    /**********************************************************
+     * METHOD: getTokenIDs(String[] tokens)                     *
+     * DESCRIPTION: Looks up the token ID of each token of a    *
+     *          statement: a keyword, an operator, a declared   *
+     *          variable or a literal already in the literal    *
+     *          table. Tokens with no ID get 0.                 *
+     * PARAMETERS: String[] tokens - the tokens.                *
+     * RETURN VALUE: int[] - one ID per token.                  *
+     **********************************************************/
+    public int[] getTokenIDs(String[] tokens) {
+        int[] ids = new int[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            ids[i] = getTokenID(tokens[i]);
+        }
+        return ids;
+    }
+
+    private int getTokenID(String token) {
+        Integer id = keywordTable.get(token);
+        if (id == null) {
+            id = operatorTable.get(token);
+        }
+        if (id == null) {
+            id = symbolTable.getIdByName(token);
+        }
+        if (id != null) {
+            return id;
+        }
+
+        Object value = literalTable.getLiteralValue(token); // A number
+        if (value == null && token.length() >= 2 && token.startsWith("\"") && token.endsWith("\"")) {
+            value = token.substring(1, token.length() - 1); // Strings are kept without their quotes
+        } else if (value == null) {
+            value = token; // Booleans are kept as the words true and false
+        }
+        int literalID = literalTable.getLiteralID(value);
+        return (literalID != ConstantPool.NOT_FOUND) ? literalID : 0;
+    }
+
     /**********************************************************
      * METHOD: writeTokenIDInBinary(int tokenID, PrintWriter writer)*
      * DESCRIPTION: This method converts a given token ID to binary and writes it to
@@ -99,7 +178,7 @@ public class TokenIDConverter {
      * RETURN VALUE: This method does not return a value. It writes the binary representation
      *              directly to the PrintWriter*
      **********************************************************/
-    private void writeTokenIDInBinary(int tokenID, PrintWriter writer) {
+    static void writeTokenIDInBinary(int tokenID, PrintWriter writer) {
         String binaryRepresentation = Integer.toBinaryString(tokenID);  // Convert token ID to binary
         writer.println("Token ID: " + tokenID + " => Binary: " + binaryRepresentation);
     }
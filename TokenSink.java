@@ -0,0 +1,95 @@
+/*******************************************************************
+ * TokenSink Interface                                             *
+ *                                                                 *
+ * PROGRAMMER: Emily Culp                                          *
+ * COURSE: CS340 - Programming Language Design                     *
+ * DATE: 12/10/2024                                                *
+ * REQUIREMENT: Final - Compiler                                   *
+ *                                                                 *
+ * DESCRIPTION:                                                    *
+ * The TokenSink interface is where a run writes its token output: *
+ * the token listing line of each statement, the token IDs of each *
+ * statement, and the token IDs of each table. How they are        *
+ * encoded is up to the sink. TextTokenSink writes the text form   *
+ * of output.txt; TokenStream.Writer writes the binary form.       *
+ *                                                                 *
+ * By default the token IDs are written table by table once the    *
+ * whole program has run. With -Dcompiler.tokenids=statement they  *
+ * are written with each statement instead, as soon as it has     *
+ * been lexed and run, and the tables are not dumped at the end.   *
+ * Sinks write statements in batches, so a tool reading the output *
+ * file can follow the run while it is still going, and a sink     *
+ * only ever holds one batch, however large the tables grow.       *
+ *                                                                 *
+ * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean  *
+ * Zeller.                                                         *
+ *                                                                 *
+ * CREDITS: This code was written with the help of ChatGPT.        *
+ *******************************************************************/
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+public interface TokenSink extends Closeable {
+    String IDS_PROPERTY = "compiler.tokenids"; // "table" (the default) or "statement"
+    int BATCH_SIZE = 32; // Statements written between flushes
+
+    /**********************************************************
+     * METHOD: isPerStatement()                                 *
+     * DESCRIPTION: Tells whether token IDs are written with    *
+     *              each statement instead of by table.         *
+     * RETURN VALUE: boolean - true for -Dcompiler.tokenids=    *
+     *              statement.                                  *
+     **********************************************************/
+    static boolean isPerStatement() {
+        return "statement".equalsIgnoreCase(System.getProperty(IDS_PROPERTY));
+    }
+
+    /**********************************************************
+     * METHOD: open(Path path)                                  *
+     * DESCRIPTION: Opens a sink on a file in the encoding the  *
+     *              run asked for with -Dcompiler.tokenformat.  *
+     * PARAMETERS: Path path - the output file.                 *
+     * RETURN VALUE: TokenSink - the sink.                      *
+     * EXCEPTIONS: Throws an IOException if the file cannot be  *
+     *             created.                                     *
+     **********************************************************/
+    static TokenSink open(Path path) throws IOException {
+        return TokenStream.isBinaryFormat() ? new TokenStream.Writer(path) : TextTokenSink.open(path);
+    }
+
+    /**********************************************************
+     * METHOD: writeLine(String line)                           *
+     * DESCRIPTION: Writes the token listing line of one        *
+     *              statement.                                  *
+     **********************************************************/
+    void writeLine(String line) throws IOException;
+
+    /**********************************************************
+     * METHOD: writeStatementIds(int[] ids)                     *
+     * DESCRIPTION: Writes the token IDs of the statement whose *
+     *              line was written last, one per token. A     *
+     *              token with no ID is written as 0.           *
+     **********************************************************/
+    void writeStatementIds(int[] ids) throws IOException;
+
+    /**********************************************************
+     * METHOD: beginTable(int kind, int count)                  *
+     * DESCRIPTION: Starts the IDs of a table. Exactly count    *
+     *              calls to writeId must follow.               *
+     * PARAMETERS: int kind - TokenStream.SYMBOL_TABLE to       *
+     *              TokenStream.KEYWORD_TABLE.                  *
+     *             int count - the number of IDs.               *
+     **********************************************************/
+    void beginTable(int kind, int count) throws IOException;
+
+    void writeId(int id) throws IOException;
+
+    /**********************************************************
+     * METHOD: flush()                                          *
+     * DESCRIPTION: Writes out everything written so far,       *
+     *              without waiting for the batch to fill.      *
+     **********************************************************/
+    void flush() throws IOException;
+}
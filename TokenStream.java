@@ -0,0 +1,456 @@
+/*******************************************************************
+ * TokenStream Class                                               *
+ *                                                                 *
+ * PROGRAMMER: Emily Culp                                          *
+ * COURSE: CS340 - Programming Language Design                     *
+ * DATE: 12/10/2024                                                *
+ * REQUIREMENT: Final - Compiler                                   *
+ *                                                                 *
+ * DESCRIPTION:                                                    *
+ * The TokenStream class is the binary form of the token output.   *
+ * The text form spells every token ID out twice, in decimal and   *
+ * in binary, which makes the output of a large program many times *
+ * larger than the program itself. A token stream file holds the   *
+ * same information in a compact form that is cheap to write and   *
+ * to read back:                                                   *
+ *                                                                 *
+ *   header   magic number "TKST" and a version, as 4-byte ints    *
+ *   records  a one-byte tag followed by the record:               *
+ *     LINE   the length in bytes and the UTF-8 text of one        *
+ *            token listing line                                   *
+ *     STATEMENT  the number of tokens and the token IDs of the    *
+ *            statement whose line came before it                  *
+ *     TABLE  the table kind, the number of IDs and the IDs        *
+ *   END      a zero tag                                           *
+ *                                                                 *
+ * Lengths and counts are varints (seven bits per byte, low bits   *
+ * first). The IDs of a table are written as the zigzag-encoded    *
+ * difference from the ID before them, so the consecutive IDs of   *
+ * the symbol and literal tables take one byte each. A token with  *
+ * no ID is written as 0.                                          *
+ *                                                                 *
+ * A Writer is the binary TokenSink: it streams records to a       *
+ * FileChannel through a direct buffer, written out every          *
+ * TokenSink.BATCH_SIZE statements and whenever it fills. open()   *
+ * maps a file and reads it back record by record; the IDs of a    *
+ * record are decoded from the mapping as they are iterated.       *
+ * renderText() turns a stream back into the text form, so the     *
+ * text output is just one view of the binary one.                 *
+ *                                                                 *
+ * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean  *
+ * Zeller.                                                         *
+ *                                                                 *
+ * CREDITS: This code was written with the help of ChatGPT.        *
+ *******************************************************************/
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+public class TokenStream implements Iterable<TokenStream.Record> {
+    public static final String FORMAT_PROPERTY = "compiler.tokenformat"; // "text" (the default) or "binary"
+
+    private static final int MAGIC = 0x54534B54; // "TKST"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+
+    // Record tags
+    static final byte END = 0;
+    static final byte LINE = 1;
+    static final byte TABLE = 2;
+    static final byte STATEMENT = 3;
+
+    // Table kinds, in the order the tables are written
+    public static final int SYMBOL_TABLE = 1;
+    public static final int LITERAL_TABLE = 2;
+    public static final int OPERATOR_TABLE = 3;
+    public static final int KEYWORD_TABLE = 4;
+    private static final String[] TABLE_NAMES = {null, "Symbol", "Literal", "Operator", "Keyword"};
+
+    private final ByteBuffer file;
+
+    private TokenStream(ByteBuffer file) {
+        this.file = file;
+    }
+
+    /**********************************************************
+     * METHOD: isBinaryFormat()                                 *
+     * DESCRIPTION: Tells whether the run was asked to write    *
+     *              its token output as a token stream, with    *
+     *              -Dcompiler.tokenformat=binary.              *
+     * RETURN VALUE: boolean - true for the binary format.      *
+     **********************************************************/
+    public static boolean isBinaryFormat() {
+        return "binary".equalsIgnoreCase(System.getProperty(FORMAT_PROPERTY));
+    }
+
+    public static String tableName(int kind) {
+        if (kind < SYMBOL_TABLE || kind > KEYWORD_TABLE) {
+            throw new IllegalArgumentException("Unknown table kind " + kind);
+        }
+        return TABLE_NAMES[kind];
+    }
+
+    /**********************************************************
+     * METHOD: open(Path path)                                  *
+     * DESCRIPTION: Maps a token stream file and checks its     *
+     *              header.                                     *
+     * PARAMETERS: Path path - the file.                        *
+     * RETURN VALUE: TokenStream - the stream.                  *
+     * EXCEPTIONS: Throws an IOException if the file cannot be  *
+     *             read or is not a token stream.               *
+     **********************************************************/
+    public static TokenStream open(Path path) throws IOException {
+        ByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("The token stream is too large: " + path);
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); // Stays valid once closed
+        }
+        mapped.order(ByteOrder.LITTLE_ENDIAN);
+        if (mapped.limit() < HEADER_SIZE || mapped.getInt(0) != MAGIC) {
+            throw new IOException("Not a token stream: " + path);
+        }
+        if (mapped.getInt(4) != VERSION) {
+            throw new IOException("Unsupported token stream version " + mapped.getInt(4) + ": " + path);
+        }
+        return new TokenStream(mapped);
+    }
+
+    /**********************************************************
+     * METHOD: iterator()                                       *
+     * DESCRIPTION: Walks the records of the stream in the      *
+     *              order they were written.                    *
+     * RETURN VALUE: Iterator<Record> - the records.            *
+     **********************************************************/
+    @Override
+    public Iterator<Record> iterator() {
+        return new Iterator<>() {
+            private int position = HEADER_SIZE;
+
+            @Override
+            public boolean hasNext() {
+                return position < file.limit() && file.get(position) != END;
+            }
+
+            @Override
+            public Record next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Record record = new Record(file, position);
+                position = record.end;
+                return record;
+            }
+        };
+    }
+
+    /**********************************************************
+     * METHOD: renderText(PrintWriter writer)                   *
+     * DESCRIPTION: Writes the stream in the text form, by      *
+     *              replaying its records into a TextTokenSink. *
+     * PARAMETERS: PrintWriter writer - the text output.        *
+     * RETURN VALUE: None                                        *
+     **********************************************************/
+    public void renderText(PrintWriter writer) {
+        TextTokenSink text = new TextTokenSink(writer);
+        for (Record record : this) {
+            if (record.isLine()) {
+                text.writeLine(record.getLine());
+            } else if (record.isStatement()) {
+                int[] ids = new int[record.size()];
+                PrimitiveIterator.OfInt iterator = record.ids();
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = iterator.nextInt();
+                }
+                text.writeStatementIds(ids);
+            } else {
+                text.beginTable(record.getTableKind(), record.size());
+                for (PrimitiveIterator.OfInt ids = record.ids(); ids.hasNext(); ) {
+                    text.writeId(ids.nextInt());
+                }
+            }
+        }
+        text.flush();
+    }
+
+    /**********************************************************
+     * METHOD: main(String[] args)                              *
+     * DESCRIPTION: Prints the text form of a token stream, to  *
+     *              the console or to a file.                   *
+     * PARAMETERS: String[] args - the token stream file and,   *
+     *              optionally, the text file to write.         *
+     * RETURN VALUE: None                                        *
+     **********************************************************/
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java TokenStream <token stream> [text file]");
+            return;
+        }
+        TokenStream stream = open(Path.of(args[0]));
+        try (PrintWriter writer = (args.length > 1) ? new PrintWriter(args[1]) : new PrintWriter(System.out)) {
+            stream.renderText(writer);
+        }
+    }
+
+    /**********************************************************
+     * CLASS: Record                                            *
+     * DESCRIPTION: One record of a mapped stream: a token      *
+     *              listing line, the IDs of one statement or   *
+     *              the IDs of one table.                       *
+     **********************************************************/
+    public static final class Record {
+        private final ByteBuffer file;
+        private final byte tag;
+        private final int kind;
+        private final int count; // The byte length of a line, or the number of IDs of a table
+        private final int start; // Where the text or the IDs begin
+        private final int end;
+
+        private Record(ByteBuffer file, int position) {
+            this.file = file;
+            this.tag = file.get(position++);
+            if (tag == LINE || tag == STATEMENT) {
+                kind = 0;
+            } else if (tag == TABLE) {
+                kind = file.get(position++);
+            } else {
+                throw new IllegalStateException("Corrupt token stream: unknown record tag " + tag);
+            }
+            long header = readVarint(file, position);
+            this.count = (int) header;
+            this.start = (int) (header >>> 32);
+            this.end = (tag == LINE) ? start + count : skipVarints(file, start, count);
+        }
+
+        public boolean isLine() {
+            return tag == LINE;
+        }
+
+        public String getLine() {
+            if (tag != LINE) {
+                throw new IllegalStateException("Not a line record.");
+            }
+            byte[] bytes = new byte[count];
+            file.get(start, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        public boolean isStatement() {
+            return tag == STATEMENT;
+        }
+
+        public int getTableKind() {
+            return kind;
+        }
+
+        public int size() {
+            return (tag == LINE) ? 0 : count;
+        }
+
+        /**********************************************************
+         * METHOD: ids()                                            *
+         * DESCRIPTION: Decodes the IDs of a statement or table     *
+         *              record from the mapping one at a time.      *
+         * RETURN VALUE: PrimitiveIterator.OfInt - the IDs.         *
+         **********************************************************/
+        public PrimitiveIterator.OfInt ids() {
+            return new PrimitiveIterator.OfInt() {
+                private int position = start;
+                private int remaining = size();
+                private int previous = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return remaining > 0;
+                }
+
+                @Override
+                public int nextInt() {
+                    if (remaining == 0) {
+                        throw new NoSuchElementException();
+                    }
+                    long varint = readVarint(file, position);
+                    position = (int) (varint >>> 32);
+                    remaining--;
+                    int delta = (int) varint;
+                    previous += (delta >>> 1) ^ -(delta & 1);
+                    return previous;
+                }
+            };
+        }
+    }
+
+    // Reads a varint at a position; the value is in the low 32 bits and the position after it in the high ones
+    private static long readVarint(ByteBuffer file, int position) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = file.get(position++);
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return ((long) position << 32) | (value & 0xFFFFFFFFL);
+            }
+        }
+    }
+
+    private static int skipVarints(ByteBuffer file, int position, int count) {
+        while (count > 0) {
+            if (file.get(position++) >= 0) {
+                count--;
+            }
+        }
+        return position;
+    }
+
+    /**********************************************************
+     * CLASS: Writer                                            *
+     * DESCRIPTION: Streams records to a file through a direct  *
+     *              buffer that is written out every batch of   *
+     *              statements and whenever it fills. A table   *
+     *              is written with beginTable followed by one  *
+     *              writeId per ID. Closing the writer ends the *
+     *              stream.                                     *
+     **********************************************************/
+    public static final class Writer implements TokenSink {
+        private static final int BUFFER_SIZE = 64 * 1024;
+        private static final int MAX_VARINT = 5;
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private int remainingIds; // IDs still owed to the open table
+        private int previousId;
+        private int pending; // Statements written since the last flush
+        private long bytesWritten;
+
+        public Writer(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+        }
+
+        /**********************************************************
+         * METHOD: writeLine(String line)                           *
+         * DESCRIPTION: Writes one token listing line.              *
+         * PARAMETERS: String line - the line, without a newline.   *
+         * RETURN VALUE: None                                        *
+         **********************************************************/
+        @Override
+        public void writeLine(String line) throws IOException {
+            checkNoOpenTable();
+            if (pending == BATCH_SIZE) {
+                flush(); // The statements before this one are complete
+            }
+            pending++;
+            byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            ensure(1 + MAX_VARINT);
+            buffer.put(LINE);
+            putVarint(bytes.length);
+            for (int offset = 0; offset < bytes.length; ) {
+                ensure(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        @Override
+        public void writeStatementIds(int[] ids) throws IOException {
+            checkNoOpenTable();
+            ensure(1 + MAX_VARINT);
+            buffer.put(STATEMENT);
+            putVarint(ids.length);
+            previousId = 0;
+            for (int id : ids) {
+                putId(id);
+            }
+        }
+
+        @Override
+        public void beginTable(int kind, int count) throws IOException {
+            checkNoOpenTable();
+            tableName(kind);
+            ensure(2 + MAX_VARINT);
+            buffer.put(TABLE);
+            buffer.put((byte) kind);
+            putVarint(count);
+            remainingIds = count;
+            previousId = 0;
+        }
+
+        @Override
+        public void writeId(int id) throws IOException {
+            if (remainingIds == 0) {
+                throw new IllegalStateException("No table has IDs left to write.");
+            }
+            putId(id);
+            remainingIds--;
+        }
+
+        private void putId(int id) throws IOException {
+            ensure(MAX_VARINT);
+            int delta = id - previousId;
+            putVarint((delta << 1) ^ (delta >> 31));
+            previousId = id;
+        }
+
+        /**********************************************************
+         * METHOD: getBytesWritten()                                *
+         * RETURN VALUE: long - the size of the stream so far.      *
+         **********************************************************/
+        public long getBytesWritten() {
+            return bytesWritten + buffer.position();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                checkNoOpenTable();
+                ensure(1);
+                buffer.put(END);
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+
+        private void putVarint(int value) {
+            while ((value & ~0x7F) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                bytesWritten += channel.write(buffer);
+            }
+            buffer.clear();
+            pending = 0;
+        }
+
+        private void checkNoOpenTable() {
+            if (remainingIds != 0) {
+                throw new IllegalStateException("The open table still has " + remainingIds + " ID(s) to write.");
+            }
+        }
+    }
+}
@@ -20,6 +20,7 @@
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -27,6 +28,16 @@ import java.util.regex.Pattern;
 public class Tokenization {
 
     private static final String TOKEN_REGEX = "\"[^\"]*\"|\\d+\\.\\d+|\\d+|\\w+|>=|<=|==|!=|\\+\\+|--|[+\\-*/=(){}^<>.,?!:\"'\\[\\]]|;";
+    private static final Pattern TOKEN_PATTERN = Pattern.compile(TOKEN_REGEX);  // Compiled once per JVM
+    private final PrintStream out;
+
+    public Tokenization() {
+        this(System.out);
+    }
+
+    public Tokenization(PrintStream out) {
+        this.out = out;
+    }
 
     /**********************************************************
      * METHOD: tokenize(String command) *
@@ -35,9 +46,9 @@ public class Tokenization {
      * RETURN VALUE: String[] - an array of tokens extracted from the command *
      **********************************************************/
 
-    public static String[] tokenize(String command) {
+    public String[] tokenize(String command) {
         List<String> tokens = new ArrayList<>();
-        Matcher matcher = Pattern.compile(TOKEN_REGEX).matcher(command);
+        Matcher matcher = TOKEN_PATTERN.matcher(command);
 
         while (matcher.find()) {
             String token = matcher.group().trim();
@@ -48,7 +59,7 @@ public class Tokenization {
             }
         }
 
-        System.out.println("Tokens: " + Arrays.toString(tokens.toArray()));
+        out.println("Tokens: " + Arrays.toString(tokens.toArray()));
         return tokens.toArray(new String[0]);
     }
 
@@ -0,0 +1,525 @@
+/*******************************************************************
+ * WatchCompiler Class                                             *
+ *                                                                 *
+ * PROGRAMMER: Emily Culp                                          *
+ * COURSE: CS340 - Programming Language Design                     *
+ * DATE: 12/10/2024                                                *
+ * REQUIREMENT: Final - Compiler                                   *
+ *                                                                 *
+ * DESCRIPTION:                                                    *
+ * The WatchCompiler class watches a source file with a            *
+ * WatchService and rebuilds its .asm and .tokens.txt files every  *
+ * time it is saved. Each rebuild splits the program into its      *
+ * top-level statements and lines the new token stream up with the *
+ * previous one. A statement is only executed again when its       *
+ * tokens changed or when something it depends on changed: the     *
+ * symbol table entries it names, the literals it looked up, or    *
+ * the register and label state of the MIPS generator. Every other *
+ * statement is replayed from what it recorded the last time: its  *
+ * symbol and literal table effects, its .data entries and its     *
+ * .text fragment, without running the interpreter or the code     *
+ * generator again. With -Dcompiler.opt=1 or higher every          *
+ * statement is executed: what the Evaluator folds depends on      *
+ * which values are known at compile time, which a signature does  *
+ * not capture, and the optimizer runs on the whole program in any *
+ * case.                                                           *
+ *                                                                 *
+ * COPYRIGHT: This code is copyright (C) 2024 Emily Culp and Dean  *
+ * Zeller.                                                         *
+ *                                                                 *
+ * CREDITS: This code was written with the help of ChatGPT.        *
+ *******************************************************************/
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class WatchCompiler {
+    private static final Pattern IDENTIFIER_PATTERN = Pattern.compile("[A-Za-z_]\\w*");
+    private static final long SETTLE_MILLIS = 20;  // Editors often save a file in several writes
+
+    private final Path source;
+    private final Path tokenFile;
+    private final Path assemblyFile;
+    private List<StatementRecord> records = new ArrayList<>();  // The statements of the last build
+    private int changed;
+    private int dependent;
+    private int reused;
+
+    /**********************************************************
+     * CONSTRUCTOR: WatchCompiler(Path source, Path outputDirectory) *
+     * DESCRIPTION: Creates a watcher for one source file.     *
+     * PARAMETERS: Path source - the file to watch.            *
+     *             Path outputDirectory - where the output     *
+     *              files go, or null to write them next to    *
+     *              the source file.                           *
+     **********************************************************/
+    public WatchCompiler(Path source, Path outputDirectory) {
+        this.source = source.toAbsolutePath();
+        String baseName = this.source.getFileName().toString().replaceFirst("\\.[^.]*$", "");
+        Path directory = outputDirectory != null ? outputDirectory : this.source.getParent();
+        tokenFile = directory.resolve(baseName + ".tokens.txt");
+        assemblyFile = directory.resolve(baseName + ".asm");
+    }
+
+    /**********************************************************
+     * METHOD: main(String[] args)                              *
+     * DESCRIPTION: Builds the source file once and then again  *
+     *              every time it changes, until interrupted.   *
+     * PARAMETERS: String[] args - <source> [outputDir]         *
+     * RETURN VALUE: None                                        *
+     **********************************************************/
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 0) {
+            System.out.println("Usage: java WatchCompiler <source> [outputDir]");
+            return;
+        }
+
+        Path outputDirectory = null;
+        if (args.length > 1) {
+            outputDirectory = Path.of(args[1]);
+            Files.createDirectories(outputDirectory);
+        }
+
+        WatchCompiler watcher = new WatchCompiler(Path.of(args[0]), outputDirectory);
+        watcher.rebuild();
+        System.out.println("Watching " + watcher.source + " for changes (Ctrl+C to stop)");
+        watcher.watch();
+    }
+
+    /**********************************************************
+     * METHOD: watch()                                          *
+     * DESCRIPTION: Waits for the source file to be written and *
+     *              rebuilds it. Events that arrive within a    *
+     *              few milliseconds of each other are handled  *
+     *              as one save.                                *
+     * PARAMETERS: None                                          *
+     * RETURN VALUE: None                                        *
+     **********************************************************/
+    public void watch() throws IOException, InterruptedException {
+        Path directory = source.getParent();
+        try (WatchService service = directory.getFileSystem().newWatchService()) {
+            directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+            while (true) {
+                WatchKey key = service.take();
+                boolean touched = isSourceEvent(key);
+                WatchKey next;
+                while ((next = service.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    touched |= isSourceEvent(next);
+                }
+
+                if (touched && Files.exists(source)) {
+                    rebuild();
+                }
+                if (!key.isValid()) {
+                    System.out.println("Stopped watching " + directory);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**********************************************************
+     * METHOD: isSourceEvent(WatchKey key)                      *
+     * DESCRIPTION: Consumes the events of a key and resets it. *
+     * PARAMETERS: WatchKey key - the signalled key.            *
+     * RETURN VALUE: boolean - true if one of the events was    *
+     *              for the source file.                        *
+     **********************************************************/
+    private boolean isSourceEvent(WatchKey key) {
+        boolean touched = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (source.getFileName().equals(event.context())) {
+                touched = true;
+            }
+        }
+        key.reset();
+        return touched;
+    }
+
+    /**********************************************************
+     * METHOD: rebuild()                                        *
+     * DESCRIPTION: Reads the source file, rebuilds it against  *
+     *              the previous build, writes the output files *
+     *              and prints how much was reused.             *
+     * PARAMETERS: None                                          *
+     * RETURN VALUE: None                                        *
+     **********************************************************/
+    public void rebuild() {
+        long start = System.nanoTime();
+        List<String> statements;
+        try (BufferedReader reader = Files.newBufferedReader(source)) {
+            statements = Compiler.readStatements(reader);
+        } catch (IOException e) {
+            System.out.println("Error reading " + source + ": " + e.getMessage());
+            return;
+        }
+
+        CompilationContext context = build(statements);
+
+        try (PrintWriter tokens = new PrintWriter(Files.newBufferedWriter(tokenFile));
+             PrintWriter assembly = new PrintWriter(Files.newBufferedWriter(assemblyFile))) {
+            for (StatementRecord record : records) {
+                tokens.println(Compiler.tokenLine(record.statement, record.tokens));
+            }
+            new Compiler(context).writeTokenIDs(tokens);
+            context.getMipsGenerator().writeAssembly(assembly);
+        } catch (IOException e) {
+            System.out.println("Error writing the output of " + source + ": " + e.getMessage());
+            return;
+        }
+
+        System.out.printf("Rebuilt %s: %d statement(s), %d changed, %d dependent, %d reused in %.2f ms%n",
+                source.getFileName(), statements.size(), changed, dependent, reused,
+                (System.nanoTime() - start) / 1_000_000.0);
+    }
+
+    /**********************************************************
+     * METHOD: build(List<String> statements)                   *
+     * DESCRIPTION: Runs the statements in a fresh context. The *
+     *              new statements are lined up with the old    *
+     *              ones by their common prefix and suffix; a   *
+     *              lined-up statement with the same tokens is  *
+     *              replayed if the state it depends on is the  *
+     *              same as last time, and executed otherwise.  *
+     * PARAMETERS: List<String> statements - the program.       *
+     * RETURN VALUE: CompilationContext - the built context.    *
+     **********************************************************/
+    public CompilationContext build(List<String> statements) {
+        PrintStream out = new PrintStream(OutputStream.nullOutputStream(), false, StandardCharsets.UTF_8);
+        CompilationContext context = new CompilationContext(InputStream.nullInputStream(), out);
+        Compiler compiler = new Compiler(context);
+        Tokenization tokenizer = context.getTokenizer();
+        Set<Object> literalValues = new HashSet<>();  // The values in the literal table
+
+        // Statements whose text did not change keep their old tokens
+        List<StatementRecord> previous = records;
+        Map<String, String[]> previousTokens = new HashMap<>();
+        for (StatementRecord record : previous) {
+            previousTokens.put(record.statement, record.tokens);
+        }
+
+        int count = statements.size();
+        String[][] tokens = new String[count][];
+        for (int i = 0; i < count; i++) {
+            tokens[i] = previousTokens.get(statements.get(i));
+            if (tokens[i] == null) {
+                tokens[i] = tokenizer.tokenize(statements.get(i));
+            }
+        }
+
+        int limit = Math.min(count, previous.size());
+        int prefix = 0;
+        while (prefix < limit && Arrays.equals(tokens[prefix], previous.get(prefix).tokens)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < limit - prefix
+                && Arrays.equals(tokens[count - 1 - suffix], previous.get(previous.size() - 1 - suffix).tokens)) {
+            suffix++;
+        }
+
+        // With the optimizer on, the code of a statement depends on what the Evaluator knows of every value, so it is always executed
+        boolean replayable = MipsOptimizer.getLevel() == 0;
+        changed = 0;
+        dependent = 0;
+        reused = 0;
+        List<StatementRecord> current = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StatementRecord old = null;
+            if (i < prefix) {
+                old = previous.get(i);
+            } else if (i >= count - suffix) {
+                old = previous.get(i - count + previous.size());
+            }
+
+            Set<String> names = namesOf(tokens[i]);
+            Signature before = signature(context, names);
+            if (old != null && replayable && canReplay(old, before, literalValues)) {
+                replay(old, context);
+                current.add(old);
+                reused++;
+            } else {
+                current.add(execute(statements.get(i), tokens[i], names, before, compiler, context));
+                if (old == null) {
+                    changed++;
+                } else {
+                    dependent++;
+                }
+            }
+            literalValues.addAll(current.get(i).literals);
+        }
+
+        records = current;
+        return context;
+    }
+
+    /**********************************************************
+     * METHOD: execute(...)                                     *
+     * DESCRIPTION: Executes one statement and records what it  *
+     *              did to the tables and the generator, so it  *
+     *              can be replayed by the next build.          *
+     * PARAMETERS: String statement - the statement.            *
+     *             String[] tokens - its tokens.                *
+     *             Set<String> names - the names it uses.       *
+     *             Signature before - the state it started in.  *
+     *             Compiler compiler - runs the statement.      *
+     *             CompilationContext context - the tables.     *
+     * RETURN VALUE: StatementRecord - the recorded effects.    *
+     **********************************************************/
+    private StatementRecord execute(String statement, String[] tokens, Set<String> names, Signature before,
+                                    Compiler compiler, CompilationContext context) {
+        SymbolTable symbolTable = context.getSymbolTable();
+        LiteralTable literals = context.getLiteralTable();
+        MIPSGenerator generator = context.getMipsGenerator();
+        int codeStart = generator.getCodeSize();
+        int dataStart = generator.getDataSize();
+        Set<Object> lookups = new HashSet<>();
+
+        context.getLiteralTable().trackLookups(lookups);
+        compiler.executeStatement(statement, tokens);
+        context.getLiteralTable().trackLookups(null);
+
+        StatementRecord record = new StatementRecord(statement, tokens, before);
+        for (int id = SymbolTable.FIRST_ID + before.symbols; id < SymbolTable.FIRST_ID + symbolTable.size(); id++) {
+            SymbolTable.Entry entry = symbolTable.getEntryById(id);
+            record.added.add(entry.getName());
+            record.addedStates.add(new SymbolState(entry, false));
+        }
+        for (String name : names) {
+            SymbolTable.Entry entry = symbolTable.getEntry(name);
+            SymbolState previous = before.names.get(name);
+            if (entry != null && previous != null) {
+                record.updated.put(name, new SymbolState(entry, previous.inData));
+            }
+            if (previous == null || !previous.inData) {
+                String data = generator.getDataEntry(name);
+                if (data != null) {
+                    record.data.put(name, data);
+                }
+            }
+        }
+        for (int i = before.literals; i < literals.size(); i++) {
+            record.literals.add(literals.getValueById(literals.getIdAt(i)));
+        }
+        for (Object value : lookups) {
+            record.lookups.put(value, !record.literals.contains(value));
+        }
+        record.code = generator.getCodeFrom(codeStart);
+        record.after = generator.saveState();
+
+        // Data entries for names the statement does not mention cannot be tracked, so it is never replayed
+        if (generator.getDataSize() - dataStart != record.data.size()) {
+            record.before = null;
+        }
+        return record;
+    }
+
+    /**********************************************************
+     * METHOD: canReplay(StatementRecord record, Signature before, *
+     *              Set<Object> literalValues)                  *
+     * DESCRIPTION: Tells whether a statement with unchanged    *
+     *              tokens starts in the same state as when it  *
+     *              was recorded, so replaying it gives the     *
+     *              same result as executing it.                *
+     * PARAMETERS: StatementRecord record - the old statement.  *
+     *             Signature before - the current state.        *
+     *             Set<Object> literalValues - the values in    *
+     *              the literal table.                          *
+     * RETURN VALUE: boolean - true if it can be replayed.      *
+     **********************************************************/
+    private boolean canReplay(StatementRecord record, Signature before, Set<Object> literalValues) {
+        if (!before.equals(record.before)) {
+            return false;
+        }
+        for (Map.Entry<Object, Boolean> lookup : record.lookups.entrySet()) {
+            if (literalValues.contains(lookup.getKey()) != lookup.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**********************************************************
+     * METHOD: replay(StatementRecord record, ...)              *
+     * DESCRIPTION: Applies the recorded effects of a statement *
+     *              instead of executing it again.              *
+     * PARAMETERS: StatementRecord record - the effects.        *
+     *             CompilationContext context - the tables.     *
+     * RETURN VALUE: None                                        *
+     **********************************************************/
+    private void replay(StatementRecord record, CompilationContext context) {
+        SymbolTable symbolTable = context.getSymbolTable();
+        MIPSGenerator generator = context.getMipsGenerator();
+
+        for (int i = 0; i < record.added.size(); i++) {
+            SymbolState state = record.addedStates.get(i);
+            if (state.level > 0) {
+                // Declared inside a block, so it was out of scope again when the statement ended
+                symbolTable.enterScope();
+                symbolTable.addEntry(record.added.get(i), state.type, state.value, state.scope, state.register);
+                symbolTable.exitScope();
+            } else {
+                symbolTable.addEntry(record.added.get(i), state.type, state.value, state.scope, state.register);
+            }
+        }
+        for (Map.Entry<String, SymbolState> update : record.updated.entrySet()) {
+            SymbolTable.Entry entry = symbolTable.getEntry(update.getKey());
+            SymbolState state = update.getValue();
+            entry.setType(state.type);
+            entry.setValue(state.value);
+            entry.setScope(state.scope);
+            entry.setRegister(state.register);
+        }
+        for (Object literal : record.literals) {
+            context.getLiteralTable().addLiteral(literal);
+        }
+        for (Map.Entry<String, String> data : record.data.entrySet()) {
+            generator.putDataEntry(data.getKey(), data.getValue());
+        }
+        generator.addMipsCode(record.code);
+        generator.restoreState(record.after);
+    }
+
+    /**********************************************************
+     * METHOD: signature(...)                                   *
+     * DESCRIPTION: Captures the state a statement can observe: *
+     *              the entries it names, the sizes of the      *
+     *              tables, and the register and label state of *
+     *              the generator. The literals it looks up are *
+     *              checked separately, see canReplay(...).     *
+     * PARAMETERS: CompilationContext context - the tables.     *
+     *             Set<String> names - the names to capture.    *
+     * RETURN VALUE: Signature - the captured state.            *
+     **********************************************************/
+    private Signature signature(CompilationContext context, Set<String> names) {
+        MIPSGenerator generator = context.getMipsGenerator();
+        Map<String, SymbolState> states = new HashMap<>();
+        for (String name : names) {
+            SymbolTable.Entry entry = context.getSymbolTable().getEntry(name);
+            boolean inData = generator.isVariableInDataSection(name);
+            states.put(name, entry != null || inData ? new SymbolState(entry, inData) : null);
+        }
+        return new Signature(context.getSymbolTable().size(),
+                context.getLiteralTable().size(), generator.saveState(), states);
+    }
+
+    /**********************************************************
+     * METHOD: namesOf(String[] tokens)                         *
+     * DESCRIPTION: Collects the identifiers of a statement.    *
+     * PARAMETERS: String[] tokens - the statement's tokens.    *
+     * RETURN VALUE: Set<String> - the identifiers.             *
+     **********************************************************/
+    private static Set<String> namesOf(String[] tokens) {
+        Set<String> names = new HashSet<>();
+        for (String token : tokens) {
+            Matcher matcher = IDENTIFIER_PATTERN.matcher(token);
+            if (matcher.matches()) {
+                names.add(token);
+            }
+        }
+        return names;
+    }
+
+    /**********************************************************
+     * CLASS: SymbolState                                       *
+     * DESCRIPTION: A copy of one symbol table entry and        *
+     *              whether the name has a .data entry.         *
+     **********************************************************/
+    private static final class SymbolState {
+        private final String type;
+        private final Object value;
+        private final String scope;
+        private final String register;
+        private final int level;
+        private final boolean inData;
+
+        SymbolState(SymbolTable.Entry entry, boolean inData) {
+            this.type = entry != null ? entry.getType() : null;
+            this.value = entry != null ? entry.getValue() : null;
+            this.scope = entry != null ? entry.getScope() : null;
+            this.register = entry != null ? entry.getRegister() : null;
+            this.level = entry != null ? entry.getLevel() : 0;
+            this.inData = inData;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof SymbolState)) {
+                return false;
+            }
+            SymbolState state = (SymbolState) other;
+            return inData == state.inData && level == state.level && Objects.equals(type, state.type) && Objects.equals(value, state.value)
+                    && Objects.equals(scope, state.scope) && Objects.equals(register, state.register);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, value, scope, register, inData);
+        }
+    }
+
+    /**********************************************************
+     * CLASS: Signature                                         *
+     * DESCRIPTION: The state a statement started in, see       *
+     *              signature(...).                             *
+     **********************************************************/
+    private static final class Signature {
+        private final int symbols;
+        private final int literals;  // Only used to find the literals a statement added
+        private final MIPSGenerator.State generator;
+        private final Map<String, SymbolState> names;
+
+        Signature(int symbols, int literals, MIPSGenerator.State generator, Map<String, SymbolState> names) {
+            this.symbols = symbols;
+            this.literals = literals;
+            this.generator = generator;
+            this.names = names;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Signature)) {
+                return false;
+            }
+            Signature signature = (Signature) other;
+            return symbols == signature.symbols && names.equals(signature.names)
+                    && generator.equals(signature.generator);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(symbols, names);
+        }
+    }
+
+    /**********************************************************
+     * CLASS: StatementRecord                                   *
+     * DESCRIPTION: One top-level statement of the last build,  *
+     *              the state it started in and its effects.    *
+     **********************************************************/
+    private static final class StatementRecord {
+        private final String statement;
+        private final String[] tokens;
+        private Signature before;  // null if the statement must always be executed
+        private final List<String> added = new ArrayList<>();
+        private final List<SymbolState> addedStates = new ArrayList<>();
+        private final Map<String, SymbolState> updated = new HashMap<>();
+        private final List<Object> literals = new ArrayList<>();
+        private final Map<Object, Boolean> lookups = new HashMap<>();  // Value -> was it in the table before
+        private final Map<String, String> data = new LinkedHashMap<>();
+        private MipsCode code;
+        private MIPSGenerator.State after;
+
+        StatementRecord(String statement, String[] tokens, Signature before) {
+            this.statement = statement;
+            this.tokens = tokens;
+            this.before = before;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+@echo off
+rem Fast-start launcher for the compiler.
+rem
+rem AppCDS only archives classes loaded from a JAR, so the compiled classes are
+rem packed into compiler.jar first. The first run then creates an AppCDS archive
+rem from a training run of input.txt, and later runs map that archive and stop
+rem the JIT at the C1 tier. Delete both files after rebuilding the classes.
+rem
+rem Usage: faststart.bat [input file] [output file]
+
+if "%CLASSES%"=="" set CLASSES=out\production\Assignment 7
+if "%JAR%"=="" set JAR=compiler.jar
+if "%ARCHIVE%"=="" set ARCHIVE=compiler.jsa
+
+if not exist "%JAR%" jar cf "%JAR%" -C "%CLASSES%" .
+if not exist "%ARCHIVE%" java -XX:ArchiveClassesAtExit="%ARCHIVE%" -cp "%JAR%" Compiler input.txt output.txt > nul
+
+java -XX:SharedArchiveFile="%ARCHIVE%" -XX:TieredStopAtLevel=1 -cp "%JAR%" Compiler %*
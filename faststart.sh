@@ -0,0 +1,26 @@
+#!/bin/sh
+# Fast-start launcher for the compiler.
+#
+# AppCDS only archives classes loaded from a JAR, so the compiled classes are
+# packed into compiler.jar first. The first run then creates an AppCDS archive
+# from a training run of input.txt, and later runs map that archive and stop
+# the JIT at the C1 tier, which is all a one-shot compile of a small program
+# needs. The jar and the archive are rebuilt when the classes change.
+#
+# Usage: ./faststart.sh [input file] [output file]
+# CLASSES can point at the compiled classes, JAR and ARCHIVE at the outputs.
+
+CLASSES="${CLASSES:-out/production/Assignment 7}"
+JAR="${JAR:-compiler.jar}"
+ARCHIVE="${ARCHIVE:-compiler.jsa}"
+
+if [ ! -f "$JAR" ] || [ -n "$(find "$CLASSES" -name '*.class' -newer "$JAR")" ]; then
+    jar cf "$JAR" -C "$CLASSES" . || exit 1
+    rm -f "$ARCHIVE"
+fi
+
+if [ ! -f "$ARCHIVE" ]; then
+    java -XX:ArchiveClassesAtExit="$ARCHIVE" -cp "$JAR" Compiler input.txt output.txt > /dev/null
+fi
+
+exec java -XX:SharedArchiveFile="$ARCHIVE" -XX:TieredStopAtLevel=1 -cp "$JAR" Compiler "$@"